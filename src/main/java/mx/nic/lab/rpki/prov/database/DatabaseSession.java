@@ -40,11 +40,23 @@ public class DatabaseSession {
 	 */
 	public static final int QUERY_TIMEOUT = 10;
 
+	/**
+	 * Default limit of open prepared statements per connection, the distinct SQLs
+	 * of the models (their pages share the SQL) fit in it; DBCP's default is
+	 * unlimited
+	 */
+	public static final int DEFAULT_MAX_OPEN_PREPARED_STATEMENTS = 200;
+
 	/**
 	 * Data source to get/store data
 	 */
 	private static DataSource dataSource;
 
+	/**
+	 * Saturation metrics of the connection pool
+	 */
+	private static final PoolMetrics poolMetrics = new PoolMetrics();
+
 	/**
 	 * Used for logging
 	 */
@@ -85,6 +97,7 @@ public class DatabaseSession {
 	 */
 	public static void endConnection() {
 		if (dataSource != null) {
+			logger.log(Level.INFO, "Connection pool metrics: " + poolMetrics.getSummary(dataSource));
 			Enumeration<Driver> drivers = DriverManager.getDrivers();
 			while (drivers.hasMoreElements()) {
 				Driver driver = drivers.nextElement();
@@ -145,7 +158,7 @@ public class DatabaseSession {
 			throw new InitializationException("I can't find a data source in the configuration.");
 		}
 
-		BasicDataSource dataSource = new BasicDataSource();
+		BasicDataSource dataSource = new MeteredDataSource();
 		dataSource.setDriverClassName(driverClassName);
 		dataSource.setUrl(url);
 		dataSource.setDefaultAutoCommit(true);
@@ -153,6 +166,7 @@ public class DatabaseSession {
 		// Load the test query, if not present then load the most common
 		// (http://stackoverflow.com/questions/3668506)
 		String testQuery = config.getProperty("testQuery", "select 1");
+		configurePool(dataSource, config, testQuery);
 		try {
 			testDatabase(dataSource, testQuery);
 		} catch (SQLException e) {
@@ -166,6 +180,94 @@ public class DatabaseSession {
 		return dataSource;
 	}
 
+	/**
+	 * Configure the pool sizing, eviction, statement pooling and validation. Every
+	 * property is optional, the DBCP defaults are used for the missing ones (but
+	 * for the statement pooling, which is enabled and bounded).
+	 * 
+	 * @param dataSource
+	 * @param config
+	 * @param testQuery
+	 * @throws InitializationException
+	 */
+	private static void configurePool(BasicDataSource dataSource, Properties config, String testQuery)
+			throws InitializationException {
+		Integer intValue = getIntProperty(config, "maxTotal");
+		if (intValue != null) {
+			dataSource.setMaxTotal(intValue);
+		}
+		intValue = getIntProperty(config, "maxIdle");
+		if (intValue != null) {
+			dataSource.setMaxIdle(intValue);
+		}
+		intValue = getIntProperty(config, "minIdle");
+		if (intValue != null) {
+			dataSource.setMinIdle(intValue);
+		}
+		intValue = getIntProperty(config, "initialSize");
+		if (intValue != null) {
+			dataSource.setInitialSize(intValue);
+		}
+		Long longValue = getLongProperty(config, "maxWaitMillis");
+		if (longValue != null) {
+			dataSource.setMaxWaitMillis(longValue);
+		}
+		// Prepared statements pooling, the queries are reused a lot
+		dataSource.setPoolPreparedStatements(getBooleanProperty(config, "poolPreparedStatements", true));
+		intValue = getIntProperty(config, "maxOpenPreparedStatements");
+		dataSource.setMaxOpenPreparedStatements(intValue != null ? intValue : DEFAULT_MAX_OPEN_PREPARED_STATEMENTS);
+		// Idle connections eviction
+		longValue = getLongProperty(config, "timeBetweenEvictionRunsMillis");
+		if (longValue != null) {
+			dataSource.setTimeBetweenEvictionRunsMillis(longValue);
+		}
+		longValue = getLongProperty(config, "minEvictableIdleTimeMillis");
+		if (longValue != null) {
+			dataSource.setMinEvictableIdleTimeMillis(longValue);
+		}
+		intValue = getIntProperty(config, "numTestsPerEvictionRun");
+		if (intValue != null) {
+			dataSource.setNumTestsPerEvictionRun(intValue);
+		}
+		// Validation of the connections
+		dataSource.setValidationQuery(testQuery);
+		dataSource.setValidationQueryTimeout(QUERY_TIMEOUT);
+		dataSource.setTestOnBorrow(getBooleanProperty(config, "testOnBorrow", false));
+		dataSource.setTestWhileIdle(getBooleanProperty(config, "testWhileIdle", true));
+	}
+
+	private static Integer getIntProperty(Properties config, String name) throws InitializationException {
+		String value = config.getProperty(name);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(value.trim());
+		} catch (NumberFormatException e) {
+			throw new InitializationException("Invalid value of property '" + name + "': " + value, e);
+		}
+	}
+
+	private static Long getLongProperty(Properties config, String name) throws InitializationException {
+		String value = config.getProperty(name);
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(value.trim());
+		} catch (NumberFormatException e) {
+			throw new InitializationException("Invalid value of property '" + name + "': " + value, e);
+		}
+	}
+
+	private static boolean getBooleanProperty(Properties config, String name, boolean defaultValue) {
+		String value = config.getProperty(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value.trim());
+	}
+
 	private static void testDatabase(BasicDataSource ds, String testQuery) throws SQLException {
 		try (Connection connection = ds.getConnection(); Statement statement = connection.createStatement();) {
 			logger.log(Level.FINE, "Executing QUERY: " + testQuery);
@@ -217,11 +319,48 @@ public class DatabaseSession {
 	 * @throws SQLException
 	 */
 	public static Connection getConnection() throws SQLException {
-		synchronized (DatabaseSession.class) {
-			// Set autocommit to true
-			Connection con = dataSource.getConnection();
-			con.setAutoCommit(true);
-			return con;
+		long start = System.nanoTime();
+		Connection con;
+		try {
+			con = dataSource.getConnection();
+		} finally {
+			poolMetrics.connectionRequested(System.nanoTime() - start);
 		}
+		// Set autocommit to true
+		con.setAutoCommit(true);
+		return con;
+	}
+
+	/**
+	 * Register a statement prepared at a connection of the pool, for the metrics
+	 * of the prepared statements pool
+	 * 
+	 * @param statement
+	 */
+	public static void statementPrepared(Statement statement) {
+		poolMetrics.statementPrepared(statement);
+	}
+
+	/**
+	 * @return the number of prepared statements reused from the pool
+	 */
+	public static long getStatementHits() {
+		return poolMetrics.getStatementHits();
+	}
+
+	/**
+	 * @return the number of statements prepared by the driver
+	 */
+	public static long getStatementMisses() {
+		return poolMetrics.getStatementMisses();
+	}
+
+	/**
+	 * Get the saturation metrics of the connection pool
+	 * 
+	 * @return A summary of the metrics
+	 */
+	public static String getPoolMetricsSummary() {
+		return poolMetrics.getSummary(dataSource);
 	}
 }
@@ -0,0 +1,20 @@
+package mx.nic.lab.rpki.prov.database;
+
+import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
+import org.apache.tomcat.dbcp.pool2.impl.GenericObjectPool;
+
+/**
+ * {@link BasicDataSource} that exposes the number of threads waiting for a
+ * connection of its pool, which DBCP keeps but doesn't publish
+ */
+public class MeteredDataSource extends BasicDataSource {
+
+	/**
+	 * @return the number of threads blocked waiting for a connection, 0 if the
+	 *         pool hasn't been created yet
+	 */
+	public int getNumWaiters() {
+		GenericObjectPool<?> pool = getConnectionPool();
+		return pool != null ? pool.getNumWaiters() : 0;
+	}
+}
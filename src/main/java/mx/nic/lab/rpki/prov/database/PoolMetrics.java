@@ -0,0 +1,225 @@
+package mx.nic.lab.rpki.prov.database;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.apache.tomcat.dbcp.dbcp2.BasicDataSource;
+import org.apache.tomcat.dbcp.dbcp2.DelegatingStatement;
+
+/**
+ * Saturation metrics of the connection pool: active and idle connections (when
+ * the pool is a {@link BasicDataSource}), threads blocked waiting for a
+ * connection (when the pool is a {@link MeteredDataSource}) and a histogram of
+ * the time spent getting a connection; and the hits and misses of the prepared
+ * statements pool.<br>
+ * <br>
+ * The counters are lock free, so they can be updated at every
+ * {@link DatabaseSession#getConnection()} call.
+ */
+public class PoolMetrics {
+
+	/**
+	 * Upper bounds (inclusive, in milliseconds) of the wait-time histogram
+	 * buckets, the last bucket holds the waits above the last bound
+	 */
+	private static final long[] BUCKET_BOUNDS_MS = { 1L, 5L, 10L, 50L, 100L, 500L, 1000L, 5000L };
+
+	private final LongAdder[] buckets;
+	private final LongAdder totalWaitNanos;
+	private volatile long maxWaitNanos;
+	private final LongAdder statementHits;
+	private final LongAdder statementMisses;
+
+	/**
+	 * Driver statements already seen, by identity; a pooled statement is the
+	 * same driver statement every time it's borrowed. The keys are weak, so the
+	 * statements closed by the pool are forgotten; it's a concurrent map, so a
+	 * prepare doesn't take a lock shared by all the connections.
+	 */
+	private final ConcurrentMap<StatementKey, Boolean> driverStatements;
+
+	/**
+	 * Keys of {@link #driverStatements} whose statement was collected
+	 */
+	private final ReferenceQueue<Statement> collectedStatements;
+
+	public PoolMetrics() {
+		buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+		totalWaitNanos = new LongAdder();
+		statementHits = new LongAdder();
+		statementMisses = new LongAdder();
+		driverStatements = new ConcurrentHashMap<>();
+		collectedStatements = new ReferenceQueue<>();
+	}
+
+	/**
+	 * Register a statement prepared at a connection of the pool, it's a hit if
+	 * the pool returned a statement that was already prepared
+	 *
+	 * @param statement
+	 */
+	public void statementPrepared(Statement statement) {
+		Statement driverStatement = statement;
+		if (statement instanceof DelegatingStatement) {
+			driverStatement = ((DelegatingStatement) statement).getInnermostDelegate();
+		}
+		if (driverStatement == null) {
+			return;
+		}
+		expungeCollectedStatements();
+		StatementKey key = new StatementKey(driverStatement, collectedStatements);
+		if (driverStatements.putIfAbsent(key, Boolean.TRUE) != null) {
+			statementHits.increment();
+		} else {
+			statementMisses.increment();
+		}
+	}
+
+	/**
+	 * Remove the keys of the statements already collected
+	 */
+	private void expungeCollectedStatements() {
+		Reference<? extends Statement> collected;
+		while ((collected = collectedStatements.poll()) != null) {
+			driverStatements.remove(collected);
+		}
+	}
+
+	/**
+	 * @return the number of prepared statements reused from the pool
+	 */
+	public long getStatementHits() {
+		return statementHits.sum();
+	}
+
+	/**
+	 * @return the number of statements prepared by the driver
+	 */
+	public long getStatementMisses() {
+		return statementMisses.sum();
+	}
+
+	/**
+	 * Register a connection request that took <code>waitNanos</code> nanoseconds
+	 *
+	 * @param waitNanos
+	 */
+	public void connectionRequested(long waitNanos) {
+		totalWaitNanos.add(waitNanos);
+		if (waitNanos > maxWaitNanos) {
+			// Not exact under contention, good enough for a metric
+			maxWaitNanos = waitNanos;
+		}
+		long waitMs = TimeUnit.NANOSECONDS.toMillis(waitNanos);
+		int bucket = 0;
+		while (bucket < BUCKET_BOUNDS_MS.length && waitMs > BUCKET_BOUNDS_MS[bucket]) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+	}
+
+	/**
+	 * @return the number of connections requested so far
+	 */
+	public long getAcquisitions() {
+		long total = 0L;
+		for (LongAdder bucket : buckets) {
+			total += bucket.sum();
+		}
+		return total;
+	}
+
+	/**
+	 * @return the count of connection requests per bucket of the wait-time
+	 *         histogram
+	 */
+	public long[] getWaitHistogram() {
+		long[] result = new long[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			result[i] = buckets[i].sum();
+		}
+		return result;
+	}
+
+	/**
+	 * Get a readable summary of the metrics, including the active and idle
+	 * connections if the <code>dataSource</code> is a {@link BasicDataSource},
+	 * and the threads waiting for one if it's a {@link MeteredDataSource}
+	 *
+	 * @param dataSource
+	 * @return The summary of the metrics
+	 */
+	public String getSummary(DataSource dataSource) {
+		StringBuilder sb = new StringBuilder();
+		if (dataSource instanceof BasicDataSource) {
+			BasicDataSource basicDataSource = (BasicDataSource) dataSource;
+			sb.append("active=").append(basicDataSource.getNumActive());
+			sb.append(", idle=").append(basicDataSource.getNumIdle());
+			sb.append(", maxTotal=").append(basicDataSource.getMaxTotal()).append(", ");
+		}
+		if (dataSource instanceof MeteredDataSource) {
+			sb.append("waiters=").append(((MeteredDataSource) dataSource).getNumWaiters()).append(", ");
+		}
+		long acquisitions = getAcquisitions();
+		sb.append("acquisitions=").append(acquisitions);
+		if (acquisitions > 0) {
+			sb.append(", avgWaitMs=").append(TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / acquisitions));
+		}
+		sb.append(", maxWaitMs=").append(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+		sb.append(", waitHistogramMs={");
+		long[] histogram = getWaitHistogram();
+		for (int i = 0; i < histogram.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(i < BUCKET_BOUNDS_MS.length ? "<=" + BUCKET_BOUNDS_MS[i] : ">" + BUCKET_BOUNDS_MS[i - 1]);
+			sb.append(": ").append(histogram[i]);
+		}
+		sb.append("}");
+		sb.append(", statementHits=").append(getStatementHits());
+		sb.append(", statementMisses=").append(getStatementMisses());
+		return sb.toString();
+	}
+
+	/**
+	 * Weak reference to a driver statement, compared by the identity of the
+	 * statement
+	 */
+	private static final class StatementKey extends WeakReference<Statement> {
+
+		private final int hash;
+
+		public StatementKey(Statement statement, ReferenceQueue<Statement> queue) {
+			super(statement, queue);
+			this.hash = System.identityHashCode(statement);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof StatementKey)) {
+				return false;
+			}
+			Statement statement = get();
+			return statement != null && statement == ((StatementKey) obj).get();
+		}
+	}
+}
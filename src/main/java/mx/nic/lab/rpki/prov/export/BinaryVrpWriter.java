@@ -0,0 +1,60 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * {@link VrpExportFormat#BINARY} writer, all the values in network byte
+ * order:
+ * <ul>
+ * <li>Header: the magic bytes <code>"VRPS"</code>, the format version (1 byte,
+ * currently 1) and the serial (8 bytes).</li>
+ * <li>A record per VRP: family (1 byte, 4 or 6), prefix length (1 byte), max
+ * length (1 byte), prefix (4 or 16 bytes) and ASN (4 bytes, unsigned).</li>
+ * <li>Trailer: a family 0 (1 byte) followed by the number of VRPs (8
+ * bytes).</li>
+ * </ul>
+ *
+ */
+class BinaryVrpWriter implements VrpWriter {
+
+	private static final byte[] MAGIC = { 'V', 'R', 'P', 'S' };
+	private static final byte FORMAT_VERSION = 1;
+	private static final byte END_OF_RECORDS = 0;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final DataOutputStream out;
+
+	BinaryVrpWriter(OutputStream out) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+	}
+
+	@Override
+	public void begin(long serial) throws IOException {
+		out.write(MAGIC);
+		out.writeByte(FORMAT_VERSION);
+		out.writeLong(serial);
+	}
+
+	@Override
+	public void write(Vrp vrp) throws IOException {
+		byte[] prefix = vrp.getPrefix();
+		out.writeByte(IpPrefix.getFamily(prefix));
+		out.writeByte(vrp.getPrefixLength());
+		out.writeByte(vrp.getPrefixMaxLength());
+		out.write(prefix);
+		out.writeInt((int) vrp.getAsn());
+	}
+
+	@Override
+	public void end(long count) throws IOException {
+		out.writeByte(END_OF_RECORDS);
+		out.writeLong(count);
+		out.flush();
+	}
+}
@@ -0,0 +1,45 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import mx.nic.lab.rpki.prov.object.Vrp;
+
+/**
+ * {@link VrpExportFormat#BIRD} writer, each VRP is a route of a static ROA
+ * table (e.g. <code>route 192.0.2.0/24 max 24 as 64496;</code>); the file is
+ * meant to be included inside the <code>protocol static</code> definition
+ *
+ */
+class BirdVrpWriter extends TextVrpWriter {
+
+	BirdVrpWriter(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void begin(long serial) throws IOException {
+		writer.write("# VRPs of the serial ");
+		writer.write(Long.toString(serial));
+		writer.write('\n');
+	}
+
+	@Override
+	public void write(Vrp vrp) throws IOException {
+		writer.write("route ");
+		writer.write(getPrefix(vrp));
+		writer.write(" max ");
+		writer.write(Integer.toString(vrp.getPrefixMaxLength()));
+		writer.write(" as ");
+		writer.write(Long.toString(vrp.getAsn()));
+		writer.write(";\n");
+	}
+
+	@Override
+	public void end(long count) throws IOException {
+		writer.write("# ");
+		writer.write(Long.toString(count));
+		writer.write(" VRPs\n");
+		super.end(count);
+	}
+}
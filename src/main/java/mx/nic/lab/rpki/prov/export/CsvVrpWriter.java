@@ -0,0 +1,33 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import mx.nic.lab.rpki.prov.object.Vrp;
+
+/**
+ * {@link VrpExportFormat#CSV} writer
+ *
+ */
+class CsvVrpWriter extends TextVrpWriter {
+
+	CsvVrpWriter(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void begin(long serial) throws IOException {
+		writer.write("ASN,IP Prefix,Max Length\n");
+	}
+
+	@Override
+	public void write(Vrp vrp) throws IOException {
+		writer.write("AS");
+		writer.write(Long.toString(vrp.getAsn()));
+		writer.write(',');
+		writer.write(getPrefix(vrp));
+		writer.write(',');
+		writer.write(Integer.toString(vrp.getPrefixMaxLength()));
+		writer.write('\n');
+	}
+}
@@ -0,0 +1,46 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import mx.nic.lab.rpki.prov.object.Vrp;
+
+/**
+ * {@link VrpExportFormat#JSON} writer, the JSON is written by hand since every
+ * value is a number or a prefix (nothing to escape)
+ *
+ */
+class JsonVrpWriter extends TextVrpWriter {
+
+	private boolean first = true;
+
+	JsonVrpWriter(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void begin(long serial) throws IOException {
+		writer.write("{\"serial\":");
+		writer.write(Long.toString(serial));
+		writer.write(",\"roas\":[");
+	}
+
+	@Override
+	public void write(Vrp vrp) throws IOException {
+		writer.write(first ? "\n" : ",\n");
+		first = false;
+		writer.write("{\"asn\":\"AS");
+		writer.write(Long.toString(vrp.getAsn()));
+		writer.write("\",\"prefix\":\"");
+		writer.write(getPrefix(vrp));
+		writer.write("\",\"maxLength\":");
+		writer.write(Integer.toString(vrp.getPrefixMaxLength()));
+		writer.write('}');
+	}
+
+	@Override
+	public void end(long count) throws IOException {
+		writer.write("\n]}\n");
+		super.end(count);
+	}
+}
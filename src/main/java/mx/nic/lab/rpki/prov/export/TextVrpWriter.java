@@ -0,0 +1,39 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * Base of the text {@link VrpWriter}s, the output is buffered and encoded as
+ * UTF-8
+ *
+ */
+abstract class TextVrpWriter implements VrpWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	protected final Writer writer;
+
+	protected TextVrpWriter(OutputStream out) {
+		this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	@Override
+	public void end(long count) throws IOException {
+		writer.flush();
+	}
+
+	/**
+	 * Get the prefix of the VRP as text, the same for every format
+	 */
+	protected static String getPrefix(Vrp vrp) {
+		return IpPrefix.toText(vrp.getPrefix(), vrp.getPrefixLength());
+	}
+}
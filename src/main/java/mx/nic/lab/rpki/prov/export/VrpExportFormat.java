@@ -0,0 +1,57 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.OutputStream;
+import java.util.function.Function;
+
+/**
+ * Formats supported to export the VRPs
+ *
+ */
+public enum VrpExportFormat {
+
+	/**
+	 * Comma separated values: <code>ASN,IP Prefix,Max Length</code>
+	 */
+	CSV("text/csv", CsvVrpWriter::new),
+
+	/**
+	 * JSON object with a <code>roas</code> array, each with
+	 * <code>asn</code>, <code>prefix</code> and <code>maxLength</code>
+	 */
+	JSON("application/json", JsonVrpWriter::new),
+
+	/**
+	 * BIRD 2 static ROA table entries
+	 */
+	BIRD("text/plain", BirdVrpWriter::new),
+
+	/**
+	 * Compact binary records, see {@link BinaryVrpWriter}
+	 */
+	BINARY("application/octet-stream", BinaryVrpWriter::new);
+
+	private final String contentType;
+	private final Function<OutputStream, VrpWriter> writerFactory;
+
+	private VrpExportFormat(String contentType, Function<OutputStream, VrpWriter> writerFactory) {
+		this.contentType = contentType;
+		this.writerFactory = writerFactory;
+	}
+
+	/**
+	 * Create a writer of this format
+	 *
+	 * @param out
+	 * @return The new {@link VrpWriter}
+	 */
+	public VrpWriter createWriter(OutputStream out) {
+		return writerFactory.apply(out);
+	}
+
+	/**
+	 * @return the MIME type of the output
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+}
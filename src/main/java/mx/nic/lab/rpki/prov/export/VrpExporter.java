@@ -0,0 +1,132 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mx.nic.lab.rpki.db.pojo.Slurm;
+import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
+import mx.nic.lab.rpki.prov.model.SlurmModel;
+import mx.nic.lab.rpki.prov.model.VrpSnapshotModel;
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+import mx.nic.lab.rpki.prov.trie.SlurmPrefixTrie;
+
+/**
+ * Exports the VRPs of the current snapshot with the SLURM applied (RFC 8416
+ * section 4.2): the VRPs that match a filter are discarded, and the assertions
+ * are added at the end.<br>
+ * <br>
+ * The VRPs are streamed from the database to the {@link VrpWriter}, so the
+ * memory used doesn't depend on the number of VRPs. The rows arrive ordered by
+ * prefix, so the duplicated VRPs (the same VRP at distinct ROAs) are discarded
+ * keeping only the VRPs of the current prefix.
+ *
+ */
+public class VrpExporter {
+
+	private static final Logger logger = Logger.getLogger(VrpExporter.class.getName());
+
+	private VrpExporter() {
+		// No instances
+	}
+
+	/**
+	 * Write the VRPs of the current snapshot to <code>out</code>, the stream
+	 * isn't closed
+	 *
+	 * @param format
+	 * @param out
+	 * @param connection
+	 * @return The number of VRPs written
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public static long export(VrpExportFormat format, OutputStream out, Connection connection)
+			throws SQLException, IOException {
+		long start = System.currentTimeMillis();
+		Slurm slurm = SlurmModel.getAll(connection);
+		SlurmPrefixTrie filters = SlurmPrefixTrie.build(slurm.getValidationOutputFilters().getPrefixes());
+		Set<Vrp> assertions = new LinkedHashSet<>();
+		for (SlurmPrefix assertion : slurm.getLocallyAddedAssertions().getPrefixes()) {
+			if (assertion.getAsn() == null || assertion.getStartPrefix() == null) {
+				continue;
+			}
+			int maxLength = assertion.getPrefixMaxLength() != null ? assertion.getPrefixMaxLength()
+					: assertion.getPrefixLength();
+			assertions.add(new Vrp(assertion.getAsn(), assertion.getPrefixText(), assertion.getStartPrefix(),
+					assertion.getPrefixLength(), maxLength, IpPrefix.getFamily(assertion.getStartPrefix())));
+		}
+
+		VrpWriter writer = format.createWriter(out);
+		long snapshotId = VrpSnapshotModel.acquireCurrent(connection);
+		try {
+			writer.begin(snapshotId);
+			long[] count = { 0L };
+			if (snapshotId != VrpSnapshotModel.NO_SNAPSHOT) {
+				PrefixGroup group = new PrefixGroup();
+				try {
+					VrpSnapshotModel.forEachVrp(snapshotId, (vrp) -> {
+						// Duplicated, the assertions are written at the end
+						if (!group.add(vrp) || assertions.contains(vrp)) {
+							return;
+						}
+						if (filters.findFilterMatch(vrp.getAsn(), vrp.getPrefix(), vrp.getPrefixLength()) != null) {
+							return;
+						}
+						try {
+							writer.write(vrp);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+						count[0]++;
+					}, connection);
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+			}
+			for (Vrp assertion : assertions) {
+				writer.write(assertion);
+				count[0]++;
+			}
+			writer.end(count[0]);
+			logger.log(Level.INFO, count[0] + " VRPs of the serial " + snapshotId + " exported as " + format
+					+ " in " + (System.currentTimeMillis() - start) + " ms");
+			return count[0];
+		} finally {
+			VrpSnapshotModel.release(snapshotId);
+		}
+	}
+
+	/**
+	 * The distinct VRPs of the prefix being read
+	 */
+	private static class PrefixGroup {
+
+		private byte[] prefix = null;
+		private int prefixLength = -1;
+		private final Set<Vrp> vrps = new HashSet<>();
+
+		/**
+		 * Add the VRP to the group, starting a new one if its prefix is another
+		 *
+		 * @return <code>false</code> if the VRP was already read
+		 */
+		private boolean add(Vrp vrp) {
+			if (vrp.getPrefixLength() != prefixLength || !Arrays.equals(vrp.getPrefix(), prefix)) {
+				prefix = vrp.getPrefix();
+				prefixLength = vrp.getPrefixLength();
+				vrps.clear();
+			}
+			return vrps.add(vrp);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.IOException;
+
+import mx.nic.lab.rpki.prov.object.Vrp;
+
+/**
+ * Writer of the VRPs in a specific format (see {@link VrpExportFormat}), it
+ * writes each VRP as soon as it's received so it doesn't keep them in memory.
+ * The output stream isn't closed by the writer.
+ *
+ */
+public interface VrpWriter {
+
+	/**
+	 * Write whatever goes before the VRPs
+	 *
+	 * @param serial
+	 *            serial of the VRPs
+	 * @throws IOException
+	 */
+	public void begin(long serial) throws IOException;
+
+	/**
+	 * Write a VRP
+	 *
+	 * @param vrp
+	 * @throws IOException
+	 */
+	public void write(Vrp vrp) throws IOException;
+
+	/**
+	 * Write whatever goes after the VRPs and flush the output
+	 *
+	 * @param count
+	 *            number of VRPs written
+	 * @throws IOException
+	 */
+	public void end(long count) throws IOException;
+}
@@ -11,6 +11,7 @@ import mx.nic.lab.rpki.db.spi.CertificateTreeDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
 import mx.nic.lab.rpki.prov.model.CertificateTreeModel;
 import mx.nic.lab.rpki.prov.model.TalModel;
+import mx.nic.lab.rpki.prov.model.TalModel.Projection;
 
 /**
  * Implementation to retrieve the Certificate Tree
@@ -22,7 +23,8 @@ public class CertificateTreeDAOImpl implements CertificateTreeDAO {
 	public CertificationTreeNode getFromRoot(Long talId, PagingParameters pagingParameters)
 			throws ApiDataAccessException {
 		try (Connection connection = DatabaseSession.getConnection()) {
-			Tal tal = TalModel.getById(talId, connection);
+			// Only the URIs and the certificate are needed
+			Tal tal = TalModel.getById(talId, Projection.URIS, connection);
 			if (tal == null) {
 				return null;
 			}
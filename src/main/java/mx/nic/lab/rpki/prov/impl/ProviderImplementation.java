@@ -1,6 +1,11 @@
 package mx.nic.lab.rpki.prov.impl;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import mx.nic.lab.rpki.db.exception.InitializationException;
 import mx.nic.lab.rpki.db.spi.CertificateTreeDAO;
@@ -15,7 +20,19 @@ import mx.nic.lab.rpki.db.spi.SlurmPrefixDAO;
 import mx.nic.lab.rpki.db.spi.TalDAO;
 import mx.nic.lab.rpki.db.spi.ValidationRunDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.CountCache;
+import mx.nic.lab.rpki.prov.model.KeysetPaging;
+import mx.nic.lab.rpki.prov.model.PurgeService;
+import mx.nic.lab.rpki.prov.model.QueryCache;
 import mx.nic.lab.rpki.prov.model.QueryLoader;
+import mx.nic.lab.rpki.prov.model.RoaModel;
+import mx.nic.lab.rpki.prov.model.RouteValidationCache;
+import mx.nic.lab.rpki.prov.model.RouteValidationModel;
+import mx.nic.lab.rpki.prov.model.RpkiObjectModel;
+import mx.nic.lab.rpki.prov.model.SearchIndexModel;
+import mx.nic.lab.rpki.prov.model.SlurmPrefixModel;
+import mx.nic.lab.rpki.prov.model.VrpSnapshotModel;
+import mx.nic.lab.rpki.prov.rtr.RtrServer;
 
 /**
  * Implementation used for {@link DataAccessImplementation}
@@ -23,14 +40,87 @@ import mx.nic.lab.rpki.prov.model.QueryLoader;
  */
 public class ProviderImplementation implements DataAccessImplementation {
 
+	private static final Logger logger = Logger.getLogger(ProviderImplementation.class.getName());
+
+	/**
+	 * RTR cache server, only if it's configured
+	 */
+	private RtrServer rtrServer = null;
+
 	@Override
 	public void init(Properties properties) throws InitializationException {
 		DatabaseSession.initConnection(properties);
 		QueryLoader.init(properties);
+		RouteValidationModel.init(properties);
+		RouteValidationCache.init(properties);
+		CountCache.init(properties);
+		RpkiObjectModel.init(properties);
+		VrpSnapshotModel.init(properties);
+		PurgeService.init(properties);
+		SearchIndexModel.init(properties);
+		// Index the rows stored before the search index existed
+		try (Connection connection = DatabaseSession.getConnection()) {
+			SearchIndexModel.rebuild(connection);
+		} catch (SQLException e) {
+			throw new InitializationException("The search index couldn't be built.", e);
+		}
+		// Complete the materialized hierarchy, there may be objects without it
+		try (Connection connection = DatabaseSession.getConnection()) {
+			RpkiObjectModel.updateHierarchy(connection);
+		} catch (SQLException e) {
+			throw new InitializationException("The RPKI objects hierarchy couldn't be updated.", e);
+		}
+		// Fill the numeric prefixes of the data stored before those columns existed
+		try (Connection connection = DatabaseSession.getConnection()) {
+			RoaModel.updateNumericPrefixes(connection);
+			SlurmPrefixModel.updateNumericPrefixes(connection);
+		} catch (SQLException e) {
+			throw new InitializationException("The numeric prefixes couldn't be updated.", e);
+		}
+		// Fill the reach generation of the objects stored before that column existed
+		try (Connection connection = DatabaseSession.getConnection()) {
+			RpkiObjectModel.updateReachGenerations(connection);
+		} catch (SQLException e) {
+			throw new InitializationException("The reach generations couldn't be updated.", e);
+		}
+		// Remove the snapshots left behind, and create the first one if needed
+		try (Connection connection = DatabaseSession.getConnection()) {
+			VrpSnapshotModel.deleteStaleSnapshots(connection);
+			if (VrpSnapshotModel.getCurrentId(connection) == VrpSnapshotModel.NO_SNAPSHOT) {
+				RouteValidationModel.publishVrpSnapshot(connection);
+			}
+		} catch (SQLException e) {
+			throw new InitializationException("The VRP snapshot couldn't be loaded.", e);
+		}
+		rtrServer = RtrServer.fromConfig(properties);
+		if (rtrServer != null) {
+			try {
+				rtrServer.start();
+			} catch (IOException e) {
+				throw new InitializationException("The RTR server couldn't be started.", e);
+			}
+		}
 	}
 
 	@Override
 	public void terminate() {
+		logger.log(Level.INFO, "Query cache hits=" + QueryCache.getHits() + ", misses=" + QueryCache.getMisses()
+				+ ", statement pool hits=" + DatabaseSession.getStatementHits() + ", misses="
+				+ DatabaseSession.getStatementMisses());
+		logger.log(Level.INFO,
+				"Keyset paging seeks=" + KeysetPaging.getSeeks() + ", offsets=" + KeysetPaging.getOffsets()
+						+ ", invalidations=" + KeysetPaging.getInvalidations());
+		logger.log(Level.INFO, "Count cache mode=" + CountCache.getMode() + ", hits=" + CountCache.getHits()
+				+ ", misses=" + CountCache.getMisses() + ", estimates=" + CountCache.getEstimates());
+		logger.log(Level.INFO,
+				"Route validation cache hits=" + RouteValidationCache.getHits() + ", misses="
+						+ RouteValidationCache.getMisses() + ", hit ratio=" + RouteValidationCache.getHitRatio()
+						+ ", evictions=" + RouteValidationCache.getEvictions());
+		if (rtrServer != null) {
+			rtrServer.stop();
+		}
+		PurgeService.shutdown();
+		VrpSnapshotModel.shutdown();
 		DatabaseSession.endConnection();
 	}
 
@@ -84,4 +174,24 @@ public class ProviderImplementation implements DataAccessImplementation {
 		return new CertificateTreeDAOImpl();
 	}
 
+	/**
+	 * Get the DAO of the VRPs and its changes by serial, it isn't part of the
+	 * {@link DataAccessImplementation}
+	 * 
+	 * @return
+	 */
+	public VrpDAOImpl getVrpDAO() {
+		return new VrpDAOImpl();
+	}
+
+	/**
+	 * Get the RTR cache server, it isn't part of the
+	 * {@link DataAccessImplementation}
+	 * 
+	 * @return The server, or <code>null</code> if it isn't configured
+	 */
+	public RtrServer getRtrServer() {
+		return rtrServer;
+	}
+
 }
@@ -2,12 +2,15 @@ package mx.nic.lab.rpki.prov.impl;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.function.BiConsumer;
 
 import mx.nic.lab.rpki.db.exception.ApiDataAccessException;
 import mx.nic.lab.rpki.db.pojo.RouteValidation;
 import mx.nic.lab.rpki.db.spi.RouteValidationDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.RouteValidationCache;
 import mx.nic.lab.rpki.prov.model.RouteValidationModel;
+import mx.nic.lab.rpki.prov.object.RouteQuery;
 
 /**
  * Implementation to validate a route
@@ -18,8 +21,35 @@ public class RouteValidationDAOImpl implements RouteValidationDAO {
 	@Override
 	public RouteValidation validate(Long asn, byte[] prefix, Integer prefixLength, Integer familyType,
 			boolean fullCheck) throws ApiDataAccessException {
+		RouteValidation cached = RouteValidationCache.get(asn, prefix, prefixLength, fullCheck);
+		if (cached != null) {
+			return cached;
+		}
+		// Read before validating, so a result calculated with old data isn't cached
+		long generation = RouteValidationCache.getGeneration();
+		try (Connection connection = DatabaseSession.getConnection()) {
+			RouteValidation result = RouteValidationModel.validate(asn, prefix, prefixLength, familyType, fullCheck,
+					connection);
+			RouteValidationCache.put(generation, asn, prefix, prefixLength, fullCheck, result);
+			return result;
+		} catch (SQLException e) {
+			throw new ApiDataAccessException(e);
+		}
+	}
+
+	/**
+	 * Validate all the <code>routes</code> using a single connection, each result
+	 * is sent to the <code>consumer</code> as soon as it's available
+	 * 
+	 * @param routes
+	 * @param fullCheck
+	 * @param consumer
+	 * @throws ApiDataAccessException
+	 */
+	public void validateAll(Iterable<RouteQuery> routes, boolean fullCheck,
+			BiConsumer<RouteQuery, RouteValidation> consumer) throws ApiDataAccessException {
 		try (Connection connection = DatabaseSession.getConnection()) {
-			return RouteValidationModel.validate(asn, prefix, prefixLength, familyType, fullCheck, connection);
+			RouteValidationModel.validateAll(routes, fullCheck, consumer, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
 		}
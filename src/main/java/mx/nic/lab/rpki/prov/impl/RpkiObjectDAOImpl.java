@@ -21,6 +21,7 @@ import mx.nic.lab.rpki.db.pojo.RpkiObject;
 import mx.nic.lab.rpki.db.pojo.RpkiObject.Type;
 import mx.nic.lab.rpki.db.spi.RpkiObjectDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.RouteValidationModel;
 import mx.nic.lab.rpki.prov.model.RpkiObjectModel;
 import net.ripe.rpki.commons.crypto.CertificateRepositoryObject;
 import net.ripe.rpki.commons.crypto.cms.manifest.ManifestCms;
@@ -106,7 +107,13 @@ public class RpkiObjectDAOImpl implements RpkiObjectDAO {
 	@Override
 	public long deleteUnreachableObjects(Instant unreachableSince) throws ApiDataAccessException {
 		try (Connection connection = DatabaseSession.getConnection()) {
-			return RpkiObjectModel.deleteUnreachableObjects(unreachableSince, connection);
+			// Deleted in chunks, so the readers aren't blocked meanwhile
+			int deleted = RpkiObjectModel.deleteUnreachableObjects(unreachableSince, connection);
+			if (deleted > 0) {
+				// The ROAs may have changed
+				RouteValidationModel.publishVrpSnapshot(connection);
+			}
+			return deleted;
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
 		}
@@ -14,6 +14,7 @@ import mx.nic.lab.rpki.db.pojo.SlurmBgpsec;
 import mx.nic.lab.rpki.db.spi.SlurmBgpsecDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
 import mx.nic.lab.rpki.prov.model.SlurmBgpsecModel;
+import mx.nic.lab.rpki.prov.model.SlurmModel;
 import mx.nic.lab.rpki.prov.object.SlurmBgpsecDbObject;
 import mx.nic.lab.rpki.prov.object.DatabaseObject.Operation;
 
@@ -65,6 +66,8 @@ public class SlurmBgpsecDAOImpl implements SlurmBgpsecDAO {
 			return SlurmBgpsecModel.create(newSlurmBgpsec, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			SlurmModel.markChanged();
 		}
 	}
 
@@ -81,6 +84,8 @@ public class SlurmBgpsecDAOImpl implements SlurmBgpsecDAO {
 			return deleted > 0;
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			SlurmModel.markChanged();
 		}
 	}
 
@@ -128,6 +133,8 @@ public class SlurmBgpsecDAOImpl implements SlurmBgpsecDAO {
 			SlurmBgpsecModel.bulkDelete(ids, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			SlurmModel.markChanged();
 		}
 	}
 }
@@ -7,6 +7,7 @@ import mx.nic.lab.rpki.db.exception.ApiDataAccessException;
 import mx.nic.lab.rpki.db.pojo.Slurm;
 import mx.nic.lab.rpki.db.spi.SlurmDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.RouteValidationModel;
 import mx.nic.lab.rpki.prov.model.SlurmModel;
 
 /**
@@ -39,6 +40,8 @@ public class SlurmDAOImpl implements SlurmDAO {
 			return SlurmModel.updateLastChecksum(newChecksum, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			RouteValidationModel.invalidateSlurmIndex();
 		}
 	}
 
@@ -48,6 +51,8 @@ public class SlurmDAOImpl implements SlurmDAO {
 			return SlurmModel.deleteAll(connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			RouteValidationModel.invalidateSlurmIndex();
 		}
 	}
 
@@ -1,6 +1,5 @@
 package mx.nic.lab.rpki.prov.impl;
 
-import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Set;
@@ -15,9 +14,11 @@ import mx.nic.lab.rpki.db.pojo.Roa;
 import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
 import mx.nic.lab.rpki.db.spi.SlurmPrefixDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.RouteValidationModel;
 import mx.nic.lab.rpki.prov.model.SlurmPrefixModel;
 import mx.nic.lab.rpki.prov.object.SlurmPrefixDbObject;
 import mx.nic.lab.rpki.prov.object.DatabaseObject.Operation;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
 
 /**
  * Implementation to retrieve SLURM Prefix data
@@ -73,6 +74,8 @@ public class SlurmPrefixDAOImpl implements SlurmPrefixDAO {
 			return SlurmPrefixModel.create(newSlurmPrefix, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			RouteValidationModel.invalidateSlurmIndex();
 		}
 	}
 
@@ -89,6 +92,8 @@ public class SlurmPrefixDAOImpl implements SlurmPrefixDAO {
 			return deleted > 0;
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			RouteValidationModel.invalidateSlurmIndex();
 		}
 	}
 
@@ -113,6 +118,8 @@ public class SlurmPrefixDAOImpl implements SlurmPrefixDAO {
 			return SlurmPrefixModel.updateComment(id, newComment, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			RouteValidationModel.invalidateSlurmIndex();
 		}
 	}
 
@@ -127,6 +134,8 @@ public class SlurmPrefixDAOImpl implements SlurmPrefixDAO {
 			return SlurmPrefixModel.updateOrder(id, newOrder, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			RouteValidationModel.invalidateSlurmIndex();
 		}
 	}
 
@@ -136,6 +145,8 @@ public class SlurmPrefixDAOImpl implements SlurmPrefixDAO {
 			SlurmPrefixModel.bulkDelete(ids, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
+		} finally {
+			RouteValidationModel.invalidateSlurmIndex();
 		}
 	}
 
@@ -151,18 +162,6 @@ public class SlurmPrefixDAOImpl implements SlurmPrefixDAO {
 		if (currentEndPrefix == null || slurmPrefix.getStartPrefix() == null || slurmPrefix.getPrefixLength() == null) {
 			return currentEndPrefix;
 		}
-		int bytesBase = slurmPrefix.getPrefixLength() / 8;
-		int bitsBase = slurmPrefix.getPrefixLength() % 8;
-		byte[] prefixLengthMask = new byte[currentEndPrefix.length];
-		int currByte = bytesBase;
-		if (bitsBase > 0) {
-			prefixLengthMask[currByte++] |= ((byte) (255 >> bitsBase));
-		}
-		for (; currByte < prefixLengthMask.length; currByte++) {
-			prefixLengthMask[currByte] |= 255;
-		}
-		BigInteger endIp = new BigInteger(currentEndPrefix);
-		BigInteger mask = new BigInteger(prefixLengthMask);
-		return endIp.or(mask).toByteArray();
+		return IpPrefix.getEnd(currentEndPrefix, slurmPrefix.getPrefixLength());
 	}
 }
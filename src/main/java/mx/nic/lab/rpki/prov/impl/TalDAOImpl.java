@@ -9,7 +9,9 @@ import mx.nic.lab.rpki.db.pojo.PagingParameters;
 import mx.nic.lab.rpki.db.pojo.Tal;
 import mx.nic.lab.rpki.db.spi.TalDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.RouteValidationModel;
 import mx.nic.lab.rpki.prov.model.TalModel;
+import mx.nic.lab.rpki.prov.model.TalModel.Projection;
 import mx.nic.lab.rpki.prov.object.TalDbObject;
 import mx.nic.lab.rpki.prov.object.DatabaseObject.Operation;
 
@@ -31,7 +33,8 @@ public class TalDAOImpl implements TalDAO {
 	@Override
 	public ListResult<Tal> getAll(PagingParameters pagingParams) throws ApiDataAccessException {
 		try (Connection connection = DatabaseSession.getConnection()) {
-			return TalModel.getAll(pagingParams, connection);
+			// The listing only needs a summary of each TAL
+			return TalModel.getAll(pagingParams, Projection.SUMMARY, connection);
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
 		}
@@ -62,6 +65,10 @@ public class TalDAOImpl implements TalDAO {
 	public boolean delete(Tal tal) throws ApiDataAccessException {
 		try (Connection connection = DatabaseSession.getConnection()) {
 			int deleted = TalModel.delete(tal, connection);
+			if (deleted > 0) {
+				// The ROAs of the TAL were deleted too
+				RouteValidationModel.publishVrpSnapshot(connection);
+			}
 			return deleted > 0;
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
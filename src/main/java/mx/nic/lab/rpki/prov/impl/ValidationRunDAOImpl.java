@@ -12,6 +12,8 @@ import mx.nic.lab.rpki.db.pojo.ValidationCheck.Status;
 import mx.nic.lab.rpki.db.pojo.ValidationRun;
 import mx.nic.lab.rpki.db.spi.ValidationRunDAO;
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.RouteValidationModel;
+import mx.nic.lab.rpki.prov.model.RpkiObjectModel;
 import mx.nic.lab.rpki.prov.model.ValidationCheckModel;
 import mx.nic.lab.rpki.prov.model.ValidationRunModel;
 import mx.nic.lab.rpki.prov.object.DatabaseObject.Operation;
@@ -47,6 +49,9 @@ public class ValidationRunDAOImpl implements ValidationRunDAO {
 		// And remove the older ones
 		try (Connection connection = DatabaseSession.getConnection()) {
 			ValidationRunModel.deleteOldValidationRuns(validationRun, connection);
+			// The objects tree and the ROAs may have changed
+			RpkiObjectModel.updateHierarchy(connection);
+			RouteValidationModel.publishVrpSnapshot(connection);
 			return result;
 		} catch (SQLException e) {
 			throw new ApiDataAccessException(e);
@@ -0,0 +1,88 @@
+package mx.nic.lab.rpki.prov.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import mx.nic.lab.rpki.db.exception.ApiDataAccessException;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.export.VrpExportFormat;
+import mx.nic.lab.rpki.prov.export.VrpExporter;
+import mx.nic.lab.rpki.prov.model.VrpSnapshotModel;
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.object.VrpDelta;
+
+/**
+ * Implementation to retrieve the VRPs and its changes by serial, useful to sync
+ * the consumers of the VRPs incrementally
+ *
+ */
+public class VrpDAOImpl {
+
+	/**
+	 * Get the current serial of the VRPs
+	 *
+	 * @return The current serial, or {@link VrpSnapshotModel#NO_SNAPSHOT} if there
+	 *         are no VRPs yet
+	 * @throws ApiDataAccessException
+	 */
+	public long getCurrentSerial() throws ApiDataAccessException {
+		try (Connection connection = DatabaseSession.getConnection()) {
+			return VrpSnapshotModel.getCurrentId(connection);
+		} catch (SQLException e) {
+			throw new ApiDataAccessException(e);
+		}
+	}
+
+	/**
+	 * Get the VRPs of the <code>serial</code>, it SHOULD be the current serial
+	 * (the VRPs of the previous ones are deleted after a while)
+	 *
+	 * @param serial
+	 * @return The list of {@link Vrp}s of the serial
+	 * @throws ApiDataAccessException
+	 */
+	public List<Vrp> getVrps(long serial) throws ApiDataAccessException {
+		try (Connection connection = DatabaseSession.getConnection()) {
+			return VrpSnapshotModel.getVrps(serial, connection);
+		} catch (SQLException e) {
+			throw new ApiDataAccessException(e);
+		}
+	}
+
+	/**
+	 * Get the VRPs announced and withdrawn since the <code>serial</code>
+	 *
+	 * @param serial
+	 * @return The {@link VrpDelta} up to the current serial
+	 * @throws ApiDataAccessException
+	 */
+	public VrpDelta getChangesSince(long serial) throws ApiDataAccessException {
+		try (Connection connection = DatabaseSession.getConnection()) {
+			return VrpSnapshotModel.getChangesSince(serial, connection);
+		} catch (SQLException e) {
+			throw new ApiDataAccessException(e);
+		}
+	}
+
+	/**
+	 * Export the current VRPs, with the SLURM applied, to the
+	 * <code>out</code> stream (it isn't closed)
+	 *
+	 * @param format
+	 * @param out
+	 * @return The number of VRPs written
+	 * @throws ApiDataAccessException
+	 * @throws IOException
+	 */
+	public long export(VrpExportFormat format, OutputStream out) throws ApiDataAccessException, IOException {
+		try (Connection connection = DatabaseSession.getConnection()) {
+			return VrpExporter.export(format, out, connection);
+		} catch (SQLException e) {
+			throw new ApiDataAccessException(e);
+		}
+	}
+
+}
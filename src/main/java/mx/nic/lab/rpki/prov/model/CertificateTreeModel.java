@@ -1,12 +1,17 @@
 package mx.nic.lab.rpki.prov.model;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
 import java.util.logging.Logger;
 
 import mx.nic.lab.rpki.db.cert.tree.CertificateNode;
@@ -42,6 +47,14 @@ public class CertificateTreeModel extends DatabaseModel {
 	// Queries IDs used by this model
 	private static final String GET_FROM_ROOT = "getFromRoot";
 	private static final String COUNT_CHILDS = "countChilds";
+	private static final String COUNT_CHILDS_BY_PARENTS = "countChildsByParents";
+	private static final String GET_PARENT_BY_SKI = "getParentBySki";
+	private static final String GET_FROM_PARENT = "getFromParent";
+
+	/**
+	 * Column of the materialized childs count
+	 */
+	private static final String CHILD_COUNT_COLUMN = "rpo_child_count";
 
 	/**
 	 * Loads the queries corresponding to this model, based on the QUERY_GROUP
@@ -106,7 +119,7 @@ public class CertificateTreeModel extends DatabaseModel {
 	public static CertificationTreeNode findFromChild(Long certId, PagingParameters pagingParams, Connection connection)
 			throws SQLException {
 		// Must exist, and must be a certificate
-		RpkiObject rootObject = RpkiObjectModel.getById(certId, connection);
+		RpkiObject rootObject = RpkiObjectModel.getById(certId, RpkiObjectModel.Projection.LOCATIONS, connection);
 		if (rootObject == null
 				|| !(rootObject.getType().equals(Type.CER) || rootObject.getType().equals(Type.ROUTER_CER))) {
 			return null;
@@ -123,7 +136,11 @@ public class CertificateTreeModel extends DatabaseModel {
 	}
 
 	/**
-	 * Load the childs related to the root parent
+	 * Load the childs related to the root parent; the data of the childs
+	 * (childs count, ROAs, GBRs and locations) is loaded for the whole page at
+	 * once, using a few set-based queries. The materialized hierarchy (parent ID
+	 * and childs count) is used when the root parent is a known CA, otherwise the
+	 * childs are searched by its AKI.
 	 * 
 	 * @param root
 	 * @param pagingParams
@@ -132,53 +149,162 @@ public class CertificateTreeModel extends DatabaseModel {
 	 */
 	private static void loadChilds(CertificateNode root, PagingParameters pagingParams, Connection connection)
 			throws SQLException {
-		String query = getQueryGroup().getQuery(GET_FROM_ROOT);
-		query = Util.getQueryWithPaging(query, pagingParams, RpkiObjectDbObject.propertyToColumnMap);
+		List<Long> childIds = new ArrayList<>();
+		List<Type> childTypes = new ArrayList<>();
+		List<byte[]> childSkis = new ArrayList<>();
+		List<Integer> childCounts = new ArrayList<>();
+		Long parentId = null;
+		Integer rootChildCount = null;
+		String query = getQueryGroup().getQuery(GET_PARENT_BY_SKI);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setBytes(1, root.getSubjectKeyIdentifier());
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			while (rs.next()) {
-				CertificationTreeNode child = null;
-				Type type = Type.valueOf(rs.getString(RpkiObjectDbObject.TYPE_COLUMN));
-				Long objectId = rs.getLong(RpkiObjectDbObject.ID_COLUMN);
-				byte[] subjectKeyIdentifier = rs.getBytes(RpkiObjectDbObject.SUBJECT_KEY_IDENTIFIER_COLUMN);
-				switch (type) {
-				case ROUTER_CER:
-				case CER:
-					CertificateNode tempCer = new CertificateNode();
-					tempCer.setId(objectId);
-					tempCer.setChildCount(getChildCount(subjectKeyIdentifier, connection));
-					child = tempCer;
-					break;
-				case ROA:
-					RoaNode tempRoa = new RoaNode();
-					List<Roa> roas = RoaModel.getByRpkiObjectId(objectId, connection);
-					roas.forEach((roa) -> {
-						tempRoa.getResources().add(new ResourceNode(roa.getAsn(), roa.getPrefixText(),
-								roa.getPrefixMaxLength(), roa.getId()));
-					});
-					child = tempRoa;
-					break;
-				case GBR:
-					GbrNode tempGbr = new GbrNode();
-					Gbr gbr = GbrModel.getByRpkiObjectId(objectId, connection);
-					if (gbr != null) {
-						tempGbr.setVCard(gbr.getVcard());
-					}
-					child = tempGbr;
-					break;
-				default:
-					// Default case for MFT, CRL and OTHER
-					child = new CertificationTreeNode();
-					child.setType(type);
-					break;
+			if (rs.next()) {
+				parentId = rs.getLong(RpkiObjectDbObject.ID_COLUMN);
+				rootChildCount = rs.getInt(CHILD_COUNT_COLUMN);
+			}
+		}
+		if (parentId != null) {
+			query = getQueryGroup().getQuery(GET_FROM_PARENT);
+			KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams,
+					RpkiObjectDbObject.propertyToColumnMap, RpkiObjectDbObject.ID_COLUMN, parentId);
+			try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
+				statement.setLong(1, parentId);
+				paging.setParams(statement, 2);
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					paging.onRow(rs);
+					childTypes.add(Type.valueOf(rs.getString(RpkiObjectDbObject.TYPE_COLUMN)));
+					childIds.add(rs.getLong(RpkiObjectDbObject.ID_COLUMN));
+					childSkis.add(rs.getBytes(RpkiObjectDbObject.SUBJECT_KEY_IDENTIFIER_COLUMN));
+					childCounts.add(rs.getInt(CHILD_COUNT_COLUMN));
+				}
+			}
+		} else {
+			query = getQueryGroup().getQuery(GET_FROM_ROOT);
+			// The arrays don't implement equals, the SKI is wrapped to identify the listing
+			KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams,
+					RpkiObjectDbObject.propertyToColumnMap, RpkiObjectDbObject.ID_COLUMN,
+					ByteBuffer.wrap(root.getSubjectKeyIdentifier()));
+			try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
+				statement.setBytes(1, root.getSubjectKeyIdentifier());
+				paging.setParams(statement, 2);
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					paging.onRow(rs);
+					childTypes.add(Type.valueOf(rs.getString(RpkiObjectDbObject.TYPE_COLUMN)));
+					childIds.add(rs.getLong(RpkiObjectDbObject.ID_COLUMN));
+					childSkis.add(rs.getBytes(RpkiObjectDbObject.SUBJECT_KEY_IDENTIFIER_COLUMN));
+				}
+			}
+			List<byte[]> cerSkis = new ArrayList<>();
+			for (int i = 0; i < childIds.size(); i++) {
+				if (childTypes.get(i) == Type.CER || childTypes.get(i) == Type.ROUTER_CER) {
+					cerSkis.add(childSkis.get(i));
+				}
+			}
+			Map<ByteBuffer, Integer> countsBySki = getChildCounts(cerSkis, connection);
+			for (byte[] subjectKeyIdentifier : childSkis) {
+				childCounts.add(subjectKeyIdentifier == null ? 0
+						: countsBySki.getOrDefault(ByteBuffer.wrap(subjectKeyIdentifier), 0));
+			}
+			rootChildCount = getChildCount(root.getSubjectKeyIdentifier(), connection);
+		}
+
+		// Load the data of all the childs
+		List<Long> roaIds = new ArrayList<>();
+		List<Long> gbrIds = new ArrayList<>();
+		for (int i = 0; i < childIds.size(); i++) {
+			if (childTypes.get(i) == Type.ROA) {
+				roaIds.add(childIds.get(i));
+			} else if (childTypes.get(i) == Type.GBR) {
+				gbrIds.add(childIds.get(i));
+			}
+		}
+		Map<Long, List<Roa>> roas = roaIds.isEmpty() ? Collections.emptyMap()
+				: RoaModel.getByRpkiObjectIds(roaIds, connection);
+		Map<Long, Gbr> gbrs = gbrIds.isEmpty() ? Collections.emptyMap()
+				: GbrModel.getByRpkiObjectIds(gbrIds, connection);
+		Map<Long, SortedSet<String>> locations = childIds.isEmpty() ? Collections.emptyMap()
+				: RpkiObjectModel.getLocationsByIds(childIds, connection);
+
+		for (int i = 0; i < childIds.size(); i++) {
+			CertificationTreeNode child = null;
+			Type type = childTypes.get(i);
+			Long objectId = childIds.get(i);
+			byte[] subjectKeyIdentifier = childSkis.get(i);
+			switch (type) {
+			case ROUTER_CER:
+			case CER:
+				CertificateNode tempCer = new CertificateNode();
+				tempCer.setId(objectId);
+				tempCer.setChildCount(childCounts.get(i));
+				child = tempCer;
+				break;
+			case ROA:
+				RoaNode tempRoa = new RoaNode();
+				roas.getOrDefault(objectId, Collections.emptyList()).forEach((roa) -> {
+					tempRoa.getResources().add(new ResourceNode(roa.getAsn(), roa.getPrefixText(),
+							roa.getPrefixMaxLength(), roa.getId()));
+				});
+				child = tempRoa;
+				break;
+			case GBR:
+				GbrNode tempGbr = new GbrNode();
+				Gbr gbr = gbrs.get(objectId);
+				if (gbr != null) {
+					tempGbr.setVCard(gbr.getVcard());
+				}
+				child = tempGbr;
+				break;
+			default:
+				// Default case for MFT, CRL and OTHER
+				child = new CertificationTreeNode();
+				child.setType(type);
+				break;
+			}
+			child.setLocations(new ArrayList<>(locations.getOrDefault(objectId, Collections.emptySortedSet())));
+			child.setSubjectKeyIdentifier(subjectKeyIdentifier);
+			root.getChilds().add(child);
+		}
+		root.setChildCount(rootChildCount);
+	}
+
+	/**
+	 * Get the count of the childs of each of the SKIs received, the SKIs are
+	 * queried using 'in' lists
+	 * 
+	 * @param subjectKeyIdentifiers
+	 * @param connection
+	 * @return Map of the childs count indexed by SKI, the SKIs without childs
+	 *         aren't at the map
+	 * @throws SQLException
+	 */
+	private static Map<ByteBuffer, Integer> getChildCounts(List<byte[]> subjectKeyIdentifiers, Connection connection)
+			throws SQLException {
+		Map<ByteBuffer, Integer> result = new HashMap<>();
+		List<byte[]> skis = new ArrayList<>();
+		for (byte[] ski : subjectKeyIdentifiers) {
+			if (ski != null) {
+				skis.add(ski);
+			}
+		}
+		for (List<byte[]> partition : Util.partition(skis)) {
+			String query = getQueryGroup().getQuery(COUNT_CHILDS_BY_PARENTS);
+			query = query.replace("[and]",
+					Util.getInClause(RpkiObjectDbObject.AUTHORITY_KEY_IDENTIFIER_COLUMN, partition.size()));
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				int index = 1;
+				for (byte[] ski : partition) {
+					statement.setBytes(index++, ski);
+				}
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					result.put(ByteBuffer.wrap(rs.getBytes(1)), rs.getInt(2));
 				}
-				child.setLocations(new ArrayList<>(RpkiObjectModel.getLocations(objectId, connection)));
-				child.setSubjectKeyIdentifier(subjectKeyIdentifier);
-				root.getChilds().add(child);
 			}
-			root.setChildCount(getChildCount(root.getSubjectKeyIdentifier(), connection));
 		}
+		return result;
 	}
 
 	/**
@@ -0,0 +1,310 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import mx.nic.lab.rpki.db.exception.InitializationException;
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+
+/**
+ * Cache of the totals of the paged listings, so each page doesn't have to run
+ * again the <code>count(*)</code> of the whole listing. The counts are keyed by
+ * the count query, its parameters and the filter, and are invalidated by the
+ * writes made to the tables counted: each write done with
+ * {@link DatabaseModel#executeUpdate(java.sql.PreparedStatement, Class, java.util.logging.Logger)}
+ * (or <code>executeBatch</code>) increases the generation of its model, and a
+ * count is valid only while the generations of the models that write at its
+ * tables remain the same. Since the writes may not be committed yet when the
+ * generation increases, the counts also expire after
+ * <code>count_cache_ttl</code> seconds (0 disables the cache).<br>
+ * <br>
+ * When <code>count_mode</code> is <code>estimated</code>, the totals of the
+ * listings without filter are taken from the table statistics (the
+ * <code>row_count_estimate</code> of the H2 information schema), which doesn't
+ * scan the table; the filtered listings always get the exact count.
+ *
+ */
+public class CountCache {
+
+	/**
+	 * How the totals are obtained
+	 */
+	public enum Mode {
+		/**
+		 * Always <code>count(*)</code>, cached until a write is made
+		 */
+		EXACT,
+		/**
+		 * Table statistics for the listings without filter
+		 */
+		ESTIMATED
+	}
+
+	/**
+	 * Loads a count from the DB
+	 */
+	@FunctionalInterface
+	public interface CountLoader {
+		Integer load() throws SQLException;
+	}
+
+	/**
+	 * Max number of counts kept at the cache
+	 */
+	private static final int MAX_ENTRIES = 1024;
+
+	/**
+	 * Default seconds that a count is kept
+	 */
+	private static final long DEFAULT_TTL = 60L;
+
+	/**
+	 * The models whose writes change the rows counted by each model (including
+	 * the cascades of the deletes)
+	 */
+	private static final Map<Class<?>, List<Class<?>>> writers = new HashMap<>();
+	static {
+		writers.put(RoaModel.class, Arrays.asList(RoaModel.class, RpkiObjectModel.class, TalModel.class));
+		writers.put(TalModel.class, Arrays.asList(TalModel.class));
+		writers.put(SlurmPrefixModel.class, Arrays.asList(SlurmPrefixModel.class, SlurmModel.class));
+		writers.put(SlurmBgpsecModel.class, Arrays.asList(SlurmBgpsecModel.class, SlurmModel.class));
+		writers.put(ValidationCheckModel.class,
+				Arrays.asList(ValidationCheckModel.class, ValidationRunModel.class, TalModel.class));
+		writers.put(CertificateTreeModel.class, Arrays.asList(RpkiObjectModel.class, TalModel.class));
+	}
+
+	private static final Map<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+	private static final Map<Key, Count> cache = Collections
+			.synchronizedMap(new LinkedHashMap<Key, Count>(64, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Entry<Key, Count> eldest) {
+					return size() > MAX_ENTRIES;
+				}
+			});
+
+	private static volatile long ttlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TTL);
+	private static volatile Mode mode = Mode.EXACT;
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+	private static final LongAdder estimates = new LongAdder();
+
+	private CountCache() {
+		// No instances
+	}
+
+	/**
+	 * Read the required properties from the configuration
+	 *
+	 * @param config
+	 * @throws InitializationException
+	 */
+	public static void init(Properties config) throws InitializationException {
+		// Optional property
+		String ttl = config.getProperty("count_cache_ttl");
+		long newTtl = DEFAULT_TTL;
+		if (ttl != null) {
+			try {
+				newTtl = Long.parseLong(ttl.trim());
+			} catch (NumberFormatException e) {
+				throw new InitializationException("Invalid count_cache_ttl '" + ttl + "'", e);
+			}
+			if (newTtl < 0) {
+				throw new InitializationException("The count_cache_ttl can't be negative");
+			}
+		}
+		ttlNanos = TimeUnit.SECONDS.toNanos(newTtl);
+		// Optional property
+		String countMode = config.getProperty("count_mode");
+		Mode newMode = Mode.EXACT;
+		if (countMode != null) {
+			try {
+				newMode = Mode.valueOf(countMode.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new InitializationException("Invalid count_mode '" + countMode + "'", e);
+			}
+		}
+		mode = newMode;
+		cache.clear();
+	}
+
+	/**
+	 * Get the total of a listing of the <code>modelClass</code>, from the cache if
+	 * it's still valid, otherwise it's loaded and stored
+	 *
+	 * @param modelClass
+	 *            model of the table counted
+	 * @param query
+	 *            count query, before applying the paging
+	 * @param pagingParams
+	 *            only its filter is relevant
+	 * @param exact
+	 *            loads the exact count
+	 * @param estimated
+	 *            loads the estimated count of the whole table, may be
+	 *            <code>null</code> if the listing can't be estimated
+	 * @param params
+	 *            values of the query parameters (other than the filter)
+	 * @return The total of the listing
+	 * @throws SQLException
+	 */
+	public static Integer get(Class<?> modelClass, String query, PagingParameters pagingParams, CountLoader exact,
+			CountLoader estimated, Object... params) throws SQLException {
+		String filterField = null;
+		String filterQuery = null;
+		if (pagingParams != null && pagingParams.getFilterField() != null && pagingParams.getFilterQuery() != null) {
+			filterField = pagingParams.getFilterField();
+			filterQuery = pagingParams.getFilterQuery();
+		}
+		if (mode == Mode.ESTIMATED && estimated != null && filterField == null) {
+			Integer estimate = estimated.load();
+			if (estimate != null) {
+				estimates.increment();
+				return estimate;
+			}
+		}
+		long ttl = ttlNanos;
+		if (ttl == 0) {
+			misses.increment();
+			return exact.load();
+		}
+		Key key = new Key(query, Arrays.asList(params), filterField, filterQuery);
+		// Read before the count, so a write made meanwhile invalidates it
+		long generation = getGeneration(modelClass);
+		long now = System.nanoTime();
+		Count count = cache.get(key);
+		if (count != null && count.generation == generation && now - count.loadedAt < ttl) {
+			hits.increment();
+			return count.value;
+		}
+		misses.increment();
+		Integer value = exact.load();
+		if (value != null) {
+			cache.put(key, new Count(value, generation, now));
+		}
+		return value;
+	}
+
+	/**
+	 * Invalidate the counts of the tables written by the <code>modelClass</code>
+	 *
+	 * @param modelClass
+	 */
+	static void invalidate(Class<?> modelClass) {
+		AtomicLong generation = generations.get(modelClass);
+		if (generation == null) {
+			generation = generations.computeIfAbsent(modelClass, (k) -> new AtomicLong());
+		}
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * Get the sum of the generations of the models that write at the tables of
+	 * the <code>modelClass</code>; it only increases, so any write made to those
+	 * tables changes it (also used to invalidate the cursors of
+	 * {@link KeysetPaging})
+	 */
+	static long getGeneration(Class<?> modelClass) {
+		List<Class<?>> modelWriters = writers.getOrDefault(modelClass, Collections.singletonList(modelClass));
+		long sum = 0;
+		for (Class<?> writer : modelWriters) {
+			AtomicLong generation = generations.get(writer);
+			if (generation != null) {
+				sum += generation.get();
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Remove all the cached counts
+	 */
+	public static void clear() {
+		cache.clear();
+	}
+
+	public static Mode getMode() {
+		return mode;
+	}
+
+	public static long getHits() {
+		return hits.sum();
+	}
+
+	public static long getMisses() {
+		return misses.sum();
+	}
+
+	public static long getEstimates() {
+		return estimates.sum();
+	}
+
+	/**
+	 * A cached count
+	 */
+	private static class Count {
+		private final Integer value;
+		private final long generation;
+		private final long loadedAt;
+
+		private Count(Integer value, long generation, long loadedAt) {
+			this.value = value;
+			this.generation = generation;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	/**
+	 * Key of the cache: the count query, its parameters and the filter
+	 */
+	private static class Key {
+		private final String query;
+		private final List<Object> params;
+		private final String filterField;
+		private final String filterQuery;
+		private final int hash;
+
+		private Key(String query, List<Object> params, String filterField, String filterQuery) {
+			this.query = query;
+			this.params = params;
+			this.filterField = filterField;
+			this.filterQuery = filterQuery;
+			this.hash = Objects.hash(query, params, filterField, filterQuery);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && query.equals(other.query) && params.equals(other.params)
+					&& Objects.equals(filterField, other.filterField)
+					&& Objects.equals(filterQuery, other.filterQuery);
+		}
+	}
+}
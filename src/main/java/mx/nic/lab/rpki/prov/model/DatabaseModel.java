@@ -4,43 +4,116 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import mx.nic.lab.rpki.prov.database.DatabaseSession;
 
 /**
- * Main class that SHOULD be used to execute all the queries at DB in a
- * synchronous way
+ * Main class that SHOULD be used to execute all the queries at DB. The reads
+ * aren't synchronized, each caller uses its own connection so the queries can
+ * run in parallel; the writes are synchronized per model, and invalidate the
+ * totals cached at the {@link CountCache}.<br>
+ * <br>
+ * The monitor of the model class is the chosen serialization of the writers: the
+ * writers of a model (i.e. of its tables) run one at a time, so they don't wait
+ * for each other's row locks at the DB, and the writes of different models run
+ * in parallel. The readers never take it, they rely on the isolation of the DB,
+ * so a read/write lock isn't needed.<br>
+ * <br>
+ * A write made within a transaction is seen by the other connections only
+ * after its commit, so a count loaded meanwhile is still the old one; the
+ * transactions MUST be ended with {@link #commit(Connection)} (or
+ * {@link #rollback(Connection)}), which invalidates the counts of the models
+ * written again.
  *
  */
 public class DatabaseModel {
 
 	/**
-	 * Get a {@link PreparedStatement} from the <code>connection</code> in a
-	 * synchronized manner, the <code>clazz</code> sent is used as a lock
+	 * Models written by the transaction of the current thread that hasn't been
+	 * committed yet
+	 */
+	private static final ThreadLocal<Set<Class<?>>> uncommittedWrites = ThreadLocal.withInitial(HashSet::new);
+
+	/**
+	 * Get a {@link PreparedStatement} from the <code>connection</code>, the
+	 * <code>clazz</code> sent is the model that requests the statement
 	 * 
 	 * @param connection
 	 *            DB connection
 	 * @param sql
 	 *            SQL used for the {@link PreparedStatement}
 	 * @param clazz
-	 *            {@link Class} to use as lock
+	 *            {@link Class} of the model
 	 * @return
 	 * @throws SQLException
 	 */
 	public static <T> PreparedStatement prepareStatement(Connection connection, String sql, Class<T> clazz)
 			throws SQLException {
-		synchronized (clazz) {
-			PreparedStatement result = connection.prepareStatement(sql);
-			result.setQueryTimeout(DatabaseSession.QUERY_TIMEOUT);
-			return result;
-		}
+		PreparedStatement result = connection.prepareStatement(sql);
+		DatabaseSession.statementPrepared(result);
+		result.setQueryTimeout(DatabaseSession.QUERY_TIMEOUT);
+		return result;
+	}
+
+	/**
+	 * Get a {@link PreparedStatement} from the <code>connection</code> that can
+	 * return the generated keys (see {@link Connection#prepareStatement(String,
+	 * int)}), the <code>clazz</code> sent is the model that requests the statement
+	 * 
+	 * @param connection
+	 *            DB connection
+	 * @param sql
+	 *            SQL used for the {@link PreparedStatement}
+	 * @param autoGeneratedKeys
+	 *            flag indicating whether the generated keys should be returned
+	 * @param clazz
+	 *            {@link Class} of the model
+	 * @return
+	 * @throws SQLException
+	 */
+	public static <T> PreparedStatement prepareStatement(Connection connection, String sql, int autoGeneratedKeys,
+			Class<T> clazz) throws SQLException {
+		PreparedStatement result = connection.prepareStatement(sql, autoGeneratedKeys);
+		DatabaseSession.statementPrepared(result);
+		result.setQueryTimeout(DatabaseSession.QUERY_TIMEOUT);
+		return result;
+	}
+
+	/**
+	 * Get a forward-only, read-only {@link PreparedStatement} from the
+	 * <code>connection</code> to read a large result row by row, the
+	 * <code>clazz</code> sent is the model that requests the statement. The
+	 * statement has no query timeout, since the rows are consumed at the reader's
+	 * pace.
+	 * 
+	 * @param connection
+	 *            DB connection
+	 * @param sql
+	 *            SQL used for the {@link PreparedStatement}
+	 * @param fetchSize
+	 *            number of rows fetched at a time
+	 * @param clazz
+	 *            {@link Class} of the model
+	 * @return
+	 * @throws SQLException
+	 */
+	public static <T> PreparedStatement prepareStreamingStatement(Connection connection, String sql, int fetchSize,
+			Class<T> clazz) throws SQLException {
+		PreparedStatement result = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY);
+		DatabaseSession.statementPrepared(result);
+		result.setFetchSize(fetchSize);
+		return result;
 	}
 
 	/**
 	 * Return the {@link ResultSet} of the {@link PreparedStatement#executeQuery()}
-	 * using the <code>statement</code> sent and the <code>clazz</code> a lock
+	 * using the <code>statement</code> sent, the <code>clazz</code> is the model
+	 * that executes the query
 	 * 
 	 * @param statement
 	 * @param clazz
@@ -49,16 +122,17 @@ public class DatabaseModel {
 	 */
 	public static <T> ResultSet executeQuery(PreparedStatement statement, Class<T> clazz, Logger logger)
 			throws SQLException {
-		synchronized (clazz) {
+		if (logger.isLoggable(Level.FINE)) {
 			logger.log(Level.FINE, "Executing QUERY: " + statement.toString() + " from " + clazz.getName());
-			return statement.executeQuery();
 		}
+		return statement.executeQuery();
 	}
 
 	/**
 	 * Return the affected rows result of the
 	 * {@link PreparedStatement#executeUpdate()} using the <code>statement</code>
-	 * sent and the <code>clazz</code> a lock
+	 * sent and the <code>clazz</code> a lock, the writers of the same model are
+	 * serialized (the readers don't wait for it)
 	 * 
 	 * @param statement
 	 * @param clazz
@@ -68,8 +142,83 @@ public class DatabaseModel {
 	public static <T> int executeUpdate(PreparedStatement statement, Class<T> clazz, Logger logger)
 			throws SQLException {
 		synchronized (clazz) {
-			logger.log(Level.FINE, "Executing QUERY: " + statement.toString() + " from " + clazz.getName());
-			return statement.executeUpdate();
+			if (logger.isLoggable(Level.FINE)) {
+				logger.log(Level.FINE, "Executing QUERY: " + statement.toString() + " from " + clazz.getName());
+			}
+			int result = statement.executeUpdate();
+			if (result > 0) {
+				written(statement, clazz);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Return the affected rows of each command of the
+	 * {@link PreparedStatement#executeBatch()} using the <code>statement</code>
+	 * sent and the <code>clazz</code> a lock, serialized with the other writers of
+	 * the same model as in
+	 * {@link #executeUpdate(PreparedStatement, Class, Logger)}
+	 * 
+	 * @param statement
+	 * @param clazz
+	 * @return
+	 * @throws SQLException
+	 */
+	public static <T> int[] executeBatch(PreparedStatement statement, Class<T> clazz, Logger logger)
+			throws SQLException {
+		synchronized (clazz) {
+			if (logger.isLoggable(Level.FINE)) {
+				logger.log(Level.FINE, "Executing BATCH: " + statement.toString() + " from " + clazz.getName());
+			}
+			int[] result = statement.executeBatch();
+			written(statement, clazz);
+			return result;
+		}
+	}
+
+	/**
+	 * Invalidate the counts of the model written, and again when its transaction
+	 * ends if the connection isn't in auto-commit mode
+	 */
+	private static void written(PreparedStatement statement, Class<?> clazz) throws SQLException {
+		CountCache.invalidate(clazz);
+		if (!statement.getConnection().getAutoCommit()) {
+			uncommittedWrites.get().add(clazz);
+		}
+	}
+
+	/**
+	 * Commit the transaction of the <code>connection</code>, then invalidate the
+	 * counts of the models written by it: a count loaded before the commit may
+	 * not include its writes
+	 * 
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public static void commit(Connection connection) throws SQLException {
+		connection.commit();
+		transactionEnded();
+	}
+
+	/**
+	 * Rollback the transaction of the <code>connection</code>, then invalidate
+	 * the counts of the models written by it: a count loaded before the rollback
+	 * may include its writes
+	 * 
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public static void rollback(Connection connection) throws SQLException {
+		connection.rollback();
+		transactionEnded();
+	}
+
+	private static void transactionEnded() {
+		Set<Class<?>> written = uncommittedWrites.get();
+		for (Class<?> clazz : written) {
+			CountCache.invalidate(clazz);
 		}
+		written.clear();
 	}
 }
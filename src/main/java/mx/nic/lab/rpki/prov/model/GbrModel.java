@@ -6,7 +6,10 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import mx.nic.lab.rpki.db.pojo.Gbr;
@@ -34,6 +37,9 @@ public class GbrModel extends DatabaseModel {
 	// Queries IDs used by this model
 	private static final String GET_BY_PARENT_CA = "getByParentCa";
 	private static final String GET_BY_RPKI_OBJECT_ID = "getByRpkiObjectId";
+	private static final String GET_BY_PARENT_ID = "getByParentId";
+	private static final String GET_BY_RPKI_OBJECT_IDS = "getByRpkiObjectIds";
+	private static final String GET_BY_PARENT_IDS = "getByParentIds";
 	private static final String CREATE = "create";
 
 	/**
@@ -75,6 +81,11 @@ public class GbrModel extends DatabaseModel {
 			// Nothing to do here
 			return gbrs;
 		}
+		// Use the materialized parent if available
+		Long parentId = RpkiObjectModel.getParentId(roa.getRpkiObject().getId(), connection);
+		if (parentId != null) {
+			return getByParentId(parentId, connection);
+		}
 		// Get the parent CA object
 		RpkiObject parentCaObject = getParentCa(roa.getRpkiObject(), connection);
 		if (parentCaObject == null) {
@@ -86,11 +97,13 @@ public class GbrModel extends DatabaseModel {
 			statement.setBytes(1, parentCaObject.getSubjectKeyIdentifier());
 			statement.setString(2, RpkiObject.Type.GBR.toString());
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			Map<Long, GbrDbObject> gbrsByObjectId = new HashMap<>();
 			while (rs.next()) {
 				GbrDbObject gbr = new GbrDbObject(rs);
-				gbr.setRpkiObject(RpkiObjectModel.getById(gbr.getRpkiObjectId(), connection));
+				gbrsByObjectId.put(gbr.getRpkiObjectId(), gbr);
 				gbrs.add(gbr);
 			}
+			loadRpkiObjects(gbrsByObjectId, connection);
 			return gbrs;
 		}
 	}
@@ -113,6 +126,56 @@ public class GbrModel extends DatabaseModel {
 		}
 	}
 
+	/**
+	 * Get all the {@link Gbr}s whose object is a direct child of the CA with ID
+	 * <code>parentId</code>
+	 * 
+	 * @param parentId
+	 * @param connection
+	 * @return The list of {@link Gbr}s, or empty list when no data is found
+	 * @throws SQLException
+	 */
+	private static List<Gbr> getByParentId(Long parentId, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_BY_PARENT_ID);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			statement.setLong(1, parentId);
+			statement.setString(2, RpkiObject.Type.GBR.toString());
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			List<Gbr> gbrs = new ArrayList<Gbr>();
+			Map<Long, GbrDbObject> gbrsByObjectId = new HashMap<>();
+			while (rs.next()) {
+				GbrDbObject gbr = new GbrDbObject(rs);
+				gbrsByObjectId.put(gbr.getRpkiObjectId(), gbr);
+				gbrs.add(gbr);
+			}
+			loadRpkiObjects(gbrsByObjectId, connection);
+			return gbrs;
+		}
+	}
+
+	/**
+	 * Creates all the <code>newGbrs</code> using a single statement and a JDBC
+	 * batch, the caller is responsible of the transaction handling
+	 * 
+	 * @param newGbrs
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public static void bulkCreate(List<Gbr> newGbrs, Connection connection) throws SQLException {
+		if (newGbrs.isEmpty()) {
+			return;
+		}
+		String query = getQueryGroup().getQuery(CREATE);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			for (Gbr newGbr : newGbrs) {
+				GbrDbObject stored = new GbrDbObject(newGbr);
+				stored.storeToDatabase(statement);
+				statement.addBatch();
+			}
+			executeBatch(statement, getModelClass(), logger);
+		}
+	}
+
 	/**
 	 * Get the {@link Gbr} related to a RPKI OBJECT ID, return null when no data is
 	 * found
@@ -160,6 +223,94 @@ public class GbrModel extends DatabaseModel {
 		return getParentCa(object, connection);
 	}
 
+	/**
+	 * Get the {@link Gbr}s whose object is a direct child of each of the CAs with
+	 * ID at <code>parentIds</code>, the IDs are queried using 'in' lists. The
+	 * RPKI objects of the {@link Gbr}s are loaded with its locations, all at once.
+	 * 
+	 * @param parentIds
+	 * @param connection
+	 * @return Map of the lists of {@link Gbr}s indexed by parent ID, the IDs
+	 *         without {@link Gbr}s aren't at the map
+	 * @throws SQLException
+	 */
+	public static Map<Long, List<Gbr>> getByParentIds(Collection<Long> parentIds, Connection connection)
+			throws SQLException {
+		Map<Long, List<Gbr>> result = new HashMap<>();
+		Map<Long, GbrDbObject> gbrsByObjectId = new HashMap<>();
+		for (List<Long> ids : Util.partition(parentIds)) {
+			String query = getQueryGroup().getQuery(GET_BY_PARENT_IDS);
+			query = query.replace("[and]", Util.getInClause("r.rpo_parent_id", ids.size()));
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				int index = 1;
+				statement.setString(index++, RpkiObject.Type.GBR.toString());
+				for (Long id : ids) {
+					statement.setLong(index++, id);
+				}
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					GbrDbObject gbr = new GbrDbObject(rs);
+					gbrsByObjectId.put(gbr.getRpkiObjectId(), gbr);
+					result.computeIfAbsent(rs.getLong("rpo_parent_id"), (key) -> new ArrayList<>()).add(gbr);
+				}
+			}
+		}
+		loadRpkiObjects(gbrsByObjectId, connection);
+		return result;
+	}
+
+	/**
+	 * Load the RPKI objects of the <code>gbrsByObjectId</code> with its
+	 * locations, all at once
+	 * 
+	 * @param gbrsByObjectId
+	 *            the {@link Gbr}s indexed by RPKI OBJECT ID
+	 * @param connection
+	 * @throws SQLException
+	 */
+	private static void loadRpkiObjects(Map<Long, GbrDbObject> gbrsByObjectId, Connection connection)
+			throws SQLException {
+		if (gbrsByObjectId.isEmpty()) {
+			return;
+		}
+		Map<Long, RpkiObject> rpkiObjects = RpkiObjectModel.getByIds(gbrsByObjectId.keySet(),
+				RpkiObjectModel.Projection.LOCATIONS, connection);
+		for (GbrDbObject gbr : gbrsByObjectId.values()) {
+			gbr.setRpkiObject(rpkiObjects.get(gbr.getRpkiObjectId()));
+		}
+	}
+
+	/**
+	 * Get the {@link Gbr} related to each of the RPKI OBJECT IDs, the
+	 * <code>rpkiObjectIds</code> are queried using 'in' lists
+	 * 
+	 * @param rpkiObjectIds
+	 * @param connection
+	 * @return Map of the {@link Gbr}s found indexed by RPKI OBJECT ID, the IDs
+	 *         without {@link Gbr} aren't at the map
+	 * @throws SQLException
+	 */
+	public static Map<Long, Gbr> getByRpkiObjectIds(Collection<Long> rpkiObjectIds, Connection connection)
+			throws SQLException {
+		Map<Long, Gbr> result = new HashMap<>();
+		for (List<Long> ids : Util.partition(rpkiObjectIds)) {
+			String query = getQueryGroup().getQuery(GET_BY_RPKI_OBJECT_IDS);
+			query = query.replace("[and]", Util.getInClause(GbrDbObject.RPKI_OBJECT_COLUMN, ids.size()));
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				int index = 1;
+				for (Long id : ids) {
+					statement.setLong(index++, id);
+				}
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					GbrDbObject gbr = new GbrDbObject(rs);
+					result.put(gbr.getRpkiObjectId(), gbr);
+				}
+			}
+		}
+		return result;
+	}
+
 	public static QueryGroup getQueryGroup() {
 		return queryGroup;
 	}
@@ -0,0 +1,435 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+
+/**
+ * Keyset (seek) pagination of a listing query. The queries that support it
+ * have a "[seek]" parameter right after the "[filter]"; its rows are always
+ * sorted by the requested columns and then by the ID, so the position after
+ * any row is given by its sort values and ID (a {@link PageCursor}).<br>
+ * <br>
+ * Each time a full page is read, the cursor to its end is kept, keyed by the
+ * query, its parameters, the filter, the sort and the offset where the next
+ * page starts. When that page is requested, its offset is replaced with a
+ * seek "(sort columns, ID) &gt; (cursor values)", so the cost of a page doesn't
+ * depend on how deep it is. A page whose cursor isn't known (e.g. a jump to a
+ * random offset) uses the offset.<br>
+ * <br>
+ * A kept cursor is tied to the write generation of the listed tables (see
+ * {@link CountCache}): once a row is inserted or deleted, the offset of the
+ * next page no longer points to the same row, so the cursors kept before the
+ * write are dropped and the offset is used again.<br>
+ * <br>
+ * The cursors are spread by the hash of its key among independent LRU
+ * segments, so the concurrent listings don't wait for each other.<br>
+ * <br>
+ * Usage: create it with
+ * {@link #create(Class, String, PagingParameters, Map, String, Object...)}, prepare
+ * the {@link #getQuery()}, set its parameters with
+ * {@link #setParams(PreparedStatement, int)} and call
+ * {@link #onRow(ResultSet)} for each row read.
+ *
+ */
+public class KeysetPaging {
+
+	/**
+	 * Max number of cursors kept
+	 */
+	private static final int MAX_CURSORS = 4096;
+
+	/**
+	 * Number of segments of the kept cursors
+	 */
+	private static final int SEGMENTS = 16;
+
+	private static final CursorSegment[] segments = createSegments();
+
+	private static final LongAdder seeks = new LongAdder();
+	private static final LongAdder offsets = new LongAdder();
+	private static final LongAdder invalidations = new LongAdder();
+
+	private final String baseQuery;
+	private final PagingParameters pagingParams;
+	private final Map<String, String> propertyToColumnMap;
+	private final List<Object> scope;
+
+	/**
+	 * Sort columns and its order, the ID column is always the last one
+	 */
+	private final List<String> columns;
+	private final List<Boolean> descending;
+	private final String idColumn;
+
+	private final boolean filtered;
+	private final PageCursor cursor;
+	private final String query;
+
+	/**
+	 * Write generation of the listed tables read before the query
+	 */
+	private final long generation;
+
+	private int rows = 0;
+
+	private KeysetPaging(String baseQuery, PagingParameters pagingParams, Map<String, String> propertyToColumnMap,
+			String idColumn, List<Object> scope, PageCursor cursor, long generation) {
+		this.baseQuery = baseQuery;
+		this.generation = generation;
+		this.pagingParams = pagingParams;
+		this.propertyToColumnMap = propertyToColumnMap;
+		this.scope = scope;
+		this.idColumn = idColumn;
+		this.columns = new ArrayList<>();
+		this.descending = new ArrayList<>();
+		boolean idDescending = false;
+		LinkedHashMap<String, String> sort = pagingParams != null ? pagingParams.getSort() : null;
+		// The queries without "[order]" are always sorted by the ID
+		if (sort != null && baseQuery.contains("[order]")) {
+			for (Entry<String, String> entry : sort.entrySet()) {
+				String column = propertyToColumnMap.get(entry.getKey());
+				boolean columnDescending = PagingParameters.ORDER_DESC.equalsIgnoreCase(entry.getValue().trim());
+				if (idColumn.equals(column)) {
+					// Unique, the next columns don't matter
+					idDescending = columnDescending;
+					break;
+				}
+				columns.add(column);
+				descending.add(columnDescending);
+			}
+		}
+		columns.add(idColumn);
+		descending.add(idDescending);
+		Util.FilterMode filterMode = Util.getFilterMode(pagingParams, propertyToColumnMap);
+		this.filtered = baseQuery.contains("[filter]") && filterMode != null;
+		this.cursor = cursor != null && cursor.getSortValuesCount() == columns.size() - 1 ? cursor : null;
+		if (this.cursor != null) {
+			seeks.increment();
+		} else if (getOffset() > 0) {
+			offsets.increment();
+		}
+		String variant = "keyset " + idColumn + (this.cursor != null ? " seek" : "")
+				+ (filterMode != null ? " " + filterMode.name() : "");
+		this.query = QueryCache.get(baseQuery, pagingParams, variant, this::build);
+	}
+
+	/**
+	 * Create the keyset pagination of the <code>query</code>, using the cursor of
+	 * the page requested if it's known and no write has been made since it was
+	 * kept
+	 *
+	 * @param modelClass
+	 *            model of the listed table, its write generation invalidates the
+	 *            cursors
+	 * @param query
+	 *            base query, with the "[filter]", "[seek]", "[order]" and
+	 *            "[limit]" parameters
+	 * @param pagingParams
+	 *            as described at
+	 *            {@link Util#getQueryWithPaging(String, PagingParameters, Map)}
+	 * @param propertyToColumnMap
+	 *            the mapping of the POJO properties to the DB columns
+	 * @param idColumn
+	 *            unique column used to break the ties of the sort columns
+	 * @param scope
+	 *            values of the query parameters set before the filter, they
+	 *            identify the rows listed
+	 * @return The keyset pagination
+	 */
+	public static KeysetPaging create(Class<?> modelClass, String query, PagingParameters pagingParams,
+			Map<String, String> propertyToColumnMap, String idColumn, Object... scope) {
+		List<Object> scopeList = Arrays.asList(scope);
+		// Read before the query, so a write made meanwhile invalidates its cursor
+		long generation = CountCache.getGeneration(modelClass);
+		PageCursor cursor = null;
+		if (pagingParams != null && pagingParams.getLimit() > 0 && pagingParams.getOffset() > 0) {
+			CursorKey key = new CursorKey(query, scopeList, pagingParams, pagingParams.getOffset());
+			CursorSegment segment = getSegment(key);
+			KeptCursor kept = segment.get(key);
+			if (kept != null && kept.generation == generation) {
+				cursor = PageCursor.decode(kept.encoded);
+			} else if (kept != null) {
+				segment.remove(key, kept);
+				invalidations.increment();
+			}
+		}
+		return new KeysetPaging(query, pagingParams, propertyToColumnMap, idColumn, scopeList, cursor, generation);
+	}
+
+	/**
+	 * Build the query, replacing its parameters
+	 */
+	private String build() {
+		String filter = "";
+		StringBuilder sbSeek = new StringBuilder();
+		StringBuilder sbSort = new StringBuilder();
+		StringBuilder sbLimit = new StringBuilder();
+		if (pagingParams != null) {
+			filter = Util.getFilterClause(pagingParams, propertyToColumnMap);
+			int limit = pagingParams.getLimit();
+			if (limit > 0) {
+				// Parameters, so every page uses the same SQL
+				sbLimit.append(" limit ?");
+				if (cursor == null && pagingParams.getOffset() >= 0) {
+					sbLimit.append(" offset ?");
+				}
+				sbLimit.append(" ");
+			}
+		}
+		if (cursor != null) {
+			sbSeek.append(" and ");
+			if (hasLeadingBound()) {
+				// Lets the index of the first column be used as a range
+				sbSeek.append(columns.get(0)).append(" >= ? and ");
+			}
+			sbSeek.append("(");
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0) {
+					sbSeek.append(" or ");
+				}
+				sbSeek.append("(");
+				for (int j = 0; j < i; j++) {
+					sbSeek.append(columns.get(j)).append(" = ? and ");
+				}
+				String column = columns.get(i);
+				if (!descending.get(i)) {
+					sbSeek.append(column).append(" > ?");
+				} else if (i == columns.size() - 1) {
+					sbSeek.append(column).append(" < ?");
+				} else {
+					// The nulls are sorted last when the order is descending
+					sbSeek.append("(").append(column).append(" < ? or ").append(column).append(" is null)");
+				}
+				sbSeek.append(")");
+			}
+			sbSeek.append(") ");
+		}
+		sbSort.append(" order by ");
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0) {
+				sbSort.append(", ");
+			}
+			sbSort.append(columns.get(i)).append(descending.get(i) ? " desc" : " asc");
+		}
+		sbSort.append(" ");
+		return baseQuery.replace("[filter]", filter).replace("[seek]", sbSeek.toString())
+				.replace("[order]", sbSort.toString()).replace("[limit]", sbLimit.toString());
+	}
+
+	private boolean hasLeadingBound() {
+		return columns.size() > 1 && !descending.get(0);
+	}
+
+	/**
+	 * @return the query to prepare
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Set the filter, seek, limit and offset parameters (if they were added) at
+	 * the <code>statement</code>, starting at <code>filterIndex</code>
+	 *
+	 * @param statement
+	 * @param filterIndex
+	 * @return The index of the next parameter
+	 * @throws SQLException
+	 */
+	public int setParams(PreparedStatement statement, int filterIndex) throws SQLException {
+		int index = filterIndex;
+		if (filtered) {
+			index = Util.setFilterParam(pagingParams, propertyToColumnMap, statement, index);
+		}
+		if (cursor != null) {
+			if (hasLeadingBound()) {
+				cursor.setParam(statement, index++, 0);
+			}
+			for (int i = 0; i < columns.size(); i++) {
+				for (int j = 0; j <= i; j++) {
+					cursor.setParam(statement, index++, j);
+				}
+			}
+		}
+		if (pagingParams != null && pagingParams.getLimit() > 0) {
+			statement.setInt(index++, pagingParams.getLimit());
+			if (cursor == null && pagingParams.getOffset() >= 0) {
+				statement.setInt(index++, pagingParams.getOffset());
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Must be called for each row read; when the last row of a full page is
+	 * read, the cursor to the next page is kept
+	 *
+	 * @param rs
+	 * @throws SQLException
+	 */
+	public void onRow(ResultSet rs) throws SQLException {
+		rows++;
+		if (pagingParams == null || pagingParams.getLimit() <= 0 || rows != pagingParams.getLimit()) {
+			return;
+		}
+		PageCursor nextCursor = PageCursor.fromRow(rs, columns.subList(0, columns.size() - 1), idColumn);
+		if (nextCursor != null) {
+			CursorKey key = new CursorKey(baseQuery, scope, pagingParams, getOffset() + rows);
+			getSegment(key).put(key, new KeptCursor(nextCursor.encode(), generation));
+		}
+	}
+
+	private int getOffset() {
+		return pagingParams != null ? Math.max(pagingParams.getOffset(), 0) : 0;
+	}
+
+	/**
+	 * @return the number of pages read with a seek
+	 */
+	public static long getSeeks() {
+		return seeks.sum();
+	}
+
+	/**
+	 * @return the number of pages (other than the first one) read with an offset
+	 */
+	public static long getOffsets() {
+		return offsets.sum();
+	}
+
+	/**
+	 * @return the number of kept cursors dropped because of a write
+	 */
+	public static long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	/**
+	 * Remove all the cursors, SHOULD be used when the queries are (re)loaded
+	 */
+	public static void clear() {
+		for (CursorSegment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	private static CursorSegment[] createSegments() {
+		CursorSegment[] result = new CursorSegment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			result[i] = new CursorSegment(MAX_CURSORS / SEGMENTS);
+		}
+		return result;
+	}
+
+	private static CursorSegment getSegment(CursorKey key) {
+		int h = key.hash ^ (key.hash >>> 16);
+		return segments[Math.floorMod(h, segments.length)];
+	}
+
+	/**
+	 * A segment of the kept cursors, the least recently used cursor is dropped
+	 * once it's full
+	 */
+	private static class CursorSegment {
+		private final int capacity;
+		private final LinkedHashMap<CursorKey, KeptCursor> cursors = new LinkedHashMap<>(16, 0.75f, true);
+
+		private CursorSegment(int capacity) {
+			this.capacity = capacity;
+		}
+
+		private synchronized KeptCursor get(CursorKey key) {
+			return cursors.get(key);
+		}
+
+		private synchronized void put(CursorKey key, KeptCursor cursor) {
+			cursors.put(key, cursor);
+			if (cursors.size() > capacity) {
+				Iterator<CursorKey> iterator = cursors.keySet().iterator();
+				iterator.next();
+				iterator.remove();
+			}
+		}
+
+		private synchronized void remove(CursorKey key, KeptCursor cursor) {
+			// Unless a newer cursor was kept meanwhile
+			cursors.remove(key, cursor);
+		}
+
+		private synchronized void clear() {
+			cursors.clear();
+		}
+	}
+
+	/**
+	 * A kept cursor and the write generation of the listed tables when its page
+	 * was read
+	 */
+	private static class KeptCursor {
+		private final String encoded;
+		private final long generation;
+
+		private KeptCursor(String encoded, long generation) {
+			this.encoded = encoded;
+			this.generation = generation;
+		}
+	}
+
+	/**
+	 * Key of a cursor: the listing and the position where the next page starts
+	 */
+	private static class CursorKey {
+		private final String query;
+		private final List<Object> scope;
+		private final String filterField;
+		private final String filterQuery;
+		private final Map<String, String> sort;
+		private final int position;
+		private final int hash;
+
+		private CursorKey(String query, List<Object> scope, PagingParameters pagingParams, int position) {
+			this.query = query;
+			this.scope = scope;
+			this.filterField = pagingParams.getFilterField();
+			this.filterQuery = pagingParams.getFilterQuery();
+			this.sort = pagingParams.getSort() != null ? new LinkedHashMap<>(pagingParams.getSort())
+					: Collections.emptyMap();
+			this.position = position;
+			this.hash = Objects.hash(query, scope, filterField, filterQuery, sort, position);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CursorKey)) {
+				return false;
+			}
+			CursorKey other = (CursorKey) obj;
+			// The sort order matters
+			return hash == other.hash && position == other.position && query.equals(other.query)
+					&& scope.equals(other.scope) && Objects.equals(filterField, other.filterField)
+					&& Objects.equals(filterQuery, other.filterQuery)
+					&& new ArrayList<>(sort.entrySet()).equals(new ArrayList<>(other.sort.entrySet()));
+		}
+	}
+}
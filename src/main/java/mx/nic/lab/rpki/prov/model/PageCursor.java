@@ -0,0 +1,206 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position of a page at a keyset pagination (see {@link KeysetPaging}): the
+ * values of the sort columns and the ID of the last row of the previous page.
+ * It's exchanged as an opaque string, see {@link #encode()} and
+ * {@link #decode(String)}.<br>
+ * <br>
+ * Only the values that can be encoded (numbers, strings, booleans and byte
+ * arrays) are supported; a row with a <code>null</code> value or another type
+ * at the sort columns can't be used as a cursor.
+ *
+ */
+public class PageCursor {
+
+	private static final byte FORMAT_VERSION = 1;
+
+	// Type of each value at the encoded cursor
+	private static final byte TYPE_LONG = 'L';
+	private static final byte TYPE_INTEGER = 'I';
+	private static final byte TYPE_STRING = 'S';
+	private static final byte TYPE_BOOLEAN = 'Z';
+	private static final byte TYPE_BYTES = 'B';
+
+	private final Object[] sortValues;
+	private final long id;
+
+	public PageCursor(Object[] sortValues, long id) {
+		this.sortValues = sortValues;
+		this.id = id;
+	}
+
+	/**
+	 * Create the cursor positioned at the current row of the <code>rs</code>
+	 *
+	 * @param rs
+	 * @param sortColumns
+	 *            sort columns, without the ID column
+	 * @param idColumn
+	 * @return The cursor, or <code>null</code> if some of the values can't be
+	 *         used as a cursor
+	 * @throws SQLException
+	 */
+	static PageCursor fromRow(ResultSet rs, List<String> sortColumns, String idColumn) throws SQLException {
+		Object[] values = new Object[sortColumns.size()];
+		for (int i = 0; i < values.length; i++) {
+			Object value = rs.getObject(sortColumns.get(i));
+			if (!isSupported(value)) {
+				return null;
+			}
+			values[i] = value;
+		}
+		long id = rs.getLong(idColumn);
+		if (rs.wasNull()) {
+			return null;
+		}
+		return new PageCursor(values, id);
+	}
+
+	private static boolean isSupported(Object value) {
+		return value instanceof Long || value instanceof Integer || value instanceof Short
+				|| value instanceof Byte || value instanceof String || value instanceof Boolean
+				|| value instanceof byte[];
+	}
+
+	/**
+	 * Set the value of the sort column at <code>columnIndex</code> (or the ID if
+	 * it's the last one) as the parameter <code>parameterIndex</code> of the
+	 * <code>statement</code>
+	 *
+	 * @param statement
+	 * @param parameterIndex
+	 * @param columnIndex
+	 * @throws SQLException
+	 */
+	void setParam(PreparedStatement statement, int parameterIndex, int columnIndex) throws SQLException {
+		if (columnIndex == sortValues.length) {
+			statement.setLong(parameterIndex, id);
+		} else {
+			statement.setObject(parameterIndex, sortValues[columnIndex]);
+		}
+	}
+
+	/**
+	 * @return the number of sort values, without the ID
+	 */
+	int getSortValuesCount() {
+		return sortValues.length;
+	}
+
+	/**
+	 * Encode the cursor as an opaque URL-safe string
+	 *
+	 * @return The encoded cursor
+	 */
+	public String encode() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(FORMAT_VERSION);
+			out.writeShort(sortValues.length);
+			for (Object value : sortValues) {
+				if (value instanceof Long) {
+					out.writeByte(TYPE_LONG);
+					out.writeLong((Long) value);
+				} else if (value instanceof Number) {
+					out.writeByte(TYPE_INTEGER);
+					out.writeInt(((Number) value).intValue());
+				} else if (value instanceof String) {
+					out.writeByte(TYPE_STRING);
+					writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+				} else if (value instanceof Boolean) {
+					out.writeByte(TYPE_BOOLEAN);
+					out.writeBoolean((Boolean) value);
+				} else {
+					out.writeByte(TYPE_BYTES);
+					writeBytes(out, (byte[]) value);
+				}
+			}
+			out.writeLong(id);
+		} catch (IOException e) {
+			// Not expected at a byte array
+			throw new IllegalStateException(e);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	/**
+	 * Decode a cursor encoded with {@link #encode()}
+	 *
+	 * @param cursor
+	 * @return The decoded cursor
+	 * @throws IllegalArgumentException
+	 *             if the cursor is malformed
+	 */
+	public static PageCursor decode(String cursor) {
+		try (DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+			if (in.readByte() != FORMAT_VERSION) {
+				throw new IllegalArgumentException("Unknown cursor format");
+			}
+			Object[] values = new Object[in.readUnsignedShort()];
+			for (int i = 0; i < values.length; i++) {
+				byte type = in.readByte();
+				switch (type) {
+				case TYPE_LONG:
+					values[i] = in.readLong();
+					break;
+				case TYPE_INTEGER:
+					values[i] = in.readInt();
+					break;
+				case TYPE_STRING:
+					values[i] = new String(readBytes(in), StandardCharsets.UTF_8);
+					break;
+				case TYPE_BOOLEAN:
+					values[i] = in.readBoolean();
+					break;
+				case TYPE_BYTES:
+					values[i] = readBytes(in);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown cursor value type " + type);
+				}
+			}
+			long id = in.readLong();
+			if (in.available() > 0) {
+				throw new IllegalArgumentException("Unexpected data at the cursor");
+			}
+			return new PageCursor(values, id);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Malformed cursor", e);
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > in.available()) {
+			throw new IOException("Invalid length " + length);
+		}
+		byte[] value = new byte[length];
+		in.readFully(value);
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.deepToString(sortValues) + " #" + id;
+	}
+}
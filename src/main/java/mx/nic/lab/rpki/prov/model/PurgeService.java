@@ -0,0 +1,333 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mx.nic.lab.rpki.db.exception.InitializationException;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+
+/**
+ * Purge of large sets of rows (e.g. the unreachable RPKI objects or the objects
+ * of a deleted TAL). The rows are deleted in chunks of up to
+ * <code>purge_chunk_size</code> IDs, each one at its own short transaction, so
+ * the cascade of a chunk is bounded and the readers aren't blocked by a single
+ * huge transaction. The chunks are walked by ID (<code>id &gt; ? order by id
+ * limit ?</code>), so sparse IDs don't produce empty chunks.<br>
+ * <br>
+ * The purges can also be run at a background thread, one at a time (see
+ * {@link #submit(String, PurgeTask, PurgeListener)}); a pause of
+ * <code>purge_chunk_pause</code> milliseconds is made after each chunk, so the
+ * purge can be throttled to leave room to the route validations. Once the
+ * service is shut down, the purges stop after the chunk being deleted.
+ *
+ */
+public class PurgeService {
+
+	private static final Logger logger = Logger.getLogger(PurgeService.class.getName());
+
+	/**
+	 * Default number of IDs of each chunk
+	 */
+	private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/**
+	 * Default milliseconds paused after each chunk
+	 */
+	private static final long DEFAULT_CHUNK_PAUSE = 0L;
+
+	/**
+	 * Milliseconds between each progress report of a purge
+	 */
+	private static final long PROGRESS_INTERVAL = 10000L;
+
+	/**
+	 * Milliseconds to wait for the running purge at the shutdown
+	 */
+	private static final long SHUTDOWN_TIMEOUT = 30000L;
+
+	/**
+	 * Number of IDs of each chunk
+	 */
+	private static volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * Milliseconds paused after each chunk
+	 */
+	private static volatile long chunkPause = DEFAULT_CHUNK_PAUSE;
+
+	/**
+	 * Executor of the background purges
+	 */
+	private static ExecutorService purgeExecutor = null;
+
+	/**
+	 * Set at the shutdown, the purges stop between chunks
+	 */
+	private static volatile boolean stopped = false;
+
+	private static final AtomicInteger pending = new AtomicInteger();
+	private static final LongAdder deletedRows = new LongAdder();
+
+	/**
+	 * Get, in ascending order, up to <code>limit</code> IDs of the rows to delete
+	 * that are greater than <code>afterId</code>
+	 */
+	@FunctionalInterface
+	public interface ChunkSelector {
+		List<Long> select(long afterId, int limit) throws SQLException;
+	}
+
+	/**
+	 * Delete the rows of a chunk
+	 */
+	@FunctionalInterface
+	public interface ChunkDeleter {
+		int delete(List<Long> ids) throws SQLException;
+	}
+
+	/**
+	 * A purge run at the background, using its own connection
+	 */
+	@FunctionalInterface
+	public interface PurgeTask {
+		int run(Connection connection) throws SQLException;
+	}
+
+	/**
+	 * Called once a background purge is completed, with the same connection used
+	 * by the purge
+	 */
+	@FunctionalInterface
+	public interface PurgeListener {
+		void onCompleted(int deleted, Connection connection) throws SQLException;
+	}
+
+	private PurgeService() {
+		// No code
+	}
+
+	/**
+	 * Read the required properties from the configuration
+	 *
+	 * @param config
+	 * @throws InitializationException
+	 */
+	public static void init(Properties config) throws InitializationException {
+		// Optional property
+		String size = config.getProperty("purge_chunk_size");
+		int newChunkSize = DEFAULT_CHUNK_SIZE;
+		if (size != null) {
+			try {
+				newChunkSize = Integer.parseInt(size.trim());
+			} catch (NumberFormatException e) {
+				throw new InitializationException("Invalid purge_chunk_size '" + size + "'", e);
+			}
+			if (newChunkSize <= 0) {
+				throw new InitializationException("The purge_chunk_size must be greater than 0");
+			}
+		}
+		chunkSize = newChunkSize;
+		// Optional property
+		String pause = config.getProperty("purge_chunk_pause");
+		long newChunkPause = DEFAULT_CHUNK_PAUSE;
+		if (pause != null) {
+			try {
+				newChunkPause = Long.parseLong(pause.trim());
+			} catch (NumberFormatException e) {
+				throw new InitializationException("Invalid purge_chunk_pause '" + pause + "'", e);
+			}
+			if (newChunkPause < 0) {
+				throw new InitializationException("The purge_chunk_pause can't be negative");
+			}
+		}
+		chunkPause = newChunkPause;
+		shutdown();
+		stopped = false;
+		purgeExecutor = Executors.newSingleThreadExecutor((runnable) -> {
+			Thread thread = new Thread(runnable, "rpki-purge");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+	}
+
+	/**
+	 * Stop the purges after the chunk being deleted, the chunks already deleted
+	 * remain deleted and the rest is deleted at the next purge. The purges waiting
+	 * at the background aren't run. The running purge isn't interrupted, so a
+	 * statement isn't cancelled half way; this waits up to
+	 * <code>SHUTDOWN_TIMEOUT</code> for it.
+	 */
+	public static void shutdown() {
+		stopped = true;
+		ExecutorService executor = purgeExecutor;
+		if (executor == null) {
+			return;
+		}
+		purgeExecutor = null;
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				logger.log(Level.WARNING, "The running purge didn't stop after " + SHUTDOWN_TIMEOUT + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Run a purge at the background, after the previously submitted ones. If the
+	 * service isn't initialized, the purge is run at the current thread.
+	 *
+	 * @param description
+	 *            used at the log
+	 * @param task
+	 * @param listener
+	 *            called once the purge is completed, may be <code>null</code>
+	 * @return the number of rows deleted by the purge; completed exceptionally if
+	 *         the purge failed, with <code>0</code> if the service was shut down
+	 *         before running it
+	 * @throws SQLException
+	 *             only if the purge is run at the current thread
+	 */
+	public static CompletableFuture<Integer> submit(String description, PurgeTask task, PurgeListener listener)
+			throws SQLException {
+		ExecutorService executor = purgeExecutor;
+		if (executor == null) {
+			try (Connection connection = DatabaseSession.getConnection()) {
+				return CompletableFuture.completedFuture(runTask(task, listener, connection));
+			}
+		}
+		CompletableFuture<Integer> result = new CompletableFuture<>();
+		pending.incrementAndGet();
+		executor.execute(() -> {
+			// The future is completed once it's no longer pending
+			int deleted = 0;
+			Exception failure = null;
+			try {
+				if (!stopped) {
+					try (Connection connection = DatabaseSession.getConnection()) {
+						deleted = runTask(task, listener, connection);
+					}
+				}
+			} catch (SQLException | RuntimeException e) {
+				logger.log(Level.SEVERE, "The purge of " + description + " failed", e);
+				failure = e;
+			} finally {
+				pending.decrementAndGet();
+			}
+			if (failure != null) {
+				result.completeExceptionally(failure);
+			} else {
+				result.complete(deleted);
+			}
+		});
+		return result;
+	}
+
+	private static int runTask(PurgeTask task, PurgeListener listener, Connection connection) throws SQLException {
+		int deleted = task.run(connection);
+		if (listener != null) {
+			listener.onCompleted(deleted, connection);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Delete the rows selected by the <code>selector</code> in chunks of up to
+	 * <code>purge_chunk_size</code> IDs; each chunk starts after the last ID of
+	 * the previous one, and a transaction is committed after each chunk. The
+	 * progress is logged periodically, along with the deleted rows per second.
+	 * The purge stops between chunks if the service is shut down.
+	 *
+	 * @param description
+	 *            used at the log
+	 * @param selector
+	 *            gets the IDs of each chunk
+	 * @param deleter
+	 *            deletes the rows of a chunk
+	 * @param connection
+	 * @return the number of deleted rows
+	 * @throws SQLException
+	 */
+	public static int deleteInChunks(String description, ChunkSelector selector, ChunkDeleter deleter,
+			Connection connection) throws SQLException {
+		int size = chunkSize;
+		long pause = chunkPause;
+		long start = System.currentTimeMillis();
+		long lastReport = start;
+		int deleted = 0;
+		boolean originalAutoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try {
+			long afterId = Long.MIN_VALUE;
+			while (!stopped) {
+				List<Long> ids = selector.select(afterId, size);
+				if (ids.isEmpty()) {
+					break;
+				}
+				int chunkDeleted = deleter.delete(ids);
+				DatabaseModel.commit(connection);
+				deleted += chunkDeleted;
+				deletedRows.add(chunkDeleted);
+				afterId = ids.get(ids.size() - 1);
+				long now = System.currentTimeMillis();
+				if (now - lastReport >= PROGRESS_INTERVAL) {
+					lastReport = now;
+					logger.log(Level.INFO, "Purge of " + description + ": " + deleted + " rows deleted, up to ID "
+							+ afterId + ", " + getRate(deleted, now - start) + " rows/s");
+				}
+				if (ids.size() < size) {
+					// That was the last chunk
+					break;
+				}
+				if (pause > 0) {
+					try {
+						TimeUnit.MILLISECONDS.sleep(pause);
+					} catch (InterruptedException e) {
+						// Stopped, the rest is deleted at the next purge
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+		} finally {
+			// Commit what has been done
+			DatabaseModel.commit(connection);
+			connection.setAutoCommit(originalAutoCommit);
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		logger.log(Level.INFO, "Purge of " + description + (stopped ? " stopped: " : " completed: ") + deleted
+				+ " rows deleted in " + elapsed + " ms (" + getRate(deleted, elapsed) + " rows/s)");
+		return deleted;
+	}
+
+	private static long getRate(int deleted, long elapsedMillis) {
+		return elapsedMillis > 0 ? deleted * 1000L / elapsedMillis : deleted;
+	}
+
+	/**
+	 * @return the number of background purges submitted that haven't been
+	 *         completed
+	 */
+	public static int getPending() {
+		return pending.get();
+	}
+
+	/**
+	 * @return the total number of rows deleted by the purges
+	 */
+	public static long getDeletedRows() {
+		return deletedRows.sum();
+	}
+}
@@ -0,0 +1,173 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+
+/**
+ * LRU cache of the queries already processed by
+ * {@link Util#getQueryWithPaging(String, PagingParameters, Map)}, keyed by the
+ * base query and the shape of the {@link PagingParameters} (filter column,
+ * sort, and whether there's a limit and an offset), so the query strings aren't
+ * rebuilt at every call. The limit and offset values are parameters of the
+ * query, so every page of a listing gets the same SQL string; the prepared
+ * statements themselves are reused by the statement pool of the connections
+ * (DBCP's <code>poolPreparedStatements</code>), keyed by these same SQL
+ * strings, see {@link DatabaseSession#getStatementHits()}.
+ *
+ */
+public class QueryCache {
+
+	/**
+	 * Max number of queries kept at the cache
+	 */
+	private static final int MAX_ENTRIES = 1024;
+
+	private static final Map<Key, String> cache = Collections
+			.synchronizedMap(new LinkedHashMap<Key, String>(64, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Entry<Key, String> eldest) {
+					return size() > MAX_ENTRIES;
+				}
+			});
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+
+	private QueryCache() {
+		// No instances
+	}
+
+	/**
+	 * Key of the cache: the base query, the paging shape and the variant of the
+	 * query built (e.g. a keyset pagination)
+	 */
+	private static class Key {
+		private final String query;
+		private final String variant;
+		private final String filterColumn;
+		private final boolean limited;
+		private final boolean withOffset;
+		private final List<String> sort;
+		private final int hash;
+
+		private Key(String query, PagingParameters pagingParams, String variant) {
+			this.query = query;
+			this.variant = variant;
+			if (pagingParams == null) {
+				this.filterColumn = null;
+				this.limited = false;
+				this.withOffset = false;
+				this.sort = Collections.emptyList();
+			} else {
+				this.filterColumn = pagingParams.getFilterQuery() != null ? pagingParams.getFilterField() : null;
+				// Only the presence of the limit and offset, their values are parameters
+				this.limited = pagingParams.getLimit() > 0;
+				this.withOffset = limited && pagingParams.getOffset() >= 0;
+				LinkedHashMap<String, String> sortMap = pagingParams.getSort();
+				if (sortMap == null || sortMap.isEmpty()) {
+					this.sort = Collections.emptyList();
+				} else {
+					this.sort = new ArrayList<>(sortMap.size() * 2);
+					for (Entry<String, String> entry : sortMap.entrySet()) {
+						this.sort.add(entry.getKey());
+						this.sort.add(entry.getValue());
+					}
+				}
+			}
+			this.hash = Objects.hash(query, variant, filterColumn, limited, withOffset, sort);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && limited == other.limited && withOffset == other.withOffset
+					&& query.equals(other.query) && Objects.equals(variant, other.variant)
+					&& Objects.equals(filterColumn, other.filterColumn)
+					&& sort.equals(other.sort);
+		}
+	}
+
+	/**
+	 * Get the query for the <code>query</code> and <code>pagingParams</code>, if
+	 * it isn't cached then it's created with the <code>builder</code> and stored
+	 *
+	 * @param query
+	 * @param pagingParams
+	 * @param builder
+	 * @return The query with the paging applied
+	 */
+	static String get(String query, PagingParameters pagingParams, Supplier<String> builder) {
+		return get(query, pagingParams, null, builder);
+	}
+
+	/**
+	 * Get the <code>variant</code> of the query for the <code>query</code> and
+	 * <code>pagingParams</code>, if it isn't cached then it's created with the
+	 * <code>builder</code> and stored
+	 *
+	 * @param query
+	 * @param pagingParams
+	 * @param variant
+	 *            identifies how the query is built from the same paging shape
+	 * @param builder
+	 * @return The query with the paging applied
+	 */
+	static String get(String query, PagingParameters pagingParams, String variant, Supplier<String> builder) {
+		Key key = new Key(query, pagingParams, variant);
+		String result = cache.get(key);
+		if (result != null) {
+			hits.increment();
+			return result;
+		}
+		misses.increment();
+		result = builder.get();
+		cache.put(key, result);
+		return result;
+	}
+
+	/**
+	 * @return the number of queries found at the cache
+	 */
+	public static long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of queries that weren't found at the cache
+	 */
+	public static long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Remove all the queries from the cache, SHOULD be used when the queries are
+	 * (re)loaded
+	 */
+	public static void clear() {
+		cache.clear();
+	}
+}
@@ -17,6 +17,8 @@ public class QueryLoader {
 	public static void init(Properties config) {
 		// Optional property, use empty string value instead of null
 		String schema = config.getProperty("schema", "").trim();
+		QueryCache.clear();
+		KeysetPaging.clear();
 		loadModelsQueries(schema);
 	}
 
@@ -26,6 +28,7 @@ public class QueryLoader {
 		RoaModel.loadQueryGroup(schema);
 		RpkiObjectModel.loadQueryGroup(schema);
 		RpkiRepositoryModel.loadQueryGroup(schema);
+		SearchIndexModel.loadQueryGroup(schema);
 		SlurmModel.loadQueryGroup(schema);
 		SlurmBgpsecModel.loadQueryGroup(schema);
 		SlurmPrefixModel.loadQueryGroup(schema);
@@ -33,5 +36,6 @@ public class QueryLoader {
 		TalUriModel.loadQueryGroup(schema);
 		ValidationCheckModel.loadQueryGroup(schema);
 		ValidationRunModel.loadQueryGroup(schema);
+		VrpSnapshotModel.loadQueryGroup(schema);
 	}
 }
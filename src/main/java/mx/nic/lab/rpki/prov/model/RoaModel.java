@@ -6,14 +6,22 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
+import mx.nic.lab.rpki.db.pojo.Gbr;
 import mx.nic.lab.rpki.db.pojo.ListResult;
 import mx.nic.lab.rpki.db.pojo.PagingParameters;
 import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.db.pojo.RpkiObject;
 import mx.nic.lab.rpki.prov.database.QueryGroup;
 import mx.nic.lab.rpki.prov.object.RoaDbObject;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
 
 /**
  * Model to retrieve ROA data from the database
@@ -34,13 +42,13 @@ public class RoaModel extends DatabaseModel {
 	// Queries IDs used by this model
 	private static final String GET_BY_ID = "getById";
 	private static final String GET_BY_RPKI_OBJECT_ID = "getByRpkiObjectId";
+	private static final String GET_BY_RPKI_OBJECT_IDS = "getByRpkiObjectIds";
 	private static final String GET_ALL = "getAll";
 	private static final String GET_ALL_COUNT = "getAllCount";
-	private static final String FIND_EXACT_MATCH = "findExactMatch";
-	private static final String FIND_COVERING_AGGREGATE = "findCoveringAggregate";
-	private static final String FIND_MORE_SPECIFIC = "findMoreSpecific";
-	private static final String EXIST_ASN = "existAsn";
+	private static final String GET_ALL_COUNT_ESTIMATE = "getAllCountEstimate";
 	private static final String CREATE = "create";
+	private static final String GET_WITHOUT_NUMERIC_PREFIX = "getWithoutNumericPrefix";
+	private static final String UPDATE_NUMERIC_PREFIX = "updateNumericPrefix";
 
 	/**
 	 * Loads the queries corresponding to this model, based on the QUERY_GROUP
@@ -75,6 +83,21 @@ public class RoaModel extends DatabaseModel {
 	 * @throws SQLException
 	 */
 	public static Roa getById(Long id, Connection connection) throws SQLException {
+		return getById(id, RpkiObjectModel.Projection.FULL, connection);
+	}
+
+	/**
+	 * Get a {@link Roa} by its ID, loading its RPKI object according to the
+	 * <code>projection</code>; return null if no data is found
+	 * 
+	 * @param id
+	 * @param projection
+	 * @param connection
+	 * @return The {@link Roa} found
+	 * @throws SQLException
+	 */
+	public static Roa getById(Long id, RpkiObjectModel.Projection projection, Connection connection)
+			throws SQLException {
 		String query = getQueryGroup().getQuery(GET_BY_ID);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setLong(1, id);
@@ -85,7 +108,7 @@ public class RoaModel extends DatabaseModel {
 			RoaDbObject roa = null;
 			do {
 				roa = new RoaDbObject(rs);
-				loadRelatedObjects(roa, connection);
+				loadRelatedObjects(roa, projection, connection);
 			} while (rs.next());
 
 			return roa;
@@ -102,184 +125,254 @@ public class RoaModel extends DatabaseModel {
 	 */
 	public static ListResult<Roa> getAll(PagingParameters pagingParams, Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL);
-		query = Util.getQueryWithPaging(query, pagingParams, RoaDbObject.propertyToColumnMap);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 1);
+		KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams, RoaDbObject.propertyToColumnMap,
+				RoaDbObject.ID_COLUMN);
+		try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
+			// Set the filter and seek to the query (if the params were added)
+			paging.setParams(statement, 1);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			List<Roa> roas = new ArrayList<Roa>();
+			List<RoaDbObject> roas = new ArrayList<RoaDbObject>();
 			while (rs.next()) {
-				RoaDbObject roa = new RoaDbObject(rs);
-				loadRelatedObjects(roa, connection);
-				roas.add(roa);
+				roas.add(new RoaDbObject(rs));
+				paging.onRow(rs);
 			}
+			// The listing doesn't need the encoded objects
+			loadRelatedObjects(roas, RpkiObjectModel.Projection.LOCATIONS, connection);
 			Integer totalFound = getAllCount(pagingParams, connection);
-			return new ListResult<Roa>(roas, totalFound);
+			return new ListResult<Roa>(new ArrayList<Roa>(roas), totalFound);
 		}
 	}
 
 	/**
-	 * Find a {@link Roa} that covers the specified prefix, return null if no record
-	 * is found
+	 * Creates a new {@link Roa} returns <code>boolean</code> to indicate success
 	 * 
-	 * @param prefix
-	 * @param prefixLength
+	 * @param newRoa
 	 * @param connection
-	 * @return The {@link Roa} that matches (or covers) the prefix
+	 * @return <code>boolean</code> to indicate success
 	 * @throws SQLException
 	 */
-	public static Roa findExactMatch(byte[] prefix, Integer prefixLength, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(FIND_EXACT_MATCH);
+	public static boolean create(Roa newRoa, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(CREATE);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setBytes(1, prefix);
-			statement.setInt(2, prefixLength);
-			statement.setInt(3, prefixLength);
-			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			if (!rs.next()) {
-				return null;
-			}
-			RoaDbObject roa = null;
-			do {
-				roa = new RoaDbObject(rs);
-				loadRelatedObjects(roa, connection);
-			} while (rs.next());
-
-			return roa;
+			RoaDbObject stored = new RoaDbObject(newRoa);
+			stored.storeToDatabase(statement);
+			int created = executeUpdate(statement, getModelClass(), logger);
+			return created > 0;
 		}
 	}
 
 	/**
-	 * Find all the candidate {@link Roa}s that are covering aggregates of the
-	 * prefix received, this list still needs some work to effectively determine if
-	 * any of the {@link Roa}s is a covering aggregate of the prefix (the database
-	 * doesn't fully support binary operators on BINARYs, so thats why only the
-	 * candidates are returned). Only the basic info of the ROAs is loaded.
+	 * Creates all the <code>newRoas</code> using a single statement and a JDBC
+	 * batch, the caller is responsible of the transaction handling
 	 * 
-	 * @param prefix
-	 * @param prefixLength
-	 * @param familyType
+	 * @param newRoas
 	 * @param connection
-	 * @return List of candidate {@link Roa}s that are covering aggregate of the
-	 *         received prefix
 	 * @throws SQLException
 	 */
-	public static List<Roa> findCoveringAggregate(byte[] prefix, Integer prefixLength, Integer familyType,
-			Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(FIND_COVERING_AGGREGATE);
+	public static void bulkCreate(List<Roa> newRoas, Connection connection) throws SQLException {
+		if (newRoas.isEmpty()) {
+			return;
+		}
+		String query = getQueryGroup().getQuery(CREATE);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setBytes(1, prefix);
-			statement.setInt(2, prefixLength);
-			statement.setInt(3, familyType);
-			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			List<Roa> roas = new ArrayList<Roa>();
-			while (rs.next()) {
-				roas.add(new RoaDbObject(rs));
+			for (Roa newRoa : newRoas) {
+				RoaDbObject stored = new RoaDbObject(newRoa);
+				stored.storeToDatabase(statement);
+				statement.addBatch();
 			}
-			return roas;
+			executeBatch(statement, getModelClass(), logger);
 		}
 	}
 
 	/**
-	 * Find all the candidate {@link Roa}s that are more specific than the prefix
-	 * received, this list still needs some work to effectively determine if any of
-	 * the {@link Roa}s is more specific than the prefix (the database doesn't fully
-	 * support binary operators on BINARYs, so thats why only the candidates are
-	 * returned). Only the basic info of the ROAs is loaded.
+	 * Fill the numeric prefix columns of the ROAs stored before those columns
+	 * existed, the rows are updated in chunks of {@link Util#MAX_IN_PARAMETERS}
 	 * 
-	 * @param prefix
-	 * @param prefixLength
-	 * @param familyType
 	 * @param connection
-	 * @return List of candidate {@link Roa}s that are more specific than the
-	 *         received prefix
+	 * @return the number of updated ROAs
 	 * @throws SQLException
 	 */
-	public static List<Roa> findMoreSpecific(byte[] prefix, Integer prefixLength, Integer familyType,
-			Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(FIND_MORE_SPECIFIC);
+	public static int updateNumericPrefixes(Connection connection) throws SQLException {
+		String selectQuery = getQueryGroup().getQuery(GET_WITHOUT_NUMERIC_PREFIX);
+		String updateQuery = getQueryGroup().getQuery(UPDATE_NUMERIC_PREFIX);
+		int result = 0;
+		boolean originalAutoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try (PreparedStatement selectStatement = prepareStatement(connection, selectQuery, getModelClass());
+				PreparedStatement updateStatement = prepareStatement(connection, updateQuery, getModelClass())) {
+			int selected;
+			int updated;
+			do {
+				selected = 0;
+				updated = 0;
+				selectStatement.setInt(1, Util.MAX_IN_PARAMETERS);
+				ResultSet rs = executeQuery(selectStatement, getModelClass(), logger);
+				while (rs.next()) {
+					selected++;
+					RoaDbObject roa = new RoaDbObject();
+					roa.setStartPrefix(rs.getBytes(RoaDbObject.START_PREFIX_COLUMN));
+					roa.setEndPrefix(rs.getBytes(RoaDbObject.END_PREFIX_COLUMN));
+					if (IpPrefix.getMaxLength(roa.getStartPrefix()) < 0 || roa.getEndPrefix() == null) {
+						// Can't be converted, it's left as is
+						continue;
+					}
+					roa.storeNumericPrefix(updateStatement, 1);
+					updateStatement.setLong(5, rs.getLong(RoaDbObject.ID_COLUMN));
+					updateStatement.addBatch();
+					updated++;
+				}
+				if (updated > 0) {
+					executeBatch(updateStatement, getModelClass(), logger);
+					commit(connection);
+					result += updated;
+				}
+			} while (selected == Util.MAX_IN_PARAMETERS && updated > 0);
+		} finally {
+			// Commit what has been done
+			commit(connection);
+			connection.setAutoCommit(originalAutoCommit);
+		}
+		return result;
+	}
+
+	/**
+	 * Get all the {@link Roa}s related to a RPKI OBJECT ID, return empty list when
+	 * no files are found
+	 * 
+	 * @param rpkiObjectId
+	 * @param connection
+	 * @return The list of {@link Roa}s related, or empty list when no data is found
+	 * @throws SQLException
+	 */
+	public static List<Roa> getByRpkiObjectId(Long rpkiObjectId, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_BY_RPKI_OBJECT_ID);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setBytes(1, prefix);
-			statement.setInt(2, prefixLength);
-			statement.setInt(3, familyType);
+			statement.setLong(1, rpkiObjectId);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			List<Roa> roas = new ArrayList<Roa>();
 			while (rs.next()) {
-				roas.add(new RoaDbObject(rs));
+				RoaDbObject talFile = new RoaDbObject(rs);
+				roas.add(talFile);
 			}
-
 			return roas;
 		}
 	}
 
 	/**
-	 * Check if there's at least one ROA with the specified ASN
+	 * Get all the {@link Roa}s related to each of the RPKI OBJECT IDs, the
+	 * <code>rpkiObjectIds</code> are queried using 'in' lists
 	 * 
-	 * @param asn
+	 * @param rpkiObjectIds
 	 * @param connection
-	 * @return <code>true</code> when there's at least one ROA with the ASN,
-	 *         <code>false</code> otherwise
+	 * @return Map of the {@link Roa}s found indexed by RPKI OBJECT ID, the IDs
+	 *         without {@link Roa}s aren't at the map
 	 * @throws SQLException
 	 */
-	public static boolean existAsn(Long asn, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(EXIST_ASN);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setLong(1, asn);
-			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			return rs.next();
+	public static Map<Long, List<Roa>> getByRpkiObjectIds(Collection<Long> rpkiObjectIds, Connection connection)
+			throws SQLException {
+		Map<Long, List<Roa>> result = new HashMap<>();
+		for (List<Long> ids : Util.partition(rpkiObjectIds)) {
+			String query = getQueryGroup().getQuery(GET_BY_RPKI_OBJECT_IDS);
+			query = query.replace("[and]", Util.getInClause(RoaDbObject.RPKI_OBJECT_COLUMN, ids.size()));
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				int index = 1;
+				for (Long id : ids) {
+					statement.setLong(index++, id);
+				}
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					RoaDbObject roa = new RoaDbObject(rs);
+					result.computeIfAbsent(roa.getRpkiObjectId(), (key) -> new ArrayList<>()).add(roa);
+				}
+			}
 		}
+		return result;
 	}
 
 	/**
-	 * Creates a new {@link Roa} returns <code>boolean</code> to indicate success
+	 * Load all the related objects to the ROA, its RPKI object is loaded
+	 * according to the <code>projection</code> (the GBRs are loaded only with
+	 * its locations)
 	 * 
-	 * @param newRoa
+	 * @param roa
+	 * @param projection
 	 * @param connection
-	 * @return <code>boolean</code> to indicate success
 	 * @throws SQLException
 	 */
-	public static boolean create(Roa newRoa, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(CREATE);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			RoaDbObject stored = new RoaDbObject(newRoa);
-			stored.storeToDatabase(statement);
-			int created = executeUpdate(statement, getModelClass(), logger);
-			return created > 0;
+	static void loadRelatedObjects(RoaDbObject roa, RpkiObjectModel.Projection projection, Connection connection)
+			throws SQLException {
+		roa.setRpkiObject(RpkiObjectModel.getById(roa.getRpkiObjectId(), projection, connection));
+		roa.setGbrs(GbrModel.getByRoa(roa, connection));
+	}
+
+	/**
+	 * Load the related objects to all the <code>roas</code> at once: the RPKI
+	 * objects (according to the <code>projection</code>), its parent CAs and the
+	 * GBRs of those CAs are queried using 'in' lists and assembled in memory. The
+	 * GBRs of the ROAs whose parent isn't materialized are searched one by one
+	 * (see {@link GbrModel#getByRoa(Roa, Connection)}).
+	 * 
+	 * @param roas
+	 * @param projection
+	 * @param connection
+	 * @throws SQLException
+	 */
+	static void loadRelatedObjects(List<RoaDbObject> roas, RpkiObjectModel.Projection projection,
+			Connection connection) throws SQLException {
+		if (roas.isEmpty()) {
+			return;
+		}
+		Set<Long> rpkiObjectIds = new HashSet<>();
+		for (RoaDbObject roa : roas) {
+			rpkiObjectIds.add(roa.getRpkiObjectId());
+		}
+		Map<Long, RpkiObject> rpkiObjects = RpkiObjectModel.getByIds(rpkiObjectIds, projection, connection);
+		Map<Long, Long> parentIds = RpkiObjectModel.getParentIds(rpkiObjectIds, connection);
+		Map<Long, List<Gbr>> gbrsByParentId = GbrModel.getByParentIds(new HashSet<>(parentIds.values()),
+				connection);
+		for (RoaDbObject roa : roas) {
+			roa.setRpkiObject(rpkiObjects.get(roa.getRpkiObjectId()));
+			Long parentId = parentIds.get(roa.getRpkiObjectId());
+			if (parentId == null) {
+				roa.setGbrs(GbrModel.getByRoa(roa, connection));
+				continue;
+			}
+			List<Gbr> gbrs = gbrsByParentId.get(parentId);
+			roa.setGbrs(gbrs != null ? new ArrayList<>(gbrs) : new ArrayList<>());
 		}
 	}
 
 	/**
-	 * Get all the {@link Roa}s related to a RPKI OBJECT ID, return empty list when
-	 * no files are found
+	 * Get the estimated count of all the {@link Roa}s, taken from the table
+	 * statistics
 	 * 
-	 * @param rpkiObjectId
 	 * @param connection
-	 * @return The list of {@link Roa}s related, or empty list when no data is found
+	 * @return The estimated count, or <code>null</code> if there are no statistics
 	 * @throws SQLException
 	 */
-	public static List<Roa> getByRpkiObjectId(Long rpkiObjectId, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(GET_BY_RPKI_OBJECT_ID);
+	private static Integer getAllCountEstimate(Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_ALL_COUNT_ESTIMATE);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setLong(1, rpkiObjectId);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			List<Roa> roas = new ArrayList<Roa>();
-			while (rs.next()) {
-				RoaDbObject talFile = new RoaDbObject(rs);
-				roas.add(talFile);
+			if (rs.next()) {
+				return rs.getInt(1);
 			}
-			return roas;
+			return null;
 		}
 	}
 
 	/**
-	 * Load all the related objects to the ROA
+	 * Get the count of all the {@link Roa}s, from the {@link CountCache} when
+	 * it's still valid (see {@link #loadAllCount(PagingParameters, Connection)})
 	 * 
-	 * @param roa
+	 * @param pagingParams
 	 * @param connection
+	 * @return The count of all {@link Roa}s
 	 * @throws SQLException
 	 */
-	private static void loadRelatedObjects(RoaDbObject roa, Connection connection) throws SQLException {
-		roa.setRpkiObject(RpkiObjectModel.getById(roa.getRpkiObjectId(), connection));
-		roa.setGbrs(GbrModel.getByRoa(roa, connection));
+	private static Integer getAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
+		return CountCache.get(getModelClass(), getQueryGroup().getQuery(GET_ALL_COUNT), pagingParams,
+				() -> loadAllCount(pagingParams, connection), () -> getAllCountEstimate(connection));
 	}
 
 	/**
@@ -290,11 +383,11 @@ public class RoaModel extends DatabaseModel {
 	 * @return The count of all {@link Roa}s, or 0 when no data is found
 	 * @throws SQLException
 	 */
-	private static Integer getAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
+	private static Integer loadAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL_COUNT);
 		query = Util.getQueryWithPaging(query, pagingParams, RoaDbObject.propertyToColumnMap);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			Util.setFilterParam(pagingParams, statement, 1);
+			Util.setFilterParam(pagingParams, RoaDbObject.propertyToColumnMap, statement, 1);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			if (rs.next()) {
 				return rs.getInt(1);
@@ -0,0 +1,399 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import mx.nic.lab.rpki.db.exception.InitializationException;
+import mx.nic.lab.rpki.db.pojo.RouteValidation;
+
+/**
+ * Cache of the {@link RouteValidation} results, keyed by the route (ASN,
+ * prefix and prefix length) and the full check flag.<br>
+ * <br>
+ * The entries are spread by its hash among independent segments, each one with
+ * its own lock, so the threads that validate distinct routes don't wait for
+ * each other. Each segment follows a W-TinyLFU policy: the new results enter a
+ * small LRU window, and when the window is full its eldest result is admitted
+ * at the main LRU only if it has been requested more often than the result it
+ * would evict from there (the frequencies are estimated with a count-min sketch
+ * shared by all the segments), so a burst of routes requested once doesn't
+ * evict the routes requested frequently.<br>
+ * <br>
+ * Every entry is tagged with the generation that was current when its
+ * validation started; the generation is incremented (see
+ * {@link #invalidate()}) each time the ROAs or the SLURM change, so the entries
+ * of previous generations are never returned. The results are copied when
+ * stored and when returned, so the callers can't modify the cached ones.
+ *
+ */
+public class RouteValidationCache {
+
+	/**
+	 * Default max number of results kept at the cache
+	 */
+	private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+	/**
+	 * Max number of segments of the cache
+	 */
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * Max number of results kept at the cache, 0 means that the cache is
+	 * disabled
+	 */
+	private static volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	private static volatile Segment[] segments = createSegments(DEFAULT_MAX_ENTRIES);
+
+	private static volatile FrequencySketch sketch = new FrequencySketch(DEFAULT_MAX_ENTRIES);
+
+	private static final AtomicLong generation = new AtomicLong();
+
+	private static final LongAdder hits = new LongAdder();
+	private static final LongAdder misses = new LongAdder();
+	private static final LongAdder evictions = new LongAdder();
+
+	private RouteValidationCache() {
+		// No instances
+	}
+
+	/**
+	 * Key of the cache: the route and the full check flag
+	 */
+	private static class Key {
+		private final long asn;
+		private final byte[] prefix;
+		private final int prefixLength;
+		private final boolean fullCheck;
+		private final int hash;
+
+		private Key(long asn, byte[] prefix, int prefixLength, boolean fullCheck) {
+			this.asn = asn;
+			this.prefix = prefix.clone();
+			this.prefixLength = prefixLength;
+			this.fullCheck = fullCheck;
+			int result = Long.hashCode(asn);
+			result = 31 * result + Arrays.hashCode(this.prefix);
+			result = 31 * result + prefixLength;
+			this.hash = 31 * result + (fullCheck ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && asn == other.asn && prefixLength == other.prefixLength
+					&& fullCheck == other.fullCheck && Arrays.equals(prefix, other.prefix);
+		}
+	}
+
+	/**
+	 * Cached result and the generation it belongs to
+	 */
+	private static class CachedValidation {
+		private final long generation;
+		private final RouteValidation validation;
+
+		private CachedValidation(long generation, RouteValidation validation) {
+			this.generation = generation;
+			this.validation = validation;
+		}
+	}
+
+	/**
+	 * A segment of the cache: an LRU window where the new results enter, and the
+	 * main LRU where the window results are admitted depending on its frequency
+	 */
+	private static class Segment {
+		private final int windowCapacity;
+		private final int mainCapacity;
+		private final LinkedHashMap<Key, CachedValidation> window = new LinkedHashMap<>(16, 0.75f, true);
+		private final LinkedHashMap<Key, CachedValidation> main = new LinkedHashMap<>(16, 0.75f, true);
+
+		private Segment(int capacity) {
+			// 1% of the segment, as W-TinyLFU does
+			this.windowCapacity = Math.max(1, capacity / 100);
+			this.mainCapacity = capacity - windowCapacity;
+		}
+
+		private synchronized CachedValidation get(Key key) {
+			CachedValidation cached = window.get(key);
+			return cached != null ? cached : main.get(key);
+		}
+
+		private synchronized void put(Key key, CachedValidation value, FrequencySketch frequencies) {
+			if (main.containsKey(key)) {
+				main.put(key, value);
+				return;
+			}
+			window.put(key, value);
+			if (window.size() <= windowCapacity) {
+				return;
+			}
+			Iterator<Entry<Key, CachedValidation>> windowIterator = window.entrySet().iterator();
+			Entry<Key, CachedValidation> candidate = windowIterator.next();
+			windowIterator.remove();
+			if (main.size() < mainCapacity) {
+				main.put(candidate.getKey(), candidate.getValue());
+				return;
+			}
+			// The candidate or the eldest of the main LRU, the less frequent is evicted
+			evictions.increment();
+			if (mainCapacity == 0) {
+				return;
+			}
+			Entry<Key, CachedValidation> victim = main.entrySet().iterator().next();
+			if (frequencies.frequency(candidate.getKey().hash) > frequencies.frequency(victim.getKey().hash)) {
+				main.remove(victim.getKey());
+				main.put(candidate.getKey(), candidate.getValue());
+			}
+		}
+
+		private synchronized void clear() {
+			window.clear();
+			main.clear();
+		}
+
+		private synchronized int size() {
+			return window.size() + main.size();
+		}
+	}
+
+	/**
+	 * Count-min sketch of the frequency of the keys requested: four rows of
+	 * counters up to 15, all of them are halved once the cache size has been
+	 * requested ten times, so the old frequencies fade. The counters are updated
+	 * without locks, a lost update only makes the estimate a bit lower.
+	 */
+	private static class FrequencySketch {
+		private static final int[] SEEDS = { 0x97CB3127, 0xB492B66F, 0x9AE16A3B, 0xCC9E2D51 };
+		private static final int MAX_COUNT = 15;
+
+		private final int[] counters;
+		private final int mask;
+		private final int resetSize;
+		private int additions;
+
+		private FrequencySketch(int capacity) {
+			int width = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+			this.counters = new int[SEEDS.length * width];
+			this.mask = width - 1;
+			this.resetSize = Math.max(10, 10 * capacity);
+		}
+
+		private int index(int hash, int row) {
+			int h = hash * SEEDS[row];
+			h ^= h >>> 17;
+			return row * (mask + 1) + (h & mask);
+		}
+
+		private void increment(int hash) {
+			for (int row = 0; row < SEEDS.length; row++) {
+				int index = index(hash, row);
+				if (counters[index] < MAX_COUNT) {
+					counters[index]++;
+				}
+			}
+			if (++additions >= resetSize) {
+				additions = 0;
+				for (int i = 0; i < counters.length; i++) {
+					counters[i] >>>= 1;
+				}
+			}
+		}
+
+		private int frequency(int hash) {
+			int result = MAX_COUNT;
+			for (int row = 0; row < SEEDS.length; row++) {
+				result = Math.min(result, counters[index(hash, row)]);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Read the required properties from the configuration
+	 *
+	 * @param config
+	 * @throws InitializationException
+	 */
+	public static void init(Properties config) throws InitializationException {
+		// Optional property
+		String size = config.getProperty("route_validation_cache_size");
+		int newMaxEntries = DEFAULT_MAX_ENTRIES;
+		if (size != null) {
+			try {
+				newMaxEntries = Integer.parseInt(size.trim());
+			} catch (NumberFormatException e) {
+				throw new InitializationException("Invalid route_validation_cache_size '" + size + "'", e);
+			}
+			if (newMaxEntries < 0) {
+				throw new InitializationException("The route_validation_cache_size can't be negative");
+			}
+		}
+		maxEntries = newMaxEntries;
+		segments = createSegments(newMaxEntries);
+		sketch = new FrequencySketch(newMaxEntries);
+		invalidate();
+	}
+
+	/**
+	 * Create the segments that hold up to <code>capacity</code> results among all
+	 * of them
+	 */
+	private static Segment[] createSegments(int capacity) {
+		int count = Math.max(1, Math.min(MAX_SEGMENTS, capacity));
+		Segment[] result = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			// The first ones get the remainder
+			result[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+		}
+		return result;
+	}
+
+	private static Segment getSegment(Segment[] currentSegments, Key key) {
+		int h = key.hash ^ (key.hash >>> 16);
+		return currentSegments[Math.floorMod(h, currentSegments.length)];
+	}
+
+	/**
+	 * @return the current generation, it MUST be read before starting a
+	 *         validation whose result will be sent to
+	 *         {@link #put(long, Long, byte[], Integer, boolean, RouteValidation)}
+	 */
+	public static long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Get a copy of the cached result of the route validation, return
+	 * <code>null</code> if it isn't cached (or if it belongs to a previous
+	 * generation)
+	 *
+	 * @param asn
+	 * @param prefix
+	 * @param prefixLength
+	 * @param fullCheck
+	 * @return The cached {@link RouteValidation} or <code>null</code>
+	 */
+	public static RouteValidation get(Long asn, byte[] prefix, Integer prefixLength, boolean fullCheck) {
+		if (maxEntries == 0 || asn == null || prefix == null || prefixLength == null) {
+			return null;
+		}
+		Key key = new Key(asn, prefix, prefixLength, fullCheck);
+		sketch.increment(key.hash);
+		CachedValidation cached = getSegment(segments, key).get(key);
+		if (cached != null && cached.generation == generation.get()) {
+			hits.increment();
+			return copy(cached.validation);
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Store a copy of the result of a route validation that started at the
+	 * <code>validationGeneration</code>, it's discarded if the generation already
+	 * changed
+	 *
+	 * @param validationGeneration
+	 * @param asn
+	 * @param prefix
+	 * @param prefixLength
+	 * @param fullCheck
+	 * @param validation
+	 */
+	public static void put(long validationGeneration, Long asn, byte[] prefix, Integer prefixLength,
+			boolean fullCheck, RouteValidation validation) {
+		if (maxEntries == 0 || asn == null || prefix == null || prefixLength == null || validation == null
+				|| validationGeneration != generation.get()) {
+			return;
+		}
+		Key key = new Key(asn, prefix, prefixLength, fullCheck);
+		getSegment(segments, key).put(key, new CachedValidation(validationGeneration, copy(validation)), sketch);
+	}
+
+	/**
+	 * Copy the result of the validation, the matched ROA or SLURM prefix is the
+	 * same one (the validations don't modify it)
+	 */
+	private static RouteValidation copy(RouteValidation validation) {
+		RouteValidation result = new RouteValidation();
+		result.setValidityState(validation.getValidityState());
+		result.setPrefixState(validation.getPrefixState());
+		result.setAsState(validation.getAsState());
+		result.setRoaMatch(validation.getRoaMatch());
+		result.setSlurmMatch(validation.getSlurmMatch());
+		result.setFullCheck(validation.getFullCheck());
+		return result;
+	}
+
+	/**
+	 * Discard all the cached results, MUST be called whenever the ROAs or the
+	 * SLURM change
+	 */
+	public static void invalidate() {
+		generation.incrementAndGet();
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * @return the number of results found at the cache
+	 */
+	public static long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of results that weren't found at the cache
+	 */
+	public static long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return the number of results removed from the cache to keep its max size
+	 */
+	public static long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the ratio of the lookups found at the cache (0 if there are no
+	 *         lookups yet)
+	 */
+	public static double getHitRatio() {
+		long currentHits = hits.sum();
+		long total = currentHits + misses.sum();
+		return total == 0 ? 0d : (double) currentHits / total;
+	}
+
+	/**
+	 * @return the number of results currently cached
+	 */
+	public static int size() {
+		int result = 0;
+		for (Segment segment : segments) {
+			result += segment.size();
+		}
+		return result;
+	}
+}
@@ -1,25 +1,245 @@
 package mx.nic.lab.rpki.prov.model;
 
-import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import mx.nic.lab.rpki.db.exception.InitializationException;
 import mx.nic.lab.rpki.db.pojo.Roa;
 import mx.nic.lab.rpki.db.pojo.RouteValidation;
 import mx.nic.lab.rpki.db.pojo.RouteValidation.AsState;
 import mx.nic.lab.rpki.db.pojo.RouteValidation.PrefixState;
 import mx.nic.lab.rpki.db.pojo.RouteValidation.ValidityState;
 import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
+import mx.nic.lab.rpki.prov.object.RoaCandidates;
+import mx.nic.lab.rpki.prov.object.RoaDbObject;
+import mx.nic.lab.rpki.prov.object.RouteQuery;
+import mx.nic.lab.rpki.prov.trie.RoaTrie;
+import mx.nic.lab.rpki.prov.trie.SlurmPrefixTrie;
 
 /**
  * Model to validate a route fetching data from the database (ROAs) and applying
- * some logic independent from the database. This class uses {@link RoaModel}
- * and {@link SlurmPrefixModel}.
+ * some logic independent from the database. This class uses
+ * {@link VrpSnapshotModel}, {@link RoaModel} and {@link SlurmPrefixModel}.<br>
+ * <br>
+ * The ROAs are always read from the current VRP snapshot (see
+ * {@link VrpSnapshotModel}), a validation gets the snapshot once so that all of
+ * its lookups see the same set of ROAs.
  *
  */
 public class RouteValidationModel {
 
+	private static final Logger logger = Logger.getLogger(RouteValidationModel.class.getName());
+
+	/**
+	 * Engines that can be used to lookup the ROAs
+	 */
+	public enum LookupEngine {
+		/**
+		 * The ROAs are searched using queries to the current VRP snapshot
+		 */
+		DATABASE,
+		/**
+		 * The ROAs are searched at an in-memory {@link RoaTrie} built from the
+		 * current VRP snapshot
+		 */
+		TRIE
+	}
+
+	/**
+	 * Engine used to lookup the ROAs
+	 */
+	private static LookupEngine lookupEngine = LookupEngine.DATABASE;
+
+	/**
+	 * In-memory index of the ROAs, used only when the {@link LookupEngine#TRIE} is
+	 * configured
+	 */
+	private static volatile RoaTrie roaTrie = null;
+
+	/**
+	 * In-memory index of the ROAs of a VRP snapshot, used by the batch
+	 * validations when the {@link LookupEngine#DATABASE} is configured; reused
+	 * until the current snapshot changes
+	 */
+	private static volatile SnapshotTrie batchTrie = null;
+
+	/**
+	 * A {@link RoaTrie} and the VRP snapshot it was built from
+	 */
+	private static class SnapshotTrie {
+		private final long snapshotId;
+		private final RoaTrie trie;
+
+		private SnapshotTrie(long snapshotId, RoaTrie trie) {
+			this.snapshotId = snapshotId;
+			this.trie = trie;
+		}
+	}
+
+	/**
+	 * In-memory index of the SLURM prefixes (assertions and filters), built on
+	 * demand and discarded whenever the SLURM changes
+	 */
+	private static volatile SlurmPrefixTrie slurmTrie = null;
+
+	/**
+	 * Incremented each time the SLURM changes, so that an index built with stale
+	 * data isn't kept
+	 */
+	private static final AtomicLong slurmGeneration = new AtomicLong();
+
+	/**
+	 * Lock used to build the SLURM index
+	 */
+	private static final Object slurmLock = new Object();
+
+	/**
+	 * Read the required properties from the configuration
+	 * 
+	 * @param config
+	 * @throws InitializationException
+	 */
+	public static void init(Properties config) throws InitializationException {
+		// Optional property, the database is used by default
+		String engine = config.getProperty("route_validation_engine", LookupEngine.DATABASE.toString()).trim();
+		try {
+			lookupEngine = LookupEngine.valueOf(engine.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new InitializationException("Unknown route_validation_engine '" + engine + "'", e);
+		}
+		roaTrie = null;
+		batchTrie = null;
+		invalidateSlurmIndex();
+	}
+
+	/**
+	 * Build and publish a new VRP snapshot with the current ROAs (see
+	 * {@link VrpSnapshotModel#createSnapshot(Connection)}), then rebuild the
+	 * in-memory index of the ROAs and discard the cached validation results;
+	 * SHOULD be called whenever the ROAs change
+	 * 
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public static void publishVrpSnapshot(Connection connection) throws SQLException {
+		VrpSnapshotModel.createSnapshot(connection);
+		RouteValidationCache.invalidate();
+		reloadRoaIndex(connection);
+	}
+
+	/**
+	 * Rebuild the in-memory index of the ROAs from the current VRP snapshot (if
+	 * the {@link LookupEngine#TRIE} is configured)
+	 * 
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public static void reloadRoaIndex(Connection connection) throws SQLException {
+		if (lookupEngine != LookupEngine.TRIE) {
+			return;
+		}
+		long snapshotId = VrpSnapshotModel.getCurrentId(connection);
+		RoaTrie newTrie = RoaTrie.build(VrpSnapshotModel.getAll(snapshotId, connection));
+		roaTrie = newTrie;
+		RouteValidationCache.invalidate();
+		logger.log(Level.INFO, "ROA index rebuilt with " + newTrie.size() + " ROAs");
+	}
+
+	/**
+	 * Get the in-memory index of the ROAs, build it if it hasn't been built yet
+	 * 
+	 * @param connection
+	 * @return
+	 * @throws SQLException
+	 */
+	private static RoaTrie getRoaTrie(Connection connection) throws SQLException {
+		RoaTrie current = roaTrie;
+		if (current != null) {
+			return current;
+		}
+		synchronized (RouteValidationModel.class) {
+			if (roaTrie == null) {
+				reloadRoaIndex(connection);
+			}
+			return roaTrie;
+		}
+	}
+
+	/**
+	 * Get the in-memory index of the ROAs used by the batch validations: the index
+	 * of the {@link LookupEngine#TRIE}, or else an index of the current VRP
+	 * snapshot that is built once per snapshot
+	 * 
+	 * @param connection
+	 * @return
+	 * @throws SQLException
+	 */
+	private static RoaTrie getBatchRoaTrie(Connection connection) throws SQLException {
+		if (lookupEngine == LookupEngine.TRIE) {
+			return getRoaTrie(connection);
+		}
+		long snapshotId = VrpSnapshotModel.getCurrentId(connection);
+		SnapshotTrie current = batchTrie;
+		if (current != null && current.snapshotId == snapshotId) {
+			return current.trie;
+		}
+		synchronized (RouteValidationModel.class) {
+			current = batchTrie;
+			if (current == null || current.snapshotId != snapshotId) {
+				current = new SnapshotTrie(snapshotId,
+						RoaTrie.build(VrpSnapshotModel.getAll(snapshotId, connection)));
+				batchTrie = current;
+			}
+			return current.trie;
+		}
+	}
+
+	/**
+	 * Discard the in-memory index of the SLURM prefixes, it will be rebuilt at the
+	 * next validation; MUST be called whenever the SLURM prefixes (or the SLURM
+	 * checksum) change. The cached validation results are discarded too.
+	 */
+	public static void invalidateSlurmIndex() {
+		SlurmModel.markChanged();
+		slurmGeneration.incrementAndGet();
+		slurmTrie = null;
+		RouteValidationCache.invalidate();
+	}
+
+	/**
+	 * Get the in-memory index of the SLURM prefixes, build it if it hasn't been
+	 * built yet (or if it was invalidated)
+	 * 
+	 * @param connection
+	 * @return
+	 * @throws SQLException
+	 */
+	private static SlurmPrefixTrie getSlurmTrie(Connection connection) throws SQLException {
+		SlurmPrefixTrie current = slurmTrie;
+		if (current != null) {
+			return current;
+		}
+		synchronized (slurmLock) {
+			current = slurmTrie;
+			if (current != null) {
+				return current;
+			}
+			long generation = slurmGeneration.get();
+			SlurmPrefixTrie newTrie = SlurmPrefixTrie.build(SlurmPrefixModel.getAll(null, connection).getResults());
+			// Keep it only if the SLURM didn't change while it was built
+			if (generation == slurmGeneration.get()) {
+				slurmTrie = newTrie;
+				logger.log(Level.INFO, "SLURM prefixes index rebuilt with " + newTrie.size() + " prefixes");
+			}
+			return newTrie;
+		}
+	}
+
 	/**
 	 * Validates the route with the received parameters and return the validation
 	 * state following the RFC 6483 section-2 indications and the configured SLURM.
@@ -36,12 +256,13 @@ public class RouteValidationModel {
 	public static RouteValidation validate(Long asn, byte[] prefix, Integer prefixLength, Integer familyType,
 			boolean fullCheck, Connection connection) throws SQLException {
 		// If there's an assertion then stop the search and return the assertion result
-		RouteValidation slurmValidation = findSlurmAssertion(asn, prefix, prefixLength, fullCheck, connection);
+		SlurmPrefixTrie currentSlurmTrie = getSlurmTrie(connection);
+		RouteValidation slurmValidation = findSlurmAssertion(asn, prefix, prefixLength, fullCheck, currentSlurmTrie);
 		if (slurmValidation != null) {
 			return slurmValidation;
 		}
 		// No assertion, check if there's a filter
-		slurmValidation = findSlurmFilter(asn, prefix, prefixLength, fullCheck, connection);
+		slurmValidation = findSlurmFilter(asn, prefix, prefixLength, fullCheck, currentSlurmTrie);
 		if (slurmValidation != null) {
 			return slurmValidation;
 		}
@@ -51,21 +272,57 @@ public class RouteValidationModel {
 	}
 
 	/**
-	 * Look for a SLURM assertion that matches the prefix, the SLURM assertion is
-	 * treated just as a valid ROA
+	 * Validates all the <code>routes</code> using the same rules of
+	 * {@link #validate(Long, byte[], Integer, Integer, boolean, Connection)}, each
+	 * result is sent to the <code>consumer</code> as soon as it's calculated.<br>
+	 * <br>
+	 * The ROAs of the current VRP snapshot and the SLURM prefixes are read only
+	 * once per snapshot into an in-memory index (the index of the
+	 * {@link LookupEngine#TRIE} if it's configured) that is reused by the next
+	 * batches, so there's no query per route. The <code>routes</code> are read
+	 * one at a time as they're validated, in its own order, so they can be
+	 * streamed. The matched {@link Roa}s only have its basic data (id, ASN and
+	 * prefix).
+	 * 
+	 * @param routes
+	 * @param fullCheck
+	 * @param consumer
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public static void validateAll(Iterable<RouteQuery> routes, boolean fullCheck,
+			BiConsumer<RouteQuery, RouteValidation> consumer, Connection connection) throws SQLException {
+		RoaTrie trie = getBatchRoaTrie(connection);
+		SlurmPrefixTrie currentSlurmTrie = getSlurmTrie(connection);
+		for (RouteQuery route : routes) {
+			RouteValidation result = findSlurmAssertion(route.getAsn(), route.getPrefix(), route.getPrefixLength(),
+					fullCheck, currentSlurmTrie);
+			if (result == null) {
+				result = findSlurmFilter(route.getAsn(), route.getPrefix(), route.getPrefixLength(), fullCheck,
+						currentSlurmTrie);
+			}
+			if (result == null) {
+				result = findRoaValidation(route.getAsn(), route.getPrefix(), route.getPrefixLength(), fullCheck, trie,
+						null);
+			}
+			consumer.accept(route, result);
+		}
+	}
+
+	/**
+	 * Look for a SLURM assertion that matches the prefix, using the in-memory
+	 * <code>slurmTrie</code> to lookup the assertions
 	 * 
 	 * @param asn
 	 * @param prefix
 	 * @param prefixLength
 	 * @param fullCheck
-	 * @param connection
+	 * @param slurmTrie
 	 * @return
-	 * @throws SQLException
 	 */
 	private static RouteValidation findSlurmAssertion(Long asn, byte[] prefix, Integer prefixLength, boolean fullCheck,
-			Connection connection) throws SQLException {
-		// Go for the exact SLURM prefix assertion match
-		SlurmPrefix matchedSlurmPrefix = SlurmPrefixModel.findExactMatch(prefix, prefixLength, connection);
+			SlurmPrefixTrie slurmTrie) {
+		SlurmPrefix matchedSlurmPrefix = slurmTrie.findExactMatch(asn, prefix, prefixLength);
 		if (matchedSlurmPrefix != null) {
 			boolean asnMatch = asn.equals(matchedSlurmPrefix.getAsn());
 			ValidityState validityState = asnMatch ? ValidityState.VALID : ValidityState.INVALID;
@@ -73,51 +330,36 @@ public class RouteValidationModel {
 			return createSlurmRouteValidation(validityState, PrefixState.MATCH_ROA, asState, matchedSlurmPrefix,
 					fullCheck);
 		}
-		// Check if there's a SLURM prefix assertion covering the received prefix (a.k.a
-		// the
-		// received prefix is more specific than SLURM prefix)
-		List<SlurmPrefix> candidatePrefixes = SlurmPrefixModel.findCoveringAggregate(prefix, prefixLength, connection);
-		for (SlurmPrefix slurmPrefix : candidatePrefixes) {
-			// The prefix is effectively a son of the SLURM prefix
-			if (!isPrefixInRange(prefix, slurmPrefix.getStartPrefix(), slurmPrefix.getPrefixLength())) {
-				continue;
-			}
-			AsState asState = asn.equals(slurmPrefix.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
-			return createSlurmRouteValidation(ValidityState.INVALID, PrefixState.MORE_SPECIFIC, asState, slurmPrefix,
-					fullCheck);
+		matchedSlurmPrefix = slurmTrie.findCoveringAggregate(prefix, prefixLength);
+		if (matchedSlurmPrefix != null) {
+			AsState asState = asn.equals(matchedSlurmPrefix.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
+			return createSlurmRouteValidation(ValidityState.INVALID, PrefixState.MORE_SPECIFIC, asState,
+					matchedSlurmPrefix, fullCheck);
 		}
-		// Check if there's a SLURM prefix more specific (a.k.a the received prefix is a
-		// covering aggregate of the SLURM prefix)
-		candidatePrefixes = SlurmPrefixModel.findMoreSpecific(prefix, prefixLength, connection);
-		for (SlurmPrefix slurmPrefix : candidatePrefixes) {
-			// The SLURM prefix is effectively a son of the prefix
-			if (!isPrefixInRange(slurmPrefix.getStartPrefix(), prefix, prefixLength)) {
-				continue;
-			}
-			AsState asState = asn.equals(slurmPrefix.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
+		matchedSlurmPrefix = slurmTrie.findMoreSpecific(prefix, prefixLength);
+		if (matchedSlurmPrefix != null) {
+			AsState asState = asn.equals(matchedSlurmPrefix.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
 			return createSlurmRouteValidation(ValidityState.UNKNOWN, PrefixState.COVERING_AGGREGATE, asState,
-					slurmPrefix, fullCheck);
+					matchedSlurmPrefix, fullCheck);
 		}
-		// There's no "UNKNOWN" case for SLURM assertions, return null to search for
-		// real ROAs
 		return null;
 	}
 
 	/**
-	 * Check if there's a SLURM filter that "filters" the received prefix
+	 * Check if there's a SLURM filter that "filters" the received prefix, using
+	 * the in-memory <code>slurmTrie</code> to lookup the filters
 	 * 
 	 * @param asn
 	 * @param prefix
 	 * @param prefixLength
 	 * @param fullCheck
-	 * @param connection
+	 * @param slurmTrie
 	 * @return
-	 * @throws SQLException
 	 */
 	private static RouteValidation findSlurmFilter(Long asn, byte[] prefix, Integer prefixLength, boolean fullCheck,
-			Connection connection) throws SQLException {
+			SlurmPrefixTrie slurmTrie) {
 		// Search if there's any filter that matches the request
-		SlurmPrefix matchedFilter = SlurmPrefixModel.findFilterMatch(asn, prefix, prefixLength, connection);
+		SlurmPrefix matchedFilter = slurmTrie.findFilterMatch(asn, prefix, prefixLength);
 		if (matchedFilter != null) {
 			return createSlurmRouteValidation(ValidityState.UNKNOWN, PrefixState.NON_INTERSECTING, AsState.NON_MATCHING,
 					matchedFilter, fullCheck);
@@ -138,77 +380,116 @@ public class RouteValidationModel {
 	 */
 	private static RouteValidation findRoaValidation(Long asn, byte[] prefix, Integer prefixLength, Integer familyType,
 			boolean fullCheck, Connection connection) throws SQLException {
-		// Go for the exact ROA match
-		Roa matchedRoa = RoaModel.findExactMatch(prefix, prefixLength, connection);
+		if (lookupEngine == LookupEngine.TRIE) {
+			return findRoaValidation(asn, prefix, prefixLength, fullCheck, getRoaTrie(connection), connection);
+		}
+		// Every lookup is done at the same snapshot
+		long snapshotId = VrpSnapshotModel.getCurrentId(connection);
+		if (!fullCheck) {
+			// Only the exact ROA match is needed
+			RoaDbObject matchedRoa = VrpSnapshotModel.findExactMatch(snapshotId, asn, prefix, prefixLength, connection);
+			if (matchedRoa == null) {
+				return createRoaRouteValidation(null, null, null, null, fullCheck);
+			}
+			boolean asnMatch = asn.equals(matchedRoa.getAsn());
+			ValidityState validityState = asnMatch ? ValidityState.VALID : ValidityState.INVALID;
+			AsState asState = asnMatch ? AsState.MATCHING : AsState.NON_MATCHING;
+			RoaModel.loadRelatedObjects(matchedRoa, RpkiObjectModel.Projection.LOCATIONS, connection);
+			return createRoaRouteValidation(validityState, PrefixState.MATCH_ROA, asState, matchedRoa, true);
+		}
+		// Get all the candidates at once, then check them in the same order: exact
+		// match, covering aggregate (the received prefix is more specific than the
+		// ROA), more specific (the received prefix is a covering aggregate of the
+		// ROA) and finally no match at all
+		RoaCandidates candidates = VrpSnapshotModel.findValidationCandidates(snapshotId, asn, prefix, prefixLength,
+				connection);
+		RoaDbObject matchedRoa = candidates.getExactMatch();
 		if (matchedRoa != null) {
 			boolean asnMatch = asn.equals(matchedRoa.getAsn());
 			ValidityState validityState = asnMatch ? ValidityState.VALID : ValidityState.INVALID;
 			AsState asState = asnMatch ? AsState.MATCHING : AsState.NON_MATCHING;
+			RoaModel.loadRelatedObjects(matchedRoa, RpkiObjectModel.Projection.LOCATIONS, connection);
 			return createRoaRouteValidation(validityState, PrefixState.MATCH_ROA, asState, matchedRoa, true);
 		}
+		matchedRoa = candidates.getCoveringAggregate();
+		if (matchedRoa != null) {
+			AsState asState = asn.equals(matchedRoa.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
+			RoaModel.loadRelatedObjects(matchedRoa, RpkiObjectModel.Projection.LOCATIONS, connection);
+			return createRoaRouteValidation(ValidityState.INVALID, PrefixState.MORE_SPECIFIC, asState, matchedRoa,
+					fullCheck);
+		}
+		matchedRoa = candidates.getMoreSpecific();
+		if (matchedRoa != null) {
+			AsState asState = asn.equals(matchedRoa.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
+			RoaModel.loadRelatedObjects(matchedRoa, RpkiObjectModel.Projection.LOCATIONS, connection);
+			return createRoaRouteValidation(ValidityState.UNKNOWN, PrefixState.COVERING_AGGREGATE, asState,
+					matchedRoa, fullCheck);
+		}
+		AsState asState = candidates.isAsnExists() ? AsState.MATCHING : AsState.NON_MATCHING;
+		return createRoaRouteValidation(ValidityState.UNKNOWN, PrefixState.NON_INTERSECTING, asState, null, fullCheck);
+	}
+
+	/**
+	 * Find if there's a ROA that matches the received prefix, using the in-memory
+	 * <code>trie</code> to lookup the ROAs. The <code>connection</code> is used
+	 * only to load the data of the matched ROA, if it's <code>null</code> then the
+	 * matched ROA will only have its basic data.
+	 * 
+	 * @param asn
+	 * @param prefix
+	 * @param prefixLength
+	 * @param fullCheck
+	 * @param trie
+	 * @param connection
+	 * @return
+	 * @throws SQLException
+	 */
+	private static RouteValidation findRoaValidation(Long asn, byte[] prefix, Integer prefixLength,
+			boolean fullCheck, RoaTrie trie, Connection connection) throws SQLException {
+		Roa matchedRoa = trie.findExactMatch(asn, prefix, prefixLength);
+		if (matchedRoa != null) {
+			boolean asnMatch = asn.equals(matchedRoa.getAsn());
+			ValidityState validityState = asnMatch ? ValidityState.VALID : ValidityState.INVALID;
+			AsState asState = asnMatch ? AsState.MATCHING : AsState.NON_MATCHING;
+			return createRoaRouteValidation(validityState, PrefixState.MATCH_ROA, asState,
+					loadRoa(matchedRoa, connection), true);
+		}
 		if (!fullCheck) {
 			return createRoaRouteValidation(null, null, null, null, fullCheck);
 		}
-		// Check if there's a ROA covering the received prefix (a.k.a the received
-		// prefix is more specific than ROA)
-		List<Roa> candidateRoas = RoaModel.findCoveringAggregate(prefix, prefixLength, familyType, connection);
-		for (Roa roa : candidateRoas) {
-			// The prefix is effectively a son of the ROA
-			if (!isPrefixInRange(prefix, roa.getStartPrefix(), roa.getPrefixLength())) {
-				continue;
-			}
-			AsState asState = asn.equals(roa.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
-			roa = RoaModel.getById(roa.getId(), connection);
-			return createRoaRouteValidation(ValidityState.INVALID, PrefixState.MORE_SPECIFIC, asState, roa, fullCheck);
+		matchedRoa = trie.findCoveringAggregate(prefix, prefixLength);
+		if (matchedRoa != null) {
+			AsState asState = asn.equals(matchedRoa.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
+			return createRoaRouteValidation(ValidityState.INVALID, PrefixState.MORE_SPECIFIC, asState,
+					loadRoa(matchedRoa, connection), fullCheck);
 		}
-		// Check if there's a ROA more specific (a.k.a the received prefix is a
-		// covering aggregate of the ROA)
-		candidateRoas = RoaModel.findMoreSpecific(prefix, prefixLength, familyType, connection);
-		for (Roa roa : candidateRoas) {
-			// The ROA is effectively a son of the prefix
-			if (!isPrefixInRange(roa.getStartPrefix(), prefix, prefixLength)) {
-				continue;
-			}
-			AsState asState = asn.equals(roa.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
-			roa = RoaModel.getById(roa.getId(), connection);
-			return createRoaRouteValidation(ValidityState.UNKNOWN, PrefixState.COVERING_AGGREGATE, asState, roa,
-					fullCheck);
+		matchedRoa = trie.findMoreSpecific(prefix, prefixLength);
+		if (matchedRoa != null) {
+			AsState asState = asn.equals(matchedRoa.getAsn()) ? AsState.MATCHING : AsState.NON_MATCHING;
+			return createRoaRouteValidation(ValidityState.UNKNOWN, PrefixState.COVERING_AGGREGATE, asState,
+					loadRoa(matchedRoa, connection), fullCheck);
 		}
-		// No match at all, check if at least oen ROA exists with the ASN
-		boolean asnMatch = RoaModel.existAsn(asn, connection);
-		AsState asState = asnMatch ? AsState.MATCHING : AsState.NON_MATCHING;
+		AsState asState = trie.existAsn(asn) ? AsState.MATCHING : AsState.NON_MATCHING;
 		return createRoaRouteValidation(ValidityState.UNKNOWN, PrefixState.NON_INTERSECTING, asState, null, fullCheck);
 	}
 
 	/**
-	 * Check if the <code>sonPrefix</code> is the same range that the
-	 * <code>fatherPrefix</code>, using the prefix length of the father
-	 * (<code>fatherLength</code>).
+	 * Load all the data of the <code>roa</code>, if there's no
+	 * <code>connection</code> the same <code>roa</code> is returned. The ROA is
+	 * taken from a VRP snapshot, so it may have been deleted since then; in that
+	 * case the same <code>roa</code> is returned too.
 	 * 
-	 * @param sonPrefix
-	 * @param fatherPrefix
-	 * @param fatherLength
+	 * @param roa
+	 * @param connection
 	 * @return
+	 * @throws SQLException
 	 */
-	private static boolean isPrefixInRange(byte[] sonPrefix, byte[] fatherPrefix, Integer fatherLength) {
-		// Both prefix are of the same IP type
-		if (sonPrefix.length != fatherPrefix.length) {
-			return false;
-		}
-		int bytesBase = fatherLength / 8;
-		int bitsBase = fatherLength % 8;
-		byte[] prefixLengthMask = new byte[fatherPrefix.length];
-		int currByte = 0;
-		for (; currByte < bytesBase; currByte++) {
-			prefixLengthMask[currByte] |= 255;
-		}
-		if (currByte < prefixLengthMask.length) {
-			prefixLengthMask[currByte] = (byte) (255 << (8 - bitsBase));
+	private static Roa loadRoa(Roa roa, Connection connection) throws SQLException {
+		if (connection == null) {
+			return roa;
 		}
-		BigInteger sonIp = new BigInteger(sonPrefix);
-		BigInteger fatherIp = new BigInteger(fatherPrefix);
-		BigInteger mask = new BigInteger(prefixLengthMask);
-		return sonIp.and(mask).equals(fatherIp);
+		Roa loaded = RoaModel.getById(roa.getId(), RpkiObjectModel.Projection.LOCATIONS, connection);
+		return loaded != null ? loaded : roa;
 	}
 
 	/**
@@ -1,20 +1,27 @@
 package mx.nic.lab.rpki.prov.model;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.logging.Logger;
 
+import mx.nic.lab.rpki.db.exception.InitializationException;
 import mx.nic.lab.rpki.db.pojo.EncodedRpkiObject;
 import mx.nic.lab.rpki.db.pojo.Gbr;
 import mx.nic.lab.rpki.db.pojo.PagingParameters;
@@ -22,6 +29,7 @@ import mx.nic.lab.rpki.db.pojo.Roa;
 import mx.nic.lab.rpki.db.pojo.RpkiObject;
 import mx.nic.lab.rpki.db.pojo.RpkiObject.Type;
 import mx.nic.lab.rpki.prov.database.QueryGroup;
+import mx.nic.lab.rpki.prov.object.DatabaseObject;
 import mx.nic.lab.rpki.prov.object.EncodedRpkiObjectDbObject;
 import mx.nic.lab.rpki.prov.object.RpkiObjectDbObject;
 import mx.nic.lab.rpki.db.pojo.RpkiRepository;
@@ -45,16 +53,84 @@ public class RpkiObjectModel extends DatabaseModel {
 	// Queries IDs used by this model
 	private static final String GET_BY = "getBy";
 	private static final String GET_LOCATIONS = "getLocations";
+	private static final String GET_LOCATIONS_BY_IDS = "getLocationsByIds";
 	private static final String GET_ENCODED_BY_OBJECT_ID = "getEncodedByRpkiObjectId";
 	private static final String GET_RPKI_REPO_REL = "getRpkiRepositoryRelation";
 	private static final String CREATE = "create";
 	private static final String DELETE_UNREACHABLE = "deleteUnreachable";
+	private static final String GET_UNREACHABLE_IDS = "getUnreachableIds";
 	private static final String CREATE_ENCODED = "createEncodedRpkiObject";
 	private static final String CREATE_LOCATION = "createLocation";
 	private static final String CREATE_RPKI_REPO_REL = "createRpkiRepositoryRelation";
-	private static final String DELETE_BY_RPKI_REPOSITORY_ID = "deleteByRpkiRepositoryId";
-	private static final String GET_ID_BY_SHA256 = "getIdBySha256";
+	private static final String DELETE_BY_IDS = "deleteByIds";
+	private static final String GET_IDS_BY_RPKI_REPOSITORY_ID = "getIdsByRpkiRepositoryId";
 	private static final String UPDATE_LAST_REACH = "updateReached";
+	private static final String GET_PARENT_ID = "getParentId";
+	private static final String GET_PARENT_IDS = "getParentIds";
+	private static final String UPDATE_PARENT_IDS = "updateParentIds";
+	private static final String UPDATE_CHILD_COUNTS = "updateChildCounts";
+	private static final String UPDATE_CHILD_COUNTS_BY_IDS = "updateChildCountsByIds";
+	private static final String GET_WITHOUT_REACH_GENERATION = "getWithoutReachGeneration";
+	private static final String UPDATE_REACH_GENERATION = "updateReachGeneration";
+
+	/**
+	 * Number of {@link RpkiObject}s updated per statement (and per transaction)
+	 * at {@link #updateReachedObjects(Set, Connection)}
+	 */
+	private static final int REACH_UPDATE_CHUNK_SIZE = 10000;
+
+	/**
+	 * Related objects loaded along with a {@link RpkiObject}
+	 */
+	public enum Projection {
+		/**
+		 * Only the data of the object, without related objects
+		 */
+		SUMMARY,
+		/**
+		 * The locations of the object, without its encoded content and repositories
+		 */
+		LOCATIONS,
+		/**
+		 * The locations, encoded content and repositories of the object
+		 */
+		FULL
+	}
+
+	/**
+	 * Default number of {@link RpkiObject}s created per transaction at
+	 * {@link #bulkCreate(Set, Connection)}
+	 */
+	private static final int DEFAULT_BULK_CHUNK_SIZE = 1000;
+
+	/**
+	 * Number of {@link RpkiObject}s created per transaction at
+	 * {@link #bulkCreate(Set, Connection)}
+	 */
+	private static int bulkChunkSize = DEFAULT_BULK_CHUNK_SIZE;
+
+	/**
+	 * Read the required properties from the configuration
+	 * 
+	 * @param config
+	 * @throws InitializationException
+	 */
+	public static void init(Properties config) throws InitializationException {
+		// Optional property
+		String chunkSize = config.getProperty("bulk_create_chunk_size");
+		if (chunkSize == null) {
+			bulkChunkSize = DEFAULT_BULK_CHUNK_SIZE;
+			return;
+		}
+		try {
+			bulkChunkSize = Integer.parseInt(chunkSize.trim());
+		} catch (NumberFormatException e) {
+			throw new InitializationException("Invalid bulk_create_chunk_size '" + chunkSize + "'", e);
+		}
+		if (bulkChunkSize <= 0) {
+			throw new InitializationException("The bulk_create_chunk_size must be greater than 0");
+		}
+	}
 
 	/**
 	 * Loads the queries corresponding to this model, based on the QUERY_GROUP
@@ -89,6 +165,20 @@ public class RpkiObjectModel extends DatabaseModel {
 	 * @throws SQLException
 	 */
 	public static RpkiObject getById(Long id, Connection connection) throws SQLException {
+		return getById(id, Projection.FULL, connection);
+	}
+
+	/**
+	 * Get a {@link RpkiObject} by its ID loading only the related objects of the
+	 * <code>projection</code>, return null if no data is found
+	 * 
+	 * @param id
+	 * @param projection
+	 * @param connection
+	 * @return The {@link RpkiObject} found
+	 * @throws SQLException
+	 */
+	public static RpkiObject getById(Long id, Projection projection, Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_BY);
 		StringBuilder parameters = new StringBuilder();
 		parameters.append(" and ").append(RpkiObjectDbObject.ID_COLUMN).append(" = ? ");
@@ -103,13 +193,58 @@ public class RpkiObjectModel extends DatabaseModel {
 			RpkiObject rpkiObject = null;
 			do {
 				rpkiObject = new RpkiObjectDbObject(rs);
-				loadRelatedObjects(rpkiObject, connection);
+				loadRelatedObjects(rpkiObject, projection, connection);
 			} while (rs.next());
 
 			return rpkiObject;
 		}
 	}
 
+	/**
+	 * Get each of the {@link RpkiObject}s IDs loading only the related objects of
+	 * the <code>projection</code>, the <code>rpkiObjectIds</code> are queried
+	 * using 'in' lists; the locations are loaded for all the objects at once too
+	 * 
+	 * @param rpkiObjectIds
+	 * @param projection
+	 * @param connection
+	 * @return Map of the {@link RpkiObject}s found indexed by ID
+	 * @throws SQLException
+	 */
+	public static Map<Long, RpkiObject> getByIds(Collection<Long> rpkiObjectIds, Projection projection,
+			Connection connection) throws SQLException {
+		Map<Long, RpkiObject> result = new HashMap<>();
+		for (List<Long> ids : Util.partition(rpkiObjectIds)) {
+			String query = getQueryGroup().getQuery(GET_BY);
+			query = query.replace("[and]", Util.getInClause(RpkiObjectDbObject.ID_COLUMN, ids.size()));
+			query = Util.getQueryWithPaging(query, null, null);
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				int index = 1;
+				for (Long id : ids) {
+					statement.setLong(index++, id);
+				}
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					RpkiObjectDbObject rpkiObject = new RpkiObjectDbObject(rs);
+					result.put(rpkiObject.getId(), rpkiObject);
+				}
+			}
+		}
+		if (projection == Projection.SUMMARY || result.isEmpty()) {
+			return result;
+		}
+		Map<Long, SortedSet<String>> locations = getLocationsByIds(result.keySet(), connection);
+		for (RpkiObject rpkiObject : result.values()) {
+			SortedSet<String> objectLocations = locations.get(rpkiObject.getId());
+			rpkiObject.setLocations(objectLocations != null ? objectLocations : new TreeSet<>());
+			if (projection == Projection.FULL) {
+				rpkiObject.setEncodedRpkiObject(getEncodedByRpkiObjectId(rpkiObject.getId(), connection));
+				rpkiObject.setRpkiRepositories(getRpkiRepositories(rpkiObject.getId(), connection));
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Get a {@link RpkiObject} by its SHA256, return null if no data is found
 	 * 
@@ -199,6 +334,7 @@ public class RpkiObjectModel extends DatabaseModel {
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setString(1, type.toString());
 			statement.setBytes(2, authorityKeyIdentifier);
+			Util.setLimitParams(pagingParams, statement, 3);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			if (!rs.next()) {
 				return null;
@@ -236,47 +372,157 @@ public class RpkiObjectModel extends DatabaseModel {
 	}
 
 	/**
-	 * Creates a Set of {@link RpkiObject}s using a DB transaction
+	 * Creates a Set of {@link RpkiObject}s using JDBC batches, a transaction is
+	 * committed every <code>bulk_create_chunk_size</code> objects. The new objects
+	 * are linked to its parents, and the childs count of those parents (and of the
+	 * new CAs, which may adopt orphan objects) is updated.
 	 * 
 	 * @param rpkiObjects
 	 * @param connection
 	 * @throws SQLException
 	 */
 	public static void bulkCreate(Set<RpkiObject> rpkiObjects, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(CREATE);
 		boolean originalAutoCommit = connection.getAutoCommit();
 		connection.setAutoCommit(false);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+		try {
+			List<RpkiObject> chunk = new ArrayList<>(Math.min(bulkChunkSize, rpkiObjects.size()));
 			for (RpkiObject newRpkiObject : rpkiObjects) {
-				RpkiObjectDbObject stored = new RpkiObjectDbObject(newRpkiObject);
-				stored.storeToDatabase(statement);
-				executeUpdate(statement, getModelClass(), logger);
-				newRpkiObject.setId(getIdBySha256(newRpkiObject.getSha256(), connection));
-				storeRelatedObjects(newRpkiObject, connection);
+				chunk.add(newRpkiObject);
+				if (chunk.size() == bulkChunkSize) {
+					createChunk(chunk, connection);
+					commit(connection);
+					chunk.clear();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				createChunk(chunk, connection);
+			}
+			// Link the new objects to its parents, and recount only the affected CAs
+			if (updateParentIds(connection) > 0) {
+				Set<Long> newIds = new HashSet<>();
+				for (RpkiObject rpkiObject : rpkiObjects) {
+					if (rpkiObject.getId() != null) {
+						newIds.add(rpkiObject.getId());
+					}
+				}
+				Set<Long> caIds = new HashSet<>(newIds);
+				caIds.addAll(getParentIds(newIds, connection).values());
+				updateChildCounts(caIds, connection);
 			}
 		} finally {
 			// Commit what has been done
-			connection.commit();
+			commit(connection);
 			connection.setAutoCommit(originalAutoCommit);
 		}
 	}
 
+	/**
+	 * Create the <code>chunk</code> of {@link RpkiObject}s and its related
+	 * objects, a single batch is executed per table
+	 * 
+	 * @param chunk
+	 * @param connection
+	 * @throws SQLException
+	 */
+	private static void createChunk(List<RpkiObject> chunk, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(CREATE);
+		try (PreparedStatement statement = prepareStatement(connection, query, Statement.RETURN_GENERATED_KEYS,
+				getModelClass())) {
+			for (RpkiObject newRpkiObject : chunk) {
+				RpkiObjectDbObject stored = new RpkiObjectDbObject(newRpkiObject);
+				stored.storeToDatabase(statement);
+				statement.addBatch();
+			}
+			executeBatch(statement, getModelClass(), logger);
+			int index = 0;
+			try (ResultSet keys = statement.getGeneratedKeys()) {
+				while (index < chunk.size() && keys.next()) {
+					chunk.get(index++).setId(keys.getLong(1));
+				}
+			}
+			// Not every driver returns the keys of the whole batch
+			if (index < chunk.size()) {
+				loadIdsBySha256(chunk, connection);
+			}
+		}
+		storeRelatedObjects(chunk, connection);
+	}
+
+	/**
+	 * Set the ID of each {@link RpkiObject} of the <code>chunk</code> searching
+	 * them by its SHA256 hash, using a single query
+	 * 
+	 * @param chunk
+	 * @param connection
+	 * @throws SQLException
+	 */
+	private static void loadIdsBySha256(List<RpkiObject> chunk, Connection connection) throws SQLException {
+		Set<byte[]> sha256Set = new HashSet<>();
+		for (RpkiObject rpkiObject : chunk) {
+			sha256Set.add(rpkiObject.getSha256());
+		}
+		Map<ByteBuffer, Long> idsBySha256 = new HashMap<>();
+		for (RpkiObject found : getBySha256Set(sha256Set, connection)) {
+			idsBySha256.put(ByteBuffer.wrap(found.getSha256()), found.getId());
+		}
+		for (RpkiObject rpkiObject : chunk) {
+			rpkiObject.setId(idsBySha256.get(ByteBuffer.wrap(rpkiObject.getSha256())));
+		}
+	}
+
 	/**
 	 * Delete the {@link RpkiObject} that aren't reachable since
 	 * <code>unreachableSince</code>, this assumes that the DB has a "ON DELETE
-	 * CASCADE" related constraint
+	 * CASCADE" related constraint. The objects are found by its reach generation,
+	 * so it's a range scan of the index; they're deleted in chunks of IDs (see
+	 * {@link PurgeService#deleteInChunks(String, PurgeService.ChunkSelector, PurgeService.ChunkDeleter, Connection)}),
+	 * and the reach generation is checked again at each chunk, so an object
+	 * reached meanwhile isn't deleted. Once done, the hierarchy is updated (see
+	 * {@link #updateHierarchy(Connection)}).
 	 * 
 	 * @param unreachableSince
 	 * @param connection
-	 * @return
+	 * @return the number of deleted objects
 	 * @throws SQLException
 	 */
 	public static int deleteUnreachableObjects(Instant unreachableSince, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(DELETE_UNREACHABLE);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setString(1, unreachableSince.toString());
-			return executeUpdate(statement, getModelClass(), logger);
+		long reachGeneration = RpkiObjectDbObject.getReachGeneration(unreachableSince);
+		String selectQuery = getQueryGroup().getQuery(GET_UNREACHABLE_IDS);
+		String deleteQuery = getQueryGroup().getQuery(DELETE_UNREACHABLE);
+		int deleted;
+		try (PreparedStatement selectStatement = prepareStatement(connection, selectQuery, getModelClass());
+				PreparedStatement deleteStatement = prepareStatement(connection, deleteQuery, getModelClass())) {
+			deleted = PurgeService.deleteInChunks("unreachable objects", (afterId, limit) -> {
+				selectStatement.setLong(1, reachGeneration);
+				selectStatement.setLong(2, afterId);
+				selectStatement.setInt(3, limit);
+				return getIds(selectStatement);
+			}, (ids) -> {
+				deleteStatement.setLong(1, reachGeneration);
+				deleteStatement.setObject(2, ids.toArray());
+				return executeUpdate(deleteStatement, getModelClass(), logger);
+			}, connection);
 		}
+		if (deleted > 0) {
+			updateHierarchy(connection);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Read the IDs returned by the <code>statement</code>
+	 * 
+	 * @param statement
+	 * @return The IDs, at the same order
+	 * @throws SQLException
+	 */
+	private static List<Long> getIds(PreparedStatement statement) throws SQLException {
+		ResultSet rs = executeQuery(statement, getModelClass(), logger);
+		List<Long> ids = new ArrayList<>();
+		while (rs.next()) {
+			ids.add(rs.getLong(1));
+		}
+		return ids;
 	}
 
 	/**
@@ -322,7 +568,9 @@ public class RpkiObjectModel extends DatabaseModel {
 	}
 
 	/**
-	 * Delete the objects related to a Rpki repository
+	 * Delete the objects related to a Rpki repository, in chunks of IDs (see
+	 * {@link PurgeService#deleteInChunks(String, PurgeService.ChunkSelector, PurgeService.ChunkDeleter, Connection)}),
+	 * then update the hierarchy (see {@link #updateHierarchy(Connection)})
 	 * 
 	 * @param rpkiRepositoryId
 	 * @param connection
@@ -330,16 +578,46 @@ public class RpkiObjectModel extends DatabaseModel {
 	 * @throws SQLException
 	 */
 	public static int deleteByRpkiRepositoryId(Long rpkiRepositoryId, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(DELETE_BY_RPKI_REPOSITORY_ID);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setLong(1, rpkiRepositoryId);
-			return executeUpdate(statement, getModelClass(), logger);
+		int deleted = deleteObjectsOfRepository(rpkiRepositoryId, connection);
+		if (deleted > 0) {
+			updateHierarchy(connection);
 		}
+		return deleted;
 	}
 
 	/**
-	 * Updates the lastMarkedReachableAt field of the received {@link Set} of
-	 * {@link RpkiObject}s
+	 * Same as {@link #deleteByRpkiRepositoryId(Long, Connection)}, but the
+	 * hierarchy isn't updated: the caller MUST call
+	 * {@link #updateHierarchy(Connection)} once it has deleted all the objects
+	 * 
+	 * @param rpkiRepositoryId
+	 * @param connection
+	 * @return
+	 * @throws SQLException
+	 */
+	static int deleteObjectsOfRepository(Long rpkiRepositoryId, Connection connection) throws SQLException {
+		String selectQuery = getQueryGroup().getQuery(GET_IDS_BY_RPKI_REPOSITORY_ID);
+		String deleteQuery = getQueryGroup().getQuery(DELETE_BY_IDS);
+		try (PreparedStatement selectStatement = prepareStatement(connection, selectQuery, getModelClass());
+				PreparedStatement deleteStatement = prepareStatement(connection, deleteQuery, getModelClass())) {
+			return PurgeService.deleteInChunks("objects of the repository " + rpkiRepositoryId, (afterId, limit) -> {
+				selectStatement.setLong(1, rpkiRepositoryId);
+				selectStatement.setLong(2, afterId);
+				selectStatement.setInt(3, limit);
+				return getIds(selectStatement);
+			}, (ids) -> {
+				deleteStatement.setObject(1, ids.toArray());
+				return executeUpdate(deleteStatement, getModelClass(), logger);
+			}, connection);
+		}
+	}
+
+	/**
+	 * Updates the lastMarkedReachableAt field (and the reach generation) of the
+	 * received {@link Set} of {@link RpkiObject}s. The objects are grouped by its
+	 * lastMarkedReachableAt, and each group is updated with a single statement
+	 * per <code>REACH_UPDATE_CHUNK_SIZE</code> IDs; a transaction is committed
+	 * after each statement.
 	 * 
 	 * @param reachedObjects
 	 * @param connection
@@ -347,190 +625,355 @@ public class RpkiObjectModel extends DatabaseModel {
 	 * @throws SQLException
 	 */
 	public static int updateReachedObjects(Set<RpkiObject> reachedObjects, Connection connection) throws SQLException {
+		Map<Instant, List<Long>> idsByReachDate = new HashMap<>();
+		for (RpkiObject updRpkiObject : reachedObjects) {
+			if (updRpkiObject.getId() == null || updRpkiObject.getLastMarkedReachableAt() == null) {
+				continue;
+			}
+			idsByReachDate.computeIfAbsent(updRpkiObject.getLastMarkedReachableAt(), (k) -> new ArrayList<>())
+					.add(updRpkiObject.getId());
+		}
 		int result = 0;
 		String query = getQueryGroup().getQuery(UPDATE_LAST_REACH);
 		boolean originalAutoCommit = connection.getAutoCommit();
 		connection.setAutoCommit(false);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			for (RpkiObject updRpkiObject : reachedObjects) {
-				statement.setString(1, updRpkiObject.getLastMarkedReachableAt().toString());
-				statement.setLong(2, updRpkiObject.getId());
+			for (Map.Entry<Instant, List<Long>> group : idsByReachDate.entrySet()) {
+				List<Long> ids = group.getValue();
+				for (int from = 0; from < ids.size(); from += REACH_UPDATE_CHUNK_SIZE) {
+					List<Long> chunk = ids.subList(from, Math.min(from + REACH_UPDATE_CHUNK_SIZE, ids.size()));
+					statement.setString(1, group.getKey().toString());
+					statement.setLong(2, RpkiObjectDbObject.getReachGeneration(group.getKey()));
+					statement.setObject(3, chunk.toArray());
+					result += executeUpdate(statement, getModelClass(), logger);
+					commit(connection);
+				}
+			}
+		} finally {
+			// Commit what has been done
+			commit(connection);
+			connection.setAutoCommit(originalAutoCommit);
+		}
+		return result;
+	}
+
+	/**
+	 * Fill the reach generation of the {@link RpkiObject}s stored before that
+	 * column existed, based on its lastMarkedReachableAt; a single statement is
+	 * executed per distinct date
+	 * 
+	 * @param connection
+	 * @return the number of affected rows
+	 * @throws SQLException
+	 */
+	public static int updateReachGenerations(Connection connection) throws SQLException {
+		List<String> reachDates = new ArrayList<>();
+		String selectQuery = getQueryGroup().getQuery(GET_WITHOUT_REACH_GENERATION);
+		try (PreparedStatement statement = prepareStatement(connection, selectQuery, getModelClass())) {
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			while (rs.next()) {
+				reachDates.add(rs.getString(RpkiObjectDbObject.LAST_MARK_REACHABLE_AT_COLUMN));
+			}
+		}
+		if (reachDates.isEmpty()) {
+			return 0;
+		}
+		int result = 0;
+		String updateQuery = getQueryGroup().getQuery(UPDATE_REACH_GENERATION);
+		boolean originalAutoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try (PreparedStatement statement = prepareStatement(connection, updateQuery, getModelClass())) {
+			for (String reachDate : reachDates) {
+				Instant reachedAt;
+				try {
+					reachedAt = Instant.parse(reachDate);
+				} catch (DateTimeParseException e) {
+					reachedAt = DatabaseObject.getStringDateAsInstant(reachDate);
+				}
+				if (reachedAt == null) {
+					// Can't be converted, it's left as is
+					continue;
+				}
+				statement.setLong(1, RpkiObjectDbObject.getReachGeneration(reachedAt));
+				statement.setString(2, reachDate);
 				result += executeUpdate(statement, getModelClass(), logger);
+				commit(connection);
 			}
 		} finally {
 			// Commit what has been done
-			connection.commit();
+			commit(connection);
 			connection.setAutoCommit(originalAutoCommit);
 		}
 		return result;
 	}
 
 	/**
-	 * Get the locations of an {@link RpkiObject} based on its ID
+	 * Get the ID of the parent CA of an {@link RpkiObject}, as calculated by
+	 * {@link #updateHierarchy(Connection)}
 	 * 
 	 * @param rpkiObjectId
 	 * @param connection
-	 * @return
+	 * @return The ID of the parent, or <code>null</code> if the object hasn't a
+	 *         known parent
 	 * @throws SQLException
 	 */
-	public static SortedSet<String> getLocations(Long rpkiObjectId, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(GET_LOCATIONS);
+	public static Long getParentId(Long rpkiObjectId, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_PARENT_ID);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setLong(1, rpkiObjectId);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			SortedSet<String> result = new TreeSet<>();
-			while (rs.next()) {
-				result.add(rs.getString("rpo_locations"));
+			if (!rs.next()) {
+				return null;
 			}
-
-			return result;
+			long parentId = rs.getLong(1);
+			return rs.wasNull() ? null : parentId;
 		}
 	}
 
 	/**
-	 * Store the related objects to an {@link RpkiObject}
+	 * Get the ID of the parent CA of each of the {@link RpkiObject}s IDs, the
+	 * <code>rpkiObjectIds</code> are queried using 'in' lists
 	 * 
-	 * @param rpkiObject
+	 * @param rpkiObjectIds
 	 * @param connection
+	 * @return Map of the parent IDs indexed by {@link RpkiObject} ID, the IDs
+	 *         without a known parent aren't at the map
 	 * @throws SQLException
 	 */
-	private static void storeRelatedObjects(RpkiObject rpkiObject, Connection connection) throws SQLException {
-		// ROAs
-		for (Roa roa : rpkiObject.getRoas()) {
-			roa.setRpkiObject(rpkiObject);
-			RoaModel.create(roa, connection);
+	public static Map<Long, Long> getParentIds(Collection<Long> rpkiObjectIds, Connection connection)
+			throws SQLException {
+		Map<Long, Long> result = new HashMap<>();
+		for (List<Long> ids : Util.partition(rpkiObjectIds)) {
+			String query = getQueryGroup().getQuery(GET_PARENT_IDS);
+			query = query.replace("[and]", Util.getInClause(RpkiObjectDbObject.ID_COLUMN, ids.size()));
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				int index = 1;
+				for (Long id : ids) {
+					statement.setLong(index++, id);
+				}
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					result.put(rs.getLong(RpkiObjectDbObject.ID_COLUMN), rs.getLong("rpo_parent_id"));
+				}
+			}
 		}
-		// EncodedRpkiObject
-		EncodedRpkiObject encObject = rpkiObject.getEncodedRpkiObject();
-		encObject.setRpkiObject(rpkiObject);
-		createEncodedRpkiObject(encObject, connection);
-		// Rpki Repositories relation
-		createRpkiRepositoryRelation(rpkiObject.getRpkiRepositories(), rpkiObject.getId(), connection);
-		// Locations
-		Iterator<String> it = rpkiObject.getLocations().iterator();
-		while (it.hasNext()) {
-			createLocation(rpkiObject.getId(), it.next(), connection);
+		return result;
+	}
+
+	/**
+	 * Update the materialized hierarchy of the {@link RpkiObject}s: the parent ID
+	 * of the objects without a (existent) parent, and the childs count of every
+	 * CA
+	 * 
+	 * @param connection
+	 * @throws SQLException
+	 */
+	public static void updateHierarchy(Connection connection) throws SQLException {
+		updateParentIds(connection);
+		String query = getQueryGroup().getQuery(UPDATE_CHILD_COUNTS);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			executeUpdate(statement, getModelClass(), logger);
 		}
-		// Ghostbuster Record
-		if (rpkiObject.getGbr() != null) {
-			Gbr gbr = rpkiObject.getGbr();
-			gbr.setRpkiObject(rpkiObject);
-			GbrModel.create(gbr, connection);
+	}
+
+	/**
+	 * Update the childs count of the CAs with ID at <code>caIds</code>, the IDs
+	 * that aren't of a CA are ignored
+	 * 
+	 * @param caIds
+	 * @param connection
+	 * @throws SQLException
+	 */
+	private static void updateChildCounts(Collection<Long> caIds, Connection connection) throws SQLException {
+		for (List<Long> ids : Util.partition(caIds)) {
+			String query = getQueryGroup().getQuery(UPDATE_CHILD_COUNTS_BY_IDS);
+			query = query.replace("[and]", Util.getInClause("p." + RpkiObjectDbObject.ID_COLUMN, ids.size()));
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				int index = 1;
+				for (Long id : ids) {
+					statement.setLong(index++, id);
+				}
+				executeUpdate(statement, getModelClass(), logger);
+			}
 		}
 	}
 
 	/**
-	 * Load the related objects {@link RpkiObject}
+	 * Set the parent ID of the objects that don't have one or whose parent no
+	 * longer exists; the parent is the CA (the one with the lowest ID) whose SKI
+	 * is the AKI of the object
 	 * 
-	 * @param rpkiObject
 	 * @param connection
+	 * @return the number of affected rows
 	 * @throws SQLException
 	 */
-	private static void loadRelatedObjects(RpkiObject rpkiObject, Connection connection) throws SQLException {
-		Long id = rpkiObject.getId();
-		rpkiObject.setEncodedRpkiObject(getEncodedByRpkiObjectId(id, connection));
-		rpkiObject.setRpkiRepositories(getRpkiRepositories(id, connection));
-		rpkiObject.setLocations(getLocations(id, connection));
-		// The ROAs and GBR aren't loaded
+	private static int updateParentIds(Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(UPDATE_PARENT_IDS);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			return executeUpdate(statement, getModelClass(), logger);
+		}
 	}
 
 	/**
-	 * Get the RPKI repositories IDs related to an {@link RpkiObject}
+	 * Get the locations of an {@link RpkiObject} based on its ID
 	 * 
 	 * @param rpkiObjectId
 	 * @param connection
 	 * @return
 	 * @throws SQLException
 	 */
-	private static Set<Long> getRpkiRepositories(Long rpkiObjectId, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(GET_RPKI_REPO_REL);
+	public static SortedSet<String> getLocations(Long rpkiObjectId, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_LOCATIONS);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setLong(1, rpkiObjectId);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			Set<Long> result = new HashSet<>();
+			SortedSet<String> result = new TreeSet<>();
 			while (rs.next()) {
-				result.add(rs.getLong("rpr_id"));
+				result.add(rs.getString("rpo_locations"));
 			}
+
 			return result;
 		}
 	}
 
 	/**
-	 * Store a {@link EncodedRpkiObject} and return <code>boolean</code> to indicate
-	 * success
+	 * Get the locations of each of the {@link RpkiObject}s IDs, the
+	 * <code>rpkiObjectIds</code> are queried using 'in' lists
 	 * 
-	 * @param newEncodedRpkiObject
+	 * @param rpkiObjectIds
 	 * @param connection
-	 * @return <code>boolean</code> to indicate success
+	 * @return Map of the locations indexed by {@link RpkiObject} ID, the IDs
+	 *         without locations aren't at the map
 	 * @throws SQLException
 	 */
-	private static boolean createEncodedRpkiObject(EncodedRpkiObject newEncodedRpkiObject, Connection connection)
-			throws SQLException {
-		String query = getQueryGroup().getQuery(CREATE_ENCODED);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			EncodedRpkiObjectDbObject stored = new EncodedRpkiObjectDbObject(newEncodedRpkiObject);
-			stored.storeToDatabase(statement);
-			int created = executeUpdate(statement, getModelClass(), logger);
-			return created > 0;
+	public static Map<Long, SortedSet<String>> getLocationsByIds(Collection<Long> rpkiObjectIds,
+			Connection connection) throws SQLException {
+		Map<Long, SortedSet<String>> result = new HashMap<>();
+		for (List<Long> ids : Util.partition(rpkiObjectIds)) {
+			String query = getQueryGroup().getQuery(GET_LOCATIONS_BY_IDS);
+			query = query.replace("[and]", Util.getInClause(RpkiObjectDbObject.ID_COLUMN, ids.size()));
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				int index = 1;
+				for (Long id : ids) {
+					statement.setLong(index++, id);
+				}
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				while (rs.next()) {
+					result.computeIfAbsent(rs.getLong(RpkiObjectDbObject.ID_COLUMN), (key) -> new TreeSet<>())
+							.add(rs.getString("rpo_locations"));
+				}
+			}
 		}
+		return result;
 	}
 
 	/**
-	 * Create a location related to an {@link RpkiObject}
+	 * Store the related objects to the {@link RpkiObject}s, reusing one statement
+	 * per table
 	 * 
-	 * @param rpkiObjectId
-	 * @param location
+	 * @param rpkiObjects
 	 * @param connection
-	 * @return
 	 * @throws SQLException
 	 */
-	private static boolean createLocation(Long rpkiObjectId, String location, Connection connection)
+	private static void storeRelatedObjects(List<RpkiObject> rpkiObjects, Connection connection)
 			throws SQLException {
-		String query = getQueryGroup().getQuery(CREATE_LOCATION);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setLong(1, rpkiObjectId);
-			statement.setString(2, location);
-			int created = executeUpdate(statement, getModelClass(), logger);
-			return created > 0;
+		List<Roa> roas = new ArrayList<>();
+		List<Gbr> gbrs = new ArrayList<>();
+		try (PreparedStatement encodedStatement = prepareStatement(connection,
+				getQueryGroup().getQuery(CREATE_ENCODED), getModelClass());
+				PreparedStatement repositoryStatement = prepareStatement(connection,
+						getQueryGroup().getQuery(CREATE_RPKI_REPO_REL), getModelClass());
+				PreparedStatement locationStatement = prepareStatement(connection,
+						getQueryGroup().getQuery(CREATE_LOCATION), getModelClass())) {
+			boolean hasRepositories = false;
+			boolean hasLocations = false;
+			for (RpkiObject rpkiObject : rpkiObjects) {
+				// ROAs
+				for (Roa roa : rpkiObject.getRoas()) {
+					roa.setRpkiObject(rpkiObject);
+					roas.add(roa);
+				}
+				// EncodedRpkiObject
+				EncodedRpkiObject encObject = rpkiObject.getEncodedRpkiObject();
+				encObject.setRpkiObject(rpkiObject);
+				EncodedRpkiObjectDbObject stored = new EncodedRpkiObjectDbObject(encObject);
+				stored.storeToDatabase(encodedStatement);
+				encodedStatement.addBatch();
+				// Rpki Repositories relation
+				for (Long rpkiRepositoryId : rpkiObject.getRpkiRepositories()) {
+					repositoryStatement.setLong(1, rpkiRepositoryId);
+					repositoryStatement.setLong(2, rpkiObject.getId());
+					repositoryStatement.addBatch();
+					hasRepositories = true;
+				}
+				// Locations
+				for (String location : rpkiObject.getLocations()) {
+					locationStatement.setLong(1, rpkiObject.getId());
+					locationStatement.setString(2, location);
+					locationStatement.addBatch();
+					hasLocations = true;
+				}
+				// Ghostbuster Record
+				if (rpkiObject.getGbr() != null) {
+					Gbr gbr = rpkiObject.getGbr();
+					gbr.setRpkiObject(rpkiObject);
+					gbrs.add(gbr);
+				}
+			}
+			if (!rpkiObjects.isEmpty()) {
+				executeBatch(encodedStatement, getModelClass(), logger);
+			}
+			if (hasRepositories) {
+				executeBatch(repositoryStatement, getModelClass(), logger);
+			}
+			if (hasLocations) {
+				executeBatch(locationStatement, getModelClass(), logger);
+			}
 		}
+		RoaModel.bulkCreate(roas, connection);
+		GbrModel.bulkCreate(gbrs, connection);
 	}
 
 	/**
-	 * Create the relation between an {@link RpkiObject} and a set of
-	 * {@link RpkiRepository}s
+	 * Load the related objects to the {@link RpkiObject} according to the
+	 * <code>projection</code>
 	 * 
-	 * @param rpkiRepositories
-	 * @param rpkiObjectId
+	 * @param rpkiObject
+	 * @param projection
 	 * @param connection
-	 * @return
 	 * @throws SQLException
 	 */
-	private static boolean createRpkiRepositoryRelation(Set<Long> rpkiRepositories, Long rpkiObjectId,
-			Connection connection) throws SQLException {
-		int created = 0;
-		for (Long rpkiRepositoryId : rpkiRepositories) {
-			created += addRpkiRepository(rpkiObjectId, rpkiRepositoryId, connection);
+	private static void loadRelatedObjects(RpkiObject rpkiObject, Projection projection, Connection connection)
+			throws SQLException {
+		Long id = rpkiObject.getId();
+		if (projection == Projection.FULL) {
+			rpkiObject.setEncodedRpkiObject(getEncodedByRpkiObjectId(id, connection));
+			rpkiObject.setRpkiRepositories(getRpkiRepositories(id, connection));
+		}
+		if (projection != Projection.SUMMARY) {
+			rpkiObject.setLocations(getLocations(id, connection));
 		}
-		return created == rpkiRepositories.size();
+		// The ROAs and GBR aren't loaded
 	}
 
 	/**
-	 * Get the ID of the object based on its SHA256 hash
+	 * Get the RPKI repositories IDs related to an {@link RpkiObject}
 	 * 
-	 * @param sha256
+	 * @param rpkiObjectId
 	 * @param connection
 	 * @return
 	 * @throws SQLException
 	 */
-	private static Long getIdBySha256(byte[] sha256, Connection connection) throws SQLException {
-		String query = getQueryGroup().getQuery(GET_ID_BY_SHA256);
+	private static Set<Long> getRpkiRepositories(Long rpkiObjectId, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_RPKI_REPO_REL);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setBytes(1, sha256);
-			ResultSet resultSet = executeQuery(statement, getModelClass(), logger);
-			if (!resultSet.next()) {
-				return null;
+			statement.setLong(1, rpkiObjectId);
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			Set<Long> result = new HashSet<>();
+			while (rs.next()) {
+				result.add(rs.getLong("rpr_id"));
 			}
-			return resultSet.getLong(RpkiObjectDbObject.ID_COLUMN);
+			return result;
 		}
 	}
 
@@ -219,7 +219,11 @@ public class RpkiRepositoryModel extends DatabaseModel {
 	}
 
 	/**
-	 * Delete the {@link RpkiRepository}s related to a TAL ID
+	 * Delete the {@link RpkiRepository}s related to a TAL ID, the objects of each
+	 * repository are deleted first in chunks (see
+	 * {@link RpkiObjectModel#deleteByRpkiRepositoryId(Long, Connection)}); the
+	 * hierarchy of the objects isn't updated, the caller MUST do it (see
+	 * {@link RpkiObjectModel#updateHierarchy(Connection)})
 	 * 
 	 * @param talId
 	 * @param connection
@@ -229,7 +233,7 @@ public class RpkiRepositoryModel extends DatabaseModel {
 	public static int deleteByTalId(Long talId, Connection connection) throws SQLException {
 		List<Long> rpkiRepositories = getRelatedIdsByTalId(talId, connection);
 		for (Long rpkiRepositoryId : rpkiRepositories) {
-			RpkiObjectModel.deleteByRpkiRepositoryId(rpkiRepositoryId, connection);
+			RpkiObjectModel.deleteObjectsOfRepository(rpkiRepositoryId, connection);
 		}
 		String query = getQueryGroup().getQuery(DELETE_BY_TAL_ID);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
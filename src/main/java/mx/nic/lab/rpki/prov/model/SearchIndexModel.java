@@ -0,0 +1,354 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mx.nic.lab.rpki.db.exception.InitializationException;
+import mx.nic.lab.rpki.prov.database.QueryGroup;
+import mx.nic.lab.rpki.prov.object.RoaDbObject;
+import mx.nic.lab.rpki.prov.object.SlurmBgpsecDbObject;
+import mx.nic.lab.rpki.prov.object.SlurmPrefixDbObject;
+import mx.nic.lab.rpki.prov.object.TalDbObject;
+import mx.nic.lab.rpki.prov.object.ValidationCheckDbObject;
+
+/**
+ * Model of the substring search index: the n-grams (substrings of
+ * {@link #GRAM_LENGTH} characters) of the text columns that can be used as
+ * filter at the listings, each one along with the ID of its row. A filter
+ * "like '%text%'" on an indexed column is narrowed to the rows that have all
+ * the n-grams of the text (see
+ * {@link Util#getQueryWithPaging(String, mx.nic.lab.rpki.db.pojo.PagingParameters, Map)}),
+ * so the table isn't scanned.<br>
+ * <br>
+ * The prefix search is optional: if the <code>filter_prefix_marker</code> is
+ * configured, a filter query that starts with that character is anchored at
+ * the start of the value (an index range scan on an indexed column). It's
+ * disabled by default, so the filters are always substring searches of its
+ * whole text.<br>
+ * <br>
+ * The index is maintained by the {@link SearchIndexTrigger} of each indexed
+ * table, so every write (including the cascades of the deletes) updates it at
+ * the same transaction. The rows stored before the index existed are indexed at
+ * startup (see {@link #rebuild(Connection)}).
+ *
+ */
+public class SearchIndexModel extends DatabaseModel {
+
+	private static final Logger logger = Logger.getLogger(SearchIndexModel.class.getName());
+
+	/**
+	 * Query group ID, it MUST be the same that the .sql file where the queries are
+	 * found
+	 */
+	private static final String QUERY_GROUP = "SearchIndex";
+
+	private static QueryGroup queryGroup = null;
+
+	// Queries IDs used by this model
+	private static final String INSERT_GRAM = "insertGram";
+	private static final String DELETE_GRAM = "deleteGram";
+	private static final String EXIST_COLUMN = "existColumn";
+	private static final String GET_COLUMN_VALUES = "getColumnValues";
+
+	/**
+	 * Length of the n-grams, a search text shorter than this can't use the index
+	 */
+	public static final int GRAM_LENGTH = 3;
+
+	/**
+	 * Number of rows indexed at each transaction of the rebuild
+	 */
+	private static final int REBUILD_CHUNK_SIZE = 1000;
+
+	/**
+	 * Character that anchors a filter to the start of the column value, when it's
+	 * the first character of the filter query; <code>null</code> if the prefix
+	 * search isn't enabled
+	 */
+	private static volatile Character prefixMarker = null;
+
+	/**
+	 * The indexed columns of each table (by the table name)
+	 */
+	private static final Map<String, List<String>> indexedColumns = new HashMap<>();
+
+	/**
+	 * The ID column of the table of each indexed column (by the column name)
+	 */
+	private static final Map<String, String> idColumns = new HashMap<>();
+
+	/**
+	 * The table of each indexed column (by the column name)
+	 */
+	private static final Map<String, String> tables = new HashMap<>();
+
+	static {
+		addIndexedTable("roa", RoaDbObject.ID_COLUMN, RoaDbObject.PREFIX_TEXT_COLUMN);
+		addIndexedTable("slurm_prefix", SlurmPrefixDbObject.ID_COLUMN, SlurmPrefixDbObject.PREFIX_TEXT_COLUMN,
+				SlurmPrefixDbObject.COMMENT_COLUMN);
+		addIndexedTable("slurm_bgpsec", SlurmBgpsecDbObject.ID_COLUMN, SlurmBgpsecDbObject.SKI_COLUMN,
+				SlurmBgpsecDbObject.COMMENT_COLUMN);
+		addIndexedTable("tal", TalDbObject.ID_COLUMN, TalDbObject.NAME_COLUMN);
+		addIndexedTable("validation_check", ValidationCheckDbObject.ID_COLUMN,
+				ValidationCheckDbObject.LOCATION_COLUMN, ValidationCheckDbObject.KEY_COLUMN);
+	}
+
+	private static void addIndexedTable(String table, String idColumn, String... columns) {
+		indexedColumns.put(table, Collections.unmodifiableList(Arrays.asList(columns)));
+		for (String column : columns) {
+			idColumns.put(column, idColumn);
+			tables.put(column, table);
+		}
+	}
+
+	/**
+	 * Read the optional properties from the configuration
+	 *
+	 * @param config
+	 * @throws InitializationException
+	 */
+	public static void init(Properties config) throws InitializationException {
+		// Optional property, the prefix search is disabled by default
+		String marker = config.getProperty("filter_prefix_marker");
+		if (marker == null || marker.trim().isEmpty()) {
+			prefixMarker = null;
+			return;
+		}
+		marker = marker.trim();
+		if (marker.length() != 1) {
+			throw new InitializationException("The filter_prefix_marker '" + marker + "' must be a single character");
+		}
+		prefixMarker = marker.charAt(0);
+	}
+
+	/**
+	 * Check if the <code>filterQuery</code> is a prefix search: the prefix search
+	 * is enabled and the filter starts with its marker (the rest of the query is
+	 * the prefix)
+	 *
+	 * @param filterQuery
+	 * @return <code>true</code> if the filter is anchored at the start of the
+	 *         value
+	 */
+	public static boolean isPrefixFilter(String filterQuery) {
+		Character marker = prefixMarker;
+		return marker != null && !filterQuery.isEmpty() && filterQuery.charAt(0) == marker;
+	}
+
+	/**
+	 * Loads the queries corresponding to this model, based on the QUERY_GROUP
+	 * constant
+	 *
+	 * @param schema
+	 */
+	public static void loadQueryGroup(String schema) {
+		try {
+			QueryGroup group = new QueryGroup(QUERY_GROUP, schema);
+			setQueryGroup(group);
+		} catch (IOException e) {
+			throw new RuntimeException("Error loading query group", e);
+		}
+	}
+
+	/**
+	 * Get the {@link Class} to use as a lock
+	 *
+	 * @return
+	 */
+	private static Class<SearchIndexModel> getModelClass() {
+		return SearchIndexModel.class;
+	}
+
+	/**
+	 * Check if the <code>column</code> has a substring search index (and an
+	 * ordinary index for the prefix searches)
+	 *
+	 * @param column
+	 * @return <code>true</code> if the column is indexed
+	 */
+	public static boolean isIndexed(String column) {
+		return column != null && idColumns.containsKey(column);
+	}
+
+	/**
+	 * Get the ID column of the table of an indexed <code>column</code>
+	 *
+	 * @param column
+	 * @return The ID column, or <code>null</code> if the column isn't indexed
+	 */
+	public static String getIdColumn(String column) {
+		return idColumns.get(column);
+	}
+
+	/**
+	 * Get the indexed columns of the <code>table</code>
+	 *
+	 * @param table
+	 * @return The indexed columns, or <code>null</code> if the table has no
+	 *         indexed columns
+	 */
+	public static List<String> getIndexedColumns(String table) {
+		return indexedColumns.get(table);
+	}
+
+	/**
+	 * Get the distinct n-grams of the <code>value</code>
+	 *
+	 * @param value
+	 * @return The n-grams, empty if the value is <code>null</code> or shorter than
+	 *         {@link #GRAM_LENGTH}
+	 */
+	public static Set<String> getGrams(String value) {
+		if (value == null || value.length() < GRAM_LENGTH) {
+			return Collections.emptySet();
+		}
+		Set<String> grams = new LinkedHashSet<>();
+		for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+			grams.add(value.substring(i, i + GRAM_LENGTH));
+		}
+		return grams;
+	}
+
+	/**
+	 * Update the n-grams of an indexed <code>column</code> when its row changes
+	 * from the old values to the new ones; the values of an inserted row have no
+	 * old ID, and those of a deleted row have no new ID. Only used by the
+	 * {@link SearchIndexTrigger}, at the transaction of the write; the write that
+	 * fires the trigger is already synchronized by its model, so the statements
+	 * are executed directly.
+	 *
+	 * @param connection
+	 * @param column
+	 * @param oldId
+	 * @param oldValue
+	 * @param newId
+	 * @param newValue
+	 * @throws SQLException
+	 */
+	static void updateGrams(Connection connection, String column, Long oldId, String oldValue, Long newId,
+			String newValue) throws SQLException {
+		Set<String> oldGrams = oldId != null ? new LinkedHashSet<>(getGrams(oldValue)) : new LinkedHashSet<>();
+		Set<String> newGrams = newId != null ? new LinkedHashSet<>(getGrams(newValue)) : new LinkedHashSet<>();
+		if (oldId != null && oldId.equals(newId)) {
+			// Only the differences are written
+			Set<String> unchanged = new LinkedHashSet<>(oldGrams);
+			unchanged.retainAll(newGrams);
+			oldGrams.removeAll(unchanged);
+			newGrams.removeAll(unchanged);
+		}
+		if (!oldGrams.isEmpty()) {
+			String query = getQueryGroup().getQuery(DELETE_GRAM);
+			try (PreparedStatement statement = connection.prepareStatement(query)) {
+				for (String gram : oldGrams) {
+					statement.setString(1, column);
+					statement.setString(2, gram);
+					statement.setLong(3, oldId);
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
+		}
+		if (!newGrams.isEmpty()) {
+			String query = getQueryGroup().getQuery(INSERT_GRAM);
+			try (PreparedStatement statement = connection.prepareStatement(query)) {
+				for (String gram : newGrams) {
+					statement.setString(1, column);
+					statement.setString(2, gram);
+					statement.setLong(3, newId);
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
+		}
+	}
+
+	/**
+	 * Index the rows of the indexed columns that have no n-grams yet (e.g. the
+	 * rows stored before the index existed); each chunk of
+	 * {@link #REBUILD_CHUNK_SIZE} rows is committed at its own transaction
+	 *
+	 * @param connection
+	 * @return The number of n-grams stored
+	 * @throws SQLException
+	 */
+	public static int rebuild(Connection connection) throws SQLException {
+		int result = 0;
+		for (String column : idColumns.keySet()) {
+			String query = getQueryGroup().getQuery(EXIST_COLUMN);
+			try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+				statement.setString(1, column);
+				ResultSet rs = executeQuery(statement, getModelClass(), logger);
+				if (rs.next()) {
+					continue;
+				}
+			}
+			int columnResult = rebuildColumn(column, connection);
+			if (columnResult > 0) {
+				logger.log(Level.INFO, "Search index of " + column + " built: " + columnResult + " n-grams");
+			}
+			result += columnResult;
+		}
+		return result;
+	}
+
+	private static int rebuildColumn(String column, Connection connection) throws SQLException {
+		String idColumn = idColumns.get(column);
+		String selectQuery = getQueryGroup().getQuery(GET_COLUMN_VALUES).replace("[id]", idColumn)
+				.replace("[column]", column).replace("[table]", tables.get(column));
+		List<Long> ids = new ArrayList<>();
+		List<String> values = new ArrayList<>();
+		try (PreparedStatement statement = prepareStatement(connection, selectQuery, getModelClass())) {
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			while (rs.next()) {
+				ids.add(rs.getLong(idColumn));
+				values.add(rs.getString(column));
+			}
+		}
+		int result = 0;
+		String insertQuery = getQueryGroup().getQuery(INSERT_GRAM);
+		boolean originalAutoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try (PreparedStatement statement = prepareStatement(connection, insertQuery, getModelClass())) {
+			for (int i = 0; i < ids.size(); i++) {
+				for (String gram : getGrams(values.get(i))) {
+					statement.setString(1, column);
+					statement.setString(2, gram);
+					statement.setLong(3, ids.get(i));
+					statement.addBatch();
+					result++;
+				}
+				if ((i + 1) % REBUILD_CHUNK_SIZE == 0 || i == ids.size() - 1) {
+					executeBatch(statement, getModelClass(), logger);
+					commit(connection);
+				}
+			}
+		} finally {
+			// Commit what has been done
+			commit(connection);
+			connection.setAutoCommit(originalAutoCommit);
+		}
+		return result;
+	}
+
+	public static QueryGroup getQueryGroup() {
+		return queryGroup;
+	}
+
+	public static void setQueryGroup(QueryGroup queryGroup) {
+		SearchIndexModel.queryGroup = queryGroup;
+	}
+}
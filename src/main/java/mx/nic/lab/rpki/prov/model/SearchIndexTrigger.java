@@ -0,0 +1,88 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.h2.api.Trigger;
+
+/**
+ * H2 trigger that keeps the search index of a table (see
+ * {@link SearchIndexModel}) up to date; it MUST be created for each indexed
+ * table, after the inserts, updates and deletes of each row (see
+ * createDatabase.sql).
+ *
+ */
+public class SearchIndexTrigger implements Trigger {
+
+	private String[] columns;
+	private int[] columnIndexes;
+	private int idIndex;
+
+	@Override
+	public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+			int type) throws SQLException {
+		List<String> indexedColumns = SearchIndexModel.getIndexedColumns(tableName.toLowerCase());
+		if (indexedColumns == null) {
+			throw new SQLException("The table " + tableName + " has no indexed columns");
+		}
+		String idColumn = SearchIndexModel.getIdColumn(indexedColumns.get(0));
+		columns = indexedColumns.toArray(new String[indexedColumns.size()]);
+		columnIndexes = new int[columns.length];
+		Arrays.fill(columnIndexes, -1);
+		idIndex = -1;
+		// The rows are received as arrays of the values in the columns order
+		try (ResultSet rs = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {
+			while (rs.next()) {
+				String column = rs.getString("COLUMN_NAME");
+				int index = rs.getInt("ORDINAL_POSITION") - 1;
+				if (idColumn.equalsIgnoreCase(column)) {
+					idIndex = index;
+				}
+				for (int i = 0; i < columns.length; i++) {
+					if (columns[i].equalsIgnoreCase(column)) {
+						columnIndexes[i] = index;
+					}
+				}
+			}
+		}
+		if (idIndex < 0) {
+			throw new SQLException("The table " + tableName + " has no column " + idColumn);
+		}
+		for (int i = 0; i < columns.length; i++) {
+			if (columnIndexes[i] < 0) {
+				throw new SQLException("The table " + tableName + " has no column " + columns[i]);
+			}
+		}
+	}
+
+	@Override
+	public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+		Long oldId = getId(oldRow);
+		Long newId = getId(newRow);
+		for (int i = 0; i < columns.length; i++) {
+			String oldValue = oldRow != null ? (String) oldRow[columnIndexes[i]] : null;
+			String newValue = newRow != null ? (String) newRow[columnIndexes[i]] : null;
+			SearchIndexModel.updateGrams(conn, columns[i], oldId, oldValue, newId, newValue);
+		}
+	}
+
+	private Long getId(Object[] row) {
+		if (row == null || row[idIndex] == null) {
+			return null;
+		}
+		return ((Number) row[idIndex]).longValue();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		// No resources
+	}
+
+	@Override
+	public void remove() throws SQLException {
+		// No resources
+	}
+}
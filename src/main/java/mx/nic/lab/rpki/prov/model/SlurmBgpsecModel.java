@@ -39,6 +39,7 @@ public class SlurmBgpsecModel extends DatabaseModel {
 	private static final String GET_ALL = "getAll";
 	private static final String GET_ALL_BY_TYPE = "getAllByType";
 	private static final String GET_ALL_COUNT = "getAllCount";
+	private static final String GET_ALL_COUNT_ESTIMATE = "getAllCountEstimate";
 	private static final String GET_ALL_BY_TYPE_COUNT = "getAllByTypeCount";
 	private static final String EXIST = "exist";
 	private static final String CREATE = "create";
@@ -107,15 +108,17 @@ public class SlurmBgpsecModel extends DatabaseModel {
 	public static ListResult<SlurmBgpsec> getAll(PagingParameters pagingParams, Connection connection)
 			throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL);
-		query = Util.getQueryWithPaging(query, pagingParams, SlurmBgpsecDbObject.propertyToColumnMap);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 1);
+		KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams,
+				SlurmBgpsecDbObject.propertyToColumnMap, SlurmBgpsecDbObject.ID_COLUMN);
+		try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
+			// Set the filter and seek to the query (if the params were added)
+			paging.setParams(statement, 1);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			List<SlurmBgpsec> slurmBgpsecs = new ArrayList<SlurmBgpsec>();
 			while (rs.next()) {
 				SlurmBgpsecDbObject slurmBgpsec = new SlurmBgpsecDbObject(rs);
 				slurmBgpsecs.add(slurmBgpsec);
+				paging.onRow(rs);
 			}
 			Integer totalFound = getAllCount(pagingParams, connection);
 			return new ListResult<SlurmBgpsec>(slurmBgpsecs, totalFound);
@@ -134,16 +137,18 @@ public class SlurmBgpsecModel extends DatabaseModel {
 	public static ListResult<SlurmBgpsec> getAllByType(String type, PagingParameters pagingParams,
 			Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL_BY_TYPE);
-		query = Util.getQueryWithPaging(query, pagingParams, SlurmBgpsecDbObject.propertyToColumnMap);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+		KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams,
+				SlurmBgpsecDbObject.propertyToColumnMap, SlurmBgpsecDbObject.ID_COLUMN, type);
+		try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
 			statement.setString(1, type);
-			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 2);
+			// Set the filter and seek to the query (if the params were added)
+			paging.setParams(statement, 2);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			List<SlurmBgpsec> slurmBgpsecs = new ArrayList<SlurmBgpsec>();
 			while (rs.next()) {
 				SlurmBgpsecDbObject slurmBgpsec = new SlurmBgpsecDbObject(rs);
 				slurmBgpsecs.add(slurmBgpsec);
+				paging.onRow(rs);
 			}
 			Integer totalFound = getAllByTypeCount(type, pagingParams, connection);
 			return new ListResult<SlurmBgpsec>(slurmBgpsecs, totalFound);
@@ -385,11 +390,45 @@ public class SlurmBgpsecModel extends DatabaseModel {
 			}
 		} finally {
 			// Commit what has been done
-			connection.commit();
+			commit(connection);
 			connection.setAutoCommit(originalAutoCommit);
 		}
 	}
 
+	/**
+	 * Get the estimated count of all the {@link SlurmBgpsec}s, taken from the
+	 * table statistics
+	 * 
+	 * @param connection
+	 * @return The estimated count, or <code>null</code> if there are no statistics
+	 * @throws SQLException
+	 */
+	private static Integer getAllCountEstimate(Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_ALL_COUNT_ESTIMATE);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			if (rs.next()) {
+				return rs.getInt(1);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Get the count of all the {@link SlurmBgpsec}s, from the {@link CountCache}
+	 * when it's still valid (see
+	 * {@link #loadAllCount(PagingParameters, Connection)})
+	 * 
+	 * @param pagingParams
+	 * @param connection
+	 * @return The count of all {@link SlurmBgpsec}s
+	 * @throws SQLException
+	 */
+	private static Integer getAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
+		return CountCache.get(getModelClass(), getQueryGroup().getQuery(GET_ALL_COUNT), pagingParams,
+				() -> loadAllCount(pagingParams, connection), () -> getAllCountEstimate(connection));
+	}
+
 	/**
 	 * Get the count of all the {@link SlurmBgpsec}s, return 0 when no records are
 	 * found
@@ -399,12 +438,12 @@ public class SlurmBgpsecModel extends DatabaseModel {
 	 * @return The count of all {@link SlurmBgpsec}s, or 0 when no data is found
 	 * @throws SQLException
 	 */
-	private static Integer getAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
+	private static Integer loadAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL_COUNT);
 		query = Util.getQueryWithPaging(query, pagingParams, SlurmBgpsecDbObject.propertyToColumnMap);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 1);
+			Util.setFilterParam(pagingParams, SlurmBgpsecDbObject.propertyToColumnMap, statement, 1);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			if (rs.next()) {
 				return rs.getInt(1);
@@ -413,6 +452,25 @@ public class SlurmBgpsecModel extends DatabaseModel {
 		}
 	}
 
+	/**
+	 * Get the count of all the {@link SlurmBgpsec}s by type, from the
+	 * {@link CountCache} when it's still valid (see
+	 * {@link #loadAllByTypeCount(String, PagingParameters, Connection)})
+	 * 
+	 * @param type
+	 * @param pagingParams
+	 * @param connection
+	 * @return The count of all {@link SlurmBgpsec}s by type
+	 * @throws SQLException
+	 */
+	private static Integer getAllByTypeCount(String type, PagingParameters pagingParams, Connection connection)
+			throws SQLException {
+		String query = getQueryGroup().getQuery(GET_ALL_BY_TYPE_COUNT);
+		// Can't be estimated from the table statistics
+		return CountCache.get(getModelClass(), query, pagingParams,
+				() -> loadAllByTypeCount(type, pagingParams, connection), null, type);
+	}
+
 	/**
 	 * Get the count of all the {@link SlurmBgpsec}s by type, return 0 when no
 	 * records are found
@@ -424,14 +482,14 @@ public class SlurmBgpsecModel extends DatabaseModel {
 	 *         found
 	 * @throws SQLException
 	 */
-	private static Integer getAllByTypeCount(String type, PagingParameters pagingParams, Connection connection)
+	private static Integer loadAllByTypeCount(String type, PagingParameters pagingParams, Connection connection)
 			throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL_BY_TYPE_COUNT);
 		query = Util.getQueryWithPaging(query, pagingParams, SlurmBgpsecDbObject.propertyToColumnMap);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setString(1, type);
 			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 2);
+			Util.setFilterParam(pagingParams, SlurmBgpsecDbObject.propertyToColumnMap, statement, 2);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			if (rs.next()) {
 				return rs.getInt(1);
@@ -7,6 +7,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import mx.nic.lab.rpki.db.pojo.PagingParameters;
@@ -37,6 +38,12 @@ public class SlurmModel extends DatabaseModel {
 	private static final String GET_LAST_CHECKSUM = "getLastChecksum";
 	private static final String UPDATE_LAST_CHECKSUM = "updateLastChecksum";
 
+	/**
+	 * Incremented each time the SLURM (prefixes or BGPsec) changes, so that its
+	 * consumers can detect the changes without reading it again
+	 */
+	private static final AtomicLong generation = new AtomicLong();
+
 	/**
 	 * Loads the queries corresponding to this model, based on the QUERY_GROUP
 	 * constant
@@ -61,6 +68,24 @@ public class SlurmModel extends DatabaseModel {
 		return SlurmModel.class;
 	}
 
+	/**
+	 * Get the current generation of the SLURM, it changes each time the SLURM is
+	 * modified (see {@link #markChanged()})
+	 * 
+	 * @return The current generation
+	 */
+	public static long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Mark the SLURM as changed; MUST be called whenever the SLURM prefixes or
+	 * BGPsec change
+	 */
+	public static void markChanged() {
+		generation.incrementAndGet();
+	}
+
 	/**
 	 * Get the complete {@link Slurm}, with both {@link SlurmPrefix} and
 	 * {@link SlurmBgpsec} lists.
@@ -16,6 +16,7 @@ import mx.nic.lab.rpki.db.pojo.PagingParameters;
 import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
 import mx.nic.lab.rpki.prov.database.QueryGroup;
 import mx.nic.lab.rpki.prov.object.SlurmPrefixDbObject;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
 
 /**
  * Model to retrieve SLURM Prefix data from the database
@@ -39,17 +40,16 @@ public class SlurmPrefixModel extends DatabaseModel {
 	private static final String GET_ALL = "getAll";
 	private static final String GET_ALL_BY_TYPE = "getAllByType";
 	private static final String GET_ALL_COUNT = "getAllCount";
+	private static final String GET_ALL_COUNT_ESTIMATE = "getAllCountEstimate";
 	private static final String GET_ALL_BY_TYPE_COUNT = "getAllByTypeCount";
-	private static final String FIND_EXACT_MATCH = "findExactMatch";
-	private static final String FIND_COVERING_AGGREGATE = "findCoveringAggregate";
-	private static final String FIND_MORE_SPECIFIC = "findMoreSpecific";
-	private static final String FIND_FILTER_MATCH = "findFilterMatch";
 	private static final String EXIST = "exist";
 	private static final String CREATE = "create";
 	private static final String DELETE_BY_ID = "deleteById";
 	private static final String DELETE_ALL = "deleteAll";
 	private static final String UPDATE_COMMENT = "updateComment";
 	private static final String UPDATE_ORDER = "updateOrder";
+	private static final String GET_WITHOUT_NUMERIC_PREFIX = "getWithoutNumericPrefix";
+	private static final String UPDATE_NUMERIC_PREFIX = "updateNumericPrefix";
 
 	/**
 	 * Loads the queries corresponding to this model, based on the QUERY_GROUP
@@ -111,15 +111,17 @@ public class SlurmPrefixModel extends DatabaseModel {
 	public static ListResult<SlurmPrefix> getAll(PagingParameters pagingParams, Connection connection)
 			throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL);
-		query = Util.getQueryWithPaging(query, pagingParams, SlurmPrefixDbObject.propertyToColumnMap);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 1);
+		KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams,
+				SlurmPrefixDbObject.propertyToColumnMap, SlurmPrefixDbObject.ID_COLUMN);
+		try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
+			// Set the filter and seek to the query (if the params were added)
+			paging.setParams(statement, 1);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			List<SlurmPrefix> slurmPrefixes = new ArrayList<SlurmPrefix>();
 			while (rs.next()) {
 				SlurmPrefixDbObject slurmPrefix = new SlurmPrefixDbObject(rs);
 				slurmPrefixes.add(slurmPrefix);
+				paging.onRow(rs);
 			}
 			Integer totalFound = getAllCount(pagingParams, connection);
 			return new ListResult<SlurmPrefix>(slurmPrefixes, totalFound);
@@ -138,16 +140,18 @@ public class SlurmPrefixModel extends DatabaseModel {
 	public static ListResult<SlurmPrefix> getAllByType(String type, PagingParameters pagingParams,
 			Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL_BY_TYPE);
-		query = Util.getQueryWithPaging(query, pagingParams, SlurmPrefixDbObject.propertyToColumnMap);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+		KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams,
+				SlurmPrefixDbObject.propertyToColumnMap, SlurmPrefixDbObject.ID_COLUMN, type);
+		try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
 			statement.setString(1, type);
-			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 2);
+			// Set the filter and seek to the query (if the params were added)
+			paging.setParams(statement, 2);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			List<SlurmPrefix> slurmPrefixes = new ArrayList<SlurmPrefix>();
 			while (rs.next()) {
 				SlurmPrefixDbObject slurmPrefix = new SlurmPrefixDbObject(rs);
 				slurmPrefixes.add(slurmPrefix);
+				paging.onRow(rs);
 			}
 			Integer totalFound = getAllByTypeCount(type, pagingParams, connection);
 			return new ListResult<SlurmPrefix>(slurmPrefixes, totalFound);
@@ -410,136 +414,95 @@ public class SlurmPrefixModel extends DatabaseModel {
 			}
 		} finally {
 			// Commit what has been done
-			connection.commit();
+			commit(connection);
 			connection.setAutoCommit(originalAutoCommit);
 		}
 	}
 
 	/**
-	 * Find a {@link SlurmPrefix} that covers the specified prefix, return null if
-	 * no record is found
+	 * Fill the numeric prefix columns of the SLURM prefixes stored before those columns
+	 * existed, the rows are updated in chunks of {@link Util#MAX_IN_PARAMETERS}
 	 * 
-	 * @param prefix
-	 * @param prefixLength
 	 * @param connection
-	 * @return The {@link SlurmPrefix} that matches (or covers) the prefix
+	 * @return the number of updated SLURM prefixes
 	 * @throws SQLException
 	 */
-	public static SlurmPrefix findExactMatch(byte[] prefix, Integer prefixLength, Connection connection)
-			throws SQLException {
-		String query = getQueryGroup().getQuery(FIND_EXACT_MATCH);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setString(1, SlurmPrefix.TYPE_ASSERTION);
-			statement.setBytes(2, prefix);
-			statement.setInt(3, prefixLength);
-			statement.setInt(4, prefixLength);
-			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			if (!rs.next()) {
-				return null;
-			}
-			SlurmPrefixDbObject slurmPrefix = null;
+	public static int updateNumericPrefixes(Connection connection) throws SQLException {
+		String selectQuery = getQueryGroup().getQuery(GET_WITHOUT_NUMERIC_PREFIX);
+		String updateQuery = getQueryGroup().getQuery(UPDATE_NUMERIC_PREFIX);
+		int result = 0;
+		boolean originalAutoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try (PreparedStatement selectStatement = prepareStatement(connection, selectQuery, getModelClass());
+				PreparedStatement updateStatement = prepareStatement(connection, updateQuery, getModelClass())) {
+			int selected;
+			int updated;
 			do {
-				slurmPrefix = new SlurmPrefixDbObject(rs);
-			} while (rs.next());
-
-			return slurmPrefix;
+				selected = 0;
+				updated = 0;
+				selectStatement.setInt(1, Util.MAX_IN_PARAMETERS);
+				ResultSet rs = executeQuery(selectStatement, getModelClass(), logger);
+				while (rs.next()) {
+					selected++;
+					SlurmPrefixDbObject slurmPrefix = new SlurmPrefixDbObject();
+					slurmPrefix.setStartPrefix(rs.getBytes(SlurmPrefixDbObject.START_PREFIX_COLUMN));
+					slurmPrefix.setEndPrefix(rs.getBytes(SlurmPrefixDbObject.END_PREFIX_COLUMN));
+					if (IpPrefix.getMaxLength(slurmPrefix.getStartPrefix()) < 0
+							|| slurmPrefix.getEndPrefix() == null) {
+						// Can't be converted, it's left as is
+						continue;
+					}
+					slurmPrefix.storeNumericPrefix(updateStatement, 1);
+					updateStatement.setLong(6, rs.getLong(SlurmPrefixDbObject.ID_COLUMN));
+					updateStatement.addBatch();
+					updated++;
+				}
+				if (updated > 0) {
+					executeBatch(updateStatement, getModelClass(), logger);
+					commit(connection);
+					result += updated;
+				}
+			} while (selected == Util.MAX_IN_PARAMETERS && updated > 0);
+		} finally {
+			// Commit what has been done
+			commit(connection);
+			connection.setAutoCommit(originalAutoCommit);
 		}
+		return result;
 	}
 
 	/**
-	 * Find all the candidate {@link SlurmPrefix}s that are covering aggregates of
-	 * the prefix received, this list still needs some work to effectively determine
-	 * if any of the {@link SlurmPrefix}s is a covering aggregate of the prefix (the
-	 * database doesn't fully support binary operators on BINARYs, so thats why only
-	 * the candidates are returned)
+	 * Get the estimated count of all the {@link SlurmPrefix}es, taken from the
+	 * table statistics
 	 * 
-	 * @param prefix
-	 * @param prefixLength
 	 * @param connection
-	 * @return List of candidate {@link SlurmPrefix}s that are covering aggregate of
-	 *         the received prefix
+	 * @return The estimated count, or <code>null</code> if there are no statistics
 	 * @throws SQLException
 	 */
-	public static List<SlurmPrefix> findCoveringAggregate(byte[] prefix, Integer prefixLength, Connection connection)
-			throws SQLException {
-		String query = getQueryGroup().getQuery(FIND_COVERING_AGGREGATE);
+	private static Integer getAllCountEstimate(Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_ALL_COUNT_ESTIMATE);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setString(1, SlurmPrefix.TYPE_ASSERTION);
-			statement.setBytes(2, prefix);
-			statement.setInt(3, prefixLength);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			List<SlurmPrefix> slurmPrefixes = new ArrayList<SlurmPrefix>();
-			while (rs.next()) {
-				SlurmPrefixDbObject slurmPrefix = new SlurmPrefixDbObject(rs);
-				slurmPrefixes.add(slurmPrefix);
-			}
-			return slurmPrefixes;
-		}
-	}
-
-	/**
-	 * Find all the candidate {@link SlurmPrefix}s that are more specific than the
-	 * prefix received, this list still needs some work to effectively determine if
-	 * any of the {@link SlurmPrefix}s is more specific than the prefix (the
-	 * database doesn't fully support binary operators on BINARYs, so thats why only
-	 * the candidates are returned)
-	 * 
-	 * @param prefix
-	 * @param prefixLength
-	 * @param connection
-	 * @return List of candidate {@link SlurmPrefix}s that are more specific than
-	 *         the received prefix
-	 * @throws SQLException
-	 */
-	public static List<SlurmPrefix> findMoreSpecific(byte[] prefix, Integer prefixLength, Connection connection)
-			throws SQLException {
-		String query = getQueryGroup().getQuery(FIND_MORE_SPECIFIC);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setString(1, SlurmPrefix.TYPE_ASSERTION);
-			statement.setBytes(2, prefix);
-			statement.setInt(3, prefixLength);
-			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			List<SlurmPrefix> slurmPrefixes = new ArrayList<SlurmPrefix>();
-			while (rs.next()) {
-				SlurmPrefixDbObject slurmPrefix = new SlurmPrefixDbObject(rs);
-				slurmPrefixes.add(slurmPrefix);
+			if (rs.next()) {
+				return rs.getInt(1);
 			}
-			return slurmPrefixes;
+			return null;
 		}
 	}
 
 	/**
-	 * Find if there's a filter that covers the prefix data sent
+	 * Get the count of all the {@link SlurmPrefix}es, from the {@link CountCache}
+	 * when it's still valid (see
+	 * {@link #loadAllCount(PagingParameters, Connection)})
 	 * 
-	 * @param asn
-	 * @param prefix
-	 * @param prefixLength
+	 * @param pagingParams
 	 * @param connection
-	 * @return The {@link SlurmPrefix} filter that covers the prefix
+	 * @return The count of all {@link SlurmPrefix}es
 	 * @throws SQLException
 	 */
-	public static SlurmPrefix findFilterMatch(Long asn, byte[] prefix, Integer prefixLength, Connection connection)
-			throws SQLException {
-		String query = getQueryGroup().getQuery(FIND_FILTER_MATCH);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			statement.setString(1, SlurmPrefix.TYPE_FILTER);
-			statement.setLong(2, asn);
-			statement.setBytes(3, prefix);
-			statement.setInt(4, prefixLength);
-			statement.setLong(5, asn);
-			statement.setBytes(6, prefix);
-			statement.setInt(7, prefixLength);
-			ResultSet rs = executeQuery(statement, getModelClass(), logger);
-			if (!rs.next()) {
-				return null;
-			}
-			SlurmPrefixDbObject slurmPrefix = null;
-			do {
-				slurmPrefix = new SlurmPrefixDbObject(rs);
-			} while (rs.next());
-
-			return slurmPrefix;
-		}
+	private static Integer getAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
+		return CountCache.get(getModelClass(), getQueryGroup().getQuery(GET_ALL_COUNT), pagingParams,
+				() -> loadAllCount(pagingParams, connection), () -> getAllCountEstimate(connection));
 	}
 
 	/**
@@ -551,12 +514,12 @@ public class SlurmPrefixModel extends DatabaseModel {
 	 * @return The count of all {@link SlurmPrefix}es, or 0 when no data is found
 	 * @throws SQLException
 	 */
-	private static Integer getAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
+	private static Integer loadAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL_COUNT);
 		query = Util.getQueryWithPaging(query, pagingParams, SlurmPrefixDbObject.propertyToColumnMap);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 1);
+			Util.setFilterParam(pagingParams, SlurmPrefixDbObject.propertyToColumnMap, statement, 1);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			if (rs.next()) {
 				return rs.getInt(1);
@@ -565,6 +528,25 @@ public class SlurmPrefixModel extends DatabaseModel {
 		}
 	}
 
+	/**
+	 * Get the count of all the {@link SlurmPrefix}es by type, from the
+	 * {@link CountCache} when it's still valid (see
+	 * {@link #loadAllByTypeCount(String, PagingParameters, Connection)})
+	 * 
+	 * @param type
+	 * @param pagingParams
+	 * @param connection
+	 * @return The count of all {@link SlurmPrefix}es by type
+	 * @throws SQLException
+	 */
+	private static Integer getAllByTypeCount(String type, PagingParameters pagingParams, Connection connection)
+			throws SQLException {
+		String query = getQueryGroup().getQuery(GET_ALL_BY_TYPE_COUNT);
+		// Can't be estimated from the table statistics
+		return CountCache.get(getModelClass(), query, pagingParams,
+				() -> loadAllByTypeCount(type, pagingParams, connection), null, type);
+	}
+
 	/**
 	 * Get the count of all the {@link SlurmPrefix}es by type, return 0 when no
 	 * records are found
@@ -576,14 +558,14 @@ public class SlurmPrefixModel extends DatabaseModel {
 	 *         found
 	 * @throws SQLException
 	 */
-	private static Integer getAllByTypeCount(String type, PagingParameters pagingParams, Connection connection)
+	private static Integer loadAllByTypeCount(String type, PagingParameters pagingParams, Connection connection)
 			throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL_BY_TYPE_COUNT);
 		query = Util.getQueryWithPaging(query, pagingParams, SlurmPrefixDbObject.propertyToColumnMap);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setString(1, type);
 			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 2);
+			Util.setFilterParam(pagingParams, SlurmPrefixDbObject.propertyToColumnMap, statement, 2);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			if (rs.next()) {
 				return rs.getInt(1);
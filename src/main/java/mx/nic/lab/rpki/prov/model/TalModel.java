@@ -39,12 +39,32 @@ public class TalModel extends DatabaseModel {
 	private static final String GET_BY_RPKI_REPO_ID = "getByRpkiRepositoryId";
 	private static final String GET_ALL = "getAll";
 	private static final String GET_ALL_COUNT = "getAllCount";
+	private static final String GET_ALL_COUNT_ESTIMATE = "getAllCountEstimate";
 	private static final String GET_BY_UNIQUE = "getByUnique";
 	private static final String EXIST = "exist";
 	private static final String CREATE = "create";
 	private static final String DELETE = "delete";
 	private static final String UPDATE_LOADED_CER = "updateLoadedCer";
 
+	/**
+	 * Related objects loaded along with a {@link Tal}
+	 */
+	public enum Projection {
+		/**
+		 * Only the TAL URIs
+		 */
+		URIS,
+		/**
+		 * The TAL URIs and the validation runs, without the checks and repositories
+		 * of each run
+		 */
+		SUMMARY,
+		/**
+		 * The TAL URIs and the validation runs with all their related objects
+		 */
+		FULL
+	}
+
 	/**
 	 * Loads the queries corresponding to this model, based on the QUERY_GROUP
 	 * constant
@@ -78,6 +98,20 @@ public class TalModel extends DatabaseModel {
 	 * @throws SQLException
 	 */
 	public static Tal getById(Long id, Connection connection) throws SQLException {
+		return getById(id, Projection.FULL, connection);
+	}
+
+	/**
+	 * Get a {@link Tal} by its ID loading only the related objects of the
+	 * <code>projection</code>, return null if no data is found
+	 * 
+	 * @param id
+	 * @param projection
+	 * @param connection
+	 * @return The {@link Tal} found
+	 * @throws SQLException
+	 */
+	public static Tal getById(Long id, Projection projection, Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_BY_ID);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setLong(1, id);
@@ -88,7 +122,7 @@ public class TalModel extends DatabaseModel {
 			Tal tal = null;
 			do {
 				tal = new TalDbObject(rs);
-				loadRelatedObjects(tal, true, connection);
+				loadRelatedObjects(tal, projection, connection);
 			} while (rs.next());
 
 			return tal;
@@ -104,16 +138,33 @@ public class TalModel extends DatabaseModel {
 	 * @throws SQLException
 	 */
 	public static ListResult<Tal> getAll(PagingParameters pagingParams, Connection connection) throws SQLException {
+		return getAll(pagingParams, Projection.FULL, connection);
+	}
+
+	/**
+	 * Get all the {@link Tal}s found loading only the related objects of the
+	 * <code>projection</code>
+	 * 
+	 * @param pagingParams
+	 * @param projection
+	 * @param connection
+	 * @return The {@link ListResult} of {@link Tal}s found
+	 * @throws SQLException
+	 */
+	public static ListResult<Tal> getAll(PagingParameters pagingParams, Projection projection, Connection connection)
+			throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL);
-		query = Util.getQueryWithPaging(query, pagingParams, TalDbObject.propertyToColumnMap);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 1);
+		KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams, TalDbObject.propertyToColumnMap,
+				TalDbObject.ID_COLUMN);
+		try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
+			// Set the filter and seek to the query (if the params were added)
+			paging.setParams(statement, 1);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			List<Tal> tals = new ArrayList<Tal>();
 			while (rs.next()) {
+				paging.onRow(rs);
 				TalDbObject tal = new TalDbObject(rs);
-				loadRelatedObjects(tal, true, connection);
+				loadRelatedObjects(tal, projection, connection);
 				tals.add(tal);
 			}
 			Integer totalFound = getAllCount(pagingParams, connection);
@@ -139,7 +190,7 @@ public class TalModel extends DatabaseModel {
 			Tal found = null;
 			do {
 				found = new TalDbObject(rs);
-				loadRelatedObjects(found, false, connection);
+				loadRelatedObjects(found, Projection.URIS, connection);
 			} while (rs.next());
 
 			return found;
@@ -190,7 +241,11 @@ public class TalModel extends DatabaseModel {
 
 	/**
 	 * Delete a {@link Tal}, this assumes that the DB has a "ON DELETE CASCADE"
-	 * related constraint
+	 * related constraint. The objects of its repositories are deleted first, in
+	 * chunks (see {@link RpkiRepositoryModel#deleteByTalId(Long, Connection)}),
+	 * so the cascade of the last statements is small. Once deleted, the
+	 * hierarchy of the remaining objects is updated (see
+	 * {@link RpkiObjectModel#updateHierarchy(Connection)}).
 	 * 
 	 * @param tal
 	 * @param connection
@@ -201,10 +256,15 @@ public class TalModel extends DatabaseModel {
 		// Delete the related repositories and objects
 		RpkiRepositoryModel.deleteByTalId(tal.getId(), connection);
 		String query = getQueryGroup().getQuery(DELETE);
+		int deleted;
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setLong(1, tal.getId());
-			return executeUpdate(statement, getModelClass(), logger);
+			deleted = executeUpdate(statement, getModelClass(), logger);
+		}
+		if (deleted > 0) {
+			RpkiObjectModel.updateHierarchy(connection);
 		}
+		return deleted;
 	}
 
 	/**
@@ -223,7 +283,7 @@ public class TalModel extends DatabaseModel {
 			Set<Tal> tals = new HashSet<>();
 			while (rs.next()) {
 				TalDbObject tal = new TalDbObject(rs);
-				loadRelatedObjects(tal, false, connection);
+				loadRelatedObjects(tal, Projection.URIS, connection);
 				tals.add(tal);
 			}
 			return tals;
@@ -248,17 +308,20 @@ public class TalModel extends DatabaseModel {
 	}
 
 	/**
-	 * Load all the related objects to the TAL
+	 * Load the related objects to the TAL according to the
+	 * <code>projection</code>
 	 * 
 	 * @param tal
+	 * @param projection
 	 * @param connection
 	 * @throws SQLException
 	 */
-	private static void loadRelatedObjects(Tal tal, boolean loadValidationRuns, Connection connection)
+	private static void loadRelatedObjects(Tal tal, Projection projection, Connection connection)
 			throws SQLException {
 		Long talId = tal.getId();
-		if (loadValidationRuns) {
-			tal.setValidationRuns(ValidationRunModel.getByTalId(talId, connection));
+		if (projection != Projection.URIS) {
+			tal.setValidationRuns(
+					ValidationRunModel.getByTalId(talId, projection == Projection.FULL, connection));
 		}
 		tal.setTalUris(TalUriModel.getByTalId(talId, connection));
 	}
@@ -321,11 +384,44 @@ public class TalModel extends DatabaseModel {
 				return null;
 			}
 			TalDbObject found = new TalDbObject(resultSet);
-			loadRelatedObjects(found, false, connection);
+			loadRelatedObjects(found, Projection.URIS, connection);
 			return found;
 		}
 	}
 
+	/**
+	 * Get the estimated count of all the {@link Tal}s, taken from the table
+	 * statistics
+	 * 
+	 * @param connection
+	 * @return The estimated count, or <code>null</code> if there are no statistics
+	 * @throws SQLException
+	 */
+	private static Integer getAllCountEstimate(Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_ALL_COUNT_ESTIMATE);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			if (rs.next()) {
+				return rs.getInt(1);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Get the count of all the {@link Tal}s, from the {@link CountCache} when
+	 * it's still valid (see {@link #loadAllCount(PagingParameters, Connection)})
+	 * 
+	 * @param pagingParams
+	 * @param connection
+	 * @return The count of all {@link Tal}s
+	 * @throws SQLException
+	 */
+	private static Integer getAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
+		return CountCache.get(getModelClass(), getQueryGroup().getQuery(GET_ALL_COUNT), pagingParams,
+				() -> loadAllCount(pagingParams, connection), () -> getAllCountEstimate(connection));
+	}
+
 	/**
 	 * Get the count of all the {@link Tal}s, return 0 when no records are found
 	 * 
@@ -333,11 +429,11 @@ public class TalModel extends DatabaseModel {
 	 * @return The count of all {@link Tal}s, or 0 when no data is found
 	 * @throws SQLException
 	 */
-	private static Integer getAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
+	private static Integer loadAllCount(PagingParameters pagingParams, Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_ALL_COUNT);
 		query = Util.getQueryWithPaging(query, pagingParams, TalDbObject.propertyToColumnMap);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			Util.setFilterParam(pagingParams, statement, 1);
+			Util.setFilterParam(pagingParams, TalDbObject.propertyToColumnMap, statement, 1);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			if (rs.next()) {
 				return rs.getInt(1);
@@ -2,10 +2,14 @@ package mx.nic.lab.rpki.prov.model;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
 
 /**
  * Static util functions useful for common actions
@@ -18,9 +22,79 @@ public class Util {
 	 */
 	public static final char SQL_ESCAPE_CHAR = '\\';
 
+	/**
+	 * How a filter is applied to its column
+	 */
+	enum FilterMode {
+		/**
+		 * A 'like' of the column, without index
+		 */
+		LIKE,
+		/**
+		 * A range of the column values that start with the filter, using the
+		 * ordinary index of the column
+		 */
+		PREFIX,
+		/**
+		 * A 'like' of the rows that have all the n-grams of the filter, using the
+		 * {@link SearchIndexModel}
+		 */
+		GRAMS
+	}
+
+	/**
+	 * Max number of parameters used at a SQL 'in' list, bigger lists must be
+	 * split in several queries
+	 */
+	public static final int MAX_IN_PARAMETERS = 500;
+
+	/**
+	 * Get the clause " and <code>column</code> in (?, ?, ...) " with
+	 * <code>size</code> parameters, useful to replace the "[and]" parameter of the
+	 * queries
+	 * 
+	 * @param column
+	 * @param size
+	 * @return The clause with the 'in' list
+	 */
+	public static String getInClause(String column, int size) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(" and ").append(column).append(" in (");
+		for (int i = 0; i < size; i++) {
+			sb.append("?");
+			if (i < size - 1) {
+				sb.append(", ");
+			}
+		}
+		sb.append(") ");
+		return sb.toString();
+	}
+
+	/**
+	 * Split the <code>values</code> in lists of at most
+	 * {@link #MAX_IN_PARAMETERS} elements, so that they can be used as parameters
+	 * of an 'in' list
+	 * 
+	 * @param values
+	 * @return The list of partitions
+	 */
+	public static <T> List<List<T>> partition(Collection<T> values) {
+		List<List<T>> result = new ArrayList<>();
+		List<T> current = null;
+		for (T value : values) {
+			if (current == null || current.size() == MAX_IN_PARAMETERS) {
+				current = new ArrayList<>(Math.min(MAX_IN_PARAMETERS, values.size()));
+				result.add(current);
+			}
+			current.add(value);
+		}
+		return result;
+	}
+
 	/**
 	 * Return the query with the "[filter]", "[order]" and "[limit]" parameters
-	 * replaced with its corresponding values.<br>
+	 * replaced with its corresponding values (the "[seek]" parameter of the
+	 * queries that support {@link KeysetPaging} is removed).<br>
 	 * The <code>propertyToColumnMap</code> is used to know what column corresponds
 	 * to each key in <code>sort</code> map.
 	 * 
@@ -31,39 +105,62 @@ public class Util {
 	 *            filter, no limit, no offset, no sort is desired. Otherwise the
 	 *            properties mean:
 	 *            <li>filter: Desired filter to apply to the query, it translates
-	 *            into a LIKE statement, leaving a parameter ('?') that must be
-	 *            replaced with {@link PagingParameters#getFilterQuery()} value
+	 *            into a LIKE statement of the text anywhere at the column (or at
+	 *            its start if the prefix search is enabled and the filter query
+	 *            starts with its marker, see
+	 *            {@link SearchIndexModel#isPrefixFilter(String)}), leaving the
+	 *            parameters that must be set with
+	 *            {@link #setFilterParam(PagingParameters, Map, PreparedStatement, int)}.
+	 *            If the column is indexed at the {@link SearchIndexModel}, the
+	 *            search uses its n-grams, and the prefix search is an index range
+	 *            scan.
 	 *            <li>limit: Desired limit to the query, it translates into a LIMIT
 	 *            statement (if less than or equal to 0 then it's ignored, as well
 	 *            as the offset)
 	 *            <li>offset: Desired offset to the query, placed as an OFFSET
 	 *            statement after the LIMIT (if less than 0 then it's ignored)
+	 *            <br>
+	 *            The limit and offset are parameters, so every page of a listing
+	 *            uses the same SQL; its values are set with
+	 *            {@link #setLimitParams(PagingParameters, PreparedStatement, int)}
 	 *            <li>sort: Columns used for sorting, the order does matter; the key
 	 *            at the {@link LinkedHashMap} is the POJOs property and the value
 	 *            is the ordering term (asc or desc)
 	 * @param propertyToColumnMap
 	 *            The mapping of the POJO properties to the corresponding DB columns
-	 * @return the updated query with the specified parameters
+	 * @return the updated query with the specified parameters, the result is taken
+	 *         from the {@link QueryCache} when available
 	 */
 	public static String getQueryWithPaging(String query, PagingParameters pagingParams,
 			Map<String, String> propertyToColumnMap) {
+		// The clause depends on how the filter is applied
+		FilterMode filterMode = getFilterMode(pagingParams, propertyToColumnMap);
+		return QueryCache.get(query, pagingParams, filterMode != null ? filterMode.name() : null,
+				() -> buildQueryWithPaging(query, pagingParams, propertyToColumnMap));
+	}
+
+	/**
+	 * Build the query as described at
+	 * {@link #getQueryWithPaging(String, PagingParameters, Map)}, without using the
+	 * {@link QueryCache}
+	 * 
+	 * @param query
+	 * @param pagingParams
+	 * @param propertyToColumnMap
+	 * @return the updated query with the specified parameters
+	 */
+	private static String buildQueryWithPaging(String query, PagingParameters pagingParams,
+			Map<String, String> propertyToColumnMap) {
 		if (pagingParams == null) {
-			return query.replace("[filter]", "").replace("[order]", "").replace("[limit]", "");
+			return query.replace("[filter]", "").replace("[seek]", "").replace("[order]", "")
+					.replace("[limit]", "");
 		}
-		StringBuilder sbFilter = new StringBuilder();
 		StringBuilder sbSort = new StringBuilder();
 		StringBuilder sbLimit = new StringBuilder();
-		String filterColumn = pagingParams.getFilterField();
 		int limit = pagingParams.getLimit();
 		int offset = pagingParams.getOffset();
 		LinkedHashMap<String, String> sort = pagingParams.getSort();
-		if (filterColumn != null && pagingParams.getFilterQuery() != null) {
-			sbFilter.append(" and ");
-			sbFilter.append(propertyToColumnMap.get(filterColumn));
-			sbFilter.append(" like ? escape '");
-			sbFilter.append(SQL_ESCAPE_CHAR);
-			sbFilter.append("' ");
-		}
+		String filter = getFilterClause(pagingParams, propertyToColumnMap);
 		if (sort != null && !sort.isEmpty()) {
 			sbSort.append(" order by ");
 			for (String prop : sort.keySet()) {
@@ -76,44 +173,221 @@ public class Util {
 			sbSort.append(" ");
 		}
 		if (limit > 0) {
-			sbLimit.append(" limit ").append(limit);
+			sbLimit.append(" limit ?");
 			if (offset >= 0) {
-				sbLimit.append(" offset ").append(offset);
+				sbLimit.append(" offset ?");
 			}
 			sbLimit.append(" ");
 		}
 
-		return query.replace("[filter]", sbFilter.toString()).replace("[order]", sbSort.toString()).replace("[limit]",
-				sbLimit.toString());
+		return query.replace("[filter]", filter).replace("[seek]", "")
+				.replace("[order]", sbSort.toString()).replace("[limit]", sbLimit.toString());
+	}
+
+	/**
+	 * Get how the filter of the <code>pagingParams</code> is applied
+	 * 
+	 * @param pagingParams
+	 * @param propertyToColumnMap
+	 * @return The {@link FilterMode}, or <code>null</code> if there's no filter
+	 */
+	static FilterMode getFilterMode(PagingParameters pagingParams, Map<String, String> propertyToColumnMap) {
+		if (pagingParams == null || pagingParams.getFilterField() == null || pagingParams.getFilterQuery() == null) {
+			return null;
+		}
+		String column = propertyToColumnMap != null ? propertyToColumnMap.get(pagingParams.getFilterField()) : null;
+		if (!SearchIndexModel.isIndexed(column)) {
+			return FilterMode.LIKE;
+		}
+		String filterQuery = pagingParams.getFilterQuery();
+		if (SearchIndexModel.isPrefixFilter(filterQuery)) {
+			return FilterMode.PREFIX;
+		}
+		return filterQuery.length() >= SearchIndexModel.GRAM_LENGTH ? FilterMode.GRAMS : FilterMode.LIKE;
+	}
+
+	/**
+	 * Get the clause used to replace the "[filter]" parameter, as described at
+	 * {@link #getQueryWithPaging(String, PagingParameters, Map)}
+	 * 
+	 * @param pagingParams
+	 * @param propertyToColumnMap
+	 * @return The filter clause, or an empty string if there's no filter
+	 */
+	static String getFilterClause(PagingParameters pagingParams, Map<String, String> propertyToColumnMap) {
+		FilterMode filterMode = getFilterMode(pagingParams, propertyToColumnMap);
+		if (filterMode == null) {
+			return "";
+		}
+		String column = propertyToColumnMap.get(pagingParams.getFilterField());
+		StringBuilder sbFilter = new StringBuilder();
+		sbFilter.append(" and ");
+		if (filterMode == FilterMode.PREFIX) {
+			sbFilter.append(column).append(" >= ? and ").append(column).append(" < ? ");
+			return sbFilter.toString();
+		}
+		sbFilter.append(column);
+		sbFilter.append(" like ? escape '");
+		sbFilter.append(SQL_ESCAPE_CHAR);
+		sbFilter.append("' ");
+		if (filterMode == FilterMode.GRAMS) {
+			// The rows that have all the n-grams, the 'like' discards the false positives
+			sbFilter.append(" and ").append(SearchIndexModel.getIdColumn(column));
+			sbFilter.append(" in (select sgr_row_id from search_gram where sgr_column = '").append(column);
+			sbFilter.append("' and sgr_gram in (select x from table(x varchar = ?))");
+			sbFilter.append(" group by sgr_row_id having count(*) = ?) ");
+		}
+		return sbFilter.toString();
 	}
 
 	/**
-	 * Set the filter parameter value, if present in the <code>pagingParams</code>,
-	 * at the <code>statement</code>, using the index <code>filterIndex</code>
+	 * Set the filter parameters values, if present in the
+	 * <code>pagingParams</code>, at the <code>statement</code>, starting at the
+	 * index <code>filterIndex</code>; the parameters depend on how the filter is
+	 * applied (see {@link #getQueryWithPaging(String, PagingParameters, Map)})
 	 * 
 	 * @param pagingParams
+	 * @param propertyToColumnMap
 	 * @param statement
 	 * @param filterIndex
+	 * @return The index of the next parameter
 	 * @throws SQLException
 	 */
-	public static void setFilterParam(PagingParameters pagingParams, PreparedStatement statement, int filterIndex)
+	public static int setFilterParam(PagingParameters pagingParams, Map<String, String> propertyToColumnMap,
+			PreparedStatement statement, int filterIndex) throws SQLException {
+		FilterMode filterMode = getFilterMode(pagingParams, propertyToColumnMap);
+		if (filterMode == null) {
+			return filterIndex;
+		}
+		int index = filterIndex;
+		String filterQuery = pagingParams.getFilterQuery();
+		boolean prefix = SearchIndexModel.isPrefixFilter(filterQuery);
+		if (prefix) {
+			filterQuery = filterQuery.substring(1);
+		}
+		switch (filterMode) {
+		case PREFIX:
+			// All the values that start with the filter are in [filter, filter + max char)
+			statement.setString(index++, filterQuery);
+			statement.setString(index++, filterQuery + Character.MAX_VALUE);
+			break;
+		case GRAMS:
+			statement.setString(index++, getCleanLikeString(filterQuery, false));
+			Object[] grams = SearchIndexModel.getGrams(filterQuery).toArray();
+			statement.setObject(index++, grams);
+			statement.setInt(index++, grams.length);
+			break;
+		default:
+			statement.setString(index++, getCleanLikeString(filterQuery, prefix));
+			break;
+		}
+		return index;
+	}
+
+	/**
+	 * Set the limit and offset parameters, if present in the
+	 * <code>pagingParams</code>, at the <code>statement</code>, starting at the
+	 * <code>index</code>; only for the queries with the "[limit]" parameter (see
+	 * {@link #getQueryWithPaging(String, PagingParameters, Map)})
+	 * 
+	 * @param pagingParams
+	 * @param statement
+	 * @param index
+	 * @return The index of the next parameter
+	 * @throws SQLException
+	 */
+	public static int setLimitParams(PagingParameters pagingParams, PreparedStatement statement, int index)
 			throws SQLException {
-		if (pagingParams != null && pagingParams.getFilterField() != null) {
-			statement.setString(filterIndex, getCleanLikeString(pagingParams.getFilterQuery()));
+		if (pagingParams == null || pagingParams.getLimit() <= 0) {
+			return index;
+		}
+		statement.setInt(index++, pagingParams.getLimit());
+		if (pagingParams.getOffset() >= 0) {
+			statement.setInt(index++, pagingParams.getOffset());
+		}
+		return index;
+	}
+
+	/**
+	 * Set the parameters of the covering prefixes lookup at the
+	 * <code>statement</code>, starting at <code>index</code>: the arrays of the
+	 * table with the lengths from 0 to <code>prefixLength</code> and the numeric
+	 * start of the <code>prefix</code> masked to each length (see
+	 * {@link IpPrefix#toSortableHigh(byte[], int)}), and then the prefix family.
+	 * Each row of the table is an exact seek at the (family, length, start)
+	 * index.
+	 * 
+	 * @param statement
+	 * @param index
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The index of the next parameter
+	 * @throws SQLException
+	 */
+	public static int setCoveringPrefixParams(PreparedStatement statement, int index, byte[] prefix,
+			int prefixLength) throws SQLException {
+		Object[] lengths = new Object[prefixLength + 1];
+		Object[] startHighs = new Object[prefixLength + 1];
+		Object[] startLows = new Object[prefixLength + 1];
+		for (int length = 0; length <= prefixLength; length++) {
+			lengths[length] = length;
+			startHighs[length] = IpPrefix.toSortableHigh(prefix, length);
+			startLows[length] = IpPrefix.toSortableLow(prefix, length);
 		}
+		statement.setObject(index++, lengths);
+		statement.setObject(index++, startHighs);
+		statement.setObject(index++, startLows);
+		statement.setInt(index++, IpPrefix.getFamily(prefix));
+		return index;
+	}
+
+	/**
+	 * Set the parameters of the more specific prefixes lookup at the
+	 * <code>statement</code>, starting at <code>index</code>: the array of the
+	 * table with the lengths greater than <code>prefixLength</code>, the prefix
+	 * family and the ranges of the numeric start (high and low values) covered by
+	 * the prefix. Each row of the table is a range seek at the (family, length,
+	 * start) index.
+	 * 
+	 * @param statement
+	 * @param index
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The index of the next parameter
+	 * @throws SQLException
+	 */
+	public static int setMoreSpecificPrefixParams(PreparedStatement statement, int index, byte[] prefix,
+			int prefixLength) throws SQLException {
+		int maxLength = IpPrefix.getMaxLength(prefix);
+		Object[] lengths = new Object[Math.max(maxLength - prefixLength, 0)];
+		for (int i = 0; i < lengths.length; i++) {
+			lengths[i] = prefixLength + 1 + i;
+		}
+		statement.setObject(index++, lengths);
+		statement.setInt(index++, IpPrefix.getFamily(prefix));
+		// The start is within the range if both the high and low values are within
+		// their ranges, one of them is always fixed or fully open
+		statement.setLong(index++, IpPrefix.toSortableHigh(prefix, prefixLength));
+		statement.setLong(index++, IpPrefix.toSortableEndHigh(prefix, prefixLength));
+		statement.setLong(index++, IpPrefix.toSortableLow(prefix, prefixLength));
+		statement.setLong(index++, IpPrefix.toSortableEndLow(prefix, prefixLength));
+		return index;
 	}
 
 	/**
 	 * Get the SQL 'like' escaping undesired chars (%, _, and
-	 * {@link Util#SQL_ESCAPE_CHAR})
+	 * {@link Util#SQL_ESCAPE_CHAR}), so the filter query is matched literally
 	 * 
 	 * @param value
-	 * @return
+	 * @param prefix
+	 *            if the value must be at the start
+	 * @return The pattern to use with "escape '{@link Util#SQL_ESCAPE_CHAR}'"
 	 */
-	private static String getCleanLikeString(String value) {
+	static String getCleanLikeString(String value, boolean prefix) {
+		// The escape char goes first, so the escapes added aren't escaped again
+		value = value.replace("" + SQL_ESCAPE_CHAR, SQL_ESCAPE_CHAR + "" + SQL_ESCAPE_CHAR);
 		value = value.replace("%", SQL_ESCAPE_CHAR + "%");
 		value = value.replace("_", SQL_ESCAPE_CHAR + "_");
-		value = value.replace("" + SQL_ESCAPE_CHAR, SQL_ESCAPE_CHAR + "" + SQL_ESCAPE_CHAR);
-		return "%".concat(value).concat("%");
+		return (prefix ? "" : "%").concat(value).concat("%");
 	}
 }
@@ -132,17 +132,19 @@ public class ValidationCheckModel extends DatabaseModel {
 	public static ListResult<ValidationCheck> getLastSuccessfulChecksByTal(Long talId, PagingParameters pagingParams,
 			Connection connection) throws SQLException {
 		String query = getQueryGroup().getQuery(GET_LAST_SUCCESSFUL_CHECKS_BY_TAL);
-		query = Util.getQueryWithPaging(query, pagingParams, ValidationCheckDbObject.propertyToColumnMap);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+		KeysetPaging paging = KeysetPaging.create(getModelClass(), query, pagingParams,
+				ValidationCheckDbObject.propertyToColumnMap, ValidationCheckDbObject.ID_COLUMN, talId);
+		try (PreparedStatement statement = prepareStatement(connection, paging.getQuery(), getModelClass())) {
 			statement.setLong(1, talId);
-			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 2);
+			// Set the filter and seek to the query (if the params were added)
+			paging.setParams(statement, 2);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			List<ValidationCheck> validationChecks = new ArrayList<ValidationCheck>();
 			if (!rs.next()) {
 				return null;
 			}
 			do {
+				paging.onRow(rs);
 				ValidationCheckDbObject validationCheck = new ValidationCheckDbObject(rs);
 				loadRelatedObjects(validationCheck, connection);
 				validationChecks.add(validationCheck);
@@ -222,7 +224,8 @@ public class ValidationCheckModel extends DatabaseModel {
 	}
 
 	/**
-	 * Store the related objects to a {@link ValidationCheck}
+	 * Store the related objects to a {@link ValidationCheck}, the parameters are
+	 * created with a single statement and batch
 	 * 
 	 * @param validationCheck
 	 * @param connection
@@ -231,37 +234,46 @@ public class ValidationCheckModel extends DatabaseModel {
 	private static void storeRelatedObjects(ValidationCheck validationCheck, Connection connection)
 			throws SQLException {
 		List<String> parameters = validationCheck.getParameters();
-		if (parameters != null) {
+		if (parameters == null || parameters.isEmpty()) {
+			return;
+		}
+		String query = getQueryGroup().getQuery(CREATE_PARAMETER);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			Long lastId = getLastParameterId(validationCheck.getId(), connection);
+			boolean hasParameters = false;
 			for (String parameter : parameters) {
 				if (parameter != null && !parameter.trim().isEmpty()) {
-					createParameter(validationCheck.getId(), parameter.trim(), connection);
+					statement.setLong(1, validationCheck.getId());
+					statement.setLong(2, ++lastId);
+					statement.setString(3, parameter.trim());
+					statement.addBatch();
+					hasParameters = true;
 				}
 			}
+			if (hasParameters) {
+				executeBatch(statement, getModelClass(), logger);
+			}
 		}
 	}
 
 	/**
-	 * Creates the parameter related to a {@link ValidationCheck}, returns false if
-	 * the parameter couldn't be created.
+	 * Get the count of all the {@link ValidationCheck}s related to the last
+	 * successful validation of a TAL, from the {@link CountCache} when it's still
+	 * valid (see
+	 * {@link #loadAllChecksByTalCount(Long, PagingParameters, Connection)})
 	 * 
-	 * @param validationCheckId
-	 * @param parameter
+	 * @param talId
+	 * @param pagingParams
 	 * @param connection
-	 * @return <code>boolean</code> to indicate if the parameter was successfully
-	 *         created
+	 * @return The count of all {@link ValidationCheck}s
 	 * @throws SQLException
 	 */
-	private static boolean createParameter(Long validationCheckId, String parameter, Connection connection)
+	private static Integer getAllChecksByTalCount(Long talId, PagingParameters pagingParams, Connection connection)
 			throws SQLException {
-		String query = getQueryGroup().getQuery(CREATE_PARAMETER);
-		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
-			Long newId = getLastParameterId(validationCheckId, connection) + 1;
-			statement.setLong(1, validationCheckId);
-			statement.setLong(2, newId);
-			statement.setString(3, parameter);
-			int created = executeUpdate(statement, getModelClass(), logger);
-			return created > 0;
-		}
+		String query = getQueryGroup().getQuery(GET_LAST_SUCCESSFUL_CHECKS_BY_TAL_COUNT);
+		// Can't be estimated from the table statistics
+		return CountCache.get(getModelClass(), query, pagingParams,
+				() -> loadAllChecksByTalCount(talId, pagingParams, connection), null, talId);
 	}
 
 	/**
@@ -274,14 +286,14 @@ public class ValidationCheckModel extends DatabaseModel {
 	 * @return The count of all {@link ValidationCheck}s, or 0 when no data is found
 	 * @throws SQLException
 	 */
-	private static Integer getAllChecksByTalCount(Long talId, PagingParameters pagingParams, Connection connection)
+	private static Integer loadAllChecksByTalCount(Long talId, PagingParameters pagingParams, Connection connection)
 			throws SQLException {
 		String query = getQueryGroup().getQuery(GET_LAST_SUCCESSFUL_CHECKS_BY_TAL_COUNT);
 		query = Util.getQueryWithPaging(query, pagingParams, ValidationCheckDbObject.propertyToColumnMap);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setLong(1, talId);
 			// Set the filter to the query (if the param was added)
-			Util.setFilterParam(pagingParams, statement, 2);
+			Util.setFilterParam(pagingParams, ValidationCheckDbObject.propertyToColumnMap, statement, 2);
 			ResultSet rs = executeQuery(statement, getModelClass(), logger);
 			if (rs.next()) {
 				return rs.getInt(1);
@@ -101,6 +101,23 @@ public class ValidationRunModel extends DatabaseModel {
 	 * @throws SQLException
 	 */
 	public static List<ValidationRun> getByTalId(Long talId, Connection connection) throws SQLException {
+		return getByTalId(talId, true, connection);
+	}
+
+	/**
+	 * Get all the {@link ValidationRun}s related to a TAL, the related objects
+	 * (RPKI repositories and validation checks) are loaded only if
+	 * <code>loadRelated</code> is <code>true</code>
+	 * 
+	 * @param talId
+	 * @param loadRelated
+	 * @param connection
+	 * @return The list of {@link ValidationRun}s, or empty list when no data is
+	 *         found
+	 * @throws SQLException
+	 */
+	public static List<ValidationRun> getByTalId(Long talId, boolean loadRelated, Connection connection)
+			throws SQLException {
 		String query = getQueryGroup().getQuery(GET_BY_TAL_ID);
 		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
 			statement.setLong(1, talId);
@@ -109,7 +126,9 @@ public class ValidationRunModel extends DatabaseModel {
 			while (rs.next()) {
 				ValidationRunDbObject validationRun = new ValidationRunDbObject(rs);
 				validationRuns.add(validationRun);
-				loadRelatedObjects(validationRun, connection);
+				if (loadRelated) {
+					loadRelatedObjects(validationRun, connection);
+				}
 			}
 			return validationRuns;
 		}
@@ -157,7 +176,7 @@ public class ValidationRunModel extends DatabaseModel {
 				result = newValidationRun.getId();
 			}
 		} finally {
-			connection.commit();
+			commit(connection);
 			connection.setAutoCommit(originalAutoCommit);
 		}
 		return result;
@@ -185,7 +204,7 @@ public class ValidationRunModel extends DatabaseModel {
 			storeRelatedObjects(validationRun, connection);
 			result = updated;
 		} finally {
-			connection.commit();
+			commit(connection);
 			connection.setAutoCommit(originalAutoCommit);
 		}
 		return result;
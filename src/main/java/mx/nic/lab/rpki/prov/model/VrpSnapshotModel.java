@@ -0,0 +1,824 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mx.nic.lab.rpki.db.exception.InitializationException;
+import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.database.QueryGroup;
+import mx.nic.lab.rpki.prov.object.RoaCandidates;
+import mx.nic.lab.rpki.prov.object.RoaDbObject;
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.object.VrpDelta;
+
+/**
+ * Model to handle the VRP snapshots: complete copies of the {@link Roa}s
+ * identified by a generation number. A snapshot is built aside while the
+ * readers keep using the current one, and it's published with a single pointer
+ * flip; the VRPs of the previous snapshot are deleted asynchronously once the
+ * readers that could still be using it are done.<br>
+ * <br>
+ * The route validation reads the current snapshot, so it always sees a
+ * consistent set of ROAs and doesn't contend with the writes to the
+ * <code>roa</code> table.<br>
+ * <br>
+ * The snapshot ID is also the serial of the VRPs: when a snapshot is built, the
+ * VRPs announced and withdrawn since the previous snapshot are stored too, so
+ * that the consumers can ask for the changes since a serial (see
+ * {@link #getChangesSince(long, Connection)}). The changes of the last
+ * <code>vrp_delta_retention</code> serials are kept.
+ *
+ */
+public class VrpSnapshotModel extends DatabaseModel {
+
+	private static final Logger logger = Logger.getLogger(VrpSnapshotModel.class.getName());
+
+	/**
+	 * Query group ID, it MUST be the same that the .sql file where the queries are
+	 * found
+	 */
+	private static final String QUERY_GROUP = "VrpSnapshot";
+
+	private static QueryGroup queryGroup = null;
+
+	/**
+	 * Column with the {@link RoaCandidates} relationship of each row
+	 */
+	private static final String LOOKUP_RELATION_COLUMN = "roa_lookup_relation";
+
+	// Queries IDs used by this model
+	private static final String GET_NEXT_ID = "getNextId";
+	private static final String CREATE = "create";
+	private static final String COPY_ROAS = "copyRoas";
+	private static final String RETIRE_CURRENT = "retireCurrent";
+	private static final String PUBLISH = "publish";
+	private static final String GET_CURRENT_ID = "getCurrentId";
+	private static final String GET_STALE_IDS = "getStaleIds";
+	private static final String CREATE_DELTA = "createDelta";
+	private static final String GET_SERIALS_AFTER = "getSerialsAfter";
+	private static final String GET_DELTAS_AFTER = "getDeltasAfter";
+	private static final String GET_OLDEST_KEPT_ID = "getOldestKeptId";
+	private static final String DELETE_OLD_RETIRED = "deleteOldRetired";
+	private static final String DELETE_VRP_CHUNK = "deleteVrpChunk";
+	private static final String DELETE = "delete";
+	private static final String GET_ALL = "getAll";
+	private static final String FIND_EXACT_MATCH = "findExactMatch";
+	private static final String FIND_VALIDATION_CANDIDATES = "findValidationCandidates";
+	private static final String GET_ALL_SORTED = "getAllSorted";
+	private static final String ENABLE_LAZY_EXECUTION = "enableLazyExecution";
+	private static final String DISABLE_LAZY_EXECUTION = "disableLazyExecution";
+
+	/**
+	 * Value of the current snapshot ID when there's no snapshot
+	 */
+	public static final long NO_SNAPSHOT = 0L;
+
+	/**
+	 * Default seconds that a retired snapshot is kept before its deletion
+	 */
+	private static final long DEFAULT_RETIRE_DELAY = 60L;
+
+	/**
+	 * Default number of serials whose changes are kept
+	 */
+	private static final int DEFAULT_DELTA_RETENTION = 100;
+
+	/**
+	 * Number of VRPs deleted per transaction when a snapshot is retired
+	 */
+	private static final int RETIRE_CHUNK_SIZE = 5000;
+
+	/**
+	 * Status of the snapshot while it's being built
+	 */
+	private static final String STATUS_BUILDING = "BUILDING";
+
+	/**
+	 * Milliseconds to wait for the running retirement at the shutdown
+	 */
+	private static final long SHUTDOWN_TIMEOUT = 30000L;
+
+	/**
+	 * Number of serials whose changes are kept
+	 */
+	private static int deltaRetention = DEFAULT_DELTA_RETENTION;
+
+	/**
+	 * Seconds that a retired snapshot is kept before its deletion, so that the
+	 * readers that already got its ID can finish
+	 */
+	private static long retireDelay = DEFAULT_RETIRE_DELAY;
+
+	/**
+	 * Pointer to the current snapshot, <code>null</code> when it hasn't been read
+	 * from the database yet
+	 */
+	private static volatile Long currentId = null;
+
+	/**
+	 * Lock used to build and publish the snapshots, one at a time
+	 */
+	private static final Object snapshotLock = new Object();
+
+	/**
+	 * Executor of the retirement of the previous snapshots
+	 */
+	private static ScheduledExecutorService retireExecutor = null;
+
+	/**
+	 * Set at the shutdown, the retirement stops between chunks
+	 */
+	private static volatile boolean stopped = false;
+
+	/**
+	 * Number of readers holding each snapshot (see
+	 * {@link #acquireCurrent(Connection)}), its retirement is postponed while
+	 * it's held
+	 */
+	private static final Map<Long, Integer> holders = new HashMap<>();
+
+	/**
+	 * Number of rows fetched at a time when the VRPs are streamed
+	 */
+	private static final int STREAM_FETCH_SIZE = 10000;
+
+	/**
+	 * Read the required properties from the configuration
+	 *
+	 * @param config
+	 * @throws InitializationException
+	 */
+	public static void init(Properties config) throws InitializationException {
+		// Optional property
+		String delay = config.getProperty("vrp_snapshot_retire_delay");
+		long newRetireDelay = DEFAULT_RETIRE_DELAY;
+		if (delay != null) {
+			try {
+				newRetireDelay = Long.parseLong(delay.trim());
+			} catch (NumberFormatException e) {
+				throw new InitializationException("Invalid vrp_snapshot_retire_delay '" + delay + "'", e);
+			}
+			// The readers must have time to finish their queries
+			if (newRetireDelay < DatabaseSession.QUERY_TIMEOUT) {
+				throw new InitializationException(
+						"The vrp_snapshot_retire_delay can't be less than " + DatabaseSession.QUERY_TIMEOUT);
+			}
+		}
+		retireDelay = newRetireDelay;
+		// Optional property
+		String retention = config.getProperty("vrp_delta_retention");
+		int newDeltaRetention = DEFAULT_DELTA_RETENTION;
+		if (retention != null) {
+			try {
+				newDeltaRetention = Integer.parseInt(retention.trim());
+			} catch (NumberFormatException e) {
+				throw new InitializationException("Invalid vrp_delta_retention '" + retention + "'", e);
+			}
+			if (newDeltaRetention <= 0) {
+				throw new InitializationException("The vrp_delta_retention must be greater than 0");
+			}
+		}
+		deltaRetention = newDeltaRetention;
+		currentId = null;
+		shutdown();
+		stopped = false;
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+			Thread thread = new Thread(runnable, "vrp-snapshot-retirement");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// The scheduled retirements are dropped at the shutdown
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		retireExecutor = executor;
+	}
+
+	/**
+	 * Stop the retirement of snapshots, the pending ones are deleted at the next
+	 * startup (see {@link #deleteStaleSnapshots(Connection)}). A running
+	 * retirement isn't interrupted, it stops after the chunk being deleted; this
+	 * waits up to <code>SHUTDOWN_TIMEOUT</code> for it.
+	 */
+	public static void shutdown() {
+		stopped = true;
+		ScheduledExecutorService executor = retireExecutor;
+		if (executor == null) {
+			return;
+		}
+		retireExecutor = null;
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				logger.log(Level.WARNING, "The running VRP snapshot retirement didn't stop after "
+						+ SHUTDOWN_TIMEOUT + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Loads the queries corresponding to this model, based on the QUERY_GROUP
+	 * constant
+	 *
+	 * @param schema
+	 */
+	public static void loadQueryGroup(String schema) {
+		try {
+			QueryGroup group = new QueryGroup(QUERY_GROUP, schema);
+			setQueryGroup(group);
+		} catch (IOException e) {
+			throw new RuntimeException("Error loading query group", e);
+		}
+	}
+
+	/**
+	 * Get the {@link Class} to use as a lock
+	 *
+	 * @return
+	 */
+	private static Class<VrpSnapshotModel> getModelClass() {
+		return VrpSnapshotModel.class;
+	}
+
+	/**
+	 * Get the ID of the current snapshot, the readers MUST get it once and use it
+	 * at all of their queries so that they see a consistent set of VRPs
+	 *
+	 * @param connection
+	 * @return The ID of the current snapshot, or {@link #NO_SNAPSHOT} if there's
+	 *         none
+	 * @throws SQLException
+	 */
+	public static long getCurrentId(Connection connection) throws SQLException {
+		Long current = currentId;
+		if (current != null) {
+			return current;
+		}
+		synchronized (snapshotLock) {
+			if (currentId == null) {
+				currentId = loadCurrentId(connection);
+			}
+			return currentId;
+		}
+	}
+
+	/**
+	 * Get the ID of the current snapshot and hold it, so that it isn't retired
+	 * while it's being read; useful for the readers that can take longer than
+	 * the query timeout (e.g. {@link #forEachVrp(long, Consumer, Connection)}).
+	 * The snapshot MUST be released with {@link #release(long)}.
+	 *
+	 * @param connection
+	 * @return The ID of the current snapshot, or {@link #NO_SNAPSHOT} if there's
+	 *         none
+	 * @throws SQLException
+	 */
+	public static long acquireCurrent(Connection connection) throws SQLException {
+		long snapshotId = getCurrentId(connection);
+		if (snapshotId != NO_SNAPSHOT) {
+			synchronized (holders) {
+				holders.merge(snapshotId, 1, Integer::sum);
+			}
+		}
+		return snapshotId;
+	}
+
+	/**
+	 * Release a snapshot obtained with {@link #acquireCurrent(Connection)}
+	 *
+	 * @param snapshotId
+	 */
+	public static void release(long snapshotId) {
+		synchronized (holders) {
+			holders.computeIfPresent(snapshotId, (id, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+
+	private static boolean isHeld(long snapshotId) {
+		synchronized (holders) {
+			return holders.containsKey(snapshotId);
+		}
+	}
+
+	/**
+	 * Build a new snapshot with the {@link Roa}s currently stored and its changes
+	 * since the current snapshot, and publish it as the current one; the previous
+	 * snapshot is retired asynchronously
+	 *
+	 * @param connection
+	 * @return The ID of the new snapshot
+	 * @throws SQLException
+	 */
+	public static long createSnapshot(Connection connection) throws SQLException {
+		synchronized (snapshotLock) {
+			long previousId = getCurrentId(connection);
+			long newId = getNextId(connection);
+			boolean originalAutoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try {
+				// Build it aside, the readers don't know the new ID yet
+				int vrpCount;
+				try (PreparedStatement statement = prepareStatement(connection,
+						getQueryGroup().getQuery(CREATE), getModelClass())) {
+					statement.setLong(1, newId);
+					statement.setString(2, Instant.now().toString());
+					if (previousId != NO_SNAPSHOT) {
+						statement.setLong(3, previousId);
+					} else {
+						statement.setNull(3, Types.BIGINT);
+					}
+					executeUpdate(statement, getModelClass(), logger);
+				}
+				try (PreparedStatement statement = prepareStatement(connection,
+						getQueryGroup().getQuery(COPY_ROAS), getModelClass())) {
+					statement.setLong(1, newId);
+					vrpCount = executeUpdate(statement, getModelClass(), logger);
+				}
+				// The first snapshot has no changes, its consumers always need a reset
+				int announced = 0;
+				int withdrawn = 0;
+				if (previousId != NO_SNAPSHOT) {
+					announced = createDelta(newId, true, newId, previousId, connection);
+					withdrawn = createDelta(newId, false, previousId, newId, connection);
+				}
+				commit(connection);
+				// Publish it at the database
+				try (PreparedStatement statement = prepareStatement(connection,
+						getQueryGroup().getQuery(RETIRE_CURRENT), getModelClass())) {
+					executeUpdate(statement, getModelClass(), logger);
+				}
+				try (PreparedStatement statement = prepareStatement(connection,
+						getQueryGroup().getQuery(PUBLISH), getModelClass())) {
+					statement.setInt(1, vrpCount);
+					statement.setLong(2, newId);
+					executeUpdate(statement, getModelClass(), logger);
+				}
+				commit(connection);
+				logger.log(Level.INFO, "VRP snapshot " + newId + " published with " + vrpCount + " VRPs ("
+						+ announced + " announced, " + withdrawn + " withdrawn)");
+			} catch (SQLException e) {
+				rollback(connection);
+				throw e;
+			} finally {
+				connection.setAutoCommit(originalAutoCommit);
+			}
+			// And flip the pointer used by the readers
+			currentId = newId;
+			if (previousId != NO_SNAPSHOT) {
+				scheduleRetirement(previousId);
+			}
+			return newId;
+		}
+	}
+
+	/**
+	 * Delete the VRPs of the snapshots that aren't the current one (retired
+	 * snapshots whose retirement didn't happen) and the snapshots whose build was
+	 * interrupted, SHOULD be used only at startup
+	 *
+	 * @param connection
+	 * @return the number of cleaned snapshots
+	 * @throws SQLException
+	 */
+	public static int deleteStaleSnapshots(Connection connection) throws SQLException {
+		List<Long> staleIds = new ArrayList<>();
+		List<Long> interruptedIds = new ArrayList<>();
+		try (PreparedStatement statement = prepareStatement(connection, getQueryGroup().getQuery(GET_STALE_IDS),
+				getModelClass())) {
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			while (rs.next()) {
+				if (STATUS_BUILDING.equals(rs.getString(2))) {
+					interruptedIds.add(rs.getLong(1));
+				} else {
+					staleIds.add(rs.getLong(1));
+				}
+			}
+		}
+		for (Long staleId : staleIds) {
+			deleteVrps(staleId, connection);
+		}
+		for (Long interruptedId : interruptedIds) {
+			deleteVrps(interruptedId, connection);
+			delete(interruptedId, connection);
+		}
+		return staleIds.size() + interruptedIds.size();
+	}
+
+	/**
+	 * Get the changes of the VRPs since the <code>serial</code> up to the current
+	 * snapshot. The changes of each serial are merged, so a VRP announced and
+	 * later withdrawn (or vice versa) isn't at the result.
+	 *
+	 * @param serial
+	 * @param connection
+	 * @return The {@link VrpDelta} from the <code>serial</code> to the current
+	 *         one, it's marked as <code>resetRequired</code> if the serial is
+	 *         unknown or its changes are no longer kept
+	 * @throws SQLException
+	 */
+	public static VrpDelta getChangesSince(long serial, Connection connection) throws SQLException {
+		long currentSerial = getCurrentId(connection);
+		if (currentSerial == NO_SNAPSHOT || serial > currentSerial) {
+			return new VrpDelta(serial, currentSerial, true);
+		}
+		if (serial == currentSerial) {
+			return new VrpDelta(serial, currentSerial, false);
+		}
+		// Each serial must be based on the previous one, starting at the received
+		long expectedPrevious = serial;
+		try (PreparedStatement statement = prepareStatement(connection,
+				getQueryGroup().getQuery(GET_SERIALS_AFTER), getModelClass())) {
+			statement.setLong(1, serial);
+			statement.setLong(2, currentSerial);
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			while (rs.next()) {
+				long previousId = rs.getLong(2);
+				if (rs.wasNull() || previousId != expectedPrevious) {
+					return new VrpDelta(serial, currentSerial, true);
+				}
+				expectedPrevious = rs.getLong(1);
+			}
+		}
+		if (expectedPrevious != currentSerial) {
+			return new VrpDelta(serial, currentSerial, true);
+		}
+		// Keep only the last change of each VRP, and only if it changes its
+		// original state (it was announced if its first change is a withdrawal)
+		Map<Vrp, Boolean> firstChange = new HashMap<>();
+		Map<Vrp, Boolean> lastChange = new LinkedHashMap<>();
+		try (PreparedStatement statement = prepareStatement(connection,
+				getQueryGroup().getQuery(GET_DELTAS_AFTER), getModelClass())) {
+			statement.setLong(1, serial);
+			statement.setLong(2, currentSerial);
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			while (rs.next()) {
+				boolean announced = rs.getBoolean("vrd_announced");
+				Vrp vrp = new Vrp(rs.getLong("vrd_asn"), rs.getString("vrd_prefix_text"),
+						rs.getBytes("vrd_start_prefix"), rs.getInt("vrd_prefix_length"),
+						rs.getInt("vrd_prefix_max_length"), rs.getInt("vrd_prefix_family"));
+				firstChange.putIfAbsent(vrp, announced);
+				lastChange.put(vrp, announced);
+			}
+		}
+		VrpDelta delta = new VrpDelta(serial, currentSerial, false);
+		for (Entry<Vrp, Boolean> change : lastChange.entrySet()) {
+			boolean announced = change.getValue();
+			if (announced != firstChange.get(change.getKey())) {
+				continue;
+			}
+			if (announced) {
+				delta.getAnnounced().add(change.getKey());
+			} else {
+				delta.getWithdrawn().add(change.getKey());
+			}
+		}
+		return delta;
+	}
+
+	/**
+	 * Get all the VRPs of the snapshot as {@link Roa}s, loading only its basic
+	 * info (no related objects are loaded); useful to build in-memory indexes
+	 *
+	 * @param snapshotId
+	 * @param connection
+	 * @return The list of {@link Roa}s found, or empty list when no data is found
+	 * @throws SQLException
+	 */
+	public static List<Roa> getAll(long snapshotId, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_ALL);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			statement.setLong(1, snapshotId);
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			List<Roa> roas = new ArrayList<Roa>();
+			while (rs.next()) {
+				roas.add(new RoaDbObject(rs));
+			}
+			return roas;
+		}
+	}
+
+	/**
+	 * Get the distinct VRPs of the snapshot, ordered as {@link Vrp#PREFIX_ORDER}
+	 *
+	 * @param snapshotId
+	 * @param connection
+	 * @return The list of {@link Vrp}s found, or empty list when no data is found
+	 * @throws SQLException
+	 */
+	public static List<Vrp> getVrps(long snapshotId, Connection connection) throws SQLException {
+		Set<Vrp> vrps = new HashSet<>();
+		for (Roa roa : getAll(snapshotId, connection)) {
+			vrps.add(new Vrp(roa.getAsn(), roa.getPrefixText(), roa.getStartPrefix(), roa.getPrefixLength(),
+					roa.getPrefixMaxLength(), roa.getPrefixFamily()));
+		}
+		List<Vrp> result = new ArrayList<>(vrps);
+		result.sort(Vrp.PREFIX_ORDER);
+		return result;
+	}
+
+	/**
+	 * Read all the VRPs of the snapshot row by row, without loading them all in
+	 * memory, ordered by family, prefix length and prefix; the same VRP is
+	 * received once for each ROA that contains it. The snapshot SHOULD be held
+	 * (see {@link #acquireCurrent(Connection)}) while it's read.
+	 *
+	 * @param snapshotId
+	 * @param action
+	 *            called for each VRP
+	 * @param connection
+	 * @return The number of VRPs read
+	 * @throws SQLException
+	 */
+	public static long forEachVrp(long snapshotId, Consumer<Vrp> action, Connection connection)
+			throws SQLException {
+		// Without lazy execution the embedded DB builds the complete result first
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(getQueryGroup().getQuery(ENABLE_LAZY_EXECUTION));
+		}
+		long count = 0;
+		try (PreparedStatement statement = prepareStreamingStatement(connection,
+				getQueryGroup().getQuery(GET_ALL_SORTED), STREAM_FETCH_SIZE, getModelClass())) {
+			statement.setLong(1, snapshotId);
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			while (rs.next()) {
+				action.accept(new Vrp(rs.getLong(1), rs.getString(2), rs.getBytes(3), rs.getInt(4), rs.getInt(5),
+						rs.getInt(6)));
+				count++;
+			}
+		} finally {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute(getQueryGroup().getQuery(DISABLE_LAZY_EXECUTION));
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Find, at the snapshot, a {@link Roa} that covers the specified prefix and
+	 * whose max length allows the prefix length. A route is valid if any of the
+	 * matching ROAs has its ASN (RFC 6811 section 2), so the most specific
+	 * matching ROA with the <code>asn</code> is preferred, otherwise the most
+	 * specific matching ROA is returned. Only the basic info of the ROA is loaded.
+	 *
+	 * @param snapshotId
+	 * @param asn
+	 * @param prefix
+	 * @param prefixLength
+	 * @param connection
+	 * @return The {@link Roa} that matches (or covers) the prefix, or
+	 *         <code>null</code>
+	 * @throws SQLException
+	 */
+	public static RoaDbObject findExactMatch(long snapshotId, Long asn, byte[] prefix, Integer prefixLength,
+			Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(FIND_EXACT_MATCH);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			int index = Util.setCoveringPrefixParams(statement, 1, prefix, prefixLength);
+			statement.setLong(index++, snapshotId);
+			statement.setInt(index++, prefixLength);
+			statement.setLong(index, asn);
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			if (!rs.next()) {
+				return null;
+			}
+			return new RoaDbObject(rs);
+		}
+	}
+
+	/**
+	 * Find, at the snapshot and using a single query, the {@link Roa}s needed to
+	 * validate a route: the exact match (chosen as
+	 * {@link #findExactMatch(long, Long, byte[], Integer, Connection)} does), the
+	 * most specific covering aggregate whose max length doesn't allow the prefix
+	 * length, the first more specific ROA of the prefix, and whether there's any
+	 * ROA with the <code>asn</code>. Only the basic info of the ROAs is loaded.
+	 *
+	 * @param snapshotId
+	 * @param asn
+	 * @param prefix
+	 * @param prefixLength
+	 * @param connection
+	 * @return The {@link RoaCandidates} found
+	 * @throws SQLException
+	 */
+	public static RoaCandidates findValidationCandidates(long snapshotId, Long asn, byte[] prefix,
+			Integer prefixLength, Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(FIND_VALIDATION_CANDIDATES);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			int index = Util.setCoveringPrefixParams(statement, 1, prefix, prefixLength);
+			statement.setLong(index++, snapshotId);
+			statement.setInt(index++, prefixLength);
+			statement.setLong(index++, asn);
+			index = Util.setCoveringPrefixParams(statement, index, prefix, prefixLength);
+			statement.setLong(index++, snapshotId);
+			statement.setInt(index++, prefixLength);
+			index = Util.setMoreSpecificPrefixParams(statement, index, prefix, prefixLength);
+			statement.setLong(index++, snapshotId);
+			statement.setLong(index++, snapshotId);
+			statement.setLong(index, asn);
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			RoaCandidates candidates = new RoaCandidates();
+			while (rs.next()) {
+				switch (rs.getInt(LOOKUP_RELATION_COLUMN)) {
+				case RoaCandidates.EXACT_MATCH:
+					candidates.setExactMatch(new RoaDbObject(rs));
+					break;
+				case RoaCandidates.COVERING_AGGREGATE:
+					candidates.setCoveringAggregate(new RoaDbObject(rs));
+					break;
+				case RoaCandidates.MORE_SPECIFIC:
+					candidates.setMoreSpecific(new RoaDbObject(rs));
+					break;
+				case RoaCandidates.ASN_EXISTS:
+					candidates.setAsnExists(true);
+					break;
+				default:
+					break;
+				}
+			}
+			return candidates;
+		}
+	}
+
+	/**
+	 * Delete the snapshot after the configured delay, using its own connection
+	 *
+	 * @param snapshotId
+	 */
+	private static void scheduleRetirement(long snapshotId) {
+		ScheduledExecutorService executor = retireExecutor;
+		if (executor == null) {
+			// Not initialized (or terminated), it will be deleted at the next startup
+			return;
+		}
+		executor.schedule(() -> {
+			if (isHeld(snapshotId)) {
+				// Still being read, try again later
+				scheduleRetirement(snapshotId);
+				return;
+			}
+			try (Connection connection = DatabaseSession.getConnection()) {
+				deleteVrps(snapshotId, connection);
+				int purged = deleteOldSerials(connection);
+				logger.log(Level.INFO,
+						"VRP snapshot " + snapshotId + " retired, " + purged + " old serials purged");
+			} catch (SQLException e) {
+				logger.log(Level.WARNING, "The VRP snapshot " + snapshotId + " couldn't be retired", e);
+			}
+		}, retireDelay, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Store the VRPs of the <code>fromSnapshotId</code> that aren't at the
+	 * <code>otherSnapshotId</code> as changes of the <code>snapshotId</code>
+	 *
+	 * @param snapshotId
+	 * @param announced
+	 *            whether the changes are announcements or withdrawals
+	 * @param fromSnapshotId
+	 * @param otherSnapshotId
+	 * @param connection
+	 * @return the number of changes stored
+	 * @throws SQLException
+	 */
+	private static int createDelta(long snapshotId, boolean announced, long fromSnapshotId, long otherSnapshotId,
+			Connection connection) throws SQLException {
+		try (PreparedStatement statement = prepareStatement(connection, getQueryGroup().getQuery(CREATE_DELTA),
+				getModelClass())) {
+			statement.setLong(1, snapshotId);
+			statement.setBoolean(2, announced);
+			statement.setLong(3, fromSnapshotId);
+			statement.setLong(4, otherSnapshotId);
+			return executeUpdate(statement, getModelClass(), logger);
+		}
+	}
+
+	/**
+	 * Delete the VRPs of a snapshot in chunks (a transaction per chunk) so that
+	 * the concurrent readers aren't blocked, the snapshot itself is kept so its
+	 * changes can still be queried. Stops between chunks at the shutdown, the
+	 * rest is deleted at the next startup.
+	 *
+	 * @param snapshotId
+	 * @param connection
+	 * @throws SQLException
+	 */
+	private static void deleteVrps(long snapshotId, Connection connection) throws SQLException {
+		try (PreparedStatement statement = prepareStatement(connection, getQueryGroup().getQuery(DELETE_VRP_CHUNK),
+				getModelClass())) {
+			int deleted;
+			do {
+				statement.setLong(1, snapshotId);
+				statement.setInt(2, RETIRE_CHUNK_SIZE);
+				deleted = executeUpdate(statement, getModelClass(), logger);
+			} while (deleted == RETIRE_CHUNK_SIZE && !stopped);
+		}
+	}
+
+	/**
+	 * Delete a snapshot and its changes, its VRPs SHOULD be already deleted (see
+	 * {@link #deleteVrps(long, Connection)})
+	 *
+	 * @param snapshotId
+	 * @param connection
+	 * @throws SQLException
+	 */
+	private static void delete(long snapshotId, Connection connection) throws SQLException {
+		try (PreparedStatement statement = prepareStatement(connection, getQueryGroup().getQuery(DELETE),
+				getModelClass())) {
+			statement.setLong(1, snapshotId);
+			executeUpdate(statement, getModelClass(), logger);
+		}
+	}
+
+	/**
+	 * Delete the retired snapshots (and its changes) older than the last
+	 * <code>vrp_delta_retention</code> serials
+	 *
+	 * @param connection
+	 * @return the number of deleted snapshots
+	 * @throws SQLException
+	 */
+	private static int deleteOldSerials(Connection connection) throws SQLException {
+		long oldestKeptId;
+		try (PreparedStatement statement = prepareStatement(connection,
+				getQueryGroup().getQuery(GET_OLDEST_KEPT_ID), getModelClass())) {
+			// The changes of a serial are stored at the next snapshot
+			statement.setInt(1, deltaRetention);
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			if (!rs.next()) {
+				return 0;
+			}
+			oldestKeptId = rs.getLong(1);
+		}
+		try (PreparedStatement statement = prepareStatement(connection,
+				getQueryGroup().getQuery(DELETE_OLD_RETIRED), getModelClass())) {
+			statement.setLong(1, oldestKeptId);
+			return executeUpdate(statement, getModelClass(), logger);
+		}
+	}
+
+	/**
+	 * Get the next snapshot ID from its sequence
+	 *
+	 * @param connection
+	 * @return the next ID
+	 * @throws SQLException
+	 */
+	private static long getNextId(Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_NEXT_ID);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+
+	/**
+	 * Read the ID of the current snapshot from the database
+	 *
+	 * @param connection
+	 * @return the ID, or {@link #NO_SNAPSHOT} if there's none
+	 * @throws SQLException
+	 */
+	private static long loadCurrentId(Connection connection) throws SQLException {
+		String query = getQueryGroup().getQuery(GET_CURRENT_ID);
+		try (PreparedStatement statement = prepareStatement(connection, query, getModelClass())) {
+			ResultSet rs = executeQuery(statement, getModelClass(), logger);
+			if (!rs.next()) {
+				return NO_SNAPSHOT;
+			}
+			return rs.getLong(1);
+		}
+	}
+
+	public static QueryGroup getQueryGroup() {
+		return queryGroup;
+	}
+
+	public static void setQueryGroup(QueryGroup queryGroup) {
+		VrpSnapshotModel.queryGroup = queryGroup;
+	}
+}
@@ -0,0 +1,74 @@
+package mx.nic.lab.rpki.prov.object;
+
+import mx.nic.lab.rpki.db.pojo.Roa;
+
+/**
+ * The {@link Roa}s related to a prefix, classified by its relationship with the
+ * prefix, and the flag that indicates if there's any ROA with the ASN of the
+ * route; everything needed to validate a route
+ *
+ */
+public class RoaCandidates {
+
+	/**
+	 * Relationship value used at the queries for each kind of candidate
+	 */
+	public static final int EXACT_MATCH = 1;
+	public static final int COVERING_AGGREGATE = 2;
+	public static final int MORE_SPECIFIC = 3;
+	public static final int ASN_EXISTS = 4;
+
+	private RoaDbObject exactMatch;
+	private RoaDbObject coveringAggregate;
+	private RoaDbObject moreSpecific;
+	private boolean asnExists;
+
+	public RoaCandidates() {
+		super();
+	}
+
+	/**
+	 * @return the {@link Roa} that covers the prefix and whose max length allows
+	 *         the prefix length: the most specific one with the ASN of the route,
+	 *         or the most specific one if none has it
+	 */
+	public RoaDbObject getExactMatch() {
+		return exactMatch;
+	}
+
+	public void setExactMatch(RoaDbObject exactMatch) {
+		this.exactMatch = exactMatch;
+	}
+
+	/**
+	 * @return the most specific {@link Roa} that covers the prefix but whose max
+	 *         length doesn't allow the prefix length
+	 */
+	public RoaDbObject getCoveringAggregate() {
+		return coveringAggregate;
+	}
+
+	public void setCoveringAggregate(RoaDbObject coveringAggregate) {
+		this.coveringAggregate = coveringAggregate;
+	}
+
+	/**
+	 * @return the first {@link Roa} (by start prefix and prefix length) more
+	 *         specific than the prefix
+	 */
+	public RoaDbObject getMoreSpecific() {
+		return moreSpecific;
+	}
+
+	public void setMoreSpecific(RoaDbObject moreSpecific) {
+		this.moreSpecific = moreSpecific;
+	}
+
+	public boolean isAsnExists() {
+		return asnExists;
+	}
+
+	public void setAsnExists(boolean asnExists) {
+		this.asnExists = asnExists;
+	}
+}
@@ -9,6 +9,7 @@ import java.util.Map;
 
 import mx.nic.lab.rpki.db.exception.ValidationException;
 import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
 
 /**
  * Extension of {@link Roa} as a {@link DatabaseObject}
@@ -25,6 +26,10 @@ public class RoaDbObject extends Roa implements DatabaseObject {
 	public static final String PREFIX_LENGTH_COLUMN = "roa_prefix_length";
 	public static final String PREFIX_MAX_LENGTH_COLUMN = "roa_prefix_max_length";
 	public static final String PREFIX_FAMILY_COLUMN = "roa_prefix_family";
+	public static final String START_HI_COLUMN = "roa_start_hi";
+	public static final String START_LO_COLUMN = "roa_start_lo";
+	public static final String END_HI_COLUMN = "roa_end_hi";
+	public static final String END_LO_COLUMN = "roa_end_lo";
 
 	private Long rpkiObjectId;
 
@@ -147,6 +152,32 @@ public class RoaDbObject extends Roa implements DatabaseObject {
 		} else {
 			statement.setNull(8, Types.INTEGER);
 		}
+		storeNumericPrefix(statement, 9);
+	}
+
+	/**
+	 * Set the numeric values of the start and end prefix (see
+	 * {@link IpPrefix#toSortableHigh(byte[], int)}) at the <code>statement</code>,
+	 * starting at <code>index</code>
+	 * 
+	 * @param statement
+	 * @param index
+	 * @throws SQLException
+	 */
+	public void storeNumericPrefix(PreparedStatement statement, int index) throws SQLException {
+		byte[] start = getStartPrefix();
+		byte[] end = getEndPrefix();
+		int maxLength = IpPrefix.getMaxLength(start);
+		if (maxLength > 0 && end != null) {
+			statement.setLong(index, IpPrefix.toSortableHigh(start, maxLength));
+			statement.setLong(index + 1, IpPrefix.toSortableLow(start, maxLength));
+			statement.setLong(index + 2, IpPrefix.toSortableHigh(end, maxLength));
+			statement.setLong(index + 3, IpPrefix.toSortableLow(end, maxLength));
+		} else {
+			for (int i = index; i < index + 4; i++) {
+				statement.setNull(i, Types.BIGINT);
+			}
+		}
 	}
 
 	@Override
@@ -0,0 +1,36 @@
+package mx.nic.lab.rpki.prov.object;
+
+/**
+ * A route (origin ASN and prefix) to validate, used for batch validations
+ *
+ */
+public class RouteQuery {
+
+	private final Long asn;
+	private final byte[] prefix;
+	private final Integer prefixLength;
+	private final Integer familyType;
+
+	public RouteQuery(Long asn, byte[] prefix, Integer prefixLength, Integer familyType) {
+		this.asn = asn;
+		this.prefix = prefix;
+		this.prefixLength = prefixLength;
+		this.familyType = familyType;
+	}
+
+	public Long getAsn() {
+		return asn;
+	}
+
+	public byte[] getPrefix() {
+		return prefix;
+	}
+
+	public Integer getPrefixLength() {
+		return prefixLength;
+	}
+
+	public Integer getFamilyType() {
+		return familyType;
+	}
+}
@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -25,6 +26,7 @@ public class RpkiObjectDbObject extends RpkiObject implements DatabaseObject {
 	public static final String SUBJECT_KEY_IDENTIFIER_COLUMN = "rpo_subject_key_identifier";
 	public static final String SHA256_COLUMN = "rpo_sha256";
 	public static final String IS_CA_COLUMN = "rpo_is_ca";
+	public static final String REACH_GENERATION_COLUMN = "rpo_reach_generation";
 
 	/**
 	 * Mapping of the {@link RpkiObject} properties to its corresponding DB column
@@ -139,6 +141,24 @@ public class RpkiObjectDbObject extends RpkiObject implements DatabaseObject {
 			statement.setNull(7, Types.BLOB);
 		}
 		statement.setBoolean(8, isCa());
+		if (getLastMarkedReachableAt() != null) {
+			statement.setLong(9, getReachGeneration(getLastMarkedReachableAt()));
+		} else {
+			statement.setNull(9, Types.BIGINT);
+		}
+	}
+
+	/**
+	 * Get the reach generation of an object marked as reachable at
+	 * <code>lastMarkedReachableAt</code>; unlike the text of the date, the
+	 * generations are comparable and indexed, so the unreachable objects are
+	 * found with a range scan
+	 * 
+	 * @param lastMarkedReachableAt
+	 * @return The reach generation (the epoch milliseconds of the date)
+	 */
+	public static long getReachGeneration(Instant lastMarkedReachableAt) {
+		return lastMarkedReachableAt.toEpochMilli();
 	}
 
 	@Override
@@ -1,9 +1,5 @@
 package mx.nic.lab.rpki.prov.object;
 
-import java.math.BigInteger;
-import java.net.Inet4Address;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -18,6 +14,7 @@ import mx.nic.lab.rpki.db.exception.ValidationErrorType;
 import mx.nic.lab.rpki.db.exception.ValidationException;
 import mx.nic.lab.rpki.db.pojo.ApiObject;
 import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
 
 /**
  * Extension of {@link SlurmPrefix} as a {@link DatabaseObject}
@@ -35,6 +32,11 @@ public class SlurmPrefixDbObject extends SlurmPrefix implements DatabaseObject {
 	public static final String TYPE_COLUMN = "slp_type";
 	public static final String COMMENT_COLUMN = "slp_comment";
 	public static final String ORDER_COLUMN = "slp_order";
+	public static final String PREFIX_FAMILY_COLUMN = "slp_prefix_family";
+	public static final String START_HI_COLUMN = "slp_start_hi";
+	public static final String START_LO_COLUMN = "slp_start_lo";
+	public static final String END_HI_COLUMN = "slp_end_hi";
+	public static final String END_LO_COLUMN = "slp_end_lo";
 
 	public static final int COMMENT_MIN_LENGTH = 1;
 	public static final int COMMENT_MAX_LENGTH = 2000;
@@ -172,6 +174,34 @@ public class SlurmPrefixDbObject extends SlurmPrefix implements DatabaseObject {
 		} else {
 			statement.setNull(9, Types.INTEGER);
 		}
+		storeNumericPrefix(statement, 10);
+	}
+
+	/**
+	 * Set the family and the numeric values of the start and end prefix (see
+	 * {@link IpPrefix#toSortableHigh(byte[], int)}) at the <code>statement</code>,
+	 * starting at <code>index</code>
+	 * 
+	 * @param statement
+	 * @param index
+	 * @throws SQLException
+	 */
+	public void storeNumericPrefix(PreparedStatement statement, int index) throws SQLException {
+		byte[] start = getStartPrefix();
+		byte[] end = getEndPrefix();
+		int maxLength = IpPrefix.getMaxLength(start);
+		if (maxLength > 0 && end != null) {
+			statement.setInt(index, IpPrefix.getFamily(start));
+			statement.setLong(index + 1, IpPrefix.toSortableHigh(start, maxLength));
+			statement.setLong(index + 2, IpPrefix.toSortableLow(start, maxLength));
+			statement.setLong(index + 3, IpPrefix.toSortableHigh(end, maxLength));
+			statement.setLong(index + 4, IpPrefix.toSortableLow(end, maxLength));
+		} else {
+			statement.setNull(index, Types.INTEGER);
+			for (int i = index + 1; i < index + 5; i++) {
+				statement.setNull(i, Types.BIGINT);
+			}
+		}
 	}
 
 	@Override
@@ -300,11 +330,8 @@ public class SlurmPrefixDbObject extends SlurmPrefix implements DatabaseObject {
 			List<ValidationError> validationErrors) {
 		// Prefix length according to IP type
 		int min = 0;
-		int max = 0;
-		try {
-			InetAddress prefixAddress = InetAddress.getByAddress(prefix);
-			max = prefixAddress instanceof Inet4Address ? 32 : 128;
-		} catch (UnknownHostException e) {
+		int max = IpPrefix.getMaxLength(prefix);
+		if (max < 0) {
 			validationErrors
 					.add(new ValidationError(OBJECT_NAME, START_PREFIX, prefix, ValidationErrorType.UNEXPECTED_TYPE));
 			return false;
@@ -329,28 +356,12 @@ public class SlurmPrefixDbObject extends SlurmPrefix implements DatabaseObject {
 	 */
 	private void validatePrefixValue(byte[] prefix, int prefixLength, String prefixFieldId,
 			List<ValidationError> validationErrors) {
-		int maxBytes = 0;
-		try {
-			InetAddress prefixAddress = InetAddress.getByAddress(prefix);
-			maxBytes = prefixAddress instanceof Inet4Address ? 4 : 16;
-		} catch (UnknownHostException e) {
+		if (IpPrefix.getMaxLength(prefix) < 0) {
 			validationErrors
 					.add(new ValidationError(OBJECT_NAME, prefixFieldId, prefix, ValidationErrorType.UNEXPECTED_TYPE));
 			return;
 		}
-		int bytesBase = prefixLength / 8;
-		int bitsBase = prefixLength % 8;
-		byte[] prefixLengthMask = new byte[maxBytes];
-		int currByte = 0;
-		for (; currByte < bytesBase; currByte++) {
-			prefixLengthMask[currByte] |= 255;
-		}
-		if (currByte < prefixLengthMask.length) {
-			prefixLengthMask[currByte] = (byte) (255 << (8 - bitsBase));
-		}
-		BigInteger ip = new BigInteger(prefix);
-		BigInteger mask = new BigInteger(prefixLengthMask);
-		if (!ip.or(mask).equals(mask)) {
+		if (!IpPrefix.isNetworkAddress(prefix, prefixLength)) {
 			validationErrors
 					.add(new ValidationError(OBJECT_NAME, prefixFieldId, prefix, ValidationErrorType.UNEXPECTED_VALUE));
 		}
@@ -368,20 +379,7 @@ public class SlurmPrefixDbObject extends SlurmPrefix implements DatabaseObject {
 	 */
 	private void validateFilterEndPrefixValue(byte[] startPrefix, byte[] endPrefix, int prefixLength,
 			List<ValidationError> validationErrors) {
-		int bytesBase = prefixLength / 8;
-		int bitsBase = prefixLength % 8;
-		byte[] prefixLengthMask = new byte[startPrefix.length];
-		int currByte = bytesBase;
-		if (bitsBase > 0) {
-			prefixLengthMask[currByte++] |= ((byte) (255 >> bitsBase));
-		}
-		for (; currByte < prefixLengthMask.length; currByte++) {
-			prefixLengthMask[currByte] |= 255;
-		}
-		BigInteger startIp = new BigInteger(startPrefix);
-		BigInteger endIp = new BigInteger(endPrefix);
-		BigInteger mask = new BigInteger(prefixLengthMask);
-		if (!startIp.or(mask).equals(endIp)) {
+		if (!IpPrefix.isEndOfRange(startPrefix, prefixLength, endPrefix)) {
 			validationErrors
 					.add(new ValidationError(OBJECT_NAME, END_PREFIX, endPrefix, ValidationErrorType.UNEXPECTED_VALUE));
 		}
@@ -0,0 +1,103 @@
+package mx.nic.lab.rpki.prov.object;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * A Validated ROA Payload: origin ASN, prefix and max length. Two VRPs are
+ * equal if all of those values are equal, no matter the ROA they come from.
+ *
+ */
+public class Vrp {
+
+	/**
+	 * Order the VRPs by family, prefix (as unsigned bytes), prefix length, max
+	 * length and ASN
+	 */
+	public static final Comparator<Vrp> PREFIX_ORDER = (a, b) -> {
+		int cmp = IpPrefix.compare(a.getPrefix(), b.getPrefix());
+		if (cmp != 0) {
+			return cmp;
+		}
+		cmp = Integer.compare(a.getPrefixLength(), b.getPrefixLength());
+		if (cmp != 0) {
+			return cmp;
+		}
+		cmp = Integer.compare(a.getPrefixMaxLength(), b.getPrefixMaxLength());
+		if (cmp != 0) {
+			return cmp;
+		}
+		return Long.compare(a.getAsn(), b.getAsn());
+	};
+
+	private final long asn;
+	private final String prefixText;
+	private final byte[] prefix;
+	private final int prefixLength;
+	private final int prefixMaxLength;
+	private final int prefixFamily;
+	private final int hash;
+
+	public Vrp(long asn, String prefixText, byte[] prefix, int prefixLength, int prefixMaxLength,
+			int prefixFamily) {
+		this.asn = asn;
+		this.prefixText = prefixText;
+		this.prefix = prefix;
+		this.prefixLength = prefixLength;
+		this.prefixMaxLength = prefixMaxLength;
+		this.prefixFamily = prefixFamily;
+		int result = Long.hashCode(asn);
+		result = 31 * result + Arrays.hashCode(prefix);
+		result = 31 * result + prefixLength;
+		this.hash = 31 * result + prefixMaxLength;
+	}
+
+	public long getAsn() {
+		return asn;
+	}
+
+	public String getPrefixText() {
+		return prefixText;
+	}
+
+	public byte[] getPrefix() {
+		return prefix;
+	}
+
+	public int getPrefixLength() {
+		return prefixLength;
+	}
+
+	public int getPrefixMaxLength() {
+		return prefixMaxLength;
+	}
+
+	public int getPrefixFamily() {
+		return prefixFamily;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Vrp)) {
+			return false;
+		}
+		Vrp other = (Vrp) obj;
+		return hash == other.hash && asn == other.asn && prefixLength == other.prefixLength
+				&& prefixMaxLength == other.prefixMaxLength && Arrays.equals(prefix, other.prefix);
+	}
+
+	@Override
+	public String toString() {
+		return "AS" + asn + " " + prefixText + " max " + prefixMaxLength;
+	}
+}
@@ -0,0 +1,55 @@
+package mx.nic.lab.rpki.prov.object;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes of the VRPs between a serial and a later one: the VRPs announced
+ * and the VRPs withdrawn. If the changes can't be calculated (the first serial
+ * is unknown or its changes are no longer kept) the delta is marked as
+ * <code>resetRequired</code>, and the consumer must load the complete set of
+ * VRPs of the <code>serial</code>.
+ *
+ */
+public class VrpDelta {
+
+	private final long fromSerial;
+	private final long serial;
+	private final boolean resetRequired;
+	private final List<Vrp> announced;
+	private final List<Vrp> withdrawn;
+
+	public VrpDelta(long fromSerial, long serial, boolean resetRequired) {
+		this.fromSerial = fromSerial;
+		this.serial = serial;
+		this.resetRequired = resetRequired;
+		this.announced = new ArrayList<>();
+		this.withdrawn = new ArrayList<>();
+	}
+
+	/**
+	 * @return the serial whose changes are calculated
+	 */
+	public long getFromSerial() {
+		return fromSerial;
+	}
+
+	/**
+	 * @return the serial reached once the changes are applied
+	 */
+	public long getSerial() {
+		return serial;
+	}
+
+	public boolean isResetRequired() {
+		return resetRequired;
+	}
+
+	public List<Vrp> getAnnounced() {
+		return announced;
+	}
+
+	public List<Vrp> getWithdrawn() {
+		return withdrawn;
+	}
+}
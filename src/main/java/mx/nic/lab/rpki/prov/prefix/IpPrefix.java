@@ -0,0 +1,565 @@
+package mx.nic.lab.rpki.prov.prefix;
+
+/**
+ * IP prefix represented with primitives: an IPv4 address is an
+ * <code>int</code> and an IPv6 address is a pair of <code>long</code>s (high
+ * and low 64 bits).<br>
+ * <br>
+ * The static operations (masks, containment, end of range, comparison) work
+ * directly over the primitives or over the <code>byte[]</code> of the
+ * addresses, and don't allocate any object, so they can be used at every
+ * candidate row of a lookup. The instances are immutable.
+ */
+public final class IpPrefix implements Comparable<IpPrefix> {
+
+	public static final int IPV4_BYTES = 4;
+	public static final int IPV6_BYTES = 16;
+	public static final int IPV4_BITS = 32;
+	public static final int IPV6_BITS = 128;
+
+	/**
+	 * Values of the prefix family used at the database
+	 */
+	public static final int FAMILY_IPV4 = 4;
+	public static final int FAMILY_IPV6 = 6;
+
+	/**
+	 * IPv6 high 64 bits (0 for IPv4)
+	 */
+	private final long high;
+
+	/**
+	 * IPv6 low 64 bits, or the IPv4 <code>int</code>
+	 */
+	private final long low;
+
+	private final int length;
+
+	private final boolean ipv6;
+
+	private IpPrefix(long high, long low, int length, boolean ipv6) {
+		this.high = high;
+		this.low = low;
+		this.length = length;
+		this.ipv6 = ipv6;
+	}
+
+	/**
+	 * Create an IPv4 prefix
+	 *
+	 * @param address
+	 * @param length
+	 * @return The new prefix
+	 */
+	public static IpPrefix ofIpv4(int address, int length) {
+		checkLength(length, IPV4_BITS);
+		return new IpPrefix(0L, address, length, false);
+	}
+
+	/**
+	 * Create an IPv6 prefix
+	 *
+	 * @param high
+	 * @param low
+	 * @param length
+	 * @return The new prefix
+	 */
+	public static IpPrefix ofIpv6(long high, long low, int length) {
+		checkLength(length, IPV6_BITS);
+		return new IpPrefix(high, low, length, true);
+	}
+
+	/**
+	 * Create a prefix from the bytes of the address (4 bytes for IPv4, 16 bytes
+	 * for IPv6)
+	 *
+	 * @param address
+	 * @param length
+	 * @return The new prefix
+	 * @throws IllegalArgumentException
+	 *             if the address or the length aren't valid
+	 */
+	public static IpPrefix of(byte[] address, int length) {
+		if (address == null) {
+			throw new IllegalArgumentException("Null address");
+		}
+		if (address.length == IPV4_BYTES) {
+			return ofIpv4(toIpv4(address), length);
+		}
+		if (address.length == IPV6_BYTES) {
+			return ofIpv6(getIpv6High(address), getIpv6Low(address), length);
+		}
+		throw new IllegalArgumentException("Invalid address of " + address.length + " bytes");
+	}
+
+	public boolean isIpv6() {
+		return ipv6;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the IPv4 address, only valid if the prefix isn't IPv6
+	 */
+	public int getIpv4() {
+		return (int) low;
+	}
+
+	/**
+	 * @return the IPv6 high 64 bits, only valid if the prefix is IPv6
+	 */
+	public long getHigh() {
+		return high;
+	}
+
+	/**
+	 * @return the IPv6 low 64 bits, only valid if the prefix is IPv6
+	 */
+	public long getLow() {
+		return low;
+	}
+
+	/**
+	 * Check if this prefix contains (or is equal to) the <code>other</code>
+	 * prefix, both prefixes must be of the same family
+	 *
+	 * @param other
+	 * @return <code>true</code> if this prefix contains the other
+	 */
+	public boolean contains(IpPrefix other) {
+		if (ipv6 != other.ipv6 || other.length < length) {
+			return false;
+		}
+		if (ipv6) {
+			return ipv6Contains(high, low, length, other.high, other.low);
+		}
+		return ipv4Contains((int) low, length, (int) other.low);
+	}
+
+	/**
+	 * @return the bytes of the address of the prefix
+	 */
+	public byte[] toBytes() {
+		if (ipv6) {
+			byte[] result = new byte[IPV6_BYTES];
+			writeLong(high, result, 0);
+			writeLong(low, result, 8);
+			return result;
+		}
+		byte[] result = new byte[IPV4_BYTES];
+		writeInt((int) low, result, 0);
+		return result;
+	}
+
+	/**
+	 * @return the bytes of the last address of the prefix
+	 */
+	public byte[] toEndBytes() {
+		if (ipv6) {
+			byte[] result = new byte[IPV6_BYTES];
+			writeLong(high | ~ipv6HighMask(length), result, 0);
+			writeLong(low | ~ipv6LowMask(length), result, 8);
+			return result;
+		}
+		byte[] result = new byte[IPV4_BYTES];
+		writeInt(ipv4End((int) low, length), result, 0);
+		return result;
+	}
+
+	/**
+	 * Order: IPv4 before IPv6, then by address (unsigned) and then by length
+	 */
+	@Override
+	public int compareTo(IpPrefix other) {
+		if (ipv6 != other.ipv6) {
+			return ipv6 ? 1 : -1;
+		}
+		int cmp = ipv6 ? compareIpv6(high, low, other.high, other.low) : Integer.compareUnsigned((int) low,
+				(int) other.low);
+		return cmp != 0 ? cmp : Integer.compare(length, other.length);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Long.hashCode(high);
+		result = 31 * result + Long.hashCode(low);
+		result = 31 * result + length;
+		return 31 * result + (ipv6 ? 1 : 0);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof IpPrefix)) {
+			return false;
+		}
+		IpPrefix other = (IpPrefix) obj;
+		return ipv6 == other.ipv6 && length == other.length && high == other.high && low == other.low;
+	}
+
+	// Operations over primitives
+
+	/**
+	 * @param length
+	 * @return the IPv4 mask of <code>length</code> bits
+	 */
+	public static int ipv4Mask(int length) {
+		return length <= 0 ? 0 : length >= IPV4_BITS ? -1 : -1 << (IPV4_BITS - length);
+	}
+
+	/**
+	 * @param length
+	 * @return the high 64 bits of the IPv6 mask of <code>length</code> bits
+	 */
+	public static long ipv6HighMask(int length) {
+		return length <= 0 ? 0L : length >= 64 ? -1L : -1L << (64 - length);
+	}
+
+	/**
+	 * @param length
+	 * @return the low 64 bits of the IPv6 mask of <code>length</code> bits
+	 */
+	public static long ipv6LowMask(int length) {
+		return length <= 64 ? 0L : length >= IPV6_BITS ? -1L : -1L << (IPV6_BITS - length);
+	}
+
+	/**
+	 * Check if the IPv4 <code>address</code> is inside the prefix
+	 * <code>parent</code>/<code>parentLength</code>
+	 */
+	public static boolean ipv4Contains(int parent, int parentLength, int address) {
+		return ((parent ^ address) & ipv4Mask(parentLength)) == 0;
+	}
+
+	/**
+	 * Check if the IPv6 address <code>high</code>:<code>low</code> is inside the
+	 * prefix <code>parentHigh</code>:<code>parentLow</code>/
+	 * <code>parentLength</code>
+	 */
+	public static boolean ipv6Contains(long parentHigh, long parentLow, int parentLength, long high, long low) {
+		return ((parentHigh ^ high) & ipv6HighMask(parentLength)) == 0
+				&& ((parentLow ^ low) & ipv6LowMask(parentLength)) == 0;
+	}
+
+	/**
+	 * @return the last IPv4 address of the prefix <code>address</code>/
+	 *         <code>length</code>
+	 */
+	public static int ipv4End(int address, int length) {
+		return address | ~ipv4Mask(length);
+	}
+
+	/**
+	 * Compare two IPv6 addresses as unsigned 128 bits numbers
+	 */
+	public static int compareIpv6(long aHigh, long aLow, long bHigh, long bLow) {
+		int cmp = Long.compareUnsigned(aHigh, bHigh);
+		return cmp != 0 ? cmp : Long.compareUnsigned(aLow, bLow);
+	}
+
+	// Operations over the bytes of the addresses
+
+	/**
+	 * @param address
+	 * @return the max prefix length of the <code>address</code> family, or -1 if
+	 *         the address isn't IPv4 nor IPv6
+	 */
+	public static int getMaxLength(byte[] address) {
+		if (address == null) {
+			return -1;
+		}
+		return address.length == IPV4_BYTES ? IPV4_BITS : address.length == IPV6_BYTES ? IPV6_BITS : -1;
+	}
+
+	/**
+	 * @param address
+	 * @return the family ({@link #FAMILY_IPV4} or {@link #FAMILY_IPV6}) of the
+	 *         <code>address</code>, or -1 if the address isn't IPv4 nor IPv6
+	 */
+	public static int getFamily(byte[] address) {
+		int maxLength = getMaxLength(address);
+		return maxLength == IPV4_BITS ? FAMILY_IPV4 : maxLength == IPV6_BITS ? FAMILY_IPV6 : -1;
+	}
+
+	/**
+	 * @return the IPv4 <code>address</code> as an <code>int</code>
+	 */
+	public static int toIpv4(byte[] address) {
+		return readInt(address, 0);
+	}
+
+	/**
+	 * @return the high 64 bits of the IPv6 <code>address</code>
+	 */
+	public static long getIpv6High(byte[] address) {
+		return readLong(address, 0);
+	}
+
+	/**
+	 * @return the low 64 bits of the IPv6 <code>address</code>
+	 */
+	public static long getIpv6Low(byte[] address) {
+		return readLong(address, 8);
+	}
+
+	/**
+	 * Get the text representation of the prefix: dotted decimal for IPv4 and the
+	 * RFC 5952 format for IPv6, followed by "/" and the length
+	 *
+	 * @param address
+	 * @param length
+	 * @return The prefix as text
+	 */
+	public static String toText(byte[] address, int length) {
+		StringBuilder text = new StringBuilder(address.length == IPV4_BYTES ? 18 : 43);
+		if (address.length == IPV4_BYTES) {
+			for (int i = 0; i < IPV4_BYTES; i++) {
+				if (i > 0) {
+					text.append('.');
+				}
+				text.append(address[i] & 0xff);
+			}
+		} else {
+			int[] groups = new int[IPV6_BYTES / 2];
+			for (int i = 0; i < groups.length; i++) {
+				groups[i] = (address[2 * i] & 0xff) << 8 | (address[2 * i + 1] & 0xff);
+			}
+			// The first longest run of zeros (of at least 2 groups) is compressed
+			int bestStart = -1;
+			int bestLength = 1;
+			for (int i = 0; i < groups.length; i++) {
+				int j = i;
+				while (j < groups.length && groups[j] == 0) {
+					j++;
+				}
+				if (j - i > bestLength) {
+					bestStart = i;
+					bestLength = j - i;
+				}
+				i = j;
+			}
+			for (int i = 0; i < groups.length; i++) {
+				if (i == bestStart) {
+					text.append("::");
+					i += bestLength - 1;
+					continue;
+				}
+				if (i > 0 && i != bestStart + bestLength) {
+					text.append(':');
+				}
+				text.append(Integer.toHexString(groups[i]));
+			}
+		}
+		return text.append('/').append(length).toString();
+	}
+
+	// Sortable values, used by the numeric prefix columns
+
+	/**
+	 * Get the high 64 bits of the first address of the prefix
+	 * <code>address</code>/<code>length</code> as a signed value that keeps the
+	 * unsigned order of the addresses; always 0 for IPv4
+	 *
+	 * @param address
+	 * @param length
+	 * @return The sortable high value
+	 */
+	public static long toSortableHigh(byte[] address, int length) {
+		if (address.length == IPV4_BYTES) {
+			return 0L;
+		}
+		return (getIpv6High(address) & ipv6HighMask(length)) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Get the low 64 bits of the first address of the prefix
+	 * <code>address</code>/<code>length</code> as a signed value that keeps the
+	 * unsigned order of the addresses; for IPv4 it's the unsigned value of the
+	 * address
+	 *
+	 * @param address
+	 * @param length
+	 * @return The sortable low value
+	 */
+	public static long toSortableLow(byte[] address, int length) {
+		if (address.length == IPV4_BYTES) {
+			return (toIpv4(address) & ipv4Mask(length)) & 0xffffffffL;
+		}
+		return (getIpv6Low(address) & ipv6LowMask(length)) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Same as {@link #toSortableHigh(byte[], int)} but using the last address of
+	 * the prefix
+	 *
+	 * @param address
+	 * @param length
+	 * @return The sortable high value of the last address
+	 */
+	public static long toSortableEndHigh(byte[] address, int length) {
+		if (address.length == IPV4_BYTES) {
+			return 0L;
+		}
+		return (getIpv6High(address) | ~ipv6HighMask(length)) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Same as {@link #toSortableLow(byte[], int)} but using the last address of
+	 * the prefix
+	 *
+	 * @param address
+	 * @param length
+	 * @return The sortable low value of the last address
+	 */
+	public static long toSortableEndLow(byte[] address, int length) {
+		if (address.length == IPV4_BYTES) {
+			return ipv4End(toIpv4(address), length) & 0xffffffffL;
+		}
+		return (getIpv6Low(address) | ~ipv6LowMask(length)) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Check if the <code>address</code> is inside the prefix
+	 * <code>parent</code>/<code>parentLength</code>, both addresses must be of the
+	 * same family
+	 *
+	 * @param parent
+	 * @param parentLength
+	 * @param address
+	 * @return <code>true</code> if the address is inside the prefix
+	 */
+	public static boolean contains(byte[] parent, int parentLength, byte[] address) {
+		if (parent.length != address.length) {
+			return false;
+		}
+		if (parent.length == IPV4_BYTES) {
+			return ipv4Contains(toIpv4(parent), parentLength, toIpv4(address));
+		}
+		if (parent.length == IPV6_BYTES) {
+			return ipv6Contains(getIpv6High(parent), getIpv6Low(parent), parentLength, getIpv6High(address),
+					getIpv6Low(address));
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the <code>address</code> is the first address of a prefix of
+	 * <code>length</code> bits, this is: all the host bits are zero
+	 *
+	 * @param address
+	 * @param length
+	 * @return <code>true</code> if the host bits are zero
+	 */
+	public static boolean isNetworkAddress(byte[] address, int length) {
+		if (address.length == IPV4_BYTES) {
+			return (toIpv4(address) & ~ipv4Mask(length)) == 0;
+		}
+		if (address.length == IPV6_BYTES) {
+			return (getIpv6High(address) & ~ipv6HighMask(length)) == 0
+					&& (getIpv6Low(address) & ~ipv6LowMask(length)) == 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the <code>end</code> address is the last address of the prefix
+	 * <code>start</code>/<code>length</code>
+	 *
+	 * @param start
+	 * @param length
+	 * @param end
+	 * @return <code>true</code> if <code>end</code> is the last address
+	 */
+	public static boolean isEndOfRange(byte[] start, int length, byte[] end) {
+		if (start.length != end.length) {
+			return false;
+		}
+		if (start.length == IPV4_BYTES) {
+			return ipv4End(toIpv4(start), length) == toIpv4(end);
+		}
+		if (start.length == IPV6_BYTES) {
+			return (getIpv6High(start) | ~ipv6HighMask(length)) == getIpv6High(end)
+					&& (getIpv6Low(start) | ~ipv6LowMask(length)) == getIpv6Low(end);
+		}
+		return false;
+	}
+
+	/**
+	 * Get the last address of the prefix <code>address</code>/<code>length</code>,
+	 * the result has the same number of bytes that the <code>address</code>
+	 *
+	 * @param address
+	 * @param length
+	 * @return The last address of the prefix
+	 */
+	public static byte[] getEnd(byte[] address, int length) {
+		byte[] result = new byte[address.length];
+		if (address.length == IPV4_BYTES) {
+			writeInt(ipv4End(toIpv4(address), length), result, 0);
+		} else if (address.length == IPV6_BYTES) {
+			writeLong(getIpv6High(address) | ~ipv6HighMask(length), result, 0);
+			writeLong(getIpv6Low(address) | ~ipv6LowMask(length), result, 8);
+		} else {
+			throw new IllegalArgumentException("Invalid address of " + address.length + " bytes");
+		}
+		return result;
+	}
+
+	/**
+	 * Compare two addresses as unsigned numbers, the shorter addresses (IPv4) go
+	 * first
+	 *
+	 * @param a
+	 * @param b
+	 * @return The comparison result
+	 */
+	public static int compare(byte[] a, byte[] b) {
+		if (a.length != b.length) {
+			return Integer.compare(a.length, b.length);
+		}
+		if (a.length == IPV4_BYTES) {
+			return Integer.compareUnsigned(toIpv4(a), toIpv4(b));
+		}
+		if (a.length == IPV6_BYTES) {
+			return compareIpv6(getIpv6High(a), getIpv6Low(a), getIpv6High(b), getIpv6Low(b));
+		}
+		for (int i = 0; i < a.length; i++) {
+			int cmp = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return 0;
+	}
+
+	private static int readInt(byte[] value, int offset) {
+		return (value[offset] & 0xff) << 24 | (value[offset + 1] & 0xff) << 16 | (value[offset + 2] & 0xff) << 8
+				| (value[offset + 3] & 0xff);
+	}
+
+	private static long readLong(byte[] value, int offset) {
+		return (readInt(value, offset) & 0xffffffffL) << 32 | (readInt(value, offset + 4) & 0xffffffffL);
+	}
+
+	private static void writeInt(int value, byte[] dest, int offset) {
+		dest[offset] = (byte) (value >>> 24);
+		dest[offset + 1] = (byte) (value >>> 16);
+		dest[offset + 2] = (byte) (value >>> 8);
+		dest[offset + 3] = (byte) value;
+	}
+
+	private static void writeLong(long value, byte[] dest, int offset) {
+		writeInt((int) (value >>> 32), dest, offset);
+		writeInt((int) value, dest, offset + 4);
+	}
+
+	private static void checkLength(int length, int max) {
+		if (length < 0 || length > max) {
+			throw new IllegalArgumentException("Invalid prefix length " + length);
+		}
+	}
+}
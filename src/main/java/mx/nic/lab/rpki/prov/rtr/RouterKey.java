@@ -0,0 +1,96 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.bouncycastle.util.encoders.Hex;
+
+import mx.nic.lab.rpki.db.pojo.SlurmBgpsec;
+
+/**
+ * A BGPsec router key: ASN, Subject Key Identifier and Subject Public Key Info.
+ * Two router keys are equal if all of those values are equal.
+ *
+ */
+public class RouterKey {
+
+	/**
+	 * Length of the SKI (a 160-bit SHA-1 hash)
+	 */
+	public static final int SKI_LENGTH = 20;
+
+	private final long asn;
+	private final byte[] ski;
+	private final byte[] subjectPublicKeyInfo;
+	private final int hash;
+
+	public RouterKey(long asn, byte[] ski, byte[] subjectPublicKeyInfo) {
+		this.asn = asn;
+		this.ski = ski;
+		this.subjectPublicKeyInfo = subjectPublicKeyInfo;
+		int result = Long.hashCode(asn);
+		result = 31 * result + Arrays.hashCode(ski);
+		this.hash = 31 * result + Arrays.hashCode(subjectPublicKeyInfo);
+	}
+
+	/**
+	 * Build a router key from a {@link SlurmBgpsec} assertion, decoding its SKI
+	 * and public key the same way that they're validated when the assertion is
+	 * stored. Return <code>null</code> if the assertion can't be decoded.
+	 *
+	 * @param slurmBgpsec
+	 * @return The {@link RouterKey} of the assertion, or <code>null</code>
+	 */
+	public static RouterKey of(SlurmBgpsec slurmBgpsec) {
+		if (slurmBgpsec.getAsn() == null || slurmBgpsec.getSki() == null
+				|| slurmBgpsec.getRouterPublicKey() == null) {
+			return null;
+		}
+		try {
+			byte[] ski = Hex.decode(Base64.getDecoder().decode(slurmBgpsec.getSki().trim()));
+			byte[] spki = Base64.getDecoder().decode(slurmBgpsec.getRouterPublicKey().trim());
+			if (ski.length != SKI_LENGTH) {
+				return null;
+			}
+			return new RouterKey(slurmBgpsec.getAsn(), ski, spki);
+		} catch (RuntimeException e) {
+			// Base64 and Hex decoding errors
+			return null;
+		}
+	}
+
+	public long getAsn() {
+		return asn;
+	}
+
+	public byte[] getSki() {
+		return ski;
+	}
+
+	public byte[] getSubjectPublicKeyInfo() {
+		return subjectPublicKeyInfo;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof RouterKey)) {
+			return false;
+		}
+		RouterKey other = (RouterKey) obj;
+		return hash == other.hash && asn == other.asn && Arrays.equals(ski, other.ski)
+				&& Arrays.equals(subjectPublicKeyInfo, other.subjectPublicKeyInfo);
+	}
+
+	@Override
+	public String toString() {
+		return "AS" + asn + " SKI " + Hex.toHexString(ski);
+	}
+}
@@ -0,0 +1,332 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mx.nic.lab.rpki.db.pojo.Slurm;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.SlurmModel;
+import mx.nic.lab.rpki.prov.model.VrpSnapshotModel;
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.object.VrpDelta;
+
+/**
+ * The data of the RTR cache server: the current {@link RtrPayload} with its
+ * serial and the {@link RtrDelta}s of the last serials, so that the Serial
+ * Queries can be answered incrementally.<br>
+ * <br>
+ * The RTR serial is independent of the VRP snapshot serial, since the SLURM
+ * changes the data too; it's incremented each time the payload changes. The
+ * VRPs of the ROAs are kept in memory and synced with the changes of the VRP
+ * snapshots (see {@link VrpSnapshotModel#getChangesSince(long, Connection)}),
+ * so the complete set of VRPs is read only at the first load or if the changes
+ * are no longer available.<br>
+ * <br>
+ * The responses are encoded once per serial and protocol version, and shared
+ * by all the sessions.
+ *
+ */
+public class RtrCache {
+
+	private static final Logger logger = Logger.getLogger(RtrCache.class.getName());
+
+	/**
+	 * Serial of the first payload loaded
+	 */
+	private static final int INITIAL_SERIAL = 1;
+
+	private final short sessionId;
+	private final int deltaHistory;
+	private final int refreshInterval;
+	private final int retryInterval;
+	private final int expireInterval;
+
+	/**
+	 * Current data, <code>null</code> while there's no data to serve
+	 */
+	private volatile RtrState state = null;
+
+	/**
+	 * Called each time a new serial is published
+	 */
+	private volatile Runnable serialListener = null;
+
+	// Used only while refreshing the data
+	private Set<Vrp> roaVrps = null;
+	private long snapshotSerial = VrpSnapshotModel.NO_SNAPSHOT;
+	private Slurm slurm = null;
+	private long slurmGeneration = -1L;
+
+	/**
+	 * Create a cache with a random session ID
+	 *
+	 * @param deltaHistory
+	 *            number of serials whose changes are kept
+	 * @param refreshInterval
+	 *            seconds sent to the routers at the End of Data PDU
+	 * @param retryInterval
+	 *            seconds sent to the routers at the End of Data PDU
+	 * @param expireInterval
+	 *            seconds sent to the routers at the End of Data PDU
+	 */
+	public RtrCache(int deltaHistory, int refreshInterval, int retryInterval, int expireInterval) {
+		this.sessionId = (short) new SecureRandom().nextInt(1 << 16);
+		this.deltaHistory = deltaHistory;
+		this.refreshInterval = refreshInterval;
+		this.retryInterval = retryInterval;
+		this.expireInterval = expireInterval;
+	}
+
+	/**
+	 * Reload the data if the VRP snapshot or the SLURM changed since the last
+	 * refresh; if the payload changes, a new serial is published and the
+	 * <code>serialListener</code> is called
+	 *
+	 * @return <code>true</code> if a new serial was published
+	 * @throws SQLException
+	 */
+	public synchronized boolean refresh() throws SQLException {
+		try (Connection connection = DatabaseSession.getConnection()) {
+			long currentSnapshot = VrpSnapshotModel.getCurrentId(connection);
+			long currentSlurmGeneration = SlurmModel.getGeneration();
+			if (currentSnapshot == snapshotSerial && currentSlurmGeneration == slurmGeneration) {
+				return false;
+			}
+			if (currentSnapshot != snapshotSerial) {
+				syncRoaVrps(currentSnapshot, connection);
+			}
+			if (currentSlurmGeneration != slurmGeneration) {
+				slurm = SlurmModel.getAll(connection);
+				slurmGeneration = currentSlurmGeneration;
+			}
+		}
+		if (snapshotSerial == VrpSnapshotModel.NO_SNAPSHOT) {
+			// Nothing to serve until the first validation run completes
+			return false;
+		}
+		RtrPayload payload = RtrPayload.build(roaVrps, slurm);
+		RtrState current = state;
+		RtrState newState;
+		if (current == null) {
+			newState = new RtrState(INITIAL_SERIAL, payload, Collections.emptyList());
+		} else {
+			RtrDelta delta = current.payload.diff(payload, current.serial, current.serial + 1);
+			if (delta.isEmpty()) {
+				return false;
+			}
+			List<RtrDelta> history = new ArrayList<>(current.history);
+			history.add(delta);
+			if (history.size() > deltaHistory) {
+				history = new ArrayList<>(history.subList(history.size() - deltaHistory, history.size()));
+			}
+			newState = new RtrState(current.serial + 1, payload, history);
+		}
+		state = newState;
+		logger.log(Level.INFO, "RTR serial " + Integer.toUnsignedString(newState.serial) + " published with "
+				+ payload.getVrps().size() + " VRPs and " + payload.getRouterKeys().size() + " router keys");
+		Runnable listener = serialListener;
+		if (listener != null) {
+			listener.run();
+		}
+		return true;
+	}
+
+	/**
+	 * Apply to the VRPs of the ROAs the changes since the last snapshot loaded,
+	 * or load them completely if the changes aren't available
+	 */
+	private void syncRoaVrps(long currentSnapshot, Connection connection) throws SQLException {
+		if (roaVrps != null && snapshotSerial != VrpSnapshotModel.NO_SNAPSHOT) {
+			VrpDelta delta = VrpSnapshotModel.getChangesSince(snapshotSerial, connection);
+			if (!delta.isResetRequired()) {
+				for (Vrp vrp : delta.getWithdrawn()) {
+					roaVrps.remove(vrp);
+				}
+				roaVrps.addAll(delta.getAnnounced());
+				snapshotSerial = delta.getSerial();
+				return;
+			}
+		}
+		Collection<Vrp> vrps = currentSnapshot == VrpSnapshotModel.NO_SNAPSHOT ? Collections.emptyList()
+				: VrpSnapshotModel.getVrps(currentSnapshot, connection);
+		roaVrps = new HashSet<>(vrps);
+		snapshotSerial = currentSnapshot;
+	}
+
+	/**
+	 * Get the complete response to a Reset Query: Cache Response, the complete
+	 * payload and End of Data
+	 *
+	 * @param version
+	 * @return A read-only buffer with the response, or <code>null</code> if
+	 *         there's no data yet
+	 */
+	public ByteBuffer getResetResponse(byte version) {
+		RtrState current = state;
+		if (current == null) {
+			return null;
+		}
+		return current.getFullResponse(version).duplicate();
+	}
+
+	/**
+	 * Get the response to a Serial Query: Cache Response, the changes since the
+	 * <code>serial</code> and End of Data
+	 *
+	 * @param serial
+	 * @param version
+	 * @return A read-only buffer with the response, or <code>null</code> if the
+	 *         changes since the serial aren't available (a Cache Reset must be
+	 *         sent)
+	 */
+	public ByteBuffer getSerialResponse(int serial, byte version) {
+		RtrState current = state;
+		if (current == null) {
+			return null;
+		}
+		ByteBuffer response = current.getDeltaResponse(serial, version);
+		return response != null ? response.duplicate() : null;
+	}
+
+	/**
+	 * @return <code>true</code> if there's data to serve
+	 */
+	public boolean hasData() {
+		return state != null;
+	}
+
+	/**
+	 * @return the current serial, only meaningful if {@link #hasData()}
+	 */
+	public int getSerial() {
+		RtrState current = state;
+		return current != null ? current.serial : 0;
+	}
+
+	public short getSessionId() {
+		return sessionId;
+	}
+
+	public void setSerialListener(Runnable serialListener) {
+		this.serialListener = serialListener;
+	}
+
+	/**
+	 * The payload at a serial and the changes of the previous serials, along
+	 * with its encoded responses
+	 */
+	private class RtrState {
+
+		private final int serial;
+		private final RtrPayload payload;
+
+		/**
+		 * Consecutive deltas, the last one ends at this serial
+		 */
+		private final List<RtrDelta> history;
+
+		private final ByteBuffer[] fullResponses = new ByteBuffer[RtrPdu.MAX_VERSION + 1];
+		private final Map<Long, ByteBuffer> deltaResponses = new ConcurrentHashMap<>();
+
+		private RtrState(int serial, RtrPayload payload, List<RtrDelta> history) {
+			this.serial = serial;
+			this.payload = payload;
+			this.history = history;
+		}
+
+		private synchronized ByteBuffer getFullResponse(byte version) {
+			ByteBuffer response = fullResponses[version];
+			if (response == null) {
+				response = encode(version, payload.getVrps(), Collections.emptyList(), payload.getRouterKeys(),
+						Collections.emptyList());
+				fullResponses[version] = response;
+			}
+			return response;
+		}
+
+		private ByteBuffer getDeltaResponse(int fromSerial, byte version) {
+			Long key = ((long) fromSerial << 8) | version;
+			ByteBuffer response = deltaResponses.get(key);
+			if (response != null) {
+				return response;
+			}
+			RtrDelta delta = null;
+			if (fromSerial == serial) {
+				delta = new RtrDelta(serial, serial);
+			} else {
+				for (int i = 0; i < history.size(); i++) {
+					if (history.get(i).getFromSerial() == fromSerial) {
+						delta = RtrDelta.merge(history.subList(i, history.size()));
+						break;
+					}
+				}
+			}
+			if (delta == null) {
+				return null;
+			}
+			response = encode(version, delta.getAnnouncedVrps(), delta.getWithdrawnVrps(),
+					delta.getAnnouncedRouterKeys(), delta.getWithdrawnRouterKeys());
+			deltaResponses.putIfAbsent(key, response);
+			return response;
+		}
+
+		/**
+		 * Encode a complete response: Cache Response, the withdrawals, the
+		 * announcements and End of Data. The router keys are sent only since the
+		 * version 1.
+		 */
+		private ByteBuffer encode(byte version, Collection<Vrp> announcedVrps, Collection<Vrp> withdrawnVrps,
+				Collection<RouterKey> announcedKeys, Collection<RouterKey> withdrawnKeys) {
+			boolean sendKeys = version != RtrPdu.VERSION_0;
+			int length = RtrPdu.CACHE_RESPONSE_LENGTH + RtrPdu.getEndOfDataLength(version);
+			for (Vrp vrp : announcedVrps) {
+				length += RtrPdu.getPrefixLength(vrp);
+			}
+			for (Vrp vrp : withdrawnVrps) {
+				length += RtrPdu.getPrefixLength(vrp);
+			}
+			if (sendKeys) {
+				for (RouterKey routerKey : announcedKeys) {
+					length += RtrPdu.getRouterKeyLength(routerKey);
+				}
+				for (RouterKey routerKey : withdrawnKeys) {
+					length += RtrPdu.getRouterKeyLength(routerKey);
+				}
+			}
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			RtrPdu.putCacheResponse(buffer, version, sessionId);
+			for (Vrp vrp : withdrawnVrps) {
+				RtrPdu.putPrefix(buffer, version, RtrPdu.FLAG_WITHDRAWAL, vrp);
+			}
+			if (sendKeys) {
+				for (RouterKey routerKey : withdrawnKeys) {
+					RtrPdu.putRouterKey(buffer, version, RtrPdu.FLAG_WITHDRAWAL, routerKey);
+				}
+			}
+			for (Vrp vrp : announcedVrps) {
+				RtrPdu.putPrefix(buffer, version, RtrPdu.FLAG_ANNOUNCEMENT, vrp);
+			}
+			if (sendKeys) {
+				for (RouterKey routerKey : announcedKeys) {
+					RtrPdu.putRouterKey(buffer, version, RtrPdu.FLAG_ANNOUNCEMENT, routerKey);
+				}
+			}
+			RtrPdu.putEndOfData(buffer, version, sessionId, serial, refreshInterval, retryInterval,
+					expireInterval);
+			buffer.flip();
+			return buffer.asReadOnlyBuffer();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+import mx.nic.lab.rpki.prov.object.Vrp;
+
+/**
+ * The changes of the {@link RtrPayload} between a serial and a later one: the
+ * VRPs and router keys announced and withdrawn.
+ *
+ */
+public class RtrDelta {
+
+	private final int fromSerial;
+	private final int serial;
+	private final List<Vrp> announcedVrps;
+	private final List<Vrp> withdrawnVrps;
+	private final List<RouterKey> announcedRouterKeys;
+	private final List<RouterKey> withdrawnRouterKeys;
+
+	public RtrDelta(int fromSerial, int serial) {
+		this.fromSerial = fromSerial;
+		this.serial = serial;
+		this.announcedVrps = new ArrayList<>();
+		this.withdrawnVrps = new ArrayList<>();
+		this.announcedRouterKeys = new ArrayList<>();
+		this.withdrawnRouterKeys = new ArrayList<>();
+	}
+
+	/**
+	 * Merge consecutive deltas into a single one, the changes that cancel each
+	 * other (e.g. a VRP announced and withdrawn later) are discarded
+	 *
+	 * @param deltas
+	 *            consecutive deltas, ordered by serial; at least one is expected
+	 * @return The {@link RtrDelta} from the first serial to the last one
+	 */
+	public static RtrDelta merge(List<RtrDelta> deltas) {
+		if (deltas.size() == 1) {
+			return deltas.get(0);
+		}
+		RtrDelta result = new RtrDelta(deltas.get(0).getFromSerial(), deltas.get(deltas.size() - 1).getSerial());
+		Map<Vrp, Boolean> vrpChanges = mergeChanges(deltas, RtrDelta::getAnnouncedVrps,
+				RtrDelta::getWithdrawnVrps);
+		for (Entry<Vrp, Boolean> change : vrpChanges.entrySet()) {
+			(change.getValue() ? result.announcedVrps : result.withdrawnVrps).add(change.getKey());
+		}
+		Map<RouterKey, Boolean> keyChanges = mergeChanges(deltas, RtrDelta::getAnnouncedRouterKeys,
+				RtrDelta::getWithdrawnRouterKeys);
+		for (Entry<RouterKey, Boolean> change : keyChanges.entrySet()) {
+			(change.getValue() ? result.announcedRouterKeys : result.withdrawnRouterKeys).add(change.getKey());
+		}
+		return result;
+	}
+
+	/**
+	 * Get the net change of each element, <code>true</code> if it's announced and
+	 * <code>false</code> if it's withdrawn
+	 */
+	private static <T> Map<T, Boolean> mergeChanges(List<RtrDelta> deltas,
+			Function<RtrDelta, List<T>> announced, Function<RtrDelta, List<T>> withdrawn) {
+		Map<T, Boolean> changes = new LinkedHashMap<>();
+		for (RtrDelta delta : deltas) {
+			for (T element : withdrawn.apply(delta)) {
+				// Announced by a previous delta, so it didn't exist at the first serial
+				if (changes.remove(element) == null) {
+					changes.put(element, Boolean.FALSE);
+				}
+			}
+			for (T element : announced.apply(delta)) {
+				// Withdrawn by a previous delta, so it already existed at the first serial
+				if (changes.remove(element) == null) {
+					changes.put(element, Boolean.TRUE);
+				}
+			}
+		}
+		return changes;
+	}
+
+	public boolean isEmpty() {
+		return announcedVrps.isEmpty() && withdrawnVrps.isEmpty() && announcedRouterKeys.isEmpty()
+				&& withdrawnRouterKeys.isEmpty();
+	}
+
+	/**
+	 * @return the serial whose changes are calculated
+	 */
+	public int getFromSerial() {
+		return fromSerial;
+	}
+
+	/**
+	 * @return the serial reached once the changes are applied
+	 */
+	public int getSerial() {
+		return serial;
+	}
+
+	public List<Vrp> getAnnouncedVrps() {
+		return announcedVrps;
+	}
+
+	public List<Vrp> getWithdrawnVrps() {
+		return withdrawnVrps;
+	}
+
+	public List<RouterKey> getAnnouncedRouterKeys() {
+		return announcedRouterKeys;
+	}
+
+	public List<RouterKey> getWithdrawnRouterKeys() {
+		return withdrawnRouterKeys;
+	}
+}
@@ -0,0 +1,127 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import mx.nic.lab.rpki.db.pojo.Slurm;
+import mx.nic.lab.rpki.db.pojo.SlurmBgpsec;
+import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+import mx.nic.lab.rpki.prov.trie.SlurmPrefixTrie;
+
+/**
+ * The data served to the routers at a serial: the VRPs and the router keys once
+ * the SLURM has been applied (RFC 8416 section 4.2), this is: the VRPs of the
+ * ROAs that don't match any filter, plus the assertions.<br>
+ * <br>
+ * The router keys only come from the BGPsec assertions, the router
+ * certificates aren't stored so there's nothing where the BGPsec filters could
+ * be applied.<br>
+ * <br>
+ * Once built, the instance isn't modified anymore, so it can be shared between
+ * threads.
+ *
+ */
+public class RtrPayload {
+
+	/**
+	 * Payload without data
+	 */
+	public static final RtrPayload EMPTY = new RtrPayload(Collections.emptySet(), Collections.emptySet());
+
+	private final Set<Vrp> vrps;
+	private final Set<RouterKey> routerKeys;
+
+	private RtrPayload(Set<Vrp> vrps, Set<RouterKey> routerKeys) {
+		this.vrps = Collections.unmodifiableSet(vrps);
+		this.routerKeys = Collections.unmodifiableSet(routerKeys);
+	}
+
+	/**
+	 * Build the payload applying the <code>slurm</code> to the VRPs of the ROAs
+	 *
+	 * @param roaVrps
+	 *            VRPs of the ROAs
+	 * @param slurm
+	 * @return The new payload
+	 */
+	public static RtrPayload build(Collection<Vrp> roaVrps, Slurm slurm) {
+		List<SlurmPrefix> prefixFilters = slurm.getValidationOutputFilters().getPrefixes();
+		Set<Vrp> vrps = new HashSet<>(roaVrps.size() * 4 / 3 + 1);
+		if (prefixFilters.isEmpty()) {
+			vrps.addAll(roaVrps);
+		} else {
+			SlurmPrefixTrie filters = SlurmPrefixTrie.build(prefixFilters);
+			for (Vrp vrp : roaVrps) {
+				if (filters.findFilterMatch(vrp.getAsn(), vrp.getPrefix(), vrp.getPrefixLength()) == null) {
+					vrps.add(vrp);
+				}
+			}
+		}
+		for (SlurmPrefix assertion : slurm.getLocallyAddedAssertions().getPrefixes()) {
+			if (assertion.getAsn() == null || assertion.getStartPrefix() == null) {
+				continue;
+			}
+			int maxLength = assertion.getPrefixMaxLength() != null ? assertion.getPrefixMaxLength()
+					: assertion.getPrefixLength();
+			vrps.add(new Vrp(assertion.getAsn(), assertion.getPrefixText(), assertion.getStartPrefix(),
+					assertion.getPrefixLength(), maxLength, IpPrefix.getFamily(assertion.getStartPrefix())));
+		}
+		Set<RouterKey> routerKeys = new HashSet<>();
+		for (SlurmBgpsec assertion : slurm.getLocallyAddedAssertions().getBgpsecs()) {
+			RouterKey routerKey = RouterKey.of(assertion);
+			if (routerKey != null) {
+				routerKeys.add(routerKey);
+			}
+		}
+		return new RtrPayload(vrps, routerKeys);
+	}
+
+	/**
+	 * Calculate the changes needed to go from this payload to the
+	 * <code>newer</code> one
+	 *
+	 * @param newer
+	 * @param fromSerial
+	 *            serial of this payload
+	 * @param serial
+	 *            serial of the <code>newer</code> payload
+	 * @return The {@link RtrDelta} between both payloads
+	 */
+	public RtrDelta diff(RtrPayload newer, int fromSerial, int serial) {
+		RtrDelta delta = new RtrDelta(fromSerial, serial);
+		for (Vrp vrp : newer.vrps) {
+			if (!vrps.contains(vrp)) {
+				delta.getAnnouncedVrps().add(vrp);
+			}
+		}
+		for (Vrp vrp : vrps) {
+			if (!newer.vrps.contains(vrp)) {
+				delta.getWithdrawnVrps().add(vrp);
+			}
+		}
+		for (RouterKey routerKey : newer.routerKeys) {
+			if (!routerKeys.contains(routerKey)) {
+				delta.getAnnouncedRouterKeys().add(routerKey);
+			}
+		}
+		for (RouterKey routerKey : routerKeys) {
+			if (!newer.routerKeys.contains(routerKey)) {
+				delta.getWithdrawnRouterKeys().add(routerKey);
+			}
+		}
+		return delta;
+	}
+
+	public Set<Vrp> getVrps() {
+		return vrps;
+	}
+
+	public Set<RouterKey> getRouterKeys() {
+		return routerKeys;
+	}
+}
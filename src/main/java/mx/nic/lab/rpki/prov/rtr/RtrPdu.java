@@ -0,0 +1,212 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * Constants and encoders of the RPKI-to-Router protocol PDUs (RFC 6810 for the
+ * version 0 and RFC 8210 for the version 1). Every PDU starts with the same
+ * header: version (1 byte), type (1 byte), session ID or type specific data (2
+ * bytes) and the total length of the PDU (4 bytes), all in network byte order.
+ *
+ */
+public final class RtrPdu {
+
+	// Protocol versions
+	public static final byte VERSION_0 = 0;
+	public static final byte VERSION_1 = 1;
+	public static final byte MAX_VERSION = VERSION_1;
+
+	// PDU types
+	public static final byte SERIAL_NOTIFY = 0;
+	public static final byte SERIAL_QUERY = 1;
+	public static final byte RESET_QUERY = 2;
+	public static final byte CACHE_RESPONSE = 3;
+	public static final byte IPV4_PREFIX = 4;
+	public static final byte IPV6_PREFIX = 6;
+	public static final byte END_OF_DATA = 7;
+	public static final byte CACHE_RESET = 8;
+	public static final byte ROUTER_KEY = 9;
+	public static final byte ERROR_REPORT = 10;
+
+	// Error codes of the Error Report PDU
+	public static final short CORRUPT_DATA = 0;
+	public static final short INTERNAL_ERROR = 1;
+	public static final short NO_DATA_AVAILABLE = 2;
+	public static final short INVALID_REQUEST = 3;
+	public static final short UNSUPPORTED_PROTOCOL_VERSION = 4;
+	public static final short UNSUPPORTED_PDU_TYPE = 5;
+	public static final short WITHDRAWAL_OF_UNKNOWN_RECORD = 6;
+	public static final short DUPLICATE_ANNOUNCEMENT = 7;
+	public static final short UNEXPECTED_PROTOCOL_VERSION = 8;
+
+	/**
+	 * Flag of the payload PDUs: announcement (1) or withdrawal (0)
+	 */
+	public static final byte FLAG_ANNOUNCEMENT = 1;
+	public static final byte FLAG_WITHDRAWAL = 0;
+
+	// Lengths of the fixed size PDUs
+	public static final int HEADER_LENGTH = 8;
+	public static final int SERIAL_NOTIFY_LENGTH = 12;
+	public static final int SERIAL_QUERY_LENGTH = 12;
+	public static final int RESET_QUERY_LENGTH = 8;
+	public static final int CACHE_RESPONSE_LENGTH = 8;
+	public static final int IPV4_PREFIX_LENGTH = 20;
+	public static final int IPV6_PREFIX_LENGTH = 32;
+	public static final int END_OF_DATA_V0_LENGTH = 12;
+	public static final int END_OF_DATA_V1_LENGTH = 24;
+	public static final int CACHE_RESET_LENGTH = 8;
+
+	private RtrPdu() {
+		// No instances
+	}
+
+	/**
+	 * Get the length of the End of Data PDU of the <code>version</code>
+	 *
+	 * @param version
+	 * @return The length of the PDU
+	 */
+	public static int getEndOfDataLength(byte version) {
+		return version == VERSION_0 ? END_OF_DATA_V0_LENGTH : END_OF_DATA_V1_LENGTH;
+	}
+
+	/**
+	 * Get the length of the prefix PDU of the {@link Vrp}
+	 *
+	 * @param vrp
+	 * @return The length of the PDU
+	 */
+	public static int getPrefixLength(Vrp vrp) {
+		return vrp.getPrefix().length == IpPrefix.IPV4_BYTES ? IPV4_PREFIX_LENGTH : IPV6_PREFIX_LENGTH;
+	}
+
+	/**
+	 * Get the length of the Router Key PDU of the {@link RouterKey}
+	 *
+	 * @param routerKey
+	 * @return The length of the PDU
+	 */
+	public static int getRouterKeyLength(RouterKey routerKey) {
+		return HEADER_LENGTH + RouterKey.SKI_LENGTH + 4 + routerKey.getSubjectPublicKeyInfo().length;
+	}
+
+	public static void putSerialNotify(ByteBuffer buffer, byte version, short sessionId, int serial) {
+		putHeader(buffer, version, SERIAL_NOTIFY, sessionId, SERIAL_NOTIFY_LENGTH);
+		buffer.putInt(serial);
+	}
+
+	public static void putSerialQuery(ByteBuffer buffer, byte version, short sessionId, int serial) {
+		putHeader(buffer, version, SERIAL_QUERY, sessionId, SERIAL_QUERY_LENGTH);
+		buffer.putInt(serial);
+	}
+
+	public static void putResetQuery(ByteBuffer buffer, byte version) {
+		putHeader(buffer, version, RESET_QUERY, (short) 0, RESET_QUERY_LENGTH);
+	}
+
+	public static void putCacheResponse(ByteBuffer buffer, byte version, short sessionId) {
+		putHeader(buffer, version, CACHE_RESPONSE, sessionId, CACHE_RESPONSE_LENGTH);
+	}
+
+	public static void putCacheReset(ByteBuffer buffer, byte version) {
+		putHeader(buffer, version, CACHE_RESET, (short) 0, CACHE_RESET_LENGTH);
+	}
+
+	/**
+	 * Put an IPv4 or IPv6 Prefix PDU, according to the {@link Vrp} prefix
+	 *
+	 * @param buffer
+	 * @param version
+	 * @param flags
+	 *            {@link #FLAG_ANNOUNCEMENT} or {@link #FLAG_WITHDRAWAL}
+	 * @param vrp
+	 */
+	public static void putPrefix(ByteBuffer buffer, byte version, byte flags, Vrp vrp) {
+		byte[] prefix = vrp.getPrefix();
+		boolean isIpv4 = prefix.length == IpPrefix.IPV4_BYTES;
+		putHeader(buffer, version, isIpv4 ? IPV4_PREFIX : IPV6_PREFIX, (short) 0,
+				isIpv4 ? IPV4_PREFIX_LENGTH : IPV6_PREFIX_LENGTH);
+		buffer.put(flags);
+		buffer.put((byte) vrp.getPrefixLength());
+		buffer.put((byte) vrp.getPrefixMaxLength());
+		buffer.put((byte) 0);
+		buffer.put(prefix);
+		buffer.putInt((int) vrp.getAsn());
+	}
+
+	/**
+	 * Put a Router Key PDU, only exists since the version 1
+	 *
+	 * @param buffer
+	 * @param version
+	 * @param flags
+	 *            {@link #FLAG_ANNOUNCEMENT} or {@link #FLAG_WITHDRAWAL}
+	 * @param routerKey
+	 */
+	public static void putRouterKey(ByteBuffer buffer, byte version, byte flags, RouterKey routerKey) {
+		// The flags take the place of the first byte of the session ID
+		putHeader(buffer, version, ROUTER_KEY, (short) ((flags & 0xFF) << 8), getRouterKeyLength(routerKey));
+		buffer.put(routerKey.getSki());
+		buffer.putInt((int) routerKey.getAsn());
+		buffer.put(routerKey.getSubjectPublicKeyInfo());
+	}
+
+	/**
+	 * Put an End of Data PDU, the intervals are sent only since the version 1
+	 *
+	 * @param buffer
+	 * @param version
+	 * @param sessionId
+	 * @param serial
+	 * @param refreshInterval
+	 * @param retryInterval
+	 * @param expireInterval
+	 */
+	public static void putEndOfData(ByteBuffer buffer, byte version, short sessionId, int serial,
+			int refreshInterval, int retryInterval, int expireInterval) {
+		putHeader(buffer, version, END_OF_DATA, sessionId, getEndOfDataLength(version));
+		buffer.putInt(serial);
+		if (version != VERSION_0) {
+			buffer.putInt(refreshInterval);
+			buffer.putInt(retryInterval);
+			buffer.putInt(expireInterval);
+		}
+	}
+
+	/**
+	 * Build an Error Report PDU
+	 *
+	 * @param version
+	 * @param errorCode
+	 * @param erroneousPdu
+	 *            the PDU that caused the error, may be <code>null</code>
+	 * @param text
+	 *            diagnostic text, may be <code>null</code>
+	 * @return The buffer with the PDU, ready to be read
+	 */
+	public static ByteBuffer errorReport(byte version, short errorCode, byte[] erroneousPdu, String text) {
+		byte[] pdu = erroneousPdu != null ? erroneousPdu : new byte[0];
+		byte[] textBytes = text != null ? text.getBytes(StandardCharsets.UTF_8) : new byte[0];
+		int length = HEADER_LENGTH + 4 + pdu.length + 4 + textBytes.length;
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		putHeader(buffer, version, ERROR_REPORT, errorCode, length);
+		buffer.putInt(pdu.length);
+		buffer.put(pdu);
+		buffer.putInt(textBytes.length);
+		buffer.put(textBytes);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void putHeader(ByteBuffer buffer, byte version, byte type, short sessionId, int length) {
+		buffer.put(version);
+		buffer.put(type);
+		buffer.putShort(sessionId);
+		buffer.putInt(length);
+	}
+}
@@ -0,0 +1,321 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mx.nic.lab.rpki.db.exception.InitializationException;
+
+/**
+ * RPKI-to-Router cache server (RFC 6810 and RFC 8210), serves the data of a
+ * {@link RtrCache} to the routers. A single thread handles all the router
+ * sessions with non-blocking sockets, and another thread refreshes the cache
+ * data periodically.<br>
+ * <br>
+ * When the cache publishes a new serial, a Serial Notify is sent to the
+ * sessions, no more than once per <code>rtr_notify_interval</code>.<br>
+ * <br>
+ * The server can be tested with the {@link RtrTestClient}.
+ *
+ */
+public class RtrServer {
+
+	private static final Logger logger = Logger.getLogger(RtrServer.class.getName());
+
+	// Default values of the optional properties
+	private static final String DEFAULT_ADDRESS = "127.0.0.1";
+	private static final int DEFAULT_POLL_INTERVAL = 10;
+	private static final int DEFAULT_NOTIFY_INTERVAL = 60;
+	private static final int DEFAULT_DELTA_HISTORY = 100;
+	// Recommended by RFC 8210 section 6
+	private static final int DEFAULT_REFRESH_INTERVAL = 3600;
+	private static final int DEFAULT_RETRY_INTERVAL = 600;
+	private static final int DEFAULT_EXPIRE_INTERVAL = 7200;
+
+	private final InetSocketAddress address;
+	private final RtrCache cache;
+	private final long pollInterval;
+	private final long notifyIntervalNanos;
+
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private Thread selectorThread;
+	private ScheduledExecutorService refreshExecutor;
+
+	private volatile boolean running = false;
+	private volatile boolean notifyPending = false;
+	private long lastNotifyNanos;
+
+	/**
+	 * Create the server
+	 *
+	 * @param address
+	 *            address where the server listens
+	 * @param cache
+	 *            data served
+	 * @param pollInterval
+	 *            seconds between each refresh of the cache
+	 * @param notifyInterval
+	 *            minimum seconds between the Serial Notifies
+	 */
+	public RtrServer(InetSocketAddress address, RtrCache cache, long pollInterval, long notifyInterval) {
+		this.address = address;
+		this.cache = cache;
+		this.pollInterval = pollInterval;
+		this.notifyIntervalNanos = TimeUnit.SECONDS.toNanos(notifyInterval);
+		// The first notify doesn't have to wait
+		this.lastNotifyNanos = System.nanoTime() - notifyIntervalNanos;
+	}
+
+	/**
+	 * Create the server according to the configuration; the server is optional,
+	 * it's created only if the <code>rtr_server_port</code> is configured
+	 *
+	 * @param config
+	 * @return The new server (not started yet), or <code>null</code> if it isn't
+	 *         configured
+	 * @throws InitializationException
+	 */
+	public static RtrServer fromConfig(Properties config) throws InitializationException {
+		String port = config.getProperty("rtr_server_port");
+		if (port == null) {
+			return null;
+		}
+		int portNumber = getIntProperty(config, "rtr_server_port", 0);
+		if (portNumber <= 0 || portNumber > 65535) {
+			throw new InitializationException("Invalid rtr_server_port '" + port + "'");
+		}
+		String host = config.getProperty("rtr_server_address", DEFAULT_ADDRESS).trim();
+		long pollInterval = getIntProperty(config, "rtr_poll_interval", DEFAULT_POLL_INTERVAL);
+		long notifyInterval = getIntProperty(config, "rtr_notify_interval", DEFAULT_NOTIFY_INTERVAL);
+		int deltaHistory = getIntProperty(config, "rtr_delta_history", DEFAULT_DELTA_HISTORY);
+		int refreshInterval = getIntProperty(config, "rtr_refresh_interval", DEFAULT_REFRESH_INTERVAL);
+		int retryInterval = getIntProperty(config, "rtr_retry_interval", DEFAULT_RETRY_INTERVAL);
+		int expireInterval = getIntProperty(config, "rtr_expire_interval", DEFAULT_EXPIRE_INTERVAL);
+		if (pollInterval <= 0) {
+			throw new InitializationException("The rtr_poll_interval must be greater than 0");
+		}
+		if (notifyInterval < 0) {
+			throw new InitializationException("The rtr_notify_interval can't be negative");
+		}
+		if (deltaHistory <= 0) {
+			throw new InitializationException("The rtr_delta_history must be greater than 0");
+		}
+		RtrCache cache = new RtrCache(deltaHistory, refreshInterval, retryInterval, expireInterval);
+		return new RtrServer(new InetSocketAddress(host, portNumber), cache, pollInterval, notifyInterval);
+	}
+
+	private static int getIntProperty(Properties config, String name, int defaultValue)
+			throws InitializationException {
+		String value = config.getProperty(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new InitializationException("Invalid " + name + " '" + value + "'", e);
+		}
+	}
+
+	/**
+	 * Load the cache data and start listening
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		if (running) {
+			return;
+		}
+		try {
+			cache.refresh();
+		} catch (SQLException e) {
+			// There's no data yet, it will be loaded at the next refresh
+			logger.log(Level.WARNING, "The RTR cache couldn't be loaded", e);
+		}
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(address);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		cache.setSerialListener(() -> {
+			notifyPending = true;
+			selector.wakeup();
+		});
+		running = true;
+		selectorThread = new Thread(this::run, "rtr-server");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+		refreshExecutor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+			Thread thread = new Thread(runnable, "rtr-cache-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+		refreshExecutor.scheduleWithFixedDelay(this::refresh, pollInterval, pollInterval, TimeUnit.SECONDS);
+		logger.log(Level.INFO, "RTR server listening at " + serverChannel.getLocalAddress() + " with session ID "
+				+ (cache.getSessionId() & 0xFFFF));
+	}
+
+	/**
+	 * Stop listening and close all the router sessions
+	 */
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		cache.setSerialListener(null);
+		refreshExecutor.shutdownNow();
+		selector.wakeup();
+		try {
+			selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		logger.log(Level.INFO, "RTR server stopped");
+	}
+
+	/**
+	 * @return the address where the server is listening, <code>null</code> if it
+	 *         isn't running
+	 */
+	public InetSocketAddress getLocalAddress() {
+		try {
+			return running ? (InetSocketAddress) serverChannel.getLocalAddress() : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	public RtrCache getCache() {
+		return cache;
+	}
+
+	private void refresh() {
+		try {
+			cache.refresh();
+		} catch (SQLException | RuntimeException e) {
+			logger.log(Level.SEVERE, "Error refreshing the RTR cache", e);
+		}
+	}
+
+	/**
+	 * Loop of the selector thread
+	 */
+	private void run() {
+		try {
+			while (running) {
+				long timeout = 0L;
+				if (notifyPending) {
+					long remaining = notifyIntervalNanos - (System.nanoTime() - lastNotifyNanos);
+					if (remaining <= 0) {
+						notifySessions();
+					} else {
+						timeout = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remaining));
+					}
+				}
+				selector.select(timeout);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					handle(key);
+				}
+			}
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, "The RTR server stopped unexpectedly", e);
+		} finally {
+			closeAll();
+		}
+	}
+
+	private void handle(SelectionKey key) {
+		if (!key.isValid()) {
+			return;
+		}
+		if (key.isAcceptable()) {
+			accept();
+			return;
+		}
+		RtrSession session = (RtrSession) key.attachment();
+		try {
+			if (key.isReadable()) {
+				session.onReadable();
+			} else if (key.isWritable()) {
+				session.onWritable();
+			}
+		} catch (IOException | CancelledKeyException e) {
+			session.close();
+		}
+	}
+
+	private void accept() {
+		SocketChannel channel = null;
+		try {
+			channel = serverChannel.accept();
+			if (channel == null) {
+				return;
+			}
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			key.attach(new RtrSession(channel, key, cache));
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Error accepting an RTR session", e);
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e1) {
+					// Nothing else to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Send a Serial Notify with the current serial to all the sessions
+	 */
+	private void notifySessions() {
+		notifyPending = false;
+		lastNotifyNanos = System.nanoTime();
+		short sessionId = cache.getSessionId();
+		int serial = cache.getSerial();
+		for (SelectionKey key : selector.keys()) {
+			if (!key.isValid() || !(key.attachment() instanceof RtrSession)) {
+				continue;
+			}
+			RtrSession session = (RtrSession) key.attachment();
+			try {
+				session.sendSerialNotify(sessionId, serial);
+			} catch (IOException | CancelledKeyException e) {
+				session.close();
+			}
+		}
+	}
+
+	private void closeAll() {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof RtrSession) {
+				((RtrSession) key.attachment()).close();
+			}
+		}
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Error closing the RTR server", e);
+		}
+	}
+}
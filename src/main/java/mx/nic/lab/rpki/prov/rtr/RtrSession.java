@@ -0,0 +1,249 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A router session of the {@link RtrServer}, it decodes the PDUs received and
+ * queues the responses. All its methods are called from the selector thread of
+ * the server, so it doesn't need any synchronization.<br>
+ * <br>
+ * While there's a response pending to be sent, nothing else is read from the
+ * router; the responses are shared buffers of the {@link RtrCache}, so a slow
+ * router doesn't increase the memory used.
+ *
+ */
+class RtrSession {
+
+	private static final Logger logger = Logger.getLogger(RtrSession.class.getName());
+
+	/**
+	 * Initial size of the input buffer, enough for any query
+	 */
+	private static final int INITIAL_INPUT_SIZE = 64;
+
+	/**
+	 * Max length accepted for a PDU sent by a router (only the Error Reports can
+	 * be that long)
+	 */
+	private static final int MAX_PDU_LENGTH = 64 * 1024;
+
+	/**
+	 * Version value while it hasn't been negotiated
+	 */
+	private static final byte NO_VERSION = -1;
+
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final RtrCache cache;
+	private final String remoteAddress;
+
+	private ByteBuffer input = ByteBuffer.allocate(INITIAL_INPUT_SIZE);
+	private final Deque<ByteBuffer> output = new ArrayDeque<>();
+	private byte version = NO_VERSION;
+	private boolean closing = false;
+
+	RtrSession(SocketChannel channel, SelectionKey key, RtrCache cache) {
+		this.channel = channel;
+		this.key = key;
+		this.cache = cache;
+		String address;
+		try {
+			address = String.valueOf(channel.getRemoteAddress());
+		} catch (IOException e) {
+			address = "unknown";
+		}
+		this.remoteAddress = address;
+	}
+
+	/**
+	 * Read the available data and handle the complete PDUs received
+	 *
+	 * @throws IOException
+	 */
+	void onReadable() throws IOException {
+		if (channel.read(input) < 0) {
+			close();
+			return;
+		}
+		input.flip();
+		while (!closing && input.remaining() >= RtrPdu.HEADER_LENGTH) {
+			int length = input.getInt(input.position() + 4);
+			if (length < RtrPdu.HEADER_LENGTH || length > MAX_PDU_LENGTH) {
+				byte[] header = new byte[RtrPdu.HEADER_LENGTH];
+				input.get(header);
+				fatalError(RtrPdu.CORRUPT_DATA, header, "Invalid PDU length " + length);
+				break;
+			}
+			if (input.remaining() < length) {
+				if (length > input.capacity()) {
+					ByteBuffer larger = ByteBuffer.allocate(length);
+					larger.put(input);
+					input = larger;
+					return;
+				}
+				break;
+			}
+			byte[] pdu = new byte[length];
+			input.get(pdu);
+			handlePdu(pdu);
+		}
+		input.compact();
+	}
+
+	/**
+	 * Write the pending responses, as much as the socket accepts
+	 *
+	 * @throws IOException
+	 */
+	void onWritable() throws IOException {
+		while (!output.isEmpty()) {
+			ByteBuffer buffer = output.peek();
+			channel.write(buffer);
+			if (buffer.hasRemaining()) {
+				key.interestOps(SelectionKey.OP_WRITE);
+				return;
+			}
+			output.poll();
+		}
+		if (closing) {
+			close();
+			return;
+		}
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Send a Serial Notify, only if the router already made a query
+	 *
+	 * @param sessionId
+	 * @param serial
+	 * @throws IOException
+	 */
+	void sendSerialNotify(short sessionId, int serial) throws IOException {
+		if (version == NO_VERSION || closing) {
+			return;
+		}
+		ByteBuffer notify = ByteBuffer.allocate(RtrPdu.SERIAL_NOTIFY_LENGTH);
+		RtrPdu.putSerialNotify(notify, version, sessionId, serial);
+		notify.flip();
+		send(notify);
+	}
+
+	void close() {
+		closing = true;
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.log(Level.FINE, "Error closing the RTR session of " + remoteAddress, e);
+		}
+	}
+
+	private void handlePdu(byte[] pdu) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(pdu);
+		byte pduVersion = buffer.get();
+		byte type = buffer.get();
+		if (version == NO_VERSION) {
+			if (pduVersion < RtrPdu.VERSION_0 || pduVersion > RtrPdu.MAX_VERSION) {
+				version = RtrPdu.MAX_VERSION;
+				fatalError(RtrPdu.UNSUPPORTED_PROTOCOL_VERSION, pdu, "Unsupported version " + pduVersion);
+				return;
+			}
+			version = pduVersion;
+		} else if (pduVersion != version) {
+			fatalError(RtrPdu.UNEXPECTED_PROTOCOL_VERSION, pdu, "Version " + version + " was negotiated");
+			return;
+		}
+		switch (type) {
+		case RtrPdu.SERIAL_QUERY:
+			if (pdu.length != RtrPdu.SERIAL_QUERY_LENGTH) {
+				fatalError(RtrPdu.CORRUPT_DATA, pdu, "Invalid Serial Query length");
+				return;
+			}
+			short sessionId = buffer.getShort();
+			int serial = buffer.getInt(RtrPdu.HEADER_LENGTH);
+			handleSerialQuery(sessionId, serial);
+			break;
+		case RtrPdu.RESET_QUERY:
+			if (pdu.length != RtrPdu.RESET_QUERY_LENGTH) {
+				fatalError(RtrPdu.CORRUPT_DATA, pdu, "Invalid Reset Query length");
+				return;
+			}
+			handleResetQuery();
+			break;
+		case RtrPdu.ERROR_REPORT:
+			logger.log(Level.WARNING, "Error Report received from " + remoteAddress + ": code "
+					+ buffer.getShort() + ", " + getErrorText(buffer));
+			close();
+			break;
+		default:
+			fatalError(RtrPdu.UNSUPPORTED_PDU_TYPE, pdu, "Unsupported PDU type " + type);
+			break;
+		}
+	}
+
+	private void handleSerialQuery(short sessionId, int serial) throws IOException {
+		if (!cache.hasData()) {
+			send(RtrPdu.errorReport(version, RtrPdu.NO_DATA_AVAILABLE, null, null));
+			return;
+		}
+		// Another session (e.g. before a restart), the router must start over
+		ByteBuffer response = sessionId == cache.getSessionId() ? cache.getSerialResponse(serial, version)
+				: null;
+		if (response == null) {
+			ByteBuffer reset = ByteBuffer.allocate(RtrPdu.CACHE_RESET_LENGTH);
+			RtrPdu.putCacheReset(reset, version);
+			reset.flip();
+			response = reset;
+		}
+		send(response);
+	}
+
+	private void handleResetQuery() throws IOException {
+		ByteBuffer response = cache.getResetResponse(version);
+		if (response == null) {
+			send(RtrPdu.errorReport(version, RtrPdu.NO_DATA_AVAILABLE, null, null));
+			return;
+		}
+		send(response);
+	}
+
+	/**
+	 * Send an Error Report and close the session once it's sent
+	 */
+	private void fatalError(short errorCode, byte[] pdu, String text) throws IOException {
+		logger.log(Level.FINE, "RTR session of " + remoteAddress + " closed: " + text);
+		byte errorVersion = version == NO_VERSION ? RtrPdu.MAX_VERSION : version;
+		closing = true;
+		send(RtrPdu.errorReport(errorVersion, errorCode, pdu, text));
+	}
+
+	private void send(ByteBuffer buffer) throws IOException {
+		output.add(buffer);
+		if (output.size() == 1) {
+			onWritable();
+		}
+	}
+
+	/**
+	 * Get the diagnostic text of a received Error Report
+	 */
+	private static String getErrorText(ByteBuffer buffer) {
+		try {
+			int pduLength = buffer.getInt(RtrPdu.HEADER_LENGTH);
+			int textPosition = RtrPdu.HEADER_LENGTH + 4 + pduLength;
+			int textLength = buffer.getInt(textPosition);
+			return new String(buffer.array(), textPosition + 4, textLength, StandardCharsets.UTF_8);
+		} catch (IndexOutOfBoundsException e) {
+			return "(malformed)";
+		}
+	}
+}
@@ -0,0 +1,337 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal RTR client to test the {@link RtrServer}: it makes a Reset Query, a
+ * Serial Query with the serial received, and then waits for the Serial
+ * Notifies to make the corresponding Serial Queries, printing a summary of
+ * each response (or each PDU received if it's verbose). When it's used as a
+ * library, it only prints to the {@link PrintStream} received, if any. Usage:
+ *
+ * <pre>
+ * java mx.nic.lab.rpki.prov.rtr.RtrTestClient [-v] host port [version] [wait seconds]
+ * </pre>
+ *
+ */
+public class RtrTestClient implements Closeable {
+
+	private final Socket socket;
+	private final DataInputStream in;
+	private final OutputStream out;
+	private final byte version;
+	private final boolean verbose;
+
+	/**
+	 * Where the PDUs and responses are described, <code>null</code> if they
+	 * aren't
+	 */
+	private final PrintStream report;
+
+	private short sessionId;
+	private int serial;
+
+	/**
+	 * PDUs of the last response read
+	 */
+	private final List<byte[]> lastResponse = new ArrayList<>();
+
+	/**
+	 * Create a client that doesn't describe the PDUs that it sends or receives
+	 *
+	 * @param host
+	 * @param port
+	 * @param version
+	 *            RTR protocol version of the queries
+	 * @throws IOException
+	 */
+	public RtrTestClient(String host, int port, byte version) throws IOException {
+		this(host, port, version, false, null);
+	}
+
+	/**
+	 * Create a client that describes the PDUs at the <code>report</code>
+	 *
+	 * @param host
+	 * @param port
+	 * @param version
+	 *            RTR protocol version of the queries
+	 * @param verbose
+	 *            describe each Prefix and Router Key PDU, not only a summary of
+	 *            them
+	 * @param report
+	 *            where the PDUs are described, may be <code>null</code>
+	 * @throws IOException
+	 */
+	public RtrTestClient(String host, int port, byte version, boolean verbose, PrintStream report)
+			throws IOException {
+		this.socket = new Socket();
+		this.socket.connect(new InetSocketAddress(host, port));
+		this.in = new DataInputStream(socket.getInputStream());
+		this.out = socket.getOutputStream();
+		this.version = version;
+		this.verbose = verbose;
+		this.report = report;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int index = 0;
+		boolean verbose = args.length > 0 && "-v".equals(args[0]);
+		if (verbose) {
+			index++;
+		}
+		if (args.length - index < 2) {
+			System.err.println("Usage: RtrTestClient [-v] host port [version] [wait seconds]");
+			System.exit(1);
+		}
+		String host = args[index++];
+		int port = Integer.parseInt(args[index++]);
+		byte version = args.length > index ? Byte.parseByte(args[index++]) : RtrPdu.MAX_VERSION;
+		int wait = args.length > index ? Integer.parseInt(args[index++]) : 0;
+		try (RtrTestClient client = new RtrTestClient(host, port, version, verbose, System.out)) {
+			if (!client.resetQuery()) {
+				return;
+			}
+			client.serialQuery();
+			long deadline = System.currentTimeMillis() + wait * 1000L;
+			while (client.awaitSerialNotify(deadline - System.currentTimeMillis())) {
+				client.serialQuery();
+			}
+		}
+	}
+
+	/**
+	 * Send a Reset Query and read the response
+	 *
+	 * @return <code>true</code> if the response ended with an End of Data
+	 * @throws IOException
+	 */
+	public boolean resetQuery() throws IOException {
+		ByteBuffer query = ByteBuffer.allocate(RtrPdu.RESET_QUERY_LENGTH);
+		RtrPdu.putResetQuery(query, version);
+		send("Reset Query", query);
+		return readResponse();
+	}
+
+	/**
+	 * Send a Serial Query with the last session ID and serial received, and read
+	 * the response
+	 *
+	 * @return <code>true</code> if the response ended with an End of Data
+	 * @throws IOException
+	 */
+	public boolean serialQuery() throws IOException {
+		return serialQuery(sessionId, serial);
+	}
+
+	/**
+	 * Send a Serial Query with the <code>querySessionId</code> and
+	 * <code>querySerial</code>, and read the response
+	 *
+	 * @param querySessionId
+	 * @param querySerial
+	 * @return <code>true</code> if the response ended with an End of Data
+	 * @throws IOException
+	 */
+	public boolean serialQuery(short querySessionId, int querySerial) throws IOException {
+		ByteBuffer query = ByteBuffer.allocate(RtrPdu.SERIAL_QUERY_LENGTH);
+		RtrPdu.putSerialQuery(query, version, querySessionId, querySerial);
+		send("Serial Query (serial " + Integer.toUnsignedString(querySerial) + ")", query);
+		return readResponse();
+	}
+
+	/**
+	 * Wait for a Serial Notify
+	 *
+	 * @param timeout
+	 *            milliseconds to wait
+	 * @return <code>true</code> if a Serial Notify was received
+	 * @throws IOException
+	 */
+	public boolean awaitSerialNotify(long timeout) throws IOException {
+		if (timeout <= 0) {
+			return false;
+		}
+		socket.setSoTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+		try {
+			byte[] pdu = readPdu();
+			if (pdu[1] != RtrPdu.SERIAL_NOTIFY) {
+				report("Unexpected PDU:", pdu);
+				return false;
+			}
+			report("<", pdu);
+			return true;
+		} catch (SocketTimeoutException e) {
+			return false;
+		} finally {
+			socket.setSoTimeout(0);
+		}
+	}
+
+	/**
+	 * Read the PDUs of a response, up to the End of Data, Cache Reset or Error
+	 * Report
+	 */
+	private boolean readResponse() throws IOException {
+		long start = System.nanoTime();
+		int ipv4 = 0;
+		int ipv6 = 0;
+		int routerKeys = 0;
+		int withdrawals = 0;
+		lastResponse.clear();
+		while (true) {
+			byte[] pdu = readPdu();
+			lastResponse.add(pdu);
+			ByteBuffer buffer = ByteBuffer.wrap(pdu);
+			byte type = pdu[1];
+			if (verbose || (type != RtrPdu.IPV4_PREFIX && type != RtrPdu.IPV6_PREFIX
+					&& type != RtrPdu.ROUTER_KEY)) {
+				report("<", pdu);
+			}
+			switch (type) {
+			case RtrPdu.IPV4_PREFIX:
+			case RtrPdu.IPV6_PREFIX:
+				if (type == RtrPdu.IPV4_PREFIX) {
+					ipv4++;
+				} else {
+					ipv6++;
+				}
+				if (pdu[RtrPdu.HEADER_LENGTH] == RtrPdu.FLAG_WITHDRAWAL) {
+					withdrawals++;
+				}
+				break;
+			case RtrPdu.ROUTER_KEY:
+				routerKeys++;
+				if (pdu[2] == RtrPdu.FLAG_WITHDRAWAL) {
+					withdrawals++;
+				}
+				break;
+			case RtrPdu.END_OF_DATA:
+				sessionId = buffer.getShort(2);
+				serial = buffer.getInt(RtrPdu.HEADER_LENGTH);
+				report("  " + ipv4 + " IPv4 prefixes, " + ipv6 + " IPv6 prefixes, " + routerKeys
+						+ " router keys (" + withdrawals + " withdrawals) in "
+						+ (System.nanoTime() - start) / 1000000L + " ms");
+				return true;
+			case RtrPdu.CACHE_RESET:
+			case RtrPdu.ERROR_REPORT:
+				return false;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void send(String description, ByteBuffer query) throws IOException {
+		report("> " + description);
+		out.write(query.array(), 0, query.position());
+		out.flush();
+	}
+
+	private void report(String line) {
+		if (report != null) {
+			report.println(line);
+		}
+	}
+
+	private void report(String prefix, byte[] pdu) throws UnknownHostException {
+		if (report != null) {
+			report.println(prefix + " " + describe(pdu));
+		}
+	}
+
+	private byte[] readPdu() throws IOException {
+		byte[] header = new byte[RtrPdu.HEADER_LENGTH];
+		in.readFully(header);
+		int length = ByteBuffer.wrap(header).getInt(4);
+		if (length < RtrPdu.HEADER_LENGTH) {
+			throw new IOException("Invalid PDU length " + length);
+		}
+		byte[] pdu = Arrays.copyOf(header, length);
+		in.readFully(pdu, RtrPdu.HEADER_LENGTH, length - RtrPdu.HEADER_LENGTH);
+		return pdu;
+	}
+
+	/**
+	 * Get a readable description of the PDU
+	 */
+	private static String describe(byte[] pdu) throws UnknownHostException {
+		ByteBuffer buffer = ByteBuffer.wrap(pdu);
+		String header = "v" + pdu[0] + " ";
+		int session = buffer.getShort(2) & 0xFFFF;
+		switch (pdu[1]) {
+		case RtrPdu.SERIAL_NOTIFY:
+			return header + "Serial Notify session " + session + " serial "
+					+ Integer.toUnsignedString(buffer.getInt(8));
+		case RtrPdu.CACHE_RESPONSE:
+			return header + "Cache Response session " + session;
+		case RtrPdu.IPV4_PREFIX:
+		case RtrPdu.IPV6_PREFIX:
+			int addressLength = pdu[1] == RtrPdu.IPV4_PREFIX ? 4 : 16;
+			byte[] address = Arrays.copyOfRange(pdu, 12, 12 + addressLength);
+			return header + (pdu[8] == RtrPdu.FLAG_ANNOUNCEMENT ? "announce " : "withdraw ") + "AS"
+					+ Integer.toUnsignedString(buffer.getInt(12 + addressLength)) + " "
+					+ InetAddress.getByAddress(address).getHostAddress() + "/" + pdu[9] + " max " + pdu[10];
+		case RtrPdu.END_OF_DATA:
+			return header + "End of Data session " + session + " serial "
+					+ Integer.toUnsignedString(buffer.getInt(8))
+					+ (pdu.length >= RtrPdu.END_OF_DATA_V1_LENGTH ? " refresh " + buffer.getInt(12) + " retry "
+							+ buffer.getInt(16) + " expire " + buffer.getInt(20) : "");
+		case RtrPdu.CACHE_RESET:
+			return header + "Cache Reset";
+		case RtrPdu.ROUTER_KEY:
+			return header + (pdu[2] == RtrPdu.FLAG_ANNOUNCEMENT ? "announce " : "withdraw ") + "router key AS"
+					+ Integer.toUnsignedString(buffer.getInt(28)) + " ("
+					+ (pdu.length - RtrPdu.HEADER_LENGTH - RouterKey.SKI_LENGTH - 4) + " bytes key)";
+		case RtrPdu.ERROR_REPORT:
+			int pduLength = buffer.getInt(8);
+			int textLength = buffer.getInt(12 + pduLength);
+			return header + "Error Report code " + session + ": "
+					+ new String(pdu, 16 + pduLength, textLength, StandardCharsets.UTF_8);
+		default:
+			return header + "PDU type " + pdu[1];
+		}
+	}
+
+	/**
+	 * @return the session ID of the last End of Data received
+	 */
+	public short getSessionId() {
+		return sessionId;
+	}
+
+	/**
+	 * @return the serial of the last End of Data received
+	 */
+	public int getSerial() {
+		return serial;
+	}
+
+	/**
+	 * @return the PDUs of the last response read, from its first PDU up to the
+	 *         End of Data, Cache Reset or Error Report
+	 */
+	public List<byte[]> getLastResponse() {
+		return Collections.unmodifiableList(lastResponse);
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
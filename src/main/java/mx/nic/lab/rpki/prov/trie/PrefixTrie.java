@@ -0,0 +1,258 @@
+package mx.nic.lab.rpki.prov.trie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binary radix (Patricia) trie of IP prefixes, each node can hold several
+ * values of type <code>T</code> whose prefix is exactly the one represented by
+ * the node. The prefixes are handled as <code>byte[]</code> (4 bytes for IPv4,
+ * 16 bytes for IPv6), so a trie SHOULD hold prefixes of only one family.<br>
+ * <br>
+ * The lookups take O(prefix length) and don't allocate more than the list of
+ * results. The trie isn't thread safe for writes; once it's built it can be
+ * safely read by several threads as long as it isn't modified anymore.
+ *
+ * @param <T>
+ *            Type of the values stored in the trie
+ */
+public class PrefixTrie<T> {
+
+	/**
+	 * A node of the trie, the node represents the first <code>length</code> bits
+	 * of <code>prefix</code>
+	 */
+	private static class Node<T> {
+		private final byte[] prefix;
+		private final int length;
+		private List<T> values;
+		@SuppressWarnings("unchecked")
+		private final Node<T>[] children = (Node<T>[]) new Node<?>[2];
+
+		private Node(byte[] prefix, int length) {
+			this.prefix = prefix;
+			this.length = length;
+		}
+
+		private void addValue(T value) {
+			if (values == null) {
+				values = new ArrayList<>(1);
+			}
+			values.add(value);
+		}
+
+		private boolean hasValues() {
+			return values != null && !values.isEmpty();
+		}
+	}
+
+	/**
+	 * Number of bytes of the prefixes stored in the trie
+	 */
+	private final int prefixBytes;
+
+	private final Node<T> root;
+
+	private int size;
+
+	/**
+	 * Create an empty trie for prefixes of <code>prefixBytes</code> bytes (4 for
+	 * IPv4, 16 for IPv6)
+	 *
+	 * @param prefixBytes
+	 */
+	public PrefixTrie(int prefixBytes) {
+		this.prefixBytes = prefixBytes;
+		this.root = new Node<>(new byte[prefixBytes], 0);
+	}
+
+	/**
+	 * Add a <code>value</code> related to the <code>prefix</code> with length
+	 * <code>prefixLength</code>
+	 *
+	 * @param prefix
+	 * @param prefixLength
+	 * @param value
+	 */
+	public void put(byte[] prefix, int prefixLength, T value) {
+		checkPrefix(prefix, prefixLength);
+		Node<T> node = root;
+		while (true) {
+			if (node.length == prefixLength) {
+				node.addValue(value);
+				size++;
+				return;
+			}
+			int bit = bitAt(prefix, node.length);
+			Node<T> child = node.children[bit];
+			if (child == null) {
+				Node<T> leaf = new Node<>(mask(prefix, prefixLength), prefixLength);
+				leaf.addValue(value);
+				node.children[bit] = leaf;
+				size++;
+				return;
+			}
+			int common = commonLength(child.prefix, prefix, Math.min(child.length, prefixLength));
+			if (common == child.length) {
+				node = child;
+				continue;
+			}
+			// Split the edge, a new intermediate node is needed
+			Node<T> intermediate = new Node<>(mask(prefix, common), common);
+			node.children[bit] = intermediate;
+			intermediate.children[bitAt(child.prefix, common)] = child;
+			if (common == prefixLength) {
+				intermediate.addValue(value);
+			} else {
+				Node<T> leaf = new Node<>(mask(prefix, prefixLength), prefixLength);
+				leaf.addValue(value);
+				intermediate.children[bitAt(prefix, common)] = leaf;
+			}
+			size++;
+			return;
+		}
+	}
+
+	/**
+	 * Get the values whose prefix covers (or is equal to) the
+	 * <code>prefix</code>; the list is ordered from the less specific prefix to
+	 * the most specific one.
+	 *
+	 * @param prefix
+	 * @param prefixLength
+	 * @return List of the values found, empty list if there's no value covering
+	 *         the prefix
+	 */
+	public List<T> findCovering(byte[] prefix, int prefixLength) {
+		checkPrefix(prefix, prefixLength);
+		List<T> result = null;
+		Node<T> node = root;
+		while (node != null && node.length <= prefixLength
+				&& commonLength(node.prefix, prefix, node.length) == node.length) {
+			if (node.hasValues()) {
+				if (result == null) {
+					result = new ArrayList<>();
+				}
+				result.addAll(node.values);
+			}
+			if (node.length == prefixLength) {
+				break;
+			}
+			node = node.children[bitAt(prefix, node.length)];
+		}
+		return result == null ? Collections.emptyList() : result;
+	}
+
+	/**
+	 * Get the first value (ordered by start address and then by prefix length)
+	 * whose prefix is strictly more specific than the <code>prefix</code>
+	 *
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The first value found, or <code>null</code> if there's none
+	 */
+	public T findFirstMoreSpecific(byte[] prefix, int prefixLength) {
+		checkPrefix(prefix, prefixLength);
+		// Find the first node under the prefix
+		Node<T> node = root;
+		while (node != null && node.length < prefixLength) {
+			if (commonLength(node.prefix, prefix, node.length) != node.length) {
+				return null;
+			}
+			node = node.children[bitAt(prefix, node.length)];
+		}
+		if (node == null || commonLength(node.prefix, prefix, prefixLength) != prefixLength) {
+			return null;
+		}
+		if (node.length > prefixLength) {
+			return findFirst(node);
+		}
+		// The node is the prefix itself, its own values aren't more specific
+		T result = findFirst(node.children[0]);
+		return result != null ? result : findFirst(node.children[1]);
+	}
+
+	/**
+	 * @return the number of values stored in the trie
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Pre-order search of the first value at the subtree of <code>node</code>,
+	 * the left (0) branch goes first so that the values are found ordered by start
+	 * address and prefix length
+	 */
+	private T findFirst(Node<T> node) {
+		while (node != null) {
+			if (node.hasValues()) {
+				return node.values.get(0);
+			}
+			// A node without values always has both childs, unless it's the root
+			if (node.children[0] != null) {
+				T result = findFirst(node.children[0]);
+				if (result != null) {
+					return result;
+				}
+			}
+			node = node.children[1];
+		}
+		return null;
+	}
+
+	private void checkPrefix(byte[] prefix, int prefixLength) {
+		if (prefix == null || prefix.length != prefixBytes) {
+			throw new IllegalArgumentException("Prefix must have " + prefixBytes + " bytes");
+		}
+		if (prefixLength < 0 || prefixLength > prefixBytes * 8) {
+			throw new IllegalArgumentException("Invalid prefix length " + prefixLength);
+		}
+	}
+
+	/**
+	 * Get the bit at <code>index</code> (0 is the most significant bit)
+	 */
+	static int bitAt(byte[] value, int index) {
+		return (value[index >>> 3] >>> (7 - (index & 7))) & 1;
+	}
+
+	/**
+	 * Get the count of leading bits that are equal at both values, up to
+	 * <code>max</code> bits
+	 */
+	static int commonLength(byte[] a, byte[] b, int max) {
+		int bytes = max >>> 3;
+		int i = 0;
+		for (; i < bytes; i++) {
+			if (a[i] != b[i]) {
+				return (i << 3) + Integer.numberOfLeadingZeros((a[i] ^ b[i]) & 0xff) - 24;
+			}
+		}
+		int bits = max & 7;
+		if (bits == 0) {
+			return max;
+		}
+		int diff = (a[i] ^ b[i]) & 0xff & (0xff << (8 - bits));
+		if (diff == 0) {
+			return max;
+		}
+		return (i << 3) + Integer.numberOfLeadingZeros(diff) - 24;
+	}
+
+	/**
+	 * Get a copy of <code>value</code> keeping only the first <code>length</code>
+	 * bits
+	 */
+	static byte[] mask(byte[] value, int length) {
+		byte[] result = new byte[value.length];
+		int bytes = length >>> 3;
+		System.arraycopy(value, 0, result, 0, bytes);
+		int bits = length & 7;
+		if (bits > 0) {
+			result[bytes] = (byte) (value[bytes] & (0xff << (8 - bits)));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,158 @@
+package mx.nic.lab.rpki.prov.trie;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import mx.nic.lab.rpki.db.pojo.Roa;
+
+/**
+ * In-memory index of the {@link Roa}s, there's a {@link PrefixTrie} for each
+ * address family. The index answers the same lookups that the
+ * <code>RoaModel</code> does against the database, without any DB access.<br>
+ * <br>
+ * Once built, the instance isn't modified anymore, so it can be shared between
+ * threads; to update the index a new instance must be built.
+ */
+public class RoaTrie {
+
+	private static final int IPV4_BYTES = 4;
+	private static final int IPV6_BYTES = 16;
+
+	private final PrefixTrie<Roa> ipv4Trie;
+	private final PrefixTrie<Roa> ipv6Trie;
+	private final Set<Long> asns;
+
+	private RoaTrie() {
+		ipv4Trie = new PrefixTrie<>(IPV4_BYTES);
+		ipv6Trie = new PrefixTrie<>(IPV6_BYTES);
+		asns = new HashSet<>();
+	}
+
+	/**
+	 * Build a new index with the received {@link Roa}s, only the basic data of
+	 * each {@link Roa} is needed (prefix, lengths and ASN)
+	 *
+	 * @param roas
+	 * @return The new index
+	 */
+	public static RoaTrie build(Iterable<? extends Roa> roas) {
+		RoaTrie trie = new RoaTrie();
+		for (Roa roa : roas) {
+			PrefixTrie<Roa> prefixTrie = trie.getTrie(roa.getStartPrefix());
+			if (prefixTrie == null) {
+				continue;
+			}
+			prefixTrie.put(roa.getStartPrefix(), roa.getPrefixLength(), roa);
+			trie.asns.add(roa.getAsn());
+		}
+		return trie;
+	}
+
+	/**
+	 * Find a {@link Roa} that matches the prefix, this is: the ROA covers the
+	 * prefix and its max length allows the prefix length. A route is valid if any
+	 * of the matching ROAs has its ASN (RFC 6811 section 2), so the most specific
+	 * matching ROA with the <code>asn</code> is preferred; if none has it, the
+	 * most specific matching ROA is returned (same preference that the DB query).
+	 * Return <code>null</code> if there's no match.
+	 *
+	 * @param asn
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The {@link Roa} that matches the prefix
+	 */
+	public Roa findExactMatch(Long asn, byte[] prefix, Integer prefixLength) {
+		PrefixTrie<Roa> prefixTrie = getTrie(prefix);
+		if (prefixTrie == null) {
+			return null;
+		}
+		Roa result = null;
+		List<Roa> covering = prefixTrie.findCovering(prefix, prefixLength);
+		for (int i = covering.size() - 1; i >= 0; i--) {
+			Roa roa = covering.get(i);
+			if (roa.getPrefixMaxLength() < prefixLength) {
+				continue;
+			}
+			if (asn != null && asn.equals(roa.getAsn())) {
+				return roa;
+			}
+			if (result == null) {
+				result = roa;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Find a {@link Roa} that is a covering aggregate of the prefix but whose max
+	 * length doesn't allow the prefix length. Return <code>null</code> if there's
+	 * no match.
+	 *
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The most specific {@link Roa} covering the prefix
+	 */
+	public Roa findCoveringAggregate(byte[] prefix, Integer prefixLength) {
+		PrefixTrie<Roa> prefixTrie = getTrie(prefix);
+		if (prefixTrie == null) {
+			return null;
+		}
+		List<Roa> covering = prefixTrie.findCovering(prefix, prefixLength);
+		for (int i = covering.size() - 1; i >= 0; i--) {
+			Roa roa = covering.get(i);
+			if (roa.getPrefixMaxLength() < prefixLength) {
+				return roa;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find a {@link Roa} that is more specific than the prefix. Return
+	 * <code>null</code> if there's no match.
+	 *
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The first {@link Roa} (by start prefix and prefix length) more
+	 *         specific than the prefix
+	 */
+	public Roa findMoreSpecific(byte[] prefix, Integer prefixLength) {
+		PrefixTrie<Roa> prefixTrie = getTrie(prefix);
+		if (prefixTrie == null) {
+			return null;
+		}
+		return prefixTrie.findFirstMoreSpecific(prefix, prefixLength);
+	}
+
+	/**
+	 * Check if there's at least one ROA with the specified ASN
+	 *
+	 * @param asn
+	 * @return <code>true</code> when there's at least one ROA with the ASN,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean existAsn(Long asn) {
+		return asns.contains(asn);
+	}
+
+	/**
+	 * @return the number of {@link Roa}s indexed
+	 */
+	public int size() {
+		return ipv4Trie.size() + ipv6Trie.size();
+	}
+
+	private PrefixTrie<Roa> getTrie(byte[] prefix) {
+		if (prefix == null) {
+			return null;
+		}
+		if (prefix.length == IPV4_BYTES) {
+			return ipv4Trie;
+		}
+		if (prefix.length == IPV6_BYTES) {
+			return ipv6Trie;
+		}
+		return null;
+	}
+}
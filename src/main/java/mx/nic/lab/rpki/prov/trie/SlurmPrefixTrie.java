@@ -0,0 +1,218 @@
+package mx.nic.lab.rpki.prov.trie;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
+
+/**
+ * In-memory index of the {@link SlurmPrefix}es (assertions and filters), it
+ * answers the same lookups that the <code>SlurmPrefixModel</code> does against
+ * the database, without any DB access.<br>
+ * <br>
+ * Once built, the instance isn't modified anymore, so it can be shared between
+ * threads; to update the index a new instance must be built.
+ */
+public class SlurmPrefixTrie {
+
+	private static final int IPV4_BYTES = 4;
+	private static final int IPV6_BYTES = 16;
+
+	private final PrefixTrie<SlurmPrefix> ipv4Assertions;
+	private final PrefixTrie<SlurmPrefix> ipv6Assertions;
+	private final PrefixTrie<SlurmPrefix> ipv4Filters;
+	private final PrefixTrie<SlurmPrefix> ipv6Filters;
+
+	/**
+	 * Filters that only have an ASN, indexed by ASN
+	 */
+	private final Map<Long, SlurmPrefix> asnFilters;
+
+	private SlurmPrefixTrie() {
+		ipv4Assertions = new PrefixTrie<>(IPV4_BYTES);
+		ipv6Assertions = new PrefixTrie<>(IPV6_BYTES);
+		ipv4Filters = new PrefixTrie<>(IPV4_BYTES);
+		ipv6Filters = new PrefixTrie<>(IPV6_BYTES);
+		asnFilters = new HashMap<>();
+	}
+
+	/**
+	 * Build a new index with the received {@link SlurmPrefix}es
+	 *
+	 * @param slurmPrefixes
+	 * @return The new index
+	 */
+	public static SlurmPrefixTrie build(Iterable<? extends SlurmPrefix> slurmPrefixes) {
+		SlurmPrefixTrie trie = new SlurmPrefixTrie();
+		for (SlurmPrefix slurmPrefix : slurmPrefixes) {
+			boolean isAssertion = SlurmPrefix.TYPE_ASSERTION.equals(slurmPrefix.getType());
+			byte[] startPrefix = slurmPrefix.getStartPrefix();
+			if (startPrefix == null) {
+				// Only filters can lack of prefix
+				if (!isAssertion && slurmPrefix.getAsn() != null) {
+					trie.asnFilters.putIfAbsent(slurmPrefix.getAsn(), slurmPrefix);
+				}
+				continue;
+			}
+			PrefixTrie<SlurmPrefix> prefixTrie = isAssertion ? trie.getAssertionsTrie(startPrefix)
+					: trie.getFiltersTrie(startPrefix);
+			if (prefixTrie != null) {
+				prefixTrie.put(startPrefix, slurmPrefix.getPrefixLength(), slurmPrefix);
+			}
+		}
+		return trie;
+	}
+
+	/**
+	 * Find an assertion that matches the prefix, this is: the assertion covers
+	 * the prefix and its max length (or its length if there's no max length)
+	 * allows the prefix length. The assertions are treated as ROAs, so the most
+	 * specific matching assertion with the <code>asn</code> is preferred (RFC 6811
+	 * section 2); if none has it, the most specific matching assertion is returned
+	 * (same preference that the DB query). Return <code>null</code> if there's no
+	 * match.
+	 *
+	 * @param asn
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The {@link SlurmPrefix} assertion that matches the prefix
+	 */
+	public SlurmPrefix findExactMatch(Long asn, byte[] prefix, Integer prefixLength) {
+		PrefixTrie<SlurmPrefix> prefixTrie = getAssertionsTrie(prefix);
+		if (prefixTrie == null) {
+			return null;
+		}
+		SlurmPrefix result = null;
+		List<SlurmPrefix> covering = prefixTrie.findCovering(prefix, prefixLength);
+		for (int i = covering.size() - 1; i >= 0; i--) {
+			SlurmPrefix slurmPrefix = covering.get(i);
+			if (getMaxLength(slurmPrefix) < prefixLength) {
+				continue;
+			}
+			if (asn != null && asn.equals(slurmPrefix.getAsn())) {
+				return slurmPrefix;
+			}
+			if (result == null) {
+				result = slurmPrefix;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Find an assertion that is a covering aggregate of the prefix but whose max
+	 * length doesn't allow the prefix length. Return <code>null</code> if
+	 * there's no match.
+	 *
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The most specific {@link SlurmPrefix} assertion covering the prefix
+	 */
+	public SlurmPrefix findCoveringAggregate(byte[] prefix, Integer prefixLength) {
+		PrefixTrie<SlurmPrefix> prefixTrie = getAssertionsTrie(prefix);
+		if (prefixTrie == null) {
+			return null;
+		}
+		List<SlurmPrefix> covering = prefixTrie.findCovering(prefix, prefixLength);
+		for (int i = covering.size() - 1; i >= 0; i--) {
+			SlurmPrefix slurmPrefix = covering.get(i);
+			if (getMaxLength(slurmPrefix) < prefixLength) {
+				return slurmPrefix;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Find an assertion that is more specific than the prefix. Return
+	 * <code>null</code> if there's no match.
+	 *
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The first {@link SlurmPrefix} assertion (by start prefix and prefix
+	 *         length) more specific than the prefix
+	 */
+	public SlurmPrefix findMoreSpecific(byte[] prefix, Integer prefixLength) {
+		PrefixTrie<SlurmPrefix> prefixTrie = getAssertionsTrie(prefix);
+		if (prefixTrie == null) {
+			return null;
+		}
+		return prefixTrie.findFirstMoreSpecific(prefix, prefixLength);
+	}
+
+	/**
+	 * Find if there's a filter that covers the route. Same preference that the
+	 * DB query: the most specific filter with a prefix (at the same prefix, the
+	 * ones with the ASN go before the ones without ASN), and then the filters
+	 * that only have an ASN. Return <code>null</code> if there's no match.
+	 *
+	 * @param asn
+	 * @param prefix
+	 * @param prefixLength
+	 * @return The {@link SlurmPrefix} filter that covers the route
+	 */
+	public SlurmPrefix findFilterMatch(Long asn, byte[] prefix, Integer prefixLength) {
+		PrefixTrie<SlurmPrefix> prefixTrie = getFiltersTrie(prefix);
+		if (prefixTrie != null) {
+			SlurmPrefix result = null;
+			List<SlurmPrefix> covering = prefixTrie.findCovering(prefix, prefixLength);
+			for (int i = covering.size() - 1; i >= 0; i--) {
+				SlurmPrefix slurmPrefix = covering.get(i);
+				if (result != null && slurmPrefix.getPrefixLength() < result.getPrefixLength()) {
+					break;
+				}
+				if (slurmPrefix.getAsn() == null) {
+					if (result == null) {
+						result = slurmPrefix;
+					}
+				} else if (slurmPrefix.getAsn().equals(asn)) {
+					return slurmPrefix;
+				}
+			}
+			if (result != null) {
+				return result;
+			}
+		}
+		return asnFilters.get(asn);
+	}
+
+	/**
+	 * @return the number of assertions and filters indexed
+	 */
+	public int size() {
+		return ipv4Assertions.size() + ipv6Assertions.size() + ipv4Filters.size() + ipv6Filters.size()
+				+ asnFilters.size();
+	}
+
+	private static int getMaxLength(SlurmPrefix slurmPrefix) {
+		return slurmPrefix.getPrefixMaxLength() != null ? slurmPrefix.getPrefixMaxLength()
+				: slurmPrefix.getPrefixLength();
+	}
+
+	private PrefixTrie<SlurmPrefix> getAssertionsTrie(byte[] prefix) {
+		if (prefix == null) {
+			return null;
+		}
+		if (prefix.length == IPV4_BYTES) {
+			return ipv4Assertions;
+		}
+		if (prefix.length == IPV6_BYTES) {
+			return ipv6Assertions;
+		}
+		return null;
+	}
+
+	private PrefixTrie<SlurmPrefix> getFiltersTrie(byte[] prefix) {
+		if (prefix == null) {
+			return null;
+		}
+		if (prefix.length == IPV4_BYTES) {
+			return ipv4Filters;
+		}
+		if (prefix.length == IPV6_BYTES) {
+			return ipv6Filters;
+		}
+		return null;
+	}
+}
@@ -3,6 +3,7 @@ SET RETENTION_TIME 0;
 -- Sequences
 CREATE SEQUENCE IF NOT EXISTS seq_validation_run START WITH 1 INCREMENT BY 1 MINVALUE 1 CYCLE;
 CREATE SEQUENCE IF NOT EXISTS seq_validation_check START WITH 1 INCREMENT BY 1 MINVALUE 1 CYCLE;
+CREATE SEQUENCE IF NOT EXISTS seq_vrp_snapshot START WITH 1 INCREMENT BY 1 MINVALUE 1;
 
 
 -- Table TAL
@@ -61,11 +62,21 @@ CREATE TABLE IF NOT EXISTS rpki_object (
     rpo_subject_key_identifier BINARY,
     rpo_sha256 BINARY NOT NULL,
     rpo_is_ca BIT NOT NULL,
+    rpo_parent_id BIGINT,
+    rpo_child_count INTEGER DEFAULT 0 NOT NULL,
+    rpo_reach_generation BIGINT,
     PRIMARY KEY (rpo_id)
 );
+-- Materialized hierarchy, for databases created before these columns existed
+ALTER TABLE rpki_object ADD COLUMN IF NOT EXISTS rpo_parent_id BIGINT;
+ALTER TABLE rpki_object ADD COLUMN IF NOT EXISTS rpo_child_count INTEGER DEFAULT 0 NOT NULL;
+-- Reach generation, for databases created before this column existed
+ALTER TABLE rpki_object ADD COLUMN IF NOT EXISTS rpo_reach_generation BIGINT;
 CREATE UNIQUE INDEX IF NOT EXISTS rpki_object__sha256_idx ON rpki_object (rpo_sha256 ASC);
 CREATE INDEX IF NOT EXISTS rpki_object__authority_key_identifier_idx ON rpki_object (rpo_authority_key_identifier ASC);
 CREATE INDEX IF NOT EXISTS rpki_object__subject_key_identifier_idx ON rpki_object (rpo_subject_key_identifier ASC);
+CREATE INDEX IF NOT EXISTS rpki_object__parent_id_idx ON rpki_object (rpo_parent_id ASC);
+CREATE INDEX IF NOT EXISTS rpki_object__reach_generation_idx ON rpki_object (rpo_reach_generation ASC);
 
 
 -- Table RPKI_OBJECT_LOCATIONS
@@ -159,11 +170,71 @@ CREATE TABLE IF NOT EXISTS roa (
   roa_prefix_length INTEGER NOT NULL,
   roa_prefix_max_length INTEGER NOT NULL,
   roa_prefix_family INTEGER NOT NULL CHECK (roa_prefix_family IN (4, 6)),
+  roa_start_hi BIGINT,
+  roa_start_lo BIGINT,
+  roa_end_hi BIGINT,
+  roa_end_lo BIGINT,
   PRIMARY KEY (roa_id),
   FOREIGN KEY (rpo_id) REFERENCES rpki_object (rpo_id) ON DELETE CASCADE);
+-- Numeric prefixes, for databases created before these columns existed (filled at startup)
+ALTER TABLE roa ADD COLUMN IF NOT EXISTS roa_start_hi BIGINT;
+ALTER TABLE roa ADD COLUMN IF NOT EXISTS roa_start_lo BIGINT;
+ALTER TABLE roa ADD COLUMN IF NOT EXISTS roa_end_hi BIGINT;
+ALTER TABLE roa ADD COLUMN IF NOT EXISTS roa_end_lo BIGINT;
 
 CREATE INDEX IF NOT EXISTS roa_start_prefix_idx ON roa (roa_start_prefix ASC);
 CREATE INDEX IF NOT EXISTS roa_end_prefix_idx ON roa (roa_end_prefix ASC);
+CREATE INDEX IF NOT EXISTS roa_prefix_start_idx ON roa (roa_prefix_family ASC, roa_prefix_length ASC, roa_start_hi ASC, roa_start_lo ASC);
+
+
+-- Table VRP_SNAPSHOT
+CREATE TABLE IF NOT EXISTS vrp_snapshot (
+  vsn_id BIGINT,
+  vsn_created_at VARCHAR NOT NULL,
+  vsn_status VARCHAR(20) NOT NULL,
+  vsn_vrp_count INTEGER DEFAULT 0 NOT NULL,
+  vsn_previous_id BIGINT,
+  PRIMARY KEY (vsn_id));
+CREATE INDEX IF NOT EXISTS vrp_snapshot__status_idx ON vrp_snapshot (vsn_status ASC, vsn_id ASC);
+
+
+-- Table VRP, copy of the ROAs for each snapshot (there's no FK to the ROA so that it's kept as is)
+CREATE TABLE IF NOT EXISTS vrp (
+  vsn_id BIGINT NOT NULL,
+  roa_id BIGINT NOT NULL,
+  rpo_id BIGINT,
+  vrp_asn BIGINT NOT NULL,
+  vrp_prefix_text VARCHAR(50) NOT NULL,
+  vrp_start_prefix BINARY NOT NULL,
+  vrp_end_prefix BINARY NOT NULL,
+  vrp_prefix_length INTEGER NOT NULL,
+  vrp_prefix_max_length INTEGER NOT NULL,
+  vrp_prefix_family INTEGER NOT NULL,
+  vrp_start_hi BIGINT,
+  vrp_start_lo BIGINT,
+  vrp_end_hi BIGINT,
+  vrp_end_lo BIGINT,
+  PRIMARY KEY (vsn_id, roa_id),
+  FOREIGN KEY (vsn_id) REFERENCES vrp_snapshot (vsn_id) ON DELETE CASCADE);
+
+CREATE INDEX IF NOT EXISTS vrp_prefix_start_idx ON vrp (vsn_id ASC, vrp_prefix_family ASC, vrp_prefix_length ASC, vrp_start_hi ASC, vrp_start_lo ASC);
+CREATE INDEX IF NOT EXISTS vrp_asn_idx ON vrp (vsn_id ASC, vrp_asn ASC);
+
+
+-- Table VRP_DELTA, VRPs announced and withdrawn by each snapshot since its previous one
+CREATE TABLE IF NOT EXISTS vrp_delta (
+  vrd_id BIGINT AUTO_INCREMENT,
+  vsn_id BIGINT NOT NULL,
+  vrd_announced BIT NOT NULL,
+  vrd_asn BIGINT NOT NULL,
+  vrd_prefix_text VARCHAR(50) NOT NULL,
+  vrd_start_prefix BINARY NOT NULL,
+  vrd_prefix_length INTEGER NOT NULL,
+  vrd_prefix_max_length INTEGER NOT NULL,
+  vrd_prefix_family INTEGER NOT NULL,
+  PRIMARY KEY (vrd_id),
+  FOREIGN KEY (vsn_id) REFERENCES vrp_snapshot (vsn_id) ON DELETE CASCADE);
+CREATE INDEX IF NOT EXISTS vrp_delta__snapshot_idx ON vrp_delta (vsn_id ASC, vrd_id ASC);
 
 
 -- Table GBR
@@ -187,10 +258,22 @@ CREATE TABLE IF NOT EXISTS slurm_prefix (
   slp_type VARCHAR NOT NULL,
   slp_comment VARCHAR NULL,
   slp_order INTEGER NULL,
+  slp_prefix_family INTEGER NULL,
+  slp_start_hi BIGINT NULL,
+  slp_start_lo BIGINT NULL,
+  slp_end_hi BIGINT NULL,
+  slp_end_lo BIGINT NULL,
   PRIMARY KEY (slp_id));
+-- Numeric prefixes, for databases created before these columns existed (filled at startup)
+ALTER TABLE slurm_prefix ADD COLUMN IF NOT EXISTS slp_prefix_family INTEGER NULL;
+ALTER TABLE slurm_prefix ADD COLUMN IF NOT EXISTS slp_start_hi BIGINT NULL;
+ALTER TABLE slurm_prefix ADD COLUMN IF NOT EXISTS slp_start_lo BIGINT NULL;
+ALTER TABLE slurm_prefix ADD COLUMN IF NOT EXISTS slp_end_hi BIGINT NULL;
+ALTER TABLE slurm_prefix ADD COLUMN IF NOT EXISTS slp_end_lo BIGINT NULL;
 
 CREATE INDEX IF NOT EXISTS slp_start_prefix_idx ON slurm_prefix (slp_start_prefix ASC);
 CREATE INDEX IF NOT EXISTS slp_end_prefix_idx ON slurm_prefix (slp_end_prefix ASC);
+CREATE INDEX IF NOT EXISTS slp_prefix_start_idx ON slurm_prefix (slp_prefix_family ASC, slp_prefix_length ASC, slp_start_hi ASC, slp_start_lo ASC);
 
 
 -- Table SLURM_BGPSEC
@@ -213,4 +296,28 @@ CREATE TABLE IF NOT EXISTS slurm_checksum (
 insert into slurm_checksum(sch_checksum)
 select null
   from (select count(*) count from slurm_checksum) c
- where c.count = 0;
\ No newline at end of file
+ where c.count = 0;
+
+-- Table SEARCH_GRAM
+-- Substring search index of the filterable text columns, maintained by the triggers
+CREATE TABLE IF NOT EXISTS search_gram (
+  sgr_column VARCHAR(50) NOT NULL,
+  sgr_gram VARCHAR(3) NOT NULL,
+  sgr_row_id BIGINT NOT NULL,
+  PRIMARY KEY (sgr_column, sgr_gram, sgr_row_id));
+
+CREATE TRIGGER IF NOT EXISTS roa__search_trg AFTER INSERT, UPDATE, DELETE ON roa FOR EACH ROW CALL "mx.nic.lab.rpki.prov.model.SearchIndexTrigger";
+CREATE TRIGGER IF NOT EXISTS slurm_prefix__search_trg AFTER INSERT, UPDATE, DELETE ON slurm_prefix FOR EACH ROW CALL "mx.nic.lab.rpki.prov.model.SearchIndexTrigger";
+CREATE TRIGGER IF NOT EXISTS slurm_bgpsec__search_trg AFTER INSERT, UPDATE, DELETE ON slurm_bgpsec FOR EACH ROW CALL "mx.nic.lab.rpki.prov.model.SearchIndexTrigger";
+CREATE TRIGGER IF NOT EXISTS tal__search_trg AFTER INSERT, UPDATE, DELETE ON tal FOR EACH ROW CALL "mx.nic.lab.rpki.prov.model.SearchIndexTrigger";
+CREATE TRIGGER IF NOT EXISTS validation_check__search_trg AFTER INSERT, UPDATE, DELETE ON validation_check FOR EACH ROW CALL "mx.nic.lab.rpki.prov.model.SearchIndexTrigger";
+
+-- Ordinary indexes of the same columns, used by the prefix searches
+CREATE INDEX IF NOT EXISTS roa_prefix_text_idx ON roa (roa_prefix_text ASC);
+CREATE INDEX IF NOT EXISTS slp_prefix_text_idx ON slurm_prefix (slp_prefix_text ASC);
+CREATE INDEX IF NOT EXISTS slp_comment_idx ON slurm_prefix (slp_comment ASC);
+CREATE INDEX IF NOT EXISTS slb_ski_idx ON slurm_bgpsec (slb_ski ASC);
+CREATE INDEX IF NOT EXISTS slb_comment_idx ON slurm_bgpsec (slb_comment ASC);
+CREATE INDEX IF NOT EXISTS tal_name_idx ON tal (tal_name ASC);
+CREATE INDEX IF NOT EXISTS validation_check__location_idx ON validation_check (vac_location ASC);
+CREATE INDEX IF NOT EXISTS validation_check__key_idx ON validation_check (vac_key ASC);
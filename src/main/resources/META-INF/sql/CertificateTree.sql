@@ -3,6 +3,7 @@ select rpo_id, rpo_type, rpo_subject_key_identifier
   from rpki_object
  where rpo_authority_key_identifier = ?
    and ifnull(rpo_subject_key_identifier, '') != rpo_authority_key_identifier
+[seek]
  order by rpo_id
 [limit];
 
@@ -10,4 +11,28 @@ select rpo_id, rpo_type, rpo_subject_key_identifier
 select count(*)
   from rpki_object
  where rpo_authority_key_identifier = ?
-   and ifnull(rpo_subject_key_identifier, '') != rpo_authority_key_identifier;
\ No newline at end of file
+   and ifnull(rpo_subject_key_identifier, '') != rpo_authority_key_identifier;
+
+#countChildsByParents
+select rpo_authority_key_identifier, count(*)
+  from rpki_object
+ where ifnull(rpo_subject_key_identifier, '') != rpo_authority_key_identifier
+ [and]
+ group by rpo_authority_key_identifier;
+
+#getParentBySki
+select rpo_id, rpo_child_count
+  from rpki_object
+ where rpo_id = (
+       select min(rpo_id)
+         from rpki_object
+        where rpo_subject_key_identifier = ?
+          and rpo_is_ca = true);
+
+#getFromParent
+select rpo_id, rpo_type, rpo_subject_key_identifier, rpo_child_count
+  from rpki_object
+ where rpo_parent_id = ?
+[seek]
+ order by rpo_id
+[limit];
\ No newline at end of file
@@ -6,6 +6,22 @@ select g.gbr_id, g.rpo_id, g.gbr_vcard
    and r.rpo_type = ?
  order by g.gbr_id;
 
+#getByParentId
+select g.gbr_id, g.rpo_id, g.gbr_vcard
+  from gbr g
+  join rpki_object r on r.rpo_id = g.rpo_id
+ where r.rpo_parent_id = ?
+   and r.rpo_type = ?
+ order by g.gbr_id;
+
+#getByParentIds
+select g.gbr_id, g.rpo_id, g.gbr_vcard, r.rpo_parent_id
+  from gbr g
+  join rpki_object r on r.rpo_id = g.rpo_id
+ where r.rpo_type = ?
+ [and]
+ order by g.gbr_id;
+
 #create
 insert into gbr (rpo_id, gbr_vcard)
 values (?, ?);
@@ -13,4 +29,10 @@ values (?, ?);
 #getByRpkiObjectId
 select gbr_id, rpo_id, gbr_vcard
   from gbr
- where rpo_id = ?;
\ No newline at end of file
+ where rpo_id = ?;
+
+#getByRpkiObjectIds
+select gbr_id, rpo_id, gbr_vcard
+  from gbr
+ where 1 = 1
+ [and];
\ No newline at end of file
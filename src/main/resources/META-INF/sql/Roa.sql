@@ -24,6 +24,7 @@ select rpo_id,
   from roa
  where 1 = 1
 [filter]
+[seek]
 [order]
 [limit];
 
@@ -33,7 +34,13 @@ select count(*)
  where 1 = 1
 [filter];
 
-#findExactMatch
+#getAllCountEstimate
+select row_count_estimate
+  from information_schema.tables
+ where table_schema = schema()
+   and table_name = 'ROA';
+
+#getByRpkiObjectId
 select rpo_id,
        roa_id,
        roa_asn,
@@ -44,28 +51,30 @@ select rpo_id,
        roa_prefix_max_length,
        roa_prefix_family
   from roa
- where ? between roa_start_prefix and roa_end_prefix
-   and roa_prefix_length <= ?
-   and roa_prefix_max_length >= ?
- order by roa_start_prefix desc, roa_prefix_length desc;
+ where rpo_id = ?
+ order by roa_start_prefix, roa_prefix_length;
 
-#findCoveringAggregate
-select rpo_id,
-       roa_id,
+#getLastId
+select max(roa_id)
+  from roa;
+
+#create
+insert into roa (
+       rpo_id,
        roa_asn,
        roa_prefix_text,
        roa_start_prefix,
        roa_end_prefix,
        roa_prefix_length,
        roa_prefix_max_length,
-       roa_prefix_family
-  from roa
- where roa_start_prefix <= ?
-   and roa_prefix_max_length < ?
-   and roa_prefix_family = ?
- order by roa_start_prefix desc, roa_prefix_length desc;
+       roa_prefix_family,
+       roa_start_hi,
+       roa_start_lo,
+       roa_end_hi,
+       roa_end_lo)
+values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
 
-#findMoreSpecific
+#getByRpkiObjectIds
 select rpo_id,
        roa_id,
        roa_asn,
@@ -76,42 +85,22 @@ select rpo_id,
        roa_prefix_max_length,
        roa_prefix_family
   from roa
- where roa_start_prefix >= ?
-   and roa_prefix_length > ?
-   and roa_prefix_family = ?
- order by roa_start_prefix, roa_prefix_length;
-
-#existAsn
-select 1
-  from roa
- where roa_asn = ?;
+ where 1 = 1
+ [and]
+ order by rpo_id, roa_start_prefix, roa_prefix_length;
 
-#getByRpkiObjectId
-select rpo_id,
-       roa_id,
-       roa_asn,
-       roa_prefix_text,
+#getWithoutNumericPrefix
+select roa_id,
        roa_start_prefix,
-       roa_end_prefix,
-       roa_prefix_length,
-       roa_prefix_max_length,
-       roa_prefix_family
+       roa_end_prefix
   from roa
- where rpo_id = ?
- order by roa_start_prefix, roa_prefix_length;
-
-#getLastId
-select max(roa_id)
-  from roa;
+ where roa_start_hi is null
+ limit ?;
 
-#create
-insert into roa (
-       rpo_id,
-       roa_asn,
-       roa_prefix_text,
-       roa_start_prefix,
-       roa_end_prefix,
-       roa_prefix_length,
-       roa_prefix_max_length,
-       roa_prefix_family)
-values (?, ?, ?, ?, ?, ?, ?, ?);
\ No newline at end of file
+#updateNumericPrefix
+update roa
+   set roa_start_hi = ?,
+       roa_start_lo = ?,
+       roa_end_hi = ?,
+       roa_end_lo = ?
+ where roa_id = ?;
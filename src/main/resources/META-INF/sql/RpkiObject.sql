@@ -40,11 +40,22 @@ insert into rpki_object (
        rpo_authority_key_identifier,
        rpo_subject_key_identifier,
        rpo_sha256,
-       rpo_is_ca)
-values (?, ?, ?, ?, ?, ?, ?, ?);
+       rpo_is_ca,
+       rpo_reach_generation)
+values (?, ?, ?, ?, ?, ?, ?, ?, ?);
+
+#getUnreachableIds
+select rpo_id
+  from rpki_object
+ where rpo_reach_generation < ?
+   and rpo_id > ?
+ order by rpo_id
+ limit ?;
 
 #deleteUnreachable
-delete from rpki_object where rpo_last_marked_reachable_at < ?;
+delete from rpki_object
+ where rpo_reach_generation < ?
+   and rpo_id in (select x from table(x bigint = ?));
 
 #createEncodedRpkiObject
 insert into encoded_rpki_object (
@@ -60,19 +71,81 @@ values (?, ?);
 insert into rpki_repository_rpki_object (rpr_id, rpo_id)
 values (?, ?);
 
-#deleteByRpkiRepositoryId
+#getIdsByRpkiRepositoryId
+select rpo_id
+  from rpki_repository_rpki_object
+ where rpr_id = ?
+   and rpo_id > ?
+ order by rpo_id
+ limit ?;
+
+#deleteByIds
 delete from rpki_object
- where rpo_id in (
-   select rpo_id
-     from rpki_repository_rpki_object
-    where rpr_id = ?);
+ where rpo_id in (select x from table(x bigint = ?));
 
-#getIdBySha256
-select rpo_id
+#updateReached
+update rpki_object
+   set rpo_last_marked_reachable_at = ?,
+       rpo_reach_generation = ?
+ where rpo_id in (select x from table(x bigint = ?));
+
+#getWithoutReachGeneration
+select distinct rpo_last_marked_reachable_at
   from rpki_object
- where rpo_sha256 = ?;
+ where rpo_reach_generation is null;
 
-#updateReached
+#updateReachGeneration
 update rpki_object
-   set rpo_last_marked_reachable_at = ?
- where rpo_id = ?;
\ No newline at end of file
+   set rpo_reach_generation = ?
+ where rpo_last_marked_reachable_at = ?
+   and rpo_reach_generation is null;
+
+#getLocationsByIds
+select rpo_id, rpo_locations
+  from rpki_object_locations
+ where 1 = 1
+ [and];
+
+#getParentId
+select rpo_parent_id
+  from rpki_object
+ where rpo_id = ?;
+
+#getParentIds
+select rpo_id, rpo_parent_id
+  from rpki_object
+ where rpo_parent_id is not null
+ [and];
+
+#updateParentIds
+update rpki_object c
+   set rpo_parent_id = (
+       select min(p.rpo_id)
+         from rpki_object p
+        where p.rpo_subject_key_identifier = c.rpo_authority_key_identifier
+          and p.rpo_is_ca = true
+          and p.rpo_id != c.rpo_id)
+ where c.rpo_authority_key_identifier is not null
+   and ifnull(c.rpo_subject_key_identifier, '') != c.rpo_authority_key_identifier
+   and (c.rpo_parent_id is null
+        or not exists (
+           select 1
+             from rpki_object e
+            where e.rpo_id = c.rpo_parent_id));
+
+#updateChildCounts
+update rpki_object p
+   set rpo_child_count = (
+       select count(*)
+         from rpki_object c
+        where c.rpo_parent_id = p.rpo_id)
+ where p.rpo_is_ca = true;
+
+#updateChildCountsByIds
+update rpki_object p
+   set rpo_child_count = (
+       select count(*)
+         from rpki_object c
+        where c.rpo_parent_id = p.rpo_id)
+ where p.rpo_is_ca = true
+ [and];
\ No newline at end of file
@@ -0,0 +1,20 @@
+#insertGram
+insert into search_gram (sgr_column, sgr_gram, sgr_row_id)
+values (?, ?, ?);
+
+#deleteGram
+delete from search_gram
+ where sgr_column = ?
+   and sgr_gram = ?
+   and sgr_row_id = ?;
+
+#existColumn
+select 1
+  from search_gram
+ where sgr_column = ?
+ limit 1;
+
+#getColumnValues
+select [id], [column]
+  from [table]
+ where [column] is not null;
@@ -20,6 +20,7 @@ select slb_id,
   from slurm_bgpsec
  where 1 = 1
 [filter]
+[seek]
 [order]
 [limit];
 
@@ -29,6 +30,12 @@ select count(*)
  where 1 = 1
 [filter];
 
+#getAllCountEstimate
+select row_count_estimate
+  from information_schema.tables
+ where table_schema = schema()
+   and table_name = 'SLURM_BGPSEC';
+
 #getAllByType
 select slb_id,
        slb_asn,
@@ -40,6 +47,7 @@ select slb_id,
   from slurm_bgpsec
  where slb_type = ?
 [filter]
+[seek]
 [order]
 [limit];
 
@@ -26,6 +26,7 @@ select slp_id,
   from slurm_prefix
  where 1 = 1
 [filter]
+[seek]
 [order]
 [limit];
 
@@ -35,6 +36,12 @@ select count(*)
  where 1 = 1
 [filter];
 
+#getAllCountEstimate
+select row_count_estimate
+  from information_schema.tables
+ where table_schema = schema()
+   and table_name = 'SLURM_PREFIX';
+
 #getAllByType
 select slp_id,
        slp_asn,
@@ -49,6 +56,7 @@ select slp_id,
   from slurm_prefix
  where slp_type = ?
 [filter]
+[seek]
 [order]
 [limit];
 
@@ -74,8 +82,13 @@ insert into slurm_prefix (
        slp_prefix_max_length,
        slp_type,
        slp_comment,
-       slp_order)
-values (?, ?, ?, ?, ?, ?, ?, ?, ?);
+       slp_order,
+       slp_prefix_family,
+       slp_start_hi,
+       slp_start_lo,
+       slp_end_hi,
+       slp_end_lo)
+values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
 
 #deleteById
 delete from slurm_prefix where slp_id = ?;
@@ -108,72 +121,20 @@ update slurm_prefix
    set slp_order = ?
  where slp_id = ?;
 
-#findExactMatch
-select slp_id,
-       slp_asn,
-       slp_prefix_text,
-       slp_start_prefix,
-       slp_end_prefix,
-       slp_prefix_length,
-       slp_prefix_max_length,
-       slp_type,
-       slp_comment,
-       slp_order
-  from slurm_prefix
- where slp_type = ?
-   and ? between slp_start_prefix and slp_end_prefix
-   and slp_prefix_length <= ?
-   and ifnull(slp_prefix_max_length, slp_prefix_length) >= ?
- order by slp_start_prefix desc, slp_prefix_length desc;
-
-#findCoveringAggregate
-select slp_id,
-       slp_asn,
-       slp_prefix_text,
-       slp_start_prefix,
-       slp_end_prefix,
-       slp_prefix_length,
-       slp_prefix_max_length,
-       slp_type,
-       slp_comment,
-       slp_order
-  from slurm_prefix
- where slp_type = ?
-   and slp_start_prefix <= ?
-   and ifnull(slp_prefix_max_length, slp_prefix_length) < ?
- order by slp_start_prefix desc, slp_prefix_length desc;
-
-#findMoreSpecific
+#getWithoutNumericPrefix
 select slp_id,
-       slp_asn,
-       slp_prefix_text,
        slp_start_prefix,
-       slp_end_prefix,
-       slp_prefix_length,
-       slp_prefix_max_length,
-       slp_type,
-       slp_comment,
-       slp_order
+       slp_end_prefix
   from slurm_prefix
- where slp_type = ?
-   and slp_start_prefix >= ?
-   and slp_prefix_length > ?
- order by slp_start_prefix, slp_prefix_length;
+ where slp_start_prefix is not null
+   and slp_start_hi is null
+ limit ?;
 
-#findFilterMatch
-select slp_id,
-       slp_asn,
-       slp_prefix_text,
-       slp_start_prefix,
-       slp_end_prefix,
-       slp_prefix_length,
-       slp_prefix_max_length,
-       slp_type,
-       slp_comment,
-       slp_order
-  from slurm_prefix
- where slp_type = ? 
-   and ((slp_start_prefix is null and slp_asn = ?)
-    or  (slp_asn is null and ? between slp_start_prefix and slp_end_prefix and slp_prefix_length <= ?)
-    or  (slp_asn = ? and ? between slp_start_prefix and slp_end_prefix and slp_prefix_length <= ?))
- order by slp_start_prefix desc, slp_prefix_length desc, slp_asn desc;
\ No newline at end of file
+#updateNumericPrefix
+update slurm_prefix
+   set slp_prefix_family = ?,
+       slp_start_hi = ?,
+       slp_start_lo = ?,
+       slp_end_hi = ?,
+       slp_end_lo = ?
+ where slp_id = ?;
\ No newline at end of file
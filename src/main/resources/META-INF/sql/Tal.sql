@@ -14,6 +14,7 @@ select tal_id,
   from tal
  where 1 = 1
 [filter]
+[seek]
 [order]
 [limit];
 
@@ -23,6 +24,12 @@ select count(*)
  where 1 = 1
 [filter];
 
+#getAllCountEstimate
+select row_count_estimate
+  from information_schema.tables
+ where table_schema = schema()
+   and table_name = 'TAL';
+
 #exist
 select 1
   from tal
@@ -53,6 +53,7 @@ select vc.vac_id,
          order by var_completed_at desc
          limit 1)
 [filter]
+[seek]
 [order]
 [limit];
 
@@ -0,0 +1,268 @@
+#getNextId
+select seq_vrp_snapshot.nextval;
+
+#create
+insert into vrp_snapshot (
+       vsn_id,
+       vsn_created_at,
+       vsn_status,
+       vsn_vrp_count,
+       vsn_previous_id)
+values (?, ?, 'BUILDING', 0, ?);
+
+#copyRoas
+insert into vrp (
+       vsn_id,
+       roa_id,
+       rpo_id,
+       vrp_asn,
+       vrp_prefix_text,
+       vrp_start_prefix,
+       vrp_end_prefix,
+       vrp_prefix_length,
+       vrp_prefix_max_length,
+       vrp_prefix_family,
+       vrp_start_hi,
+       vrp_start_lo,
+       vrp_end_hi,
+       vrp_end_lo)
+select ?,
+       roa_id,
+       rpo_id,
+       roa_asn,
+       roa_prefix_text,
+       roa_start_prefix,
+       roa_end_prefix,
+       roa_prefix_length,
+       roa_prefix_max_length,
+       roa_prefix_family,
+       roa_start_hi,
+       roa_start_lo,
+       roa_end_hi,
+       roa_end_lo
+  from roa;
+
+#retireCurrent
+update vrp_snapshot
+   set vsn_status = 'RETIRED'
+ where vsn_status = 'CURRENT';
+
+#publish
+update vrp_snapshot
+   set vsn_status = 'CURRENT',
+       vsn_vrp_count = ?
+ where vsn_id = ?;
+
+#getCurrentId
+select vsn_id
+  from vrp_snapshot
+ where vsn_status = 'CURRENT'
+ order by vsn_id desc
+ limit 1;
+
+#getStaleIds
+select vsn_id, vsn_status
+  from vrp_snapshot
+ where vsn_status != 'CURRENT';
+
+#deleteVrpChunk
+delete from vrp
+ where vsn_id = ?
+ limit ?;
+
+#delete
+delete from vrp_snapshot
+ where vsn_id = ?;
+
+#createDelta
+insert into vrp_delta (
+       vsn_id,
+       vrd_announced,
+       vrd_asn,
+       vrd_prefix_text,
+       vrd_start_prefix,
+       vrd_prefix_length,
+       vrd_prefix_max_length,
+       vrd_prefix_family)
+select distinct ?,
+       ?,
+       n.vrp_asn,
+       n.vrp_prefix_text,
+       n.vrp_start_prefix,
+       n.vrp_prefix_length,
+       n.vrp_prefix_max_length,
+       n.vrp_prefix_family
+  from vrp n
+ where n.vsn_id = ?
+   and not exists (
+       select 1
+         from vrp o
+        where o.vsn_id = ?
+          and o.vrp_prefix_family = n.vrp_prefix_family
+          and o.vrp_prefix_length = n.vrp_prefix_length
+          and o.vrp_start_hi = n.vrp_start_hi
+          and o.vrp_start_lo = n.vrp_start_lo
+          and o.vrp_prefix_max_length = n.vrp_prefix_max_length
+          and o.vrp_asn = n.vrp_asn);
+
+#getSerialsAfter
+select vsn_id,
+       vsn_previous_id
+  from vrp_snapshot
+ where vsn_id > ?
+   and vsn_id <= ?
+   and vsn_status != 'BUILDING'
+ order by vsn_id;
+
+#getDeltasAfter
+select vsn_id,
+       vrd_announced,
+       vrd_asn,
+       vrd_prefix_text,
+       vrd_start_prefix,
+       vrd_prefix_length,
+       vrd_prefix_max_length,
+       vrd_prefix_family
+  from vrp_delta
+ where vsn_id > ?
+   and vsn_id <= ?
+ order by vsn_id, vrd_id;
+
+#getOldestKeptId
+select vsn_id
+  from vrp_snapshot
+ where vsn_status != 'BUILDING'
+ order by vsn_id desc
+ limit 1 offset ?;
+
+#deleteOldRetired
+delete from vrp_snapshot
+ where vsn_id < ?
+   and vsn_status = 'RETIRED';
+
+#getAll
+select rpo_id,
+       roa_id,
+       vrp_asn as roa_asn,
+       vrp_prefix_text as roa_prefix_text,
+       vrp_start_prefix as roa_start_prefix,
+       vrp_end_prefix as roa_end_prefix,
+       vrp_prefix_length as roa_prefix_length,
+       vrp_prefix_max_length as roa_prefix_max_length,
+       vrp_prefix_family as roa_prefix_family
+  from vrp
+ where vsn_id = ?;
+
+#findExactMatch
+select rpo_id,
+       roa_id,
+       vrp_asn as roa_asn,
+       vrp_prefix_text as roa_prefix_text,
+       vrp_start_prefix as roa_start_prefix,
+       vrp_end_prefix as roa_end_prefix,
+       vrp_prefix_length as roa_prefix_length,
+       vrp_prefix_max_length as roa_prefix_max_length,
+       vrp_prefix_family as roa_prefix_family
+  from table(t_length int = ?, t_start_hi bigint = ?, t_start_lo bigint = ?) t
+ inner join vrp
+    on vrp_prefix_family = ?
+   and vsn_id = ?
+   and vrp_prefix_length = t_length
+   and vrp_start_hi = t_start_hi
+   and vrp_start_lo = t_start_lo
+ where vrp_prefix_max_length >= ?
+ order by case when vrp_asn = ? then 0 else 1 end, vrp_prefix_length desc
+ limit 1;
+
+#findValidationCandidates
+(select rpo_id,
+       roa_id,
+       vrp_asn as roa_asn,
+       vrp_prefix_text as roa_prefix_text,
+       vrp_start_prefix as roa_start_prefix,
+       vrp_end_prefix as roa_end_prefix,
+       vrp_prefix_length as roa_prefix_length,
+       vrp_prefix_max_length as roa_prefix_max_length,
+       vrp_prefix_family as roa_prefix_family,
+       1 as roa_lookup_relation
+  from table(t_length int = ?, t_start_hi bigint = ?, t_start_lo bigint = ?) t
+ inner join vrp
+    on vrp_prefix_family = ?
+   and vsn_id = ?
+   and vrp_prefix_length = t_length
+   and vrp_start_hi = t_start_hi
+   and vrp_start_lo = t_start_lo
+ where vrp_prefix_max_length >= ?
+ order by case when vrp_asn = ? then 0 else 1 end, vrp_prefix_length desc
+ limit 1)
+union all
+(select rpo_id,
+       roa_id,
+       vrp_asn as roa_asn,
+       vrp_prefix_text as roa_prefix_text,
+       vrp_start_prefix as roa_start_prefix,
+       vrp_end_prefix as roa_end_prefix,
+       vrp_prefix_length as roa_prefix_length,
+       vrp_prefix_max_length as roa_prefix_max_length,
+       vrp_prefix_family as roa_prefix_family,
+       2 as roa_lookup_relation
+  from table(t_length int = ?, t_start_hi bigint = ?, t_start_lo bigint = ?) t
+ inner join vrp
+    on vrp_prefix_family = ?
+   and vsn_id = ?
+   and vrp_prefix_length = t_length
+   and vrp_start_hi = t_start_hi
+   and vrp_start_lo = t_start_lo
+ where vrp_prefix_max_length < ?
+ order by vrp_prefix_length desc
+ limit 1)
+union all
+(select rpo_id,
+       roa_id,
+       vrp_asn as roa_asn,
+       vrp_prefix_text as roa_prefix_text,
+       vrp_start_prefix as roa_start_prefix,
+       vrp_end_prefix as roa_end_prefix,
+       vrp_prefix_length as roa_prefix_length,
+       vrp_prefix_max_length as roa_prefix_max_length,
+       vrp_prefix_family as roa_prefix_family,
+       3 as roa_lookup_relation
+  from table(t_length int = ?) t
+ inner join vrp
+    on vrp_prefix_family = ?
+   and vrp_prefix_length = t_length
+   and vrp_start_hi between ? and ?
+   and vrp_start_lo between ? and ?
+   and vsn_id = ?
+ order by vrp_start_hi, vrp_start_lo, vrp_prefix_length
+ limit 1)
+union all
+(select null,
+       null,
+       null,
+       null,
+       null,
+       null,
+       null,
+       null,
+       null,
+       4
+  from dual
+ where exists (select 1 from vrp where vsn_id = ? and vrp_asn = ?));
+
+#getAllSorted
+select vrp_asn,
+       vrp_prefix_text,
+       vrp_start_prefix,
+       vrp_prefix_length,
+       vrp_prefix_max_length,
+       vrp_prefix_family
+  from vrp
+ where vsn_id = ?
+ order by vsn_id, vrp_prefix_family, vrp_prefix_length, vrp_start_hi, vrp_start_lo;
+
+#enableLazyExecution
+set lazy_query_execution 1;
+
+#disableLazyExecution
+set lazy_query_execution 0;
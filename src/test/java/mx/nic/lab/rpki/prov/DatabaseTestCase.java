@@ -0,0 +1,130 @@
+package mx.nic.lab.rpki.prov;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.db.pojo.RpkiObject;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.model.QueryLoader;
+import mx.nic.lab.rpki.prov.model.RoaModel;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * Base of the tests that need a database: each test gets an empty in-memory H2
+ * database, with the tables of createDatabase.sql and the queries of every
+ * model loaded; it also has the fixtures shared by the tests
+ *
+ */
+public abstract class DatabaseTestCase extends TestCase {
+
+	private static final String URL = "jdbc:h2:mem:rpki-test;DB_CLOSE_DELAY=-1";
+
+	@Override
+	protected void setUp() throws Exception {
+		Properties config = getConfig();
+		DatabaseSession.initConnection(config);
+		QueryLoader.init(config);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		try (Connection connection = DatabaseSession.getConnection();
+				Statement statement = connection.createStatement()) {
+			statement.execute("drop all objects");
+		}
+	}
+
+	/**
+	 * Get the configuration used to initialize the provider, the tests can add
+	 * their own properties
+	 *
+	 * @return The configuration
+	 */
+	protected Properties getConfig() {
+		Properties config = new Properties();
+		config.setProperty("driverClassName", "org.h2.Driver");
+		config.setProperty("url", URL);
+		return config;
+	}
+
+	/**
+	 * Get a connection to the test database
+	 *
+	 * @return The connection
+	 * @throws SQLException
+	 */
+	protected Connection getConnection() throws SQLException {
+		return DatabaseSession.getConnection();
+	}
+
+	/**
+	 * Get the bytes of an IP address
+	 *
+	 * @param address
+	 *            textual IPv4 or IPv6 address
+	 * @return The address bytes
+	 * @throws UnknownHostException
+	 */
+	protected static byte[] address(String address) throws UnknownHostException {
+		return InetAddress.getByName(address).getAddress();
+	}
+
+	/**
+	 * Create an RPKI object to which the ROAs can belong
+	 *
+	 * @param connection
+	 * @return The ID of the new object
+	 * @throws SQLException
+	 */
+	protected static long createRpkiObject(Connection connection) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(
+				"insert into rpki_object (rpo_type, rpo_last_marked_reachable_at, rpo_sha256, rpo_is_ca) "
+						+ "values ('ROA', '2019-01-01T00:00:00.000Z', ?, false)",
+				Statement.RETURN_GENERATED_KEYS)) {
+			statement.setBytes(1, Long.toString(System.nanoTime()).getBytes());
+			statement.executeUpdate();
+			ResultSet rs = statement.getGeneratedKeys();
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+
+	/**
+	 * Create a ROA of the RPKI object, with the model so its writes are seen as
+	 * the ones of the provider
+	 *
+	 * @param rpkiObjectId
+	 * @param asn
+	 * @param prefix
+	 *            textual network address
+	 * @param prefixLength
+	 * @param maxLength
+	 * @param connection
+	 * @throws SQLException
+	 * @throws UnknownHostException
+	 */
+	protected static void createRoa(long rpkiObjectId, Long asn, String prefix, int prefixLength, int maxLength,
+			Connection connection) throws SQLException, UnknownHostException {
+		RpkiObject rpkiObject = new RpkiObject();
+		rpkiObject.setId(rpkiObjectId);
+		byte[] address = address(prefix);
+		Roa roa = new Roa();
+		roa.setRpkiObject(rpkiObject);
+		roa.setAsn(asn);
+		roa.setPrefixText(prefix + "/" + prefixLength);
+		roa.setStartPrefix(address);
+		roa.setEndPrefix(IpPrefix.of(address, prefixLength).toEndBytes());
+		roa.setPrefixLength(prefixLength);
+		roa.setPrefixMaxLength(maxLength);
+		roa.setPrefixFamily(IpPrefix.getFamily(address));
+		assertTrue(RoaModel.create(roa, connection));
+	}
+}
@@ -0,0 +1,54 @@
+package mx.nic.lab.rpki.prov.database;
+
+import java.sql.Connection;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+
+/**
+ * Tests of the connection pool metrics: the waiters are the threads blocked at
+ * the pool, not every thread that requests a connection
+ *
+ */
+public class PoolMetricsTest extends DatabaseTestCase {
+
+	@Override
+	protected Properties getConfig() {
+		Properties config = super.getConfig();
+		config.setProperty("maxTotal", "1");
+		return config;
+	}
+
+	public void testWaitersAreTheBlockedThreads() throws Exception {
+		// The connections got right away didn't wait
+		getConnection().close();
+		assertTrue(DatabaseSession.getPoolMetricsSummary(), DatabaseSession.getPoolMetricsSummary()
+				.contains("waiters=0,"));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> waiter;
+			try (Connection connection = getConnection()) {
+				waiter = executor.submit(() -> {
+					try (Connection other = getConnection()) {
+						return null;
+					}
+				});
+				long deadline = System.currentTimeMillis() + 5000L;
+				while (!DatabaseSession.getPoolMetricsSummary().contains("waiters=1,")
+						&& System.currentTimeMillis() < deadline) {
+					Thread.sleep(10L);
+				}
+				assertTrue(DatabaseSession.getPoolMetricsSummary(), DatabaseSession.getPoolMetricsSummary()
+						.contains("waiters=1,"));
+			}
+			// Gets the connection once it's returned
+			waiter.get();
+			assertTrue(DatabaseSession.getPoolMetricsSummary().contains("waiters=0,"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
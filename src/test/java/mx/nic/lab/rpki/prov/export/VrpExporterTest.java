@@ -0,0 +1,136 @@
+package mx.nic.lab.rpki.prov.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.model.SlurmPrefixModel;
+import mx.nic.lab.rpki.prov.model.VrpSnapshotModel;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * Round trip of the {@link VrpExporter}: the VRPs of the snapshot are written
+ * and read back, with the SLURM filters and assertions applied and the VRPs
+ * repeated at distinct ROAs written once
+ *
+ */
+public class VrpExporterTest extends DatabaseTestCase {
+
+	/**
+	 * The VRPs left after the SLURM, in the order of the export: the snapshot
+	 * ordered by prefix, then the assertions
+	 */
+	private static final List<String> EXPECTED = Arrays.asList("AS64500 10.0.0.0/16 max 24",
+			"AS64500 10.0.0.0/16 max 20", "AS64502 2001:db8::/32 max 48", "AS64503 198.51.100.0/24 max 24",
+			"AS64520 203.0.113.0/24 max 24");
+
+	private static final Pattern JSON_VRP = Pattern
+			.compile("\\{\"asn\":\"AS(\\d+)\",\"prefix\":\"([^\"]+)\",\"maxLength\":(\\d+)\\}");
+
+	private Connection connection;
+	private long snapshotId;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		VrpSnapshotModel.init(getConfig());
+		connection = getConnection();
+		long rpkiObjectId = createRpkiObject(connection);
+		createRoa(rpkiObjectId, 64500L, "10.0.0.0", 16, 24, connection);
+		createRoa(rpkiObjectId, 64501L, "10.1.0.0", 16, 16, connection);
+		createRoa(rpkiObjectId, 64510L, "192.0.2.0", 24, 24, connection);
+		createRoa(rpkiObjectId, 64502L, "2001:db8::", 32, 48, connection);
+		createRoa(rpkiObjectId, 64503L, "198.51.100.0", 24, 24, connection);
+		// The same VRP at another ROA, and another max length of the prefix
+		long otherRpkiObjectId = createRpkiObject(connection);
+		createRoa(otherRpkiObjectId, 64500L, "10.0.0.0", 16, 24, connection);
+		createRoa(otherRpkiObjectId, 64500L, "10.0.0.0", 16, 20, connection);
+
+		SlurmPrefixModel.create(slurmPrefix(SlurmPrefix.TYPE_FILTER, 64510L, null, null, null), connection);
+		SlurmPrefixModel.create(slurmPrefix(SlurmPrefix.TYPE_FILTER, null, "10.1.0.0", 16, null), connection);
+		// Equal to a VRP of the snapshot, it's written only once
+		SlurmPrefixModel.create(slurmPrefix(SlurmPrefix.TYPE_ASSERTION, 64503L, "198.51.100.0", 24, null),
+				connection);
+		SlurmPrefixModel.create(slurmPrefix(SlurmPrefix.TYPE_ASSERTION, 64520L, "203.0.113.0", 24, 24), connection);
+		snapshotId = VrpSnapshotModel.createSnapshot(connection);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		VrpSnapshotModel.shutdown();
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testBinaryExport() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long exported = VrpExporter.export(VrpExportFormat.BINARY, out, connection);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		byte[] magic = new byte[4];
+		in.readFully(magic);
+		assertEquals("VRPS", new String(magic, StandardCharsets.US_ASCII));
+		assertEquals(1, in.readByte());
+		assertEquals(snapshotId, in.readLong());
+		List<String> vrps = new ArrayList<>();
+		int family;
+		while ((family = in.readByte()) != 0) {
+			int prefixLength = in.readUnsignedByte();
+			int maxLength = in.readUnsignedByte();
+			byte[] prefix = new byte[family == IpPrefix.FAMILY_IPV4 ? IpPrefix.IPV4_BYTES : IpPrefix.IPV6_BYTES];
+			in.readFully(prefix);
+			long asn = in.readInt() & 0xFFFFFFFFL;
+			vrps.add(vrp(asn, IpPrefix.toText(prefix, prefixLength), maxLength));
+		}
+		assertEquals(EXPECTED, vrps);
+		assertEquals(EXPECTED.size(), in.readLong());
+		assertEquals(-1, in.read());
+		assertEquals(EXPECTED.size(), exported);
+	}
+
+	public void testJsonExport() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long exported = VrpExporter.export(VrpExportFormat.JSON, out, connection);
+
+		String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(json, json.startsWith("{\"serial\":" + snapshotId + ",\"roas\":["));
+		assertTrue(json, json.trim().endsWith("]}"));
+		List<String> vrps = new ArrayList<>();
+		Matcher matcher = JSON_VRP.matcher(json);
+		while (matcher.find()) {
+			vrps.add(vrp(Long.parseLong(matcher.group(1)), matcher.group(2), Integer.parseInt(matcher.group(3))));
+		}
+		assertEquals(EXPECTED, vrps);
+		assertEquals(EXPECTED.size(), exported);
+	}
+
+	private static String vrp(long asn, String prefix, int maxLength) {
+		return "AS" + asn + " " + prefix + " max " + maxLength;
+	}
+
+	private static SlurmPrefix slurmPrefix(String type, Long asn, String prefix, Integer prefixLength,
+			Integer maxLength) throws UnknownHostException {
+		SlurmPrefix slurmPrefix = new SlurmPrefix();
+		slurmPrefix.setType(type);
+		slurmPrefix.setAsn(asn);
+		if (prefix != null) {
+			byte[] address = address(prefix);
+			slurmPrefix.setPrefixText(IpPrefix.toText(address, prefixLength));
+			slurmPrefix.setStartPrefix(address);
+			slurmPrefix.setEndPrefix(IpPrefix.getEnd(address, prefixLength));
+		}
+		slurmPrefix.setPrefixLength(prefixLength);
+		slurmPrefix.setPrefixMaxLength(maxLength);
+		return slurmPrefix;
+	}
+}
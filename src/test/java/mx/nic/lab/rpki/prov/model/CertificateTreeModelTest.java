@@ -0,0 +1,142 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import mx.nic.lab.rpki.db.cert.tree.CertificateNode;
+import mx.nic.lab.rpki.db.cert.tree.CertificationTreeNode;
+import mx.nic.lab.rpki.db.cert.tree.RoaNode;
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+
+/**
+ * Tests of the loading of the certificate tree: the data of the childs is
+ * loaded for the whole page with set-based queries, so the number of
+ * statements doesn't depend on the size of the page
+ *
+ */
+public class CertificateTreeModelTest extends DatabaseTestCase {
+
+	private Connection connection;
+	private int sequence;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		connection = getConnection();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testStatementsDontGrowWithThePage() throws Exception {
+		long smallParent = createTree(3);
+		long bigParent = createTree(60);
+		// Warm up the query caches, so only the statements are measured
+		CertificateTreeModel.findFromChild(smallParent, pagingParams(), connection);
+
+		long before = preparedStatements();
+		CertificateNode small = (CertificateNode) CertificateTreeModel.findFromChild(smallParent, pagingParams(),
+				connection);
+		long smallStatements = preparedStatements() - before;
+		before = preparedStatements();
+		CertificateNode big = (CertificateNode) CertificateTreeModel.findFromChild(bigParent, pagingParams(),
+				connection);
+		long bigStatements = preparedStatements() - before;
+
+		assertEquals(9, small.getChilds().size());
+		assertEquals(180, big.getChilds().size());
+		// Before, each child needed up to three statements of its own
+		assertEquals(smallStatements, bigStatements);
+		assertTrue("Statements per page " + bigStatements, bigStatements <= 6);
+	}
+
+	public void testChildsData() throws Exception {
+		long parentId = createTree(2);
+		CertificateNode root = (CertificateNode) CertificateTreeModel.findFromChild(parentId, pagingParams(),
+				connection);
+		assertEquals(Integer.valueOf(6), root.getChildCount());
+		int roas = 0;
+		for (CertificationTreeNode child : root.getChilds()) {
+			assertEquals(1, child.getLocations().size());
+			if (child instanceof RoaNode) {
+				roas++;
+				assertEquals(2, ((RoaNode) child).getResources().size());
+			}
+		}
+		assertEquals(2, roas);
+	}
+
+	private static long preparedStatements() {
+		return DatabaseSession.getStatementHits() + DatabaseSession.getStatementMisses();
+	}
+
+	private static PagingParameters pagingParams() {
+		PagingParameters pagingParams = new PagingParameters();
+		pagingParams.setLimit(500);
+		pagingParams.setOffset(0);
+		return pagingParams;
+	}
+
+	/**
+	 * Create a CA with <code>size</code> ROAs, certificates and manifests as
+	 * childs, each one with a location
+	 *
+	 * @return the ID of the CA
+	 */
+	private long createTree(int size) throws Exception {
+		byte[] ski = nextKey();
+		long parentId = createObject("CER", null, ski, null, true);
+		for (int i = 0; i < size; i++) {
+			long roaId = createObject("ROA", ski, null, parentId, false);
+			createRoa(roaId, 64500L + i, "10." + (i % 256) + ".0.0", 16, 24, connection);
+			createRoa(roaId, 64500L + i, "172.16." + (i % 256) + ".0", 24, 24, connection);
+			createObject("CER", ski, nextKey(), parentId, true);
+			createObject("MFT", ski, null, parentId, false);
+		}
+		try (PreparedStatement statement = connection
+				.prepareStatement("update rpki_object set rpo_child_count = ? where rpo_id = ?")) {
+			statement.setInt(1, size * 3);
+			statement.setLong(2, parentId);
+			statement.executeUpdate();
+		}
+		return parentId;
+	}
+
+	private long createObject(String type, byte[] aki, byte[] ski, Long parentId, boolean ca) throws SQLException {
+		long id;
+		try (PreparedStatement statement = connection.prepareStatement("insert into rpki_object "
+				+ "(rpo_type, rpo_last_marked_reachable_at, rpo_authority_key_identifier, rpo_subject_key_identifier, "
+				+ "rpo_sha256, rpo_is_ca, rpo_parent_id) values (?, '2019-01-01T00:00:00.000Z', ?, ?, ?, ?, ?)",
+				Statement.RETURN_GENERATED_KEYS)) {
+			statement.setString(1, type);
+			statement.setBytes(2, aki);
+			statement.setBytes(3, ski);
+			statement.setBytes(4, nextKey());
+			statement.setBoolean(5, ca);
+			statement.setObject(6, parentId);
+			statement.executeUpdate();
+			ResultSet rs = statement.getGeneratedKeys();
+			rs.next();
+			id = rs.getLong(1);
+		}
+		try (PreparedStatement statement = connection
+				.prepareStatement("insert into rpki_object_locations (rpo_id, rpo_locations) values (?, ?)")) {
+			statement.setLong(1, id);
+			statement.setString(2, "rsync://example.net/repo/" + id);
+			statement.executeUpdate();
+		}
+		return id;
+	}
+
+	private byte[] nextKey() {
+		return ("key-" + sequence++).getBytes();
+	}
+}
@@ -0,0 +1,144 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+
+/**
+ * Tests of the invalidation of the {@link CountCache}: a count is reused until
+ * a model that writes at its tables makes a write, the writes of other models
+ * don't affect it
+ *
+ */
+public class CountCacheTest extends DatabaseTestCase {
+
+	private static final String QUERY = "select count(*) from roa";
+
+	private Connection connection;
+	private AtomicInteger loads;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		CountCache.init(new Properties());
+		connection = getConnection();
+		loads = new AtomicInteger();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		CountCache.init(new Properties());
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testCountIsReused() throws SQLException {
+		assertEquals(Integer.valueOf(10), count(RoaModel.class, null));
+		assertEquals(Integer.valueOf(10), count(RoaModel.class, null));
+		assertEquals(1, loads.get());
+		// Another filter is another count
+		count(RoaModel.class, "10.");
+		count(RoaModel.class, "10.");
+		assertEquals(2, loads.get());
+	}
+
+	public void testWritesInvalidate() throws SQLException {
+		count(RoaModel.class, null);
+		count(RoaModel.class, "10.");
+		CountCache.invalidate(RoaModel.class);
+		count(RoaModel.class, null);
+		count(RoaModel.class, "10.");
+		assertEquals(4, loads.get());
+	}
+
+	public void testWritesOfTheCascades() throws SQLException {
+		count(RoaModel.class, null);
+		// The deletes of the RPKI objects and TALs delete its ROAs too
+		CountCache.invalidate(RpkiObjectModel.class);
+		count(RoaModel.class, null);
+		CountCache.invalidate(TalModel.class);
+		count(RoaModel.class, null);
+		assertEquals(3, loads.get());
+	}
+
+	public void testWritesOfOtherTables() throws SQLException {
+		count(RoaModel.class, null);
+		CountCache.invalidate(SlurmPrefixModel.class);
+		CountCache.invalidate(SlurmModel.class);
+		CountCache.invalidate(ValidationRunModel.class);
+		count(RoaModel.class, null);
+		assertEquals(1, loads.get());
+	}
+
+	public void testDisabledCache() throws Exception {
+		Properties config = new Properties();
+		config.setProperty("count_cache_ttl", "0");
+		CountCache.init(config);
+		count(RoaModel.class, null);
+		count(RoaModel.class, null);
+		assertEquals(2, loads.get());
+	}
+
+	/**
+	 * The writes of the models invalidate the totals of the listings
+	 */
+	public void testListingTotalFollowsTheWrites() throws Exception {
+		long rpkiObjectId = createRpkiObject(connection);
+		createRoa(rpkiObjectId, 64500L, "192.0.2.0", 24, 24, connection);
+		assertEquals(Integer.valueOf(1), total(null));
+		assertEquals(Integer.valueOf(0), total("198.51"));
+		long hits = CountCache.getHits();
+		assertEquals(Integer.valueOf(1), total(null));
+		assertEquals(hits + 1, CountCache.getHits());
+
+		createRoa(rpkiObjectId, 64501L, "198.51.100.0", 24, 24, connection);
+		assertEquals(Integer.valueOf(2), total(null));
+		assertEquals(Integer.valueOf(1), total("198.51"));
+	}
+
+	/**
+	 * A count loaded while a write isn't committed yet doesn't include it, so it's
+	 * invalidated again at the commit
+	 */
+	public void testCountLoadedBeforeTheCommit() throws Exception {
+		long rpkiObjectId = createRpkiObject(connection);
+		createRoa(rpkiObjectId, 64500L, "192.0.2.0", 24, 24, connection);
+		try (Connection writer = getConnection()) {
+			writer.setAutoCommit(false);
+			createRoa(rpkiObjectId, 64501L, "198.51.100.0", 24, 24, writer);
+			assertEquals(Integer.valueOf(1), total(null));
+			DatabaseModel.commit(writer);
+			writer.setAutoCommit(true);
+		}
+		assertEquals(Integer.valueOf(2), total(null));
+	}
+
+	private Integer count(Class<?> modelClass, String filter) throws SQLException {
+		PagingParameters pagingParams = null;
+		if (filter != null) {
+			pagingParams = new PagingParameters();
+			pagingParams.setFilterField(Roa.PREFIX_TEXT);
+			pagingParams.setFilterQuery(filter);
+		}
+		return CountCache.get(modelClass, QUERY, pagingParams, () -> {
+			loads.incrementAndGet();
+			return 10;
+		}, null);
+	}
+
+	private Integer total(String filter) throws SQLException {
+		PagingParameters pagingParams = new PagingParameters();
+		pagingParams.setLimit(10);
+		pagingParams.setOffset(0);
+		if (filter != null) {
+			pagingParams.setFilterField(Roa.PREFIX_TEXT);
+			pagingParams.setFilterQuery(filter);
+		}
+		return RoaModel.getAll(pagingParams, connection).getTotalFound();
+	}
+}
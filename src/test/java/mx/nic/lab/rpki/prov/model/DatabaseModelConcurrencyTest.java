@@ -0,0 +1,198 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.db.pojo.RpkiObject;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * Stress test of the {@link DatabaseModel}: concurrent readers, that don't take
+ * the model lock, while concurrent writers use <code>executeUpdate</code> and
+ * <code>executeBatch</code> on the same model
+ *
+ */
+public class DatabaseModelConcurrencyTest extends DatabaseTestCase {
+
+	private static final int READERS = 4;
+	private static final int WRITERS = 3;
+	private static final int BATCH_WRITERS = 2;
+	private static final int WRITES = 30;
+	private static final int BATCHES = 6;
+	private static final int BATCH_SIZE = 5;
+	private static final int SEED = 8;
+
+	private Connection connection;
+	private long rpkiObjectId;
+	private final List<Long> seedIds = new ArrayList<>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		connection = getConnection();
+		rpkiObjectId = createRpkiObject(connection);
+		for (int i = 0; i < SEED; i++) {
+			createRoa(rpkiObjectId, 64500L + i, "192.0." + i + ".0", 24, 24, connection);
+		}
+		try (Statement statement = connection.createStatement()) {
+			ResultSet rs = statement.executeQuery("select roa_id from roa order by roa_asn");
+			while (rs.next()) {
+				seedIds.add(rs.getLong(1));
+			}
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+		super.tearDown();
+	}
+
+	@Override
+	protected Properties getConfig() {
+		Properties config = super.getConfig();
+		// Every thread keeps its connection until it ends
+		config.setProperty("maxTotal", "16");
+		return config;
+	}
+
+	public void testReadersWhileWriting() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(READERS + WRITERS + BATCH_WRITERS);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean writing = new AtomicBoolean(true);
+		List<Future<Integer>> readers = new ArrayList<>();
+		List<Future<Integer>> writers = new ArrayList<>();
+		try {
+			for (int i = 0; i < READERS; i++) {
+				readers.add(executor.submit(reader(start, writing)));
+			}
+			for (int i = 0; i < WRITERS; i++) {
+				writers.add(executor.submit(writer(i, start)));
+			}
+			for (int i = 0; i < BATCH_WRITERS; i++) {
+				writers.add(executor.submit(batchWriter(WRITERS + i, start)));
+			}
+			start.countDown();
+			int written = 0;
+			for (Future<Integer> writer : writers) {
+				written += writer.get(60, TimeUnit.SECONDS);
+			}
+			writing.set(false);
+			for (Future<Integer> reader : readers) {
+				assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+			}
+			assertEquals(WRITERS * WRITES + BATCH_WRITERS * BATCHES * BATCH_SIZE, written);
+			assertEquals(SEED + written, countRoas(connection));
+			// The counts cached meanwhile were invalidated by the writes
+			assertEquals(Integer.valueOf(SEED + written), RoaModel.getAll(pagingParams(), connection).getTotalFound());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the seed ROAs until the writers end, every read must see them; the
+	 * total of ROAs never decreases
+	 */
+	private Callable<Integer> reader(CountDownLatch start, AtomicBoolean writing) {
+		return () -> {
+			int reads = 0;
+			int lastCount = 0;
+			try (Connection readerConnection = getConnection()) {
+				start.await();
+				do {
+					int seed = reads % SEED;
+					Roa roa = RoaModel.getById(seedIds.get(seed), readerConnection);
+					assertNotNull(roa);
+					assertEquals(Long.valueOf(64500L + seed), roa.getAsn());
+					assertEquals(5, RoaModel.getAll(pagingParams(), readerConnection).getResults().size());
+					int count = countRoas(readerConnection);
+					assertTrue(count >= lastCount);
+					lastCount = count;
+					reads++;
+				} while (writing.get());
+			}
+			return reads;
+		};
+	}
+
+	/**
+	 * Creates the ROAs one at a time
+	 */
+	private Callable<Integer> writer(int writer, CountDownLatch start) {
+		return () -> {
+			try (Connection writerConnection = getConnection()) {
+				start.await();
+				for (int i = 0; i < WRITES; i++) {
+					assertTrue(RoaModel.create(roa(writer, i), writerConnection));
+				}
+			}
+			return WRITES;
+		};
+	}
+
+	/**
+	 * Creates the ROAs in batches
+	 */
+	private Callable<Integer> batchWriter(int writer, CountDownLatch start) {
+		return () -> {
+			try (Connection writerConnection = getConnection()) {
+				start.await();
+				for (int i = 0; i < BATCHES; i++) {
+					List<Roa> roas = new ArrayList<>();
+					for (int j = 0; j < BATCH_SIZE; j++) {
+						roas.add(roa(writer, i * BATCH_SIZE + j));
+					}
+					RoaModel.bulkCreate(roas, writerConnection);
+				}
+			}
+			return BATCHES * BATCH_SIZE;
+		};
+	}
+
+	private Roa roa(int writer, int index) throws Exception {
+		RpkiObject rpkiObject = new RpkiObject();
+		rpkiObject.setId(rpkiObjectId);
+		byte[] address = address("10." + writer + "." + index + ".0");
+		Roa roa = new Roa();
+		roa.setRpkiObject(rpkiObject);
+		roa.setAsn(65000L + writer);
+		roa.setPrefixText("10." + writer + "." + index + ".0/24");
+		roa.setStartPrefix(address);
+		roa.setEndPrefix(IpPrefix.of(address, 24).toEndBytes());
+		roa.setPrefixLength(24);
+		roa.setPrefixMaxLength(24);
+		roa.setPrefixFamily(IpPrefix.getFamily(address));
+		return roa;
+	}
+
+	private static PagingParameters pagingParams() {
+		PagingParameters pagingParams = new PagingParameters();
+		pagingParams.setLimit(5);
+		pagingParams.setOffset(0);
+		return pagingParams;
+	}
+
+	private static int countRoas(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			ResultSet rs = statement.executeQuery("select count(*) from roa");
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.object.RoaDbObject;
+
+/**
+ * Tests of the {@link KeysetPaging}: the pages read with a seek must be the
+ * same that the pages read with the offset, also after the writes
+ *
+ */
+public class KeysetPagingTest extends DatabaseTestCase {
+
+	private static final int PAGE_SIZE = 4;
+
+	private Connection connection;
+	private long rpkiObjectId;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		KeysetPaging.clear();
+		connection = getConnection();
+		rpkiObjectId = createRpkiObject(connection);
+		// Repeated ASNs, so the ID breaks the ties
+		for (int i = 0; i < 18; i++) {
+			createRoa(rpkiObjectId, 64500L + i % 5, "10." + i + ".0.0", 16, 24, connection);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testSeekPagesEqualOffsetPages() throws SQLException {
+		long seeksBefore = KeysetPaging.getSeeks();
+		List<Long> expected = getIdsByAsnDesc();
+		List<Long> paged = new ArrayList<>();
+		for (int offset = 0; offset < expected.size(); offset += PAGE_SIZE) {
+			paged.addAll(getPage(offset));
+		}
+		assertEquals(expected, paged);
+		// Every page but the first one used the cursor of the previous page
+		assertEquals((expected.size() - 1) / PAGE_SIZE, KeysetPaging.getSeeks() - seeksBefore);
+	}
+
+	public void testPagesShareTheQuery() throws SQLException {
+		String query = RoaModel.getQueryGroup().getQuery("getAll");
+		// The limit and offset are parameters, not part of the SQL
+		KeysetPaging second = KeysetPaging.create(RoaModel.class, query, pagingParams(PAGE_SIZE),
+				RoaDbObject.propertyToColumnMap, RoaDbObject.ID_COLUMN);
+		KeysetPaging third = KeysetPaging.create(RoaModel.class, query, pagingParams(2 * PAGE_SIZE),
+				RoaDbObject.propertyToColumnMap, RoaDbObject.ID_COLUMN);
+		assertEquals(second.getQuery(), third.getQuery());
+		assertEquals(getIdsByAsnDesc().subList(2 * PAGE_SIZE, 3 * PAGE_SIZE), read(third));
+		assertEquals(Util.getQueryWithPaging(query, pagingParams(PAGE_SIZE), RoaDbObject.propertyToColumnMap),
+				Util.getQueryWithPaging(query, pagingParams(2 * PAGE_SIZE), RoaDbObject.propertyToColumnMap));
+	}
+
+	public void testCursorsDroppedAfterAWrite() throws Exception {
+		getPage(0);
+		// Sorted first, the offset of the second page is now one row later
+		createRoa(rpkiObjectId, 65000L, "192.0.2.0", 24, 24, connection);
+		long seeksBefore = KeysetPaging.getSeeks();
+		long invalidationsBefore = KeysetPaging.getInvalidations();
+		assertEquals(getIdsByAsnDesc().subList(PAGE_SIZE, 2 * PAGE_SIZE), getPage(PAGE_SIZE));
+		assertEquals(seeksBefore, KeysetPaging.getSeeks());
+		assertEquals(invalidationsBefore + 1, KeysetPaging.getInvalidations());
+
+		// The same happens with a delete
+		getPage(PAGE_SIZE);
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("delete from roa where roa_asn = 65000");
+		}
+		// The raw statement didn't pass through the model, so say it
+		CountCache.invalidate(RoaModel.class);
+		assertEquals(getIdsByAsnDesc().subList(2 * PAGE_SIZE, 3 * PAGE_SIZE), getPage(2 * PAGE_SIZE));
+		assertEquals(invalidationsBefore + 2, KeysetPaging.getInvalidations());
+	}
+
+	private List<Long> getPage(int offset) throws SQLException {
+		List<Long> ids = new ArrayList<>();
+		for (Roa roa : RoaModel.getAll(pagingParams(offset), connection).getResults()) {
+			ids.add(roa.getId());
+		}
+		return ids;
+	}
+
+	private List<Long> read(KeysetPaging paging) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(paging.getQuery())) {
+			paging.setParams(statement, 1);
+			ResultSet rs = statement.executeQuery();
+			List<Long> ids = new ArrayList<>();
+			while (rs.next()) {
+				ids.add(rs.getLong(RoaDbObject.ID_COLUMN));
+				paging.onRow(rs);
+			}
+			return ids;
+		}
+	}
+
+	private static PagingParameters pagingParams(int offset) {
+		PagingParameters pagingParams = new PagingParameters();
+		pagingParams.setLimit(PAGE_SIZE);
+		pagingParams.setOffset(offset);
+		LinkedHashMap<String, String> sort = new LinkedHashMap<>();
+		sort.put(Roa.ASN, PagingParameters.ORDER_DESC);
+		pagingParams.setSort(sort);
+		return pagingParams;
+	}
+
+	private List<Long> getIdsByAsnDesc() throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			ResultSet rs = statement.executeQuery("select roa_id from roa order by roa_asn desc, roa_id asc");
+			List<Long> ids = new ArrayList<>();
+			while (rs.next()) {
+				ids.add(rs.getLong(1));
+			}
+			return ids;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Properties;
+
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+
+/**
+ * Tests of the chunked purges of {@link PurgeService}, through the purge of the
+ * unreachable RPKI objects
+ *
+ */
+public class PurgeServiceTest extends DatabaseTestCase {
+
+	private static final Instant UNREACHABLE = Instant.parse("2019-01-01T00:00:00Z");
+	private static final Instant REACHABLE = Instant.parse("2019-02-01T00:00:00Z");
+
+	private Connection connection;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		PurgeService.init(getConfig());
+		connection = getConnection();
+		// Sparse IDs, the chunks must not depend on them
+		for (int i = 0; i < 11; i++) {
+			createRpkiObject(i, i % 3 == 0 ? REACHABLE : UNREACHABLE);
+		}
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("delete from rpki_object where mod(rpo_id, 4) = 0");
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+		PurgeService.shutdown();
+		super.tearDown();
+	}
+
+	@Override
+	protected Properties getConfig() {
+		Properties config = super.getConfig();
+		config.setProperty("purge_chunk_size", "2");
+		return config;
+	}
+
+	public void testDeleteUnreachableObjects() throws SQLException {
+		int unreachable = count("rpo_reach_generation < " + REACHABLE.toEpochMilli());
+		int reachable = count("rpo_reach_generation >= " + REACHABLE.toEpochMilli());
+		assertTrue(unreachable > 2);
+
+		long deletedBefore = PurgeService.getDeletedRows();
+		Instant since = REACHABLE.minusSeconds(1);
+		assertEquals(unreachable, RpkiObjectModel.deleteUnreachableObjects(since, connection));
+		assertEquals(unreachable, PurgeService.getDeletedRows() - deletedBefore);
+		assertEquals(0, count("rpo_reach_generation < " + REACHABLE.toEpochMilli()));
+		assertEquals(reachable, count("1 = 1"));
+		assertEquals(0, RpkiObjectModel.deleteUnreachableObjects(since, connection));
+	}
+
+	public void testStoppedAtTheShutdown() throws Exception {
+		PurgeService.shutdown();
+		int unreachable = count("rpo_reach_generation < " + REACHABLE.toEpochMilli());
+		assertEquals(0, RpkiObjectModel.deleteUnreachableObjects(REACHABLE.minusSeconds(1), connection));
+		// Nor the purges submitted afterwards
+		assertEquals(Integer.valueOf(0), PurgeService.submit("test",
+				(purgeConnection) -> RpkiObjectModel.deleteUnreachableObjects(REACHABLE, purgeConnection), null)
+				.get());
+		assertEquals(unreachable, count("rpo_reach_generation < " + REACHABLE.toEpochMilli()));
+	}
+
+	public void testRestartedAfterTheShutdown() throws Exception {
+		PurgeService.shutdown();
+		PurgeService.init(getConfig());
+		// The purges aren't stopped anymore
+		int unreachable = count("rpo_reach_generation < " + REACHABLE.toEpochMilli());
+		assertEquals(unreachable, RpkiObjectModel.deleteUnreachableObjects(REACHABLE.minusSeconds(1), connection));
+		assertEquals(0, count("rpo_reach_generation < " + REACHABLE.toEpochMilli()));
+	}
+
+	public void testBackgroundPurge() throws Exception {
+		int unreachable = count("rpo_reach_generation < " + REACHABLE.toEpochMilli());
+		int[] notified = new int[1];
+		int deleted = PurgeService.submit("test",
+				(purgeConnection) -> RpkiObjectModel.deleteUnreachableObjects(REACHABLE.minusSeconds(1),
+						purgeConnection),
+				(purged, purgeConnection) -> notified[0] = purged).get();
+		assertEquals(unreachable, deleted);
+		assertEquals(unreachable, notified[0]);
+		assertEquals(0, PurgeService.getPending());
+	}
+
+	private void createRpkiObject(int index, Instant reachedAt) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("insert into rpki_object "
+				+ "(rpo_type, rpo_last_marked_reachable_at, rpo_sha256, rpo_is_ca, rpo_reach_generation) "
+				+ "values ('ROA', ?, ?, false, ?)")) {
+			statement.setString(1, reachedAt.toString());
+			statement.setBytes(2, new byte[] { (byte) index });
+			statement.setLong(3, reachedAt.toEpochMilli());
+			statement.executeUpdate();
+		}
+	}
+
+	private int count(String condition) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			ResultSet rs = statement.executeQuery("select count(*) from rpki_object where " + condition);
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
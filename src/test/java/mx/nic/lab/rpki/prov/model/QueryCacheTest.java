@@ -0,0 +1,81 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+
+/**
+ * Tests of the reuse of the queries at the {@link QueryCache}, and of their
+ * prepared statements at the statement pool
+ *
+ */
+public class QueryCacheTest extends DatabaseTestCase {
+
+	private Connection connection;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		connection = getConnection();
+		long rpkiObjectId = createRpkiObject(connection);
+		for (int i = 0; i < 10; i++) {
+			createRoa(rpkiObjectId, 64500L + i, "10." + i + ".0.0", 16, 24, connection);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testPagesShareTheCachedQuery() throws Exception {
+		// The first page has no cursor, the next ones seek from the previous page
+		RoaModel.getAll(pagingParams(0), connection);
+		RoaModel.getAll(pagingParams(3), connection);
+		long hitsBefore = QueryCache.getHits();
+		long missesBefore = QueryCache.getMisses();
+		long statementHitsBefore = DatabaseSession.getStatementHits();
+		long statementMissesBefore = DatabaseSession.getStatementMisses();
+		for (int offset = 6; offset < 10; offset += 3) {
+			assertFalse(RoaModel.getAll(pagingParams(offset), connection).getResults().isEmpty());
+		}
+		// Same SQL for every page, already built and already prepared
+		assertEquals(missesBefore, QueryCache.getMisses());
+		assertTrue(QueryCache.getHits() > hitsBefore);
+		assertEquals(statementMissesBefore, DatabaseSession.getStatementMisses());
+		assertTrue(DatabaseSession.getStatementHits() >= statementHitsBefore + 2);
+	}
+
+	public void testOffsetPagesShareTheStatement() throws Exception {
+		// Without the kept cursors every page is read with an offset
+		KeysetPaging.clear();
+		RoaModel.getAll(pagingParams(3), connection);
+		long statementMissesBefore = DatabaseSession.getStatementMisses();
+		for (int offset = 6; offset < 10; offset += 3) {
+			KeysetPaging.clear();
+			assertFalse(RoaModel.getAll(pagingParams(offset), connection).getResults().isEmpty());
+		}
+		// The limit and offset are bound, not part of the SQL
+		assertEquals(statementMissesBefore, DatabaseSession.getStatementMisses());
+	}
+
+	public void testShapeChangesTheQuery() throws Exception {
+		PagingParameters withoutOffset = pagingParams(0);
+		withoutOffset.setOffset(-1);
+		String query = RoaModel.getQueryGroup().getQuery("getAll");
+		assertFalse(Util.getQueryWithPaging(query, withoutOffset, null)
+				.equals(Util.getQueryWithPaging(query, pagingParams(3), null)));
+		assertEquals(Util.getQueryWithPaging(query, pagingParams(6), null),
+				Util.getQueryWithPaging(query, pagingParams(3), null));
+	}
+
+	private static PagingParameters pagingParams(int offset) {
+		PagingParameters pagingParams = new PagingParameters();
+		pagingParams.setLimit(3);
+		pagingParams.setOffset(offset);
+		return pagingParams;
+	}
+}
@@ -0,0 +1,158 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import mx.nic.lab.rpki.db.pojo.EncodedRpkiObject;
+import mx.nic.lab.rpki.db.pojo.Gbr;
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.db.pojo.RpkiObject;
+import mx.nic.lab.rpki.db.pojo.RpkiObject.Type;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * Tests of the hydration of the {@link Roa}s listed by
+ * {@link RoaModel#getAll(PagingParameters, Connection)}: the related objects of
+ * the whole page are loaded at once, they must be the same that the ones loaded
+ * row by row, and the number of statements doesn't depend on the size of the
+ * page
+ *
+ */
+public class RoaModelGetAllTest extends DatabaseTestCase {
+
+	private static final Instant REACHED = Instant.parse("2019-02-01T00:00:00Z");
+
+	private Connection connection;
+	private int sequence;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		connection = getConnection();
+		Set<RpkiObject> rpkiObjects = new LinkedHashSet<>();
+		rpkiObjects.add(newObject(Type.CER, null, "ca"));
+		for (int i = 0; i < 2; i++) {
+			RpkiObject gbrObject = newObject(Type.GBR, "ca", null);
+			Gbr gbr = new Gbr();
+			gbr.setVcard("BEGIN:VCARD\nFN:Contact " + i + "\nEND:VCARD");
+			gbrObject.setGbr(gbr);
+			rpkiObjects.add(gbrObject);
+		}
+		for (int i = 0; i < 40; i++) {
+			RpkiObject roaObject = newObject(Type.ROA, "ca", null);
+			roaObject.getRoas().add(newRoa(64500L + i, "10." + i + ".0.0", 16));
+			roaObject.getRoas().add(newRoa(64500L + i, "172.16." + i + ".0", 24));
+			rpkiObjects.add(roaObject);
+		}
+		RpkiObjectModel.bulkCreate(rpkiObjects, connection);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testBatchedEqualsPerRow() throws SQLException {
+		List<Roa> page = RoaModel.getAll(pagingParams(100), connection).getResults();
+		assertEquals(80, page.size());
+		for (Roa batched : page) {
+			Roa perRow = RoaModel.getById(batched.getId(), RpkiObjectModel.Projection.LOCATIONS, connection);
+			assertEquals(describe(perRow), describe(batched));
+			assertEquals(2, batched.getGbrs().size());
+		}
+	}
+
+	public void testStatementsDontGrowWithThePage() throws SQLException {
+		// Warm up the query caches and the count, so only the statements are measured
+		RoaModel.getAll(pagingParams(10), connection);
+		RoaModel.getAll(pagingParams(80), connection);
+
+		long before = preparedStatements();
+		assertEquals(10, RoaModel.getAll(pagingParams(10), connection).getResults().size());
+		long smallStatements = preparedStatements() - before;
+		before = preparedStatements();
+		assertEquals(80, RoaModel.getAll(pagingParams(80), connection).getResults().size());
+		long bigStatements = preparedStatements() - before;
+
+		// Before, each ROA needed at least two statements of its own
+		assertEquals(smallStatements, bigStatements);
+		assertTrue("Statements per page " + bigStatements, bigStatements <= 7);
+	}
+
+	/**
+	 * Get the values of the <code>roa</code> and its related objects that are
+	 * loaded by the listing
+	 */
+	private static String describe(Roa roa) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(roa.getId()).append(" AS").append(roa.getAsn()).append(" ").append(roa.getPrefixText());
+		sb.append(" ").append(describe(roa.getRpkiObject()));
+		List<Gbr> gbrs = new ArrayList<>(roa.getGbrs());
+		gbrs.sort(Comparator.comparing(Gbr::getId));
+		for (Gbr gbr : gbrs) {
+			sb.append(" GBR ").append(gbr.getId()).append(" ").append(gbr.getVcard());
+			sb.append(" ").append(describe(gbr.getRpkiObject()));
+		}
+		return sb.toString();
+	}
+
+	private static String describe(RpkiObject rpkiObject) {
+		return rpkiObject.getId() + " " + rpkiObject.getType() + " " + Arrays.toString(rpkiObject.getSha256()) + " "
+				+ new TreeSet<>(rpkiObject.getLocations());
+	}
+
+	private static long preparedStatements() {
+		return DatabaseSession.getStatementHits() + DatabaseSession.getStatementMisses();
+	}
+
+	private static PagingParameters pagingParams(int limit) {
+		PagingParameters pagingParams = new PagingParameters();
+		pagingParams.setLimit(limit);
+		pagingParams.setOffset(0);
+		return pagingParams;
+	}
+
+	private RpkiObject newObject(Type type, String aki, String ski) {
+		RpkiObject rpkiObject = new RpkiObject();
+		rpkiObject.setType(type);
+		rpkiObject.setCa(ski != null);
+		rpkiObject.setAuthorityKeyIdentifier(aki != null ? aki.getBytes() : null);
+		rpkiObject.setSubjectKeyIdentifier(ski != null ? ski.getBytes() : null);
+		rpkiObject.setSha256(("sha256-" + sequence++).getBytes());
+		rpkiObject.setLastMarkedReachableAt(REACHED);
+		rpkiObject.setLocations(new HashSet<>(Arrays.asList("rsync://example.net/repo/" + sequence)));
+		rpkiObject.setRoas(new ArrayList<>());
+		rpkiObject.setRpkiRepositories(new HashSet<>());
+		EncodedRpkiObject encoded = new EncodedRpkiObject();
+		encoded.setEncoded(rpkiObject.getSha256());
+		rpkiObject.setEncodedRpkiObject(encoded);
+		return rpkiObject;
+	}
+
+	private static Roa newRoa(Long asn, String prefix, int prefixLength) throws UnknownHostException {
+		byte[] address = address(prefix);
+		Roa roa = new Roa();
+		roa.setAsn(asn);
+		roa.setPrefixText(prefix + "/" + prefixLength);
+		roa.setStartPrefix(address);
+		roa.setEndPrefix(IpPrefix.of(address, prefixLength).toEndBytes());
+		roa.setPrefixLength(prefixLength);
+		roa.setPrefixMaxLength(prefixLength);
+		roa.setPrefixFamily(IpPrefix.getFamily(address));
+		return roa;
+	}
+}
@@ -0,0 +1,141 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.object.RoaCandidates;
+
+/**
+ * Tests of the ROA lookups that use the numeric prefix columns, made at the
+ * VRP snapshot of the ROAs (see {@link VrpSnapshotModel}). The IPv6 addresses
+ * are stored as two signed <code>long</code>s with the sign bit flipped, so
+ * the ROAs are placed at both sides of the sign bit of the high and the low
+ * values; an IPv4 ROA has the sign bit of the <code>int</code> set.
+ *
+ */
+public class RoaModelTest extends DatabaseTestCase {
+
+	/**
+	 * ASN without ROAs
+	 */
+	private static final Long OTHER_ASN = 64509L;
+
+	private Connection connection;
+	private long snapshotId;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		VrpSnapshotModel.init(getConfig());
+		connection = getConnection();
+		long rpkiObjectId = createRpkiObject(connection);
+		// High value below and above the sign bit
+		createRoa(rpkiObjectId, 64500L, "2001:db8::", 32, 48, connection);
+		createRoa(rpkiObjectId, 64501L, "fc00::", 7, 48, connection);
+		createRoa(rpkiObjectId, 64502L, "fd00:1::", 32, 64, connection);
+		// Low value below and above the sign bit
+		createRoa(rpkiObjectId, 64503L, "2001:db8:0:1::", 65, 128, connection);
+		createRoa(rpkiObjectId, 64504L, "2001:db8:0:1:8000::", 65, 128, connection);
+		// IPv4, below and above the sign bit of the address
+		createRoa(rpkiObjectId, 64505L, "10.0.0.0", 8, 24, connection);
+		createRoa(rpkiObjectId, 64506L, "200.0.0.0", 8, 24, connection);
+		createRoa(rpkiObjectId, 64507L, "200.1.0.0", 16, 16, connection);
+		snapshotId = VrpSnapshotModel.createSnapshot(connection);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		VrpSnapshotModel.shutdown();
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testNumericPrefixesKeepTheAddressOrder() throws SQLException {
+		List<String> prefixes = new ArrayList<>();
+		try (Statement statement = connection.createStatement()) {
+			ResultSet rs = statement.executeQuery("select roa_prefix_text from roa "
+					+ "order by roa_prefix_family, roa_start_hi, roa_start_lo, roa_prefix_length");
+			while (rs.next()) {
+				prefixes.add(rs.getString(1));
+			}
+		}
+		assertEquals(Arrays.asList("10.0.0.0/8", "200.0.0.0/8", "200.1.0.0/16", "2001:db8::/32", "2001:db8:0:1::/65",
+				"2001:db8:0:1:8000::/65", "fc00::/7", "fd00:1::/32"), prefixes);
+	}
+
+	public void testExactMatch() throws SQLException, UnknownHostException {
+		// Both ROAs match, the most specific goes first
+		assertRoa("fd00:1::/32", findExactMatch(OTHER_ASN, "fd00:1:2::", 48));
+		assertRoa("fc00::/7", findExactMatch(OTHER_ASN, "fd00:2::", 48));
+		assertNull(findExactMatch(OTHER_ASN, "fd00:2::", 64));
+		assertRoa("2001:db8:0:1::/65", findExactMatch(OTHER_ASN, "2001:db8:0:1:7fff::1", 128));
+		assertRoa("2001:db8:0:1:8000::/65", findExactMatch(OTHER_ASN, "2001:db8:0:1:8000::1", 128));
+		assertRoa("2001:db8::/32", findExactMatch(OTHER_ASN, "2001:db8:0:1::", 48));
+		assertRoa("200.1.0.0/16", findExactMatch(OTHER_ASN, "200.1.0.0", 16));
+		assertRoa("200.0.0.0/8", findExactMatch(OTHER_ASN, "200.1.2.0", 24));
+		assertNull(findExactMatch(OTHER_ASN, "201.0.0.0", 16));
+		// RFC 6811: the matching ROA with the ASN of the route is preferred
+		assertRoa("fc00::/7", findExactMatch(64501L, "fd00:1:2::", 48));
+	}
+
+	public void testCoveringAggregate() throws SQLException, UnknownHostException {
+		// The most specific of the covering aggregates
+		assertRoa("fd00:1::/32", candidates(OTHER_ASN, "fd00:1::1", 128).getCoveringAggregate());
+		assertRoa("fc00::/7", candidates(OTHER_ASN, "fd00:1::", 64).getCoveringAggregate());
+		assertRoa("200.1.0.0/16", candidates(OTHER_ASN, "200.1.2.0", 24).getCoveringAggregate());
+		assertRoa("2001:db8::/32", candidates(OTHER_ASN, "2001:db8:0:1:8000::1", 128).getCoveringAggregate());
+		assertNull(candidates(OTHER_ASN, "fe00::", 16).getCoveringAggregate());
+	}
+
+	public void testMoreSpecific() throws SQLException, UnknownHostException {
+		// The first more specific in the address order
+		assertRoa("fc00::/7", candidates(OTHER_ASN, "8000::", 1).getMoreSpecific());
+		assertRoa("2001:db8::/32", candidates(OTHER_ASN, "::", 0).getMoreSpecific());
+		assertRoa("2001:db8:0:1::/65", candidates(OTHER_ASN, "2001:db8:0:1::", 64).getMoreSpecific());
+		assertNull(candidates(OTHER_ASN, "2001:db8:0:1:8000::", 65).getMoreSpecific());
+		assertRoa("200.0.0.0/8", candidates(OTHER_ASN, "128.0.0.0", 1).getMoreSpecific());
+		assertRoa("10.0.0.0/8", candidates(OTHER_ASN, "0.0.0.0", 1).getMoreSpecific());
+	}
+
+	public void testValidationCandidates() throws SQLException, UnknownHostException {
+		RoaCandidates candidates = candidates(OTHER_ASN, "fd00:1:2::", 48);
+		assertRoa("fd00:1::/32", candidates.getExactMatch());
+		assertFalse(candidates.isAsnExists());
+		// RFC 6811: the matching ROA with the ASN of the route is preferred
+		candidates = candidates(64501L, "fd00:1:2::", 48);
+		assertRoa("fc00::/7", candidates.getExactMatch());
+		assertTrue(candidates.isAsnExists());
+
+		candidates = candidates(64503L, "2001:db8:0:1:8000::", 65);
+		assertRoa("2001:db8:0:1:8000::/65", candidates.getExactMatch());
+		assertRoa("2001:db8::/32", candidates.getCoveringAggregate());
+		assertNull(candidates.getMoreSpecific());
+
+		candidates = candidates(64500L, "2001:db8:0:1::", 64);
+		assertNull(candidates.getExactMatch());
+		assertRoa("2001:db8::/32", candidates.getCoveringAggregate());
+		assertRoa("2001:db8:0:1::/65", candidates.getMoreSpecific());
+	}
+
+	private Roa findExactMatch(Long asn, String prefix, int prefixLength) throws SQLException, UnknownHostException {
+		return VrpSnapshotModel.findExactMatch(snapshotId, asn, address(prefix), prefixLength, connection);
+	}
+
+	private RoaCandidates candidates(Long asn, String prefix, int prefixLength)
+			throws SQLException, UnknownHostException {
+		return VrpSnapshotModel.findValidationCandidates(snapshotId, asn, address(prefix), prefixLength, connection);
+	}
+
+	private static void assertRoa(String expected, Roa roa) {
+		assertNotNull("Expected " + expected, roa);
+		assertEquals(expected, roa.getPrefixText());
+	}
+}
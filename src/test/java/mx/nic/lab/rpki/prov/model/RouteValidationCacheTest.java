@@ -0,0 +1,141 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import mx.nic.lab.rpki.db.exception.InitializationException;
+import mx.nic.lab.rpki.db.pojo.RouteValidation;
+import mx.nic.lab.rpki.db.pojo.RouteValidation.AsState;
+import mx.nic.lab.rpki.db.pojo.RouteValidation.PrefixState;
+import mx.nic.lab.rpki.db.pojo.RouteValidation.ValidityState;
+
+/**
+ * Tests of the {@link RouteValidationCache}: copies of the results, the
+ * admission of the frequent routes, its max size and the concurrent access
+ *
+ */
+public class RouteValidationCacheTest extends TestCase {
+
+	private static final int CACHE_SIZE = 200;
+
+	@Override
+	protected void setUp() throws Exception {
+		init(CACHE_SIZE);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		RouteValidationCache.init(new Properties());
+	}
+
+	public void testResultsAreCopied() {
+		RouteValidation validation = validation(64500L);
+		put(64500L, 1, validation);
+		// Neither the stored nor the returned results can change the cached one
+		validation.setValidityState(ValidityState.UNKNOWN);
+		RouteValidation cached = get(64500L, 1);
+		assertEquals(ValidityState.VALID, cached.getValidityState());
+		assertNotSame(validation, cached);
+		cached.setValidityState(ValidityState.INVALID);
+		assertEquals(ValidityState.VALID, get(64500L, 1).getValidityState());
+		assertEquals(PrefixState.MATCH_ROA, get(64500L, 1).getPrefixState());
+	}
+
+	public void testGenerations() {
+		long generation = RouteValidationCache.getGeneration();
+		put(64500L, 1, validation(64500L));
+		RouteValidationCache.invalidate();
+		assertNull(get(64500L, 1));
+		// A validation that started before the invalidation isn't cached
+		RouteValidationCache.put(generation, 64500L, address(1), 24, false, validation(64500L));
+		assertNull(get(64500L, 1));
+	}
+
+	public void testFrequentRoutesSurviveAScan() {
+		for (int i = 0; i < 12; i++) {
+			for (int route = 0; route < 10; route++) {
+				if (get(64500L, route) == null) {
+					put(64500L, route, validation(64500L));
+				}
+			}
+		}
+		// Routes requested once, five times the size of the cache
+		for (int route = 1000; route < 1000 + 5 * CACHE_SIZE; route++) {
+			assertNull(get(64501L, route));
+			put(64501L, route, validation(64501L));
+		}
+		for (int route = 0; route < 10; route++) {
+			assertNotNull("Route " + route, get(64500L, route));
+		}
+		assertTrue(RouteValidationCache.size() <= CACHE_SIZE);
+		assertTrue(RouteValidationCache.getEvictions() > 0);
+	}
+
+	public void testConcurrentAccess() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++) {
+				int seed = thread;
+				results.add(executor.submit((Callable<Integer>) () -> {
+					int found = 0;
+					for (int i = 0; i < 20000; i++) {
+						long asn = 64500L + (i * 7 + seed) % 3;
+						int route = (i * 31 + seed) % (2 * CACHE_SIZE);
+						RouteValidation cached = get(asn, route);
+						if (cached == null) {
+							put(asn, route, validation(asn));
+						} else {
+							// Never the result of another route
+							assertEquals(validation(asn).getValidityState(), cached.getValidityState());
+							found++;
+						}
+					}
+					return found;
+				}));
+			}
+			int found = 0;
+			for (Future<Integer> result : results) {
+				found += result.get(60, TimeUnit.SECONDS);
+			}
+			assertTrue(found > 0);
+			assertTrue(RouteValidationCache.size() <= CACHE_SIZE);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void init(int size) throws InitializationException {
+		Properties config = new Properties();
+		config.setProperty("route_validation_cache_size", Integer.toString(size));
+		RouteValidationCache.init(config);
+	}
+
+	private static RouteValidation get(long asn, int route) {
+		return RouteValidationCache.get(asn, address(route), 24, false);
+	}
+
+	private static void put(long asn, int route, RouteValidation validation) {
+		RouteValidationCache.put(RouteValidationCache.getGeneration(), asn, address(route), 24, false, validation);
+	}
+
+	private static RouteValidation validation(long asn) {
+		RouteValidation validation = new RouteValidation();
+		validation.setValidityState(asn % 2 == 0 ? ValidityState.VALID : ValidityState.INVALID);
+		validation.setPrefixState(PrefixState.MATCH_ROA);
+		validation.setAsState(asn % 2 == 0 ? AsState.MATCHING : AsState.NON_MATCHING);
+		validation.setFullCheck(false);
+		return validation;
+	}
+
+	private static byte[] address(int route) {
+		return new byte[] { 10, (byte) (route >>> 16), (byte) (route >>> 8), (byte) route };
+	}
+}
@@ -0,0 +1,139 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import mx.nic.lab.rpki.db.pojo.RouteValidation;
+import mx.nic.lab.rpki.db.pojo.RouteValidation.ValidityState;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.database.DatabaseSession;
+import mx.nic.lab.rpki.prov.object.RouteQuery;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * Tests of the batch validation of {@link RouteValidationModel}, with the
+ * default lookup engine
+ *
+ */
+public class RouteValidationModelTest extends DatabaseTestCase {
+
+	private Connection connection;
+	private long rpkiObjectId;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		VrpSnapshotModel.init(getConfig());
+		RouteValidationModel.init(getConfig());
+		connection = getConnection();
+		rpkiObjectId = createRpkiObject(connection);
+		createRoa(rpkiObjectId, 64500L, "192.0.2.0", 24, 24, connection);
+		createRoa(rpkiObjectId, 64501L, "2001:db8::", 32, 48, connection);
+		RouteValidationModel.publishVrpSnapshot(connection);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		VrpSnapshotModel.shutdown();
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testBatchEqualsSingleValidations() throws Exception {
+		List<RouteQuery> routes = Arrays.asList(route(64500L, "192.0.2.0", 24), route(64501L, "192.0.2.0", 24),
+				route(64500L, "192.0.2.128", 25), route(64501L, "2001:db8:1::", 48), route(64502L, "198.51.100.0", 24),
+				route(64501L, "2001:db8::", 64));
+		List<RouteQuery> validated = new ArrayList<>();
+		RouteValidationModel.validateAll(routes, false, (route, result) -> {
+			validated.add(route);
+			try {
+				RouteValidation single = RouteValidationModel.validate(route.getAsn(), route.getPrefix(),
+						route.getPrefixLength(), route.getFamilyType(), false, connection);
+				assertEquals(single.getValidityState(), result.getValidityState());
+				assertEquals(single.getPrefixState(), result.getPrefixState());
+				assertEquals(single.getAsState(), result.getAsState());
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}, connection);
+		// In the order received
+		assertEquals(routes, validated);
+	}
+
+	public void testRoutesReadAsValidated() throws Exception {
+		List<RouteQuery> routes = Arrays.asList(route(64500L, "192.0.2.0", 24), route(64501L, "192.0.2.0", 24));
+		int[] read = new int[1];
+		Iterable<RouteQuery> lazy = () -> new Iterator<RouteQuery>() {
+
+			@Override
+			public boolean hasNext() {
+				return read[0] < routes.size();
+			}
+
+			@Override
+			public RouteQuery next() {
+				return routes.get(read[0]++);
+			}
+		};
+		List<Integer> readAtResult = new ArrayList<>();
+		RouteValidationModel.validateAll(lazy, false, (route, result) -> readAtResult.add(read[0]), connection);
+		assertEquals(Arrays.asList(1, 2), readAtResult);
+	}
+
+	public void testIndexFollowsTheSnapshot() throws Exception {
+		RouteQuery route = route(64502L, "198.51.100.0", 24);
+		assertEquals(ValidityState.UNKNOWN, validate(route));
+		// Not seen until the next snapshot is published
+		createRoa(rpkiObjectId, 64502L, "198.51.100.0", 24, 24, connection);
+		assertEquals(ValidityState.UNKNOWN, validate(route));
+		RouteValidationModel.publishVrpSnapshot(connection);
+		assertEquals(ValidityState.VALID, validate(route));
+	}
+
+	/**
+	 * A full check looks up all the ROA candidates with one statement, so it
+	 * doesn't take more statements than the check of the exact match only
+	 */
+	public void testFullCheckStatements() throws Exception {
+		// The SLURM index is built at the first validation
+		validateSingle(route(64500L, "192.0.2.0", 24), false);
+		long exactOnly = validateSingle(route(64500L, "192.0.2.0", 24), false);
+		long exact = validateSingle(route(64500L, "192.0.2.0", 24), true);
+		long coveringAggregate = validateSingle(route(64500L, "192.0.2.128", 25), true);
+		long moreSpecific = validateSingle(route(64501L, "2001:db8::", 31), true);
+		long noMatch = validateSingle(route(64502L, "198.51.100.0", 24), true);
+		assertEquals(exactOnly, exact);
+		assertEquals(exactOnly, coveringAggregate);
+		assertEquals(exactOnly, moreSpecific);
+		// Without a matched ROA to load
+		assertTrue(noMatch <= exactOnly);
+	}
+
+	/**
+	 * Validate the route with the default lookup engine
+	 *
+	 * @return the number of statements used
+	 */
+	private long validateSingle(RouteQuery route, boolean fullCheck) throws Exception {
+		long before = DatabaseSession.getStatementHits() + DatabaseSession.getStatementMisses();
+		RouteValidation result = RouteValidationModel.validate(route.getAsn(), route.getPrefix(),
+				route.getPrefixLength(), route.getFamilyType(), fullCheck, connection);
+		assertNotNull(result);
+		return DatabaseSession.getStatementHits() + DatabaseSession.getStatementMisses() - before;
+	}
+
+	private ValidityState validate(RouteQuery route) throws Exception {
+		List<ValidityState> states = new ArrayList<>();
+		RouteValidationModel.validateAll(Arrays.asList(route), true,
+				(validated, result) -> states.add(result.getValidityState()), connection);
+		return states.get(0);
+	}
+
+	private static RouteQuery route(Long asn, String prefix, int prefixLength) throws Exception {
+		byte[] address = address(prefix);
+		return new RouteQuery(asn, address, prefixLength, IpPrefix.getFamily(address));
+	}
+}
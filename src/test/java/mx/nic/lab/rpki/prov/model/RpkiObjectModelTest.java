@@ -0,0 +1,244 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import mx.nic.lab.rpki.db.pojo.EncodedRpkiObject;
+import mx.nic.lab.rpki.db.pojo.RpkiObject;
+import mx.nic.lab.rpki.db.pojo.RpkiObject.Type;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+
+/**
+ * Tests of the writes of the {@link RpkiObject}s: the IDs of the bulk creates
+ * are mapped back to its objects, the reach updates move the objects to its
+ * reach generation, and the materialized hierarchy (parent ID and childs count)
+ * follows the creates and the purges
+ *
+ */
+public class RpkiObjectModelTest extends DatabaseTestCase {
+
+	private static final Instant REACHED = Instant.parse("2019-02-01T00:00:00Z");
+	private static final Instant UNREACHED = Instant.parse("2019-01-01T00:00:00Z");
+	private static final Instant REACHED_AGAIN = Instant.parse("2019-03-01T00:00:00Z");
+
+	private Connection connection;
+	private int sequence;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		RpkiObjectModel.init(getConfig());
+		PurgeService.init(getConfig());
+		connection = getConnection();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+		PurgeService.shutdown();
+		RpkiObjectModel.init(new Properties());
+		super.tearDown();
+	}
+
+	@Override
+	protected Properties getConfig() {
+		Properties config = super.getConfig();
+		config.setProperty("bulk_create_chunk_size", "3");
+		return config;
+	}
+
+	public void testBulkCreateMapsTheIds() throws SQLException {
+		Set<RpkiObject> created = new LinkedHashSet<>();
+		// More than two chunks, the last one incomplete
+		for (int i = 0; i < 8; i++) {
+			created.add(newObject(Type.ROA, "ca", null, REACHED));
+		}
+		RpkiObjectModel.bulkCreate(created, connection);
+		assertCreated(created);
+	}
+
+	public void testBulkCreateWithoutGeneratedKeys() throws SQLException {
+		Set<RpkiObject> created = new LinkedHashSet<>();
+		for (int i = 0; i < 8; i++) {
+			created.add(newObject(Type.ROA, "ca", null, REACHED));
+		}
+		RpkiObjectModel.bulkCreate(created, withoutGeneratedKeys(connection));
+		// Found by its SHA256
+		assertCreated(created);
+	}
+
+	public void testUpdateReachedObjects() throws SQLException {
+		Set<RpkiObject> created = new LinkedHashSet<>();
+		for (int i = 0; i < 6; i++) {
+			created.add(newObject(Type.ROA, "ca", null, UNREACHED));
+		}
+		RpkiObjectModel.bulkCreate(created, connection);
+		// Two groups of dates, and the objects that can't be updated
+		Set<RpkiObject> reached = new LinkedHashSet<>();
+		int index = 0;
+		for (RpkiObject rpkiObject : created) {
+			if (index++ % 3 == 0) {
+				continue;
+			}
+			rpkiObject.setLastMarkedReachableAt(index % 2 == 0 ? REACHED : REACHED_AGAIN);
+			reached.add(rpkiObject);
+		}
+		RpkiObject withoutId = newObject(Type.ROA, "ca", null, REACHED);
+		reached.add(withoutId);
+		assertEquals(4, RpkiObjectModel.updateReachedObjects(reached, connection));
+		for (RpkiObject rpkiObject : created) {
+			Instant reachedAt = rpkiObject.getLastMarkedReachableAt();
+			// Both the date and its generation
+			assertEquals(reachedAt.toString(), reachColumns(rpkiObject)[0]);
+			assertEquals(String.valueOf(reachedAt.toEpochMilli()), reachColumns(rpkiObject)[1]);
+		}
+
+		// The objects behind the generation are purged, the rest remain
+		assertEquals(2, RpkiObjectModel.deleteUnreachableObjects(REACHED.minusSeconds(1), connection));
+		for (RpkiObject rpkiObject : created) {
+			RpkiObject found = RpkiObjectModel.getById(rpkiObject.getId(), connection);
+			assertEquals(rpkiObject.getLastMarkedReachableAt().equals(UNREACHED), found == null);
+		}
+		assertEquals(2, RpkiObjectModel.deleteUnreachableObjects(REACHED_AGAIN.minusSeconds(1), connection));
+	}
+
+	public void testBulkCreateCountsTheChilds() throws SQLException {
+		RpkiObject ca = newObject(Type.CER, null, "ca", REACHED);
+		RpkiObject subCa = newObject(Type.CER, "ca", "sub-ca", REACHED);
+		RpkiObject roa = newObject(Type.ROA, "ca", null, REACHED);
+		RpkiObject manifest = newObject(Type.MFT, "sub-ca", null, REACHED);
+		RpkiObjectModel.bulkCreate(objects(ca, subCa, roa, manifest), connection);
+		assertEquals(ca.getId(), RpkiObjectModel.getParentId(subCa.getId(), connection));
+		assertEquals(subCa.getId(), RpkiObjectModel.getParentId(manifest.getId(), connection));
+		assertEquals(2, childCount(ca));
+		assertEquals(1, childCount(subCa));
+
+		// A child of an existent CA, and a CA that adopts an existent orphan
+		RpkiObject orphan = newObject(Type.ROA, "late-ca", null, REACHED);
+		RpkiObjectModel.bulkCreate(objects(orphan), connection);
+		assertNull(RpkiObjectModel.getParentId(orphan.getId(), connection));
+		RpkiObject crl = newObject(Type.CRL, "ca", null, REACHED);
+		RpkiObject lateCa = newObject(Type.CER, "ca", "late-ca", REACHED);
+		RpkiObjectModel.bulkCreate(objects(crl, lateCa), connection);
+		assertEquals(lateCa.getId(), RpkiObjectModel.getParentId(orphan.getId(), connection));
+		assertEquals(4, childCount(ca));
+		assertEquals(1, childCount(subCa));
+		assertEquals(1, childCount(lateCa));
+	}
+
+	public void testPurgeUpdatesTheHierarchy() throws SQLException {
+		RpkiObject ca = newObject(Type.CER, null, "ca", REACHED);
+		RpkiObject subCa = newObject(Type.CER, "ca", "sub-ca", UNREACHED);
+		RpkiObject roa = newObject(Type.ROA, "ca", null, UNREACHED);
+		RpkiObject manifest = newObject(Type.MFT, "sub-ca", null, REACHED);
+		RpkiObjectModel.bulkCreate(objects(ca, subCa, roa, manifest), connection);
+		assertEquals(2, childCount(ca));
+
+		assertEquals(2, RpkiObjectModel.deleteUnreachableObjects(REACHED.minusSeconds(1), connection));
+		assertEquals(0, childCount(ca));
+		// Its parent no longer exists
+		assertNull(RpkiObjectModel.getParentId(manifest.getId(), connection));
+	}
+
+	private RpkiObject newObject(Type type, String aki, String ski, Instant reachedAt) {
+		RpkiObject rpkiObject = new RpkiObject();
+		rpkiObject.setType(type);
+		rpkiObject.setCa(ski != null);
+		rpkiObject.setAuthorityKeyIdentifier(aki != null ? aki.getBytes() : null);
+		rpkiObject.setSubjectKeyIdentifier(ski != null ? ski.getBytes() : null);
+		rpkiObject.setSha256(("sha256-" + sequence++).getBytes());
+		rpkiObject.setLastMarkedReachableAt(reachedAt);
+		rpkiObject.setLocations(new HashSet<>(Arrays.asList("rsync://example.net/repo/" + sequence)));
+		rpkiObject.setRoas(new ArrayList<>());
+		rpkiObject.setRpkiRepositories(new HashSet<>());
+		EncodedRpkiObject encoded = new EncodedRpkiObject();
+		encoded.setEncoded(rpkiObject.getSha256());
+		rpkiObject.setEncodedRpkiObject(encoded);
+		return rpkiObject;
+	}
+
+	/**
+	 * Check that each object got the ID of its own row, and that its related
+	 * objects were stored with that ID
+	 */
+	private void assertCreated(Set<RpkiObject> created) throws SQLException {
+		Set<Long> ids = new HashSet<>();
+		for (RpkiObject rpkiObject : created) {
+			assertNotNull(rpkiObject.getId());
+			assertTrue(ids.add(rpkiObject.getId()));
+			RpkiObject found = RpkiObjectModel.getBySha256(rpkiObject.getSha256(), connection);
+			assertEquals(rpkiObject.getId(), found.getId());
+			assertEquals(rpkiObject.getLocations(), RpkiObjectModel.getLocations(rpkiObject.getId(), connection));
+		}
+	}
+
+	/**
+	 * Wrap the <code>connection</code>, so its statements don't return the
+	 * generated keys, as some drivers do with the batches
+	 */
+	private static Connection withoutGeneratedKeys(Connection connection) throws SQLException {
+		ClassLoader classLoader = RpkiObjectModelTest.class.getClassLoader();
+		return (Connection) Proxy.newProxyInstance(classLoader, new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					Object result = invoke(connection, method, args);
+					if (!(result instanceof PreparedStatement)) {
+						return result;
+					}
+					PreparedStatement statement = (PreparedStatement) result;
+					return Proxy.newProxyInstance(classLoader, new Class<?>[] { PreparedStatement.class },
+							(statementProxy, statementMethod, statementArgs) -> {
+								if (statementMethod.getName().equals("getGeneratedKeys")) {
+									return connection.createStatement().executeQuery("select 1 from dual where 1 = 0");
+								}
+								return invoke(statement, statementMethod, statementArgs);
+							});
+				});
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static Set<RpkiObject> objects(RpkiObject... rpkiObjects) {
+		return new LinkedHashSet<>(Arrays.asList(rpkiObjects));
+	}
+
+	/**
+	 * @return the stored date when the object was reached and its generation
+	 */
+	private String[] reachColumns(RpkiObject rpkiObject) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select rpo_last_marked_reachable_at, "
+				+ "rpo_reach_generation from rpki_object where rpo_id = ?")) {
+			statement.setLong(1, rpkiObject.getId());
+			ResultSet rs = statement.executeQuery();
+			assertTrue(rs.next());
+			return new String[] { rs.getString(1), rs.getString(2) };
+		}
+	}
+
+	private int childCount(RpkiObject rpkiObject) throws SQLException {
+		try (PreparedStatement statement = connection
+				.prepareStatement("select rpo_child_count from rpki_object where rpo_id = ?")) {
+			statement.setLong(1, rpkiObject.getId());
+			ResultSet rs = statement.executeQuery();
+			assertTrue(rs.next());
+			return rs.getInt(1);
+		}
+	}
+}
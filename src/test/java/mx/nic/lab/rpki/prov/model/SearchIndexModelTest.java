@@ -0,0 +1,130 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import mx.nic.lab.rpki.db.exception.InitializationException;
+import mx.nic.lab.rpki.db.pojo.PagingParameters;
+import mx.nic.lab.rpki.db.pojo.Roa;
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.model.Util.FilterMode;
+import mx.nic.lab.rpki.prov.object.RoaDbObject;
+
+/**
+ * Tests of the filters over the columns indexed at the {@link SearchIndexModel}:
+ * the n-gram search must find the same rows that a substring search of the
+ * whole column, and the prefix search is only used when its marker is
+ * configured
+ *
+ */
+public class SearchIndexModelTest extends DatabaseTestCase {
+
+	private static final List<String> PREFIXES = Arrays.asList("192.0.2.0/24", "192.0.2.128/25", "198.51.100.0/24",
+			"10.0.0.0/8", "10.192.0.0/16", "203.0.113.0/24", "2001:db8::/32", "2001:db8:1::/48", "fd00:1::/32");
+
+	private Connection connection;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SearchIndexModel.init(new Properties());
+		connection = getConnection();
+		long rpkiObjectId = createRpkiObject(connection);
+		for (int i = 0; i < PREFIXES.size(); i++) {
+			String[] prefix = PREFIXES.get(i).split("/");
+			int length = Integer.parseInt(prefix[1]);
+			createRoa(rpkiObjectId, 64500L + i, prefix[0], length, length, connection);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SearchIndexModel.init(new Properties());
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testGramsSearchEqualsSubstringSearch() throws Exception {
+		for (String filter : Arrays.asList("192", "0.2.", "db8:", "/24", ".0.0/", "2.0/2", "::/", "255")) {
+			assertEquals(FilterMode.GRAMS, filterMode(filter));
+			assertEquals(filter, containing(filter), search(filter));
+		}
+	}
+
+	public void testShortFilterUsesLike() throws Exception {
+		assertEquals(FilterMode.LIKE, filterMode("19"));
+		assertEquals(containing("19"), search("19"));
+	}
+
+	public void testGramsFollowTheWrites() throws Exception {
+		assertTrue(search("233.252").isEmpty());
+		createRoa(createRpkiObject(connection), 64600L, "233.252.0.0", 24, 24, connection);
+		assertEquals(new TreeSet<>(Arrays.asList("233.252.0.0/24")), search("233.252"));
+	}
+
+	public void testPrefixSearchDisabledByDefault() throws Exception {
+		// The marker is just another character of the filter
+		assertFalse(SearchIndexModel.isPrefixFilter("^10."));
+		assertEquals(FilterMode.GRAMS, filterMode("^10."));
+		assertTrue(search("^10.").isEmpty());
+	}
+
+	public void testPrefixSearchWithMarker() throws Exception {
+		Properties config = new Properties();
+		config.setProperty("filter_prefix_marker", "^");
+		SearchIndexModel.init(config);
+		assertEquals(FilterMode.PREFIX, filterMode("^10."));
+		assertEquals(new TreeSet<>(Arrays.asList("10.0.0.0/8", "10.192.0.0/16")), search("^10."));
+		// Without the marker it's still a substring search
+		assertEquals(containing("10."), search("10."));
+	}
+
+	public void testInvalidPrefixMarker() {
+		Properties config = new Properties();
+		config.setProperty("filter_prefix_marker", "^^");
+		try {
+			SearchIndexModel.init(config);
+			fail("A marker of two characters was accepted");
+		} catch (InitializationException e) {
+			// Expected
+		}
+	}
+
+	private static FilterMode filterMode(String filter) {
+		return Util.getFilterMode(pagingParams(filter), RoaDbObject.propertyToColumnMap);
+	}
+
+	private Set<String> search(String filter) throws Exception {
+		Set<String> result = new TreeSet<>();
+		for (Roa roa : RoaModel.getAll(pagingParams(filter), connection).getResults()) {
+			result.add(roa.getPrefixText());
+		}
+		return result;
+	}
+
+	/**
+	 * The brute force search that the filter must be equal to
+	 */
+	private static Set<String> containing(String filter) {
+		Set<String> result = new TreeSet<>();
+		for (String prefix : PREFIXES) {
+			if (prefix.contains(filter)) {
+				result.add(prefix);
+			}
+		}
+		return result;
+	}
+
+	private static PagingParameters pagingParams(String filter) {
+		PagingParameters pagingParams = new PagingParameters();
+		pagingParams.setLimit(100);
+		pagingParams.setOffset(0);
+		pagingParams.setFilterField(Roa.PREFIX_TEXT);
+		pagingParams.setFilterQuery(filter);
+		return pagingParams;
+	}
+}
@@ -0,0 +1,70 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+
+/**
+ * Tests of the 'like' patterns of the filters: the wildcards and the escape
+ * char of the filter query are matched literally
+ *
+ */
+public class UtilTest extends DatabaseTestCase {
+
+	private Connection connection;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		connection = getConnection();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testWildcardsAreLiteral() throws SQLException {
+		assertTrue(matches("10%/24", "10%"));
+		assertFalse(matches("10.0.0.0/24", "10%"));
+		assertTrue(matches("as_64500", "s_6"));
+		assertFalse(matches("asx64500", "s_6"));
+		assertTrue(matches("a%b_c", "%b_"));
+		assertFalse(matches("axbxc", "%b_"));
+	}
+
+	public void testEscapeCharIsLiteral() throws SQLException {
+		assertTrue(matches("a\\b", "\\"));
+		assertTrue(matches("a\\%b", "\\%"));
+		assertFalse(matches("a%b", "\\%"));
+		// An escape char at the end doesn't break the pattern
+		assertTrue(matches("ab\\", "b\\"));
+		assertFalse(matches("ab", "b\\"));
+	}
+
+	public void testPrefixPattern() throws SQLException {
+		assertTrue(matches("10_1", "10_", true));
+		assertFalse(matches("x10_1", "10_", true));
+		assertFalse(matches("10x1", "10_", true));
+		assertTrue(matches("x10_1", "10_", false));
+	}
+
+	private boolean matches(String value, String filterQuery) throws SQLException {
+		return matches(value, filterQuery, false);
+	}
+
+	private boolean matches(String value, String filterQuery, boolean prefix) throws SQLException {
+		try (PreparedStatement statement = connection
+				.prepareStatement("select ? like ? escape '" + Util.SQL_ESCAPE_CHAR + "'")) {
+			statement.setString(1, value);
+			statement.setString(2, Util.getCleanLikeString(filterQuery, prefix));
+			ResultSet rs = statement.executeQuery();
+			rs.next();
+			return rs.getBoolean(1);
+		}
+	}
+}
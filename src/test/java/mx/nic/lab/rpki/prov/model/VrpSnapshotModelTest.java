@@ -0,0 +1,209 @@
+package mx.nic.lab.rpki.prov.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.object.Vrp;
+import mx.nic.lab.rpki.prov.object.VrpDelta;
+
+/**
+ * Tests of the publication and retirement of the VRP snapshots, and of the
+ * changes between its serials
+ *
+ */
+public class VrpSnapshotModelTest extends DatabaseTestCase {
+
+	private Connection connection;
+	private long rpkiObjectId;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// Forget the pointer to the snapshot of the previous database
+		VrpSnapshotModel.init(getConfig());
+		connection = getConnection();
+		rpkiObjectId = createRpkiObject(connection);
+		createRoa(rpkiObjectId, 64500L, "192.0.2.0", 24, 24, connection);
+		createRoa(rpkiObjectId, 64501L, "2001:db8::", 32, 48, connection);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		VrpSnapshotModel.shutdown();
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testFirstSnapshot() throws Exception {
+		assertEquals(VrpSnapshotModel.NO_SNAPSHOT, VrpSnapshotModel.getCurrentId(connection));
+		long snapshotId = VrpSnapshotModel.createSnapshot(connection);
+		assertTrue(snapshotId != VrpSnapshotModel.NO_SNAPSHOT);
+		assertEquals(snapshotId, VrpSnapshotModel.getCurrentId(connection));
+		assertEquals("CURRENT", getStatus(snapshotId));
+		assertEquals(2, VrpSnapshotModel.getVrps(snapshotId, connection).size());
+		// The first snapshot has no changes, its consumers need a reset
+		assertTrue(VrpSnapshotModel.getChangesSince(0L, connection).isResetRequired());
+	}
+
+	public void testReadersKeepTheirSnapshot() throws Exception {
+		long firstId = VrpSnapshotModel.createSnapshot(connection);
+		long readerId = VrpSnapshotModel.acquireCurrent(connection);
+		assertEquals(firstId, readerId);
+
+		// The writes to the ROAs aren't seen until the next snapshot
+		createRoa(rpkiObjectId, 64502L, "198.51.100.0", 24, 24, connection);
+		deleteRoas(64500L);
+		assertEquals(2, VrpSnapshotModel.getVrps(readerId, connection).size());
+		assertNotNull(VrpSnapshotModel.findExactMatch(readerId, 64500L, address("192.0.2.0"), 24, connection));
+		assertNull(VrpSnapshotModel.findExactMatch(readerId, 64502L, address("198.51.100.0"), 24, connection));
+
+		long secondId = VrpSnapshotModel.createSnapshot(connection);
+		assertTrue(secondId > firstId);
+		assertEquals(secondId, VrpSnapshotModel.getCurrentId(connection));
+		assertEquals("RETIRED", getStatus(firstId));
+		assertEquals("CURRENT", getStatus(secondId));
+		assertNull(VrpSnapshotModel.findExactMatch(secondId, 64500L, address("192.0.2.0"), 24, connection));
+		assertNotNull(VrpSnapshotModel.findExactMatch(secondId, 64502L, address("198.51.100.0"), 24, connection));
+		// The retired snapshot is still readable by its holders
+		assertEquals(2, VrpSnapshotModel.getVrps(readerId, connection).size());
+		VrpSnapshotModel.release(readerId);
+	}
+
+	public void testStaleSnapshotsDeletedAtStartup() throws Exception {
+		long firstId = VrpSnapshotModel.createSnapshot(connection);
+		long secondId = VrpSnapshotModel.createSnapshot(connection);
+		// An interrupted build
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("insert into vrp_snapshot (vsn_id, vsn_created_at, vsn_status) "
+					+ "values (" + (secondId + 10) + ", '2019-01-01T00:00:00Z', 'BUILDING')");
+		}
+		assertEquals(2, countVrps(firstId));
+
+		assertEquals(2, VrpSnapshotModel.deleteStaleSnapshots(connection));
+		assertEquals(0, countVrps(firstId));
+		assertEquals(2, countVrps(secondId));
+		// The retired snapshot is kept for its changes, the interrupted one isn't
+		assertEquals("RETIRED", getStatus(firstId));
+		assertNull(getStatus(secondId + 10));
+		assertEquals(secondId, VrpSnapshotModel.getCurrentId(connection));
+	}
+
+	public void testChangesSince() throws Exception {
+		long first = VrpSnapshotModel.createSnapshot(connection);
+		createRoa(rpkiObjectId, 64502L, "198.51.100.0", 24, 24, connection);
+		long second = VrpSnapshotModel.createSnapshot(connection);
+		createRoa(rpkiObjectId, 64503L, "203.0.113.0", 24, 24, connection);
+		deleteRoas(64500L);
+		long third = VrpSnapshotModel.createSnapshot(connection);
+
+		VrpDelta delta = VrpSnapshotModel.getChangesSince(first, connection);
+		assertFalse(delta.isResetRequired());
+		assertEquals(first, delta.getFromSerial());
+		assertEquals(third, delta.getSerial());
+		assertVrps(delta.getAnnounced(), "198.51.100.0/24", "203.0.113.0/24");
+		assertVrps(delta.getWithdrawn(), "192.0.2.0/24");
+
+		delta = VrpSnapshotModel.getChangesSince(second, connection);
+		assertVrps(delta.getAnnounced(), "203.0.113.0/24");
+		assertVrps(delta.getWithdrawn(), "192.0.2.0/24");
+
+		delta = VrpSnapshotModel.getChangesSince(third, connection);
+		assertFalse(delta.isResetRequired());
+		assertVrps(delta.getAnnounced());
+		assertVrps(delta.getWithdrawn());
+		// Unknown serials
+		assertTrue(VrpSnapshotModel.getChangesSince(third + 1, connection).isResetRequired());
+		assertTrue(VrpSnapshotModel.getChangesSince(first - 1, connection).isResetRequired());
+	}
+
+	public void testChangesThatCancelEachOther() throws Exception {
+		long first = VrpSnapshotModel.createSnapshot(connection);
+		createRoa(rpkiObjectId, 64502L, "198.51.100.0", 24, 24, connection);
+		deleteRoas(64500L);
+		VrpSnapshotModel.createSnapshot(connection);
+		deleteRoas(64502L);
+		createRoa(rpkiObjectId, 64500L, "192.0.2.0", 24, 24, connection);
+		long third = VrpSnapshotModel.createSnapshot(connection);
+
+		VrpDelta delta = VrpSnapshotModel.getChangesSince(first, connection);
+		assertEquals(third, delta.getSerial());
+		assertVrps(delta.getAnnounced());
+		assertVrps(delta.getWithdrawn());
+	}
+
+	public void testBrokenChain() throws Exception {
+		long first = VrpSnapshotModel.createSnapshot(connection);
+		createRoa(rpkiObjectId, 64502L, "198.51.100.0", 24, 24, connection);
+		long second = VrpSnapshotModel.createSnapshot(connection);
+		createRoa(rpkiObjectId, 64503L, "203.0.113.0", 24, 24, connection);
+		VrpSnapshotModel.createSnapshot(connection);
+		// The changes of the second serial are no longer kept
+		try (PreparedStatement statement = connection
+				.prepareStatement("delete from vrp_snapshot where vsn_id = ?")) {
+			statement.setLong(1, second);
+			statement.executeUpdate();
+		}
+		assertTrue(VrpSnapshotModel.getChangesSince(first, connection).isResetRequired());
+		assertFalse(VrpSnapshotModel.getChangesSince(second, connection).isResetRequired());
+	}
+
+	public void testShutdownDropsTheScheduledRetirements() throws Exception {
+		long firstId = VrpSnapshotModel.createSnapshot(connection);
+		VrpSnapshotModel.createSnapshot(connection);
+		// The retirement of the first one is scheduled after the delay
+		long start = System.currentTimeMillis();
+		VrpSnapshotModel.shutdown();
+		assertTrue(System.currentTimeMillis() - start < 5000L);
+		assertEquals(2, countVrps(firstId));
+	}
+
+	@Override
+	protected Properties getConfig() {
+		Properties config = super.getConfig();
+		config.setProperty("vrp_snapshot_retire_delay", "10");
+		return config;
+	}
+
+	private static void assertVrps(List<Vrp> vrps, String... expected) {
+		List<String> prefixes = new ArrayList<>();
+		for (Vrp vrp : vrps) {
+			prefixes.add(vrp.getPrefixText());
+		}
+		Collections.sort(prefixes);
+		assertEquals(Arrays.asList(expected), prefixes);
+	}
+
+	private void deleteRoas(long asn) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("delete from roa where roa_asn = ?")) {
+			statement.setLong(1, asn);
+			statement.executeUpdate();
+		}
+	}
+
+	private String getStatus(long snapshotId) throws SQLException {
+		try (PreparedStatement statement = connection
+				.prepareStatement("select vsn_status from vrp_snapshot where vsn_id = ?")) {
+			statement.setLong(1, snapshotId);
+			ResultSet rs = statement.executeQuery();
+			return rs.next() ? rs.getString(1) : null;
+		}
+	}
+
+	private int countVrps(long snapshotId) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select count(*) from vrp where vsn_id = ?")) {
+			statement.setLong(1, snapshotId);
+			ResultSet rs = statement.executeQuery();
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package mx.nic.lab.rpki.prov.prefix;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigInteger;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the {@link IpPrefix} arithmetic: the results must be the same that
+ * the ones of the <code>BigInteger</code> masks it replaced, without its
+ * allocations
+ *
+ */
+public class IpPrefixTest extends TestCase {
+
+	private static final int SAMPLES = 20000;
+
+	public void testContainsMatchesTheBigIntegerMasks() {
+		Random random = new Random(6811L);
+		for (int i = 0; i < SAMPLES; i++) {
+			int bytes = i % 2 == 0 ? IpPrefix.IPV4_BYTES : IpPrefix.IPV6_BYTES;
+			byte[] address = randomAddress(random, bytes);
+			int parentLength = random.nextInt(bytes * 8 + 1);
+			byte[] parent = toNetwork(address, parentLength);
+			// Half of them outside of the parent
+			byte[] son = i % 4 < 2 ? address : randomAddress(random, bytes);
+			assertEquals(containsWithMasks(parent, parentLength, son),
+					IpPrefix.contains(parent, parentLength, son));
+		}
+	}
+
+	public void testEndAndNetworkAddress() {
+		Random random = new Random(6483L);
+		for (int i = 0; i < SAMPLES; i++) {
+			int bytes = i % 2 == 0 ? IpPrefix.IPV4_BYTES : IpPrefix.IPV6_BYTES;
+			int length = random.nextInt(bytes * 8 + 1);
+			byte[] start = toNetwork(randomAddress(random, bytes), length);
+			byte[] end = IpPrefix.getEnd(start, length);
+			assertEquals(bytes, end.length);
+			BigInteger hostBits = BigInteger.ONE.shiftLeft(bytes * 8 - length).subtract(BigInteger.ONE);
+			assertEquals(new BigInteger(1, start).or(hostBits), new BigInteger(1, end));
+			assertTrue(IpPrefix.isNetworkAddress(start, length));
+			assertTrue(IpPrefix.isEndOfRange(start, length, end));
+			assertTrue(IpPrefix.compare(start, end) <= 0);
+			assertEquals(Integer.signum(new BigInteger(1, start).compareTo(new BigInteger(1, end))),
+					Integer.signum(IpPrefix.compare(start, end)));
+		}
+	}
+
+	/**
+	 * The measurement behind the replacement of the masks: the primitive
+	 * containment check doesn't allocate, the <code>BigInteger</code> one
+	 * allocates at every call
+	 */
+	public void testContainsDoesNotAllocate() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+		Random random = new Random(8210L);
+		byte[][] addresses = new byte[64][];
+		for (int i = 0; i < addresses.length; i++) {
+			addresses[i] = randomAddress(random, i % 2 == 0 ? IpPrefix.IPV4_BYTES : IpPrefix.IPV6_BYTES);
+		}
+		byte[] parent = toNetwork(addresses[0], 4);
+		long threadId = Thread.currentThread().getId();
+		int matches = 0;
+
+		long before = allocations.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < SAMPLES; i++) {
+			if (containsWithMasks(parent, 4, addresses[i % addresses.length])) {
+				matches++;
+			}
+		}
+		long withMasks = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		before = allocations.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < SAMPLES; i++) {
+			if (IpPrefix.contains(parent, 4, addresses[i % addresses.length])) {
+				matches--;
+			}
+		}
+		long withPrimitives = allocations.getThreadAllocatedBytes(threadId) - before;
+
+		assertEquals(0, matches);
+		// At least a mask and three BigIntegers per call
+		assertTrue("BigInteger masks allocated " + withMasks, withMasks > SAMPLES * 64L);
+		// Only the noise of the measurement itself
+		assertTrue("IpPrefix allocated " + withPrimitives, withPrimitives < SAMPLES);
+	}
+
+	/**
+	 * The containment check replaced by {@link IpPrefix#contains(byte[], int,
+	 * byte[])}, kept as the reference
+	 */
+	private static boolean containsWithMasks(byte[] fatherPrefix, int fatherLength, byte[] sonPrefix) {
+		if (sonPrefix.length != fatherPrefix.length) {
+			return false;
+		}
+		int bytesBase = fatherLength / 8;
+		int bitsBase = fatherLength % 8;
+		byte[] prefixLengthMask = new byte[fatherPrefix.length];
+		int currByte = 0;
+		for (; currByte < bytesBase; currByte++) {
+			prefixLengthMask[currByte] |= 255;
+		}
+		if (currByte < prefixLengthMask.length) {
+			prefixLengthMask[currByte] = (byte) (255 << (8 - bitsBase));
+		}
+		BigInteger sonIp = new BigInteger(sonPrefix);
+		BigInteger fatherIp = new BigInteger(fatherPrefix);
+		BigInteger mask = new BigInteger(prefixLengthMask);
+		return sonIp.and(mask).equals(fatherIp);
+	}
+
+	/**
+	 * Copy of the <code>address</code> with the host bits set to zero
+	 */
+	private static byte[] toNetwork(byte[] address, int length) {
+		byte[] network = address.clone();
+		for (int bit = length; bit < network.length * 8; bit++) {
+			network[bit / 8] &= ~(0x80 >>> (bit % 8));
+		}
+		return network;
+	}
+
+	private static byte[] randomAddress(Random random, int bytes) {
+		byte[] address = new byte[bytes];
+		random.nextBytes(address);
+		return address;
+	}
+}
@@ -0,0 +1,192 @@
+package mx.nic.lab.rpki.prov.rtr;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mx.nic.lab.rpki.prov.DatabaseTestCase;
+import mx.nic.lab.rpki.prov.model.RouteValidationModel;
+import mx.nic.lab.rpki.prov.model.VrpSnapshotModel;
+import mx.nic.lab.rpki.prov.prefix.IpPrefix;
+
+/**
+ * Round trips of the RTR PDUs between the {@link RtrServer} and the
+ * {@link RtrTestClient}: the complete payload of a Reset Query, the changes of
+ * a Serial Query after a Serial Notify, the Cache Reset of an unknown serial,
+ * and the PDUs of the protocol version 0
+ *
+ */
+public class RtrServerTest extends DatabaseTestCase {
+
+	private static final int REFRESH_INTERVAL = 3600;
+	private static final int RETRY_INTERVAL = 600;
+	private static final int EXPIRE_INTERVAL = 7200;
+
+	private Connection connection;
+	private long rpkiObjectId;
+	private RtrServer server;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		VrpSnapshotModel.init(getConfig());
+		RouteValidationModel.init(getConfig());
+		connection = getConnection();
+		rpkiObjectId = createRpkiObject(connection);
+		createRoa(64500L, "192.0.2.0", 24, 24);
+		createRoa(64501L, "2001:db8::", 32, 48);
+		RouteValidationModel.publishVrpSnapshot(connection);
+		// The refreshes are made by the tests, and the notifies aren't delayed
+		RtrCache cache = new RtrCache(10, REFRESH_INTERVAL, RETRY_INTERVAL, EXPIRE_INTERVAL);
+		server = new RtrServer(new InetSocketAddress("127.0.0.1", 0), cache, 3600, 0);
+		server.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.stop();
+		VrpSnapshotModel.shutdown();
+		connection.close();
+		super.tearDown();
+	}
+
+	public void testResetQuery() throws Exception {
+		try (RtrTestClient client = connect(RtrPdu.VERSION_1)) {
+			assertTrue(client.resetQuery());
+			List<byte[]> response = client.getLastResponse();
+			assertEquals(4, response.size());
+			assertCacheResponse(response.get(0), RtrPdu.VERSION_1);
+			assertEquals(Arrays.asList("announce AS64500 192.0.2.0/24-24",
+					"announce AS64501 2001:db8:0:0:0:0:0:0/32-48"), prefixes(response));
+			byte[] endOfData = response.get(3);
+			assertEndOfData(endOfData, RtrPdu.VERSION_1, 1);
+			ByteBuffer buffer = ByteBuffer.wrap(endOfData);
+			assertEquals(REFRESH_INTERVAL, buffer.getInt(12));
+			assertEquals(RETRY_INTERVAL, buffer.getInt(16));
+			assertEquals(EXPIRE_INTERVAL, buffer.getInt(20));
+			assertEquals(server.getCache().getSessionId(), client.getSessionId());
+		}
+	}
+
+	public void testSerialQueryAfterNotify() throws Exception {
+		try (RtrTestClient client = connect(RtrPdu.VERSION_1)) {
+			assertTrue(client.resetQuery());
+			// Nothing changed since the serial received
+			assertTrue(client.serialQuery());
+			assertEquals(2, client.getLastResponse().size());
+			assertEndOfData(client.getLastResponse().get(1), RtrPdu.VERSION_1, 1);
+
+			createRoa(64502L, "198.51.100.0", 24, 24);
+			deleteRoas(64501L);
+			RouteValidationModel.publishVrpSnapshot(connection);
+			assertTrue(server.getCache().refresh());
+			assertTrue(client.awaitSerialNotify(10000L));
+			assertTrue(client.serialQuery());
+			List<byte[]> response = client.getLastResponse();
+			assertCacheResponse(response.get(0), RtrPdu.VERSION_1);
+			assertEquals(Arrays.asList("announce AS64502 198.51.100.0/24-24",
+					"withdraw AS64501 2001:db8:0:0:0:0:0:0/32-48"), prefixes(response));
+			assertEndOfData(response.get(response.size() - 1), RtrPdu.VERSION_1, 2);
+			assertEquals(2, client.getSerial());
+
+			// The complete payload agrees with the changes
+			assertTrue(client.resetQuery());
+			assertEquals(Arrays.asList("announce AS64500 192.0.2.0/24-24", "announce AS64502 198.51.100.0/24-24"),
+					prefixes(client.getLastResponse()));
+		}
+	}
+
+	public void testUnknownSerialGetsCacheReset() throws Exception {
+		try (RtrTestClient client = connect(RtrPdu.VERSION_1)) {
+			assertTrue(client.resetQuery());
+			assertFalse(client.serialQuery(client.getSessionId(), 100));
+			assertCacheReset(client.getLastResponse());
+			// Another session ID
+			assertFalse(client.serialQuery((short) (client.getSessionId() + 1), client.getSerial()));
+			assertCacheReset(client.getLastResponse());
+		}
+	}
+
+	public void testVersion0() throws Exception {
+		try (RtrTestClient client = connect(RtrPdu.VERSION_0)) {
+			assertTrue(client.resetQuery());
+			List<byte[]> response = client.getLastResponse();
+			assertEquals(4, response.size());
+			assertCacheResponse(response.get(0), RtrPdu.VERSION_0);
+			for (byte[] pdu : response.subList(1, 3)) {
+				assertEquals(RtrPdu.VERSION_0, pdu[0]);
+			}
+			// Without the intervals
+			assertEndOfData(response.get(3), RtrPdu.VERSION_0, 1);
+			assertEquals(RtrPdu.END_OF_DATA_V0_LENGTH, response.get(3).length);
+		}
+	}
+
+	private RtrTestClient connect(byte version) throws Exception {
+		InetSocketAddress address = server.getLocalAddress();
+		return new RtrTestClient(address.getHostString(), address.getPort(), version);
+	}
+
+	private void assertCacheResponse(byte[] pdu, byte version) {
+		assertEquals(version, pdu[0]);
+		assertEquals(RtrPdu.CACHE_RESPONSE, pdu[1]);
+		assertEquals(RtrPdu.CACHE_RESPONSE_LENGTH, pdu.length);
+		assertEquals(server.getCache().getSessionId(), ByteBuffer.wrap(pdu).getShort(2));
+	}
+
+	private void assertEndOfData(byte[] pdu, byte version, int serial) {
+		assertEquals(version, pdu[0]);
+		assertEquals(RtrPdu.END_OF_DATA, pdu[1]);
+		assertEquals(RtrPdu.getEndOfDataLength(version), pdu.length);
+		ByteBuffer buffer = ByteBuffer.wrap(pdu);
+		assertEquals(pdu.length, buffer.getInt(4));
+		assertEquals(server.getCache().getSessionId(), buffer.getShort(2));
+		assertEquals(serial, buffer.getInt(RtrPdu.HEADER_LENGTH));
+	}
+
+	private static void assertCacheReset(List<byte[]> response) {
+		assertEquals(1, response.size());
+		assertEquals(RtrPdu.CACHE_RESET, response.get(0)[1]);
+		assertEquals(RtrPdu.CACHE_RESET_LENGTH, response.get(0).length);
+	}
+
+	/**
+	 * Decode the Prefix PDUs of the response, sorted so the order of the payload
+	 * doesn't matter
+	 */
+	private static List<String> prefixes(List<byte[]> response) throws Exception {
+		List<String> result = new ArrayList<>();
+		for (byte[] pdu : response) {
+			if (pdu[1] != RtrPdu.IPV4_PREFIX && pdu[1] != RtrPdu.IPV6_PREFIX) {
+				continue;
+			}
+			int addressLength = pdu[1] == RtrPdu.IPV4_PREFIX ? IpPrefix.IPV4_BYTES : IpPrefix.IPV6_BYTES;
+			assertEquals(pdu[1] == RtrPdu.IPV4_PREFIX ? RtrPdu.IPV4_PREFIX_LENGTH : RtrPdu.IPV6_PREFIX_LENGTH,
+					pdu.length);
+			ByteBuffer buffer = ByteBuffer.wrap(pdu);
+			byte[] address = Arrays.copyOfRange(pdu, 12, 12 + addressLength);
+			result.add((pdu[8] == RtrPdu.FLAG_ANNOUNCEMENT ? "announce" : "withdraw") + " AS"
+					+ Integer.toUnsignedString(buffer.getInt(12 + addressLength)) + " "
+					+ InetAddress.getByAddress(address).getHostAddress() + "/" + pdu[9] + "-" + pdu[10]);
+		}
+		result.sort(null);
+		return result;
+	}
+
+	private void createRoa(Long asn, String prefix, int prefixLength, int maxLength) throws Exception {
+		createRoa(rpkiObjectId, asn, prefix, prefixLength, maxLength, connection);
+	}
+
+	private void deleteRoas(long asn) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("delete from roa where roa_asn = ?")) {
+			statement.setLong(1, asn);
+			statement.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package mx.nic.lab.rpki.prov.trie;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the {@link PrefixTrie} lookups, using IPv4 and IPv6 prefixes
+ *
+ */
+public class PrefixTrieTest extends TestCase {
+
+	public void testIpv4Covering() throws UnknownHostException {
+		PrefixTrie<String> trie = new PrefixTrie<>(4);
+		trie.put(address("10.0.0.0"), 8, "10/8");
+		trie.put(address("10.1.0.0"), 16, "10.1/16");
+		trie.put(address("10.1.2.0"), 24, "10.1.2/24");
+		trie.put(address("10.2.0.0"), 16, "10.2/16");
+		trie.put(address("0.0.0.0"), 0, "default");
+		assertEquals(5, trie.size());
+
+		// From the less specific to the most specific, including the prefix itself
+		assertEquals(Arrays.asList("default", "10/8", "10.1/16", "10.1.2/24"),
+				trie.findCovering(address("10.1.2.0"), 24));
+		assertEquals(Arrays.asList("default", "10/8", "10.1/16", "10.1.2/24"),
+				trie.findCovering(address("10.1.2.128"), 25));
+		assertEquals(Arrays.asList("default", "10/8", "10.1/16"), trie.findCovering(address("10.1.3.0"), 24));
+		assertEquals(Arrays.asList("default", "10/8"), trie.findCovering(address("10.0.0.0"), 8));
+		assertEquals(Arrays.asList("default"), trie.findCovering(address("11.0.0.0"), 8));
+		// A shorter prefix isn't covered by the longer ones
+		assertEquals(Arrays.asList("default"), trie.findCovering(address("10.0.0.0"), 7));
+	}
+
+	public void testIpv4MoreSpecific() throws UnknownHostException {
+		PrefixTrie<String> trie = new PrefixTrie<>(4);
+		trie.put(address("10.0.0.0"), 8, "10/8");
+		trie.put(address("10.2.0.0"), 16, "10.2/16");
+		trie.put(address("10.1.2.0"), 24, "10.1.2/24");
+		trie.put(address("10.1.0.0"), 16, "10.1/16");
+
+		// Ordered by start address and then by prefix length
+		assertEquals("10.1/16", trie.findFirstMoreSpecific(address("10.0.0.0"), 8));
+		assertEquals("10/8", trie.findFirstMoreSpecific(address("10.0.0.0"), 7));
+		assertEquals("10.1.2/24", trie.findFirstMoreSpecific(address("10.1.0.0"), 16));
+		assertEquals("10.1.2/24", trie.findFirstMoreSpecific(address("10.1.2.0"), 23));
+		assertNull(trie.findFirstMoreSpecific(address("10.1.2.0"), 24));
+		assertNull(trie.findFirstMoreSpecific(address("10.3.0.0"), 16));
+		assertNull(trie.findFirstMoreSpecific(address("11.0.0.0"), 8));
+	}
+
+	public void testIpv6() throws UnknownHostException {
+		PrefixTrie<String> trie = new PrefixTrie<>(16);
+		trie.put(address("2001:db8::"), 32, "2001:db8::/32");
+		trie.put(address("2001:db8:1::"), 48, "2001:db8:1::/48");
+		trie.put(address("2001:db8:1:2::"), 64, "2001:db8:1:2::/64");
+		// The high bit set, so that a signed comparison would fail
+		trie.put(address("8000::"), 1, "8000::/1");
+		trie.put(address("ff00::"), 8, "ff00::/8");
+
+		assertEquals(Arrays.asList("2001:db8::/32", "2001:db8:1::/48", "2001:db8:1:2::/64"),
+				trie.findCovering(address("2001:db8:1:2::"), 128));
+		assertEquals(Arrays.asList("2001:db8::/32"), trie.findCovering(address("2001:db8:2::"), 48));
+		assertEquals(Collections.emptyList(), trie.findCovering(address("2001:db9::"), 32));
+		assertEquals(Arrays.asList("8000::/1", "ff00::/8"), trie.findCovering(address("ff02::1"), 128));
+
+		assertEquals("2001:db8:1::/48", trie.findFirstMoreSpecific(address("2001:db8::"), 32));
+		assertEquals("2001:db8:1:2::/64", trie.findFirstMoreSpecific(address("2001:db8:1::"), 48));
+		assertEquals("ff00::/8", trie.findFirstMoreSpecific(address("8000::"), 1));
+		assertEquals("2001:db8::/32", trie.findFirstMoreSpecific(address("::"), 0));
+		assertNull(trie.findFirstMoreSpecific(address("2001:db8:1:2::"), 64));
+	}
+
+	public void testSeveralValuesAtTheSamePrefix() throws UnknownHostException {
+		PrefixTrie<String> trie = new PrefixTrie<>(4);
+		trie.put(address("192.0.2.0"), 24, "first");
+		trie.put(address("192.0.2.0"), 24, "second");
+		assertEquals(2, trie.size());
+		assertEquals(Arrays.asList("first", "second"), trie.findCovering(address("192.0.2.1"), 32));
+	}
+
+	public void testInvalidPrefix() throws UnknownHostException {
+		PrefixTrie<String> trie = new PrefixTrie<>(4);
+		try {
+			trie.put(address("2001:db8::"), 32, "IPv6");
+			fail("An IPv6 prefix was added to an IPv4 trie");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			trie.findCovering(address("10.0.0.0"), 33);
+			fail("An invalid prefix length was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	static byte[] address(String address) throws UnknownHostException {
+		return InetAddress.getByName(address).getAddress();
+	}
+}
@@ -0,0 +1,104 @@
+package mx.nic.lab.rpki.prov.trie;
+
+import static mx.nic.lab.rpki.prov.trie.PrefixTrieTest.address;
+
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import mx.nic.lab.rpki.db.pojo.Roa;
+
+/**
+ * Tests of the {@link RoaTrie} lookups: exact match, covering aggregate and
+ * more specific, using IPv4 and IPv6 ROAs
+ *
+ */
+public class RoaTrieTest extends TestCase {
+
+	private RoaTrie trie;
+	private Roa ipv4Aggregate;
+	private Roa ipv4Specific;
+	private Roa ipv4Other;
+	private Roa ipv6Aggregate;
+	private Roa ipv6Specific;
+
+	@Override
+	protected void setUp() throws Exception {
+		ipv4Aggregate = roa(1L, 64500L, "10.0.0.0", 8, 24);
+		ipv4Specific = roa(2L, 64501L, "10.1.0.0", 16, 24);
+		ipv4Other = roa(3L, 64502L, "10.1.0.0", 16, 16);
+		ipv6Aggregate = roa(4L, 64500L, "2001:db8::", 32, 48);
+		ipv6Specific = roa(5L, 64503L, "2001:db8:1::", 48, 64);
+		trie = RoaTrie.build(Arrays.asList(ipv4Aggregate, ipv4Specific, ipv4Other, ipv6Aggregate, ipv6Specific));
+	}
+
+	public void testSize() {
+		assertEquals(5, trie.size());
+	}
+
+	public void testIpv4ExactMatch() throws UnknownHostException {
+		// Only the aggregate allows the length
+		assertSame(ipv4Aggregate, trie.findExactMatch(64500L, address("10.2.0.0"), 16));
+		assertSame(ipv4Aggregate, trie.findExactMatch(64509L, address("10.2.0.0"), 16));
+		// Several ROAs match, without the ASN the most specific one is returned
+		assertSame(ipv4Specific, trie.findExactMatch(64509L, address("10.1.2.0"), 24));
+		assertSame(ipv4Specific, trie.findExactMatch(64501L, address("10.1.2.0"), 24));
+		// RFC 6811: the route is valid if any of the matching ROAs has its ASN
+		assertSame(ipv4Aggregate, trie.findExactMatch(64500L, address("10.1.2.0"), 24));
+		assertSame(ipv4Other, trie.findExactMatch(64502L, address("10.1.0.0"), 16));
+		// The max length doesn't allow the prefix length
+		assertNull(trie.findExactMatch(64500L, address("10.1.2.0"), 25));
+		assertNull(trie.findExactMatch(64500L, address("11.0.0.0"), 8));
+	}
+
+	public void testIpv4CoveringAggregate() throws UnknownHostException {
+		// The most specific covering ROA whose max length doesn't allow the length
+		assertEquals(Integer.valueOf(16), trie.findCoveringAggregate(address("10.1.2.0"), 25).getPrefixLength());
+		assertSame(ipv4Aggregate, trie.findCoveringAggregate(address("10.2.0.128"), 25));
+		assertSame(ipv4Other, trie.findCoveringAggregate(address("10.1.2.0"), 24));
+		assertNull(trie.findCoveringAggregate(address("10.2.0.0"), 16));
+		assertNull(trie.findCoveringAggregate(address("11.0.0.0"), 25));
+	}
+
+	public void testIpv4MoreSpecific() throws UnknownHostException {
+		assertSame(ipv4Aggregate, trie.findMoreSpecific(address("10.0.0.0"), 7));
+		Roa moreSpecific = trie.findMoreSpecific(address("10.0.0.0"), 8);
+		assertTrue(moreSpecific == ipv4Specific || moreSpecific == ipv4Other);
+		assertNull(trie.findMoreSpecific(address("10.1.0.0"), 16));
+		assertNull(trie.findMoreSpecific(address("12.0.0.0"), 7));
+	}
+
+	public void testIpv6() throws UnknownHostException {
+		assertSame(ipv6Specific, trie.findExactMatch(64500L, address("2001:db8:1::"), 64));
+		assertSame(ipv6Aggregate, trie.findExactMatch(64500L, address("2001:db8:1::"), 48));
+		assertSame(ipv6Specific, trie.findExactMatch(64503L, address("2001:db8:1::"), 48));
+		assertNull(trie.findExactMatch(64500L, address("2001:db8:2::"), 64));
+
+		assertSame(ipv6Aggregate, trie.findCoveringAggregate(address("2001:db8:2::"), 64));
+		assertSame(ipv6Specific, trie.findCoveringAggregate(address("2001:db8:1::1"), 128));
+
+		assertSame(ipv6Aggregate, trie.findMoreSpecific(address("2001::"), 16));
+		assertSame(ipv6Specific, trie.findMoreSpecific(address("2001:db8::"), 32));
+		assertNull(trie.findMoreSpecific(address("2001:db8:1::"), 48));
+		// The families don't mix
+		assertSame(ipv6Aggregate, trie.findMoreSpecific(address("::"), 0));
+		assertSame(ipv4Aggregate, trie.findMoreSpecific(address("0.0.0.0"), 0));
+	}
+
+	public void testExistAsn() {
+		assertTrue(trie.existAsn(64500L));
+		assertTrue(trie.existAsn(64503L));
+		assertFalse(trie.existAsn(64509L));
+	}
+
+	private static Roa roa(Long id, Long asn, String prefix, int prefixLength, int maxLength)
+			throws UnknownHostException {
+		Roa roa = new Roa();
+		roa.setId(id);
+		roa.setAsn(asn);
+		roa.setStartPrefix(address(prefix));
+		roa.setPrefixLength(prefixLength);
+		roa.setPrefixMaxLength(maxLength);
+		return roa;
+	}
+}
@@ -0,0 +1,70 @@
+package mx.nic.lab.rpki.prov.trie;
+
+import static mx.nic.lab.rpki.prov.trie.PrefixTrieTest.address;
+
+import java.net.UnknownHostException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import mx.nic.lab.rpki.db.pojo.SlurmPrefix;
+
+/**
+ * Tests of the {@link SlurmPrefixTrie} lookups of assertions and filters
+ *
+ */
+public class SlurmPrefixTrieTest extends TestCase {
+
+	private SlurmPrefixTrie trie;
+	private SlurmPrefix aggregateAssertion;
+	private SlurmPrefix specificAssertion;
+	private SlurmPrefix asnFilter;
+	private SlurmPrefix prefixFilter;
+	private SlurmPrefix prefixAsnFilter;
+
+	@Override
+	protected void setUp() throws Exception {
+		aggregateAssertion = slurmPrefix(SlurmPrefix.TYPE_ASSERTION, 64500L, "2001:db8::", 32, 48);
+		specificAssertion = slurmPrefix(SlurmPrefix.TYPE_ASSERTION, 64501L, "2001:db8:1::", 48, null);
+		asnFilter = slurmPrefix(SlurmPrefix.TYPE_FILTER, 64510L, null, null, null);
+		prefixFilter = slurmPrefix(SlurmPrefix.TYPE_FILTER, null, "192.0.2.0", 24, null);
+		prefixAsnFilter = slurmPrefix(SlurmPrefix.TYPE_FILTER, 64511L, "192.0.0.0", 16, null);
+		trie = SlurmPrefixTrie.build(
+				Arrays.asList(aggregateAssertion, specificAssertion, asnFilter, prefixFilter, prefixAsnFilter));
+	}
+
+	public void testAssertions() throws UnknownHostException {
+		// Without the max length only the same length matches
+		assertSame(specificAssertion, trie.findExactMatch(64501L, address("2001:db8:1::"), 48));
+		assertSame(specificAssertion, trie.findExactMatch(64509L, address("2001:db8:1::"), 48));
+		// RFC 6811: the matching assertion with the ASN is preferred
+		assertSame(aggregateAssertion, trie.findExactMatch(64500L, address("2001:db8:1::"), 48));
+		assertNull(trie.findExactMatch(64500L, address("2001:db8:1::"), 64));
+
+		assertSame(specificAssertion, trie.findCoveringAggregate(address("2001:db8:1::"), 64));
+		assertSame(aggregateAssertion, trie.findCoveringAggregate(address("2001:db8:2::"), 64));
+		assertSame(specificAssertion, trie.findMoreSpecific(address("2001:db8::"), 32));
+		assertNull(trie.findExactMatch(64500L, address("192.0.2.0"), 24));
+	}
+
+	public void testFilters() throws UnknownHostException {
+		// The most specific filter with a prefix goes first
+		assertSame(prefixFilter, trie.findFilterMatch(64511L, address("192.0.2.0"), 24));
+		assertSame(prefixFilter, trie.findFilterMatch(64510L, address("192.0.2.0"), 25));
+		assertSame(prefixAsnFilter, trie.findFilterMatch(64511L, address("192.0.3.0"), 24));
+		// A filter with prefix and ASN needs both
+		assertSame(asnFilter, trie.findFilterMatch(64510L, address("192.0.3.0"), 24));
+		assertNull(trie.findFilterMatch(64509L, address("192.0.3.0"), 24));
+		assertSame(asnFilter, trie.findFilterMatch(64510L, address("2001:db8::"), 32));
+	}
+
+	private static SlurmPrefix slurmPrefix(String type, Long asn, String prefix, Integer prefixLength,
+			Integer maxLength) throws UnknownHostException {
+		SlurmPrefix slurmPrefix = new SlurmPrefix();
+		slurmPrefix.setType(type);
+		slurmPrefix.setAsn(asn);
+		slurmPrefix.setStartPrefix(prefix != null ? address(prefix) : null);
+		slurmPrefix.setPrefixLength(prefixLength);
+		slurmPrefix.setPrefixMaxLength(maxLength);
+		return slurmPrefix;
+	}
+}